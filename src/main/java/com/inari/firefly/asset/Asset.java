@@ -34,6 +34,23 @@ public abstract class Asset extends SystemComponent implements Loadable, Disposa
     public static final SystemComponentKey<Asset> TYPE_KEY = SystemComponentKey.create( Asset.class );
     
     protected boolean loaded = false;
+    // state of an asynchronous load by the AssetSystem
+    boolean loading = false;
+    Throwable decodeError = null;
+    // reference count and memory accounting by the AssetSystem
+    int references = 0;
+    // manually loaded Assets are pinned and not disposed by the memory budget until they are disposed manually
+    boolean pinned = false;
+    long loadedSize = 0;
+    // the dependencies as registered in the reverse dependency index of the AssetSystem
+    IntBag indexedDependencies = null;
+    // load statistics by the AssetSystem, durations in nanoseconds
+    long loadNanos = 0;
+    long disposeNanos = 0;
+    long dependencyWaitNanos = 0;
+    long decodeNanos = 0;
+    long reportedSize = 0;
+    long waitStart = 0;
     
     private DynamicAttributeMap dynamicAttributeMap = new DynamicAttributeMap();
     
@@ -103,6 +120,21 @@ public abstract class Asset extends SystemComponent implements Loadable, Disposa
         return null;
     }
     
+    /** Prepares the data of this Asset on a background thread when it is loaded asynchronously by the AssetSystem,
+     *  for example reads and decodes the resource. load is called afterwards on the game thread and should then
+     *  only do the backend upload. This must not use the FFContext. Does nothing by default.
+     */
+    protected void decode() {
+        // by default all is done within load
+    }
+    
+    /** An estimate of the memory in bytes this Asset uses while it is loaded, used by the AssetSystem to
+     *  apply its memory budget. This is called right after load. Default is 0
+     */
+    protected long estimateSize() {
+        return 0;
+    }
+    
     protected void checkNotAlreadyLoaded() {
         if ( loaded ) {
             throw new IllegalStateException( "Asset: " + componentId() + " is already loaded and can not be modified" );
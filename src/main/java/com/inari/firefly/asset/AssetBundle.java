@@ -0,0 +1,113 @@
+package com.inari.firefly.asset;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/** A read only bundle of resources within one memory mapped file, written by the AssetBundlePacker.
+ *  <p>
+ *  The file starts with an index of the resource names and the offset and length of their data, followed by
+ *  the data of each resource aligned to AssetBundlePacker.ALIGNMENT. A resource is served as a ByteBuffer slice
+ *  of the mapped file, so opening a bundle is one file open and reading a resource is no copy at all.
+ */
+public final class AssetBundle {
+
+    static final int MAGIC = 0x46464142; // FFAB
+    static final int VERSION = 1;
+    static final Charset NAME_CHARSET = Charset.forName( "UTF-8" );
+
+    private final String name;
+    private final MappedByteBuffer buffer;
+    private final Map<String, Entry> index;
+
+    private AssetBundle( String name, MappedByteBuffer buffer, Map<String, Entry> index ) {
+        this.name = name;
+        this.buffer = buffer;
+        this.index = index;
+    }
+
+    public final String getName() {
+        return name;
+    }
+
+    public final boolean contains( String resourceName ) {
+        return index.containsKey( resourceName );
+    }
+
+    public final int size() {
+        return index.size();
+    }
+
+    /** Gets the data of the specified resource as a read only ByteBuffer slice of the bundle file,
+     *  or null if there is no resource with the specified name within this bundle.
+     */
+    public final ByteBuffer getResource( String resourceName ) {
+        Entry entry = index.get( resourceName );
+        if ( entry == null ) {
+            return null;
+        }
+
+        ByteBuffer result = buffer.duplicate();
+        result.position( entry.offset );
+        result.limit( entry.offset + entry.length );
+        return result.slice().asReadOnlyBuffer();
+    }
+
+    public static AssetBundle open( File file ) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            buffer.order( ByteOrder.BIG_ENDIAN );
+            return new AssetBundle( file.getName(), buffer, readIndex( file, buffer ) );
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static Map<String, Entry> readIndex( File file, MappedByteBuffer buffer ) throws IOException {
+        if ( buffer.limit() < 12 || buffer.getInt( 0 ) != MAGIC ) {
+            throw new IOException( "Not an asset bundle: " + file );
+        }
+        int version = buffer.getInt( 4 );
+        if ( version != VERSION ) {
+            throw new IOException( "Unsupported asset bundle version: " + version + " of: " + file );
+        }
+
+        ByteBuffer header = buffer.duplicate();
+        header.position( 8 );
+        int entryCount = header.getInt();
+        Map<String, Entry> index = new HashMap<String, Entry>( entryCount * 2 );
+        for ( int i = 0; i < entryCount; i++ ) {
+            byte[] nameBytes = new byte[ header.getInt() ];
+            header.get( nameBytes );
+            int offset = header.getInt();
+            int length = header.getInt();
+            if ( offset < 0 || length < 0 || offset + length > buffer.limit() ) {
+                throw new IOException( "Corrupt asset bundle entry: " + i + " of: " + file );
+            }
+            index.put( new String( nameBytes, NAME_CHARSET ), new Entry( offset, length ) );
+        }
+        return index;
+    }
+
+    private static final class Entry {
+
+        final int offset;
+        final int length;
+
+        Entry( int offset, int length ) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+}
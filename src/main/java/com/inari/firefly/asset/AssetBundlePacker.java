@@ -0,0 +1,100 @@
+package com.inari.firefly.asset;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Packs resources into one file that is read at runtime as an AssetBundle. This is meant to be used offline
+ *  by the build of a game and not at runtime.
+ *  <p>
+ *  The format is big endian: the magic number and version, the number of entries and for each entry the length
+ *  of the UTF-8 name, the name and the offset and length of the data. The data of the resources follows the index,
+ *  each aligned to ALIGNMENT bytes.
+ */
+public final class AssetBundlePacker {
+
+    public static final int ALIGNMENT = 16;
+
+    private final List<String> names = new ArrayList<String>();
+    private final List<byte[]> data = new ArrayList<byte[]>();
+
+    public final AssetBundlePacker add( String resourceName, byte[] resourceData ) {
+        if ( names.contains( resourceName ) ) {
+            throw new IllegalArgumentException( "There is already a resource with name: " + resourceName );
+        }
+
+        names.add( resourceName );
+        data.add( resourceData );
+        return this;
+    }
+
+    public final AssetBundlePacker add( String resourceName, File file ) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+        try {
+            byte[] resourceData = new byte[ (int) randomAccessFile.length() ];
+            randomAccessFile.readFully( resourceData );
+            return add( resourceName, resourceData );
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    public final int size() {
+        return names.size();
+    }
+
+    public final void write( File file ) throws IOException {
+        byte[][] nameBytes = new byte[ names.size() ][];
+        int indexSize = 12;
+        for ( int i = 0; i < names.size(); i++ ) {
+            nameBytes[ i ] = names.get( i ).getBytes( AssetBundle.NAME_CHARSET );
+            indexSize += 12 + nameBytes[ i ].length;
+        }
+
+        int[] offsets = new int[ names.size() ];
+        long offset = align( indexSize );
+        for ( int i = 0; i < names.size(); i++ ) {
+            offsets[ i ] = (int) offset;
+            offset = align( offset + data.get( i ).length );
+            if ( offset > Integer.MAX_VALUE ) {
+                throw new IOException( "Asset bundle exceeds the maximum size of: " + Integer.MAX_VALUE );
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+        try {
+            out.writeInt( AssetBundle.MAGIC );
+            out.writeInt( AssetBundle.VERSION );
+            out.writeInt( names.size() );
+            for ( int i = 0; i < names.size(); i++ ) {
+                out.writeInt( nameBytes[ i ].length );
+                out.write( nameBytes[ i ] );
+                out.writeInt( offsets[ i ] );
+                out.writeInt( data.get( i ).length );
+            }
+
+            for ( int i = 0; i < names.size(); i++ ) {
+                pad( out, offsets[ i ] );
+                out.write( data.get( i ) );
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void pad( DataOutputStream out, int position ) throws IOException {
+        while ( out.size() < position ) {
+            out.writeByte( 0 );
+        }
+    }
+
+    private static long align( long position ) {
+        return ( position + ALIGNMENT - 1 ) / ALIGNMENT * ALIGNMENT;
+    }
+
+}
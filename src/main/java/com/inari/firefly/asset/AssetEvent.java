@@ -25,16 +25,34 @@ public final class AssetEvent extends Event<AssetEventListener> {
         ASSET_CREATED,
         ASSET_LOADED,
         ASSET_DISPOSED,
-        ASSET_DELETED
+        ASSET_DELETED,
+        /** All Assets of an asynchronous load group are loaded, the asset is null for this type */
+        ASSET_GROUP_LOADED,
+        /** An Asset failed to load asynchronously, the error is the cause */
+        ASSET_LOAD_FAILED,
+        /** An Asset of an asynchronous load group failed to load, the asset is null and the error is the cause */
+        ASSET_GROUP_FAILED
     }
     
     public final Asset asset;
     public final Type eventType;
+    public final int loadGroupId;
+    public final Throwable error;
 
     public AssetEvent( Asset asset, Type eventType ) {
+        this( asset, eventType, -1 );
+    }
+    
+    public AssetEvent( Asset asset, Type eventType, int loadGroupId ) {
+        this( asset, eventType, loadGroupId, null );
+    }
+    
+    public AssetEvent( Asset asset, Type eventType, int loadGroupId, Throwable error ) {
         super( TYPE_KEY );
         this.asset = asset;
         this.eventType = eventType;
+        this.loadGroupId = loadGroupId;
+        this.error = error;
     }
 
     @Override
@@ -47,8 +65,14 @@ public final class AssetEvent extends Event<AssetEventListener> {
         StringBuilder builder = new StringBuilder();
         builder.append( "AssetEvent [eventType=" );
         builder.append( eventType );
-        builder.append( ", assetId=" );
-        builder.append( asset.index() );
+        if ( asset != null ) {
+            builder.append( ", assetId=" );
+            builder.append( asset.index() );
+        }
+        if ( loadGroupId >= 0 ) {
+            builder.append( ", loadGroupId=" );
+            builder.append( loadGroupId );
+        }
         builder.append( "]" );
         return builder.toString();
     }
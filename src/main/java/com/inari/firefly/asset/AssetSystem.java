@@ -15,21 +15,56 @@
  ******************************************************************************/ 
 package com.inari.firefly.asset;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.inari.commons.lang.IntIterator;
 import com.inari.commons.lang.list.DynArray;
 import com.inari.commons.lang.list.IntBag;
 import com.inari.firefly.FFInitException;
 import com.inari.firefly.system.FFContext;
+import com.inari.firefly.system.UpdateEvent;
+import com.inari.firefly.system.UpdateEventListener;
 import com.inari.firefly.system.component.ComponentSystem;
 import com.inari.firefly.system.component.SystemBuilderAdapter;
 import com.inari.firefly.system.component.SystemComponent.SystemComponentKey;
 import com.inari.firefly.system.component.SystemComponentBuilder;
 
-public class AssetSystem extends ComponentSystem<AssetSystem> {
+/** Manages the Assets. Assets are loaded synchronously on the game thread with loadAsset, or asynchronously with loadAssetsAsync.
+ *  <p>
+ *  An asynchronous load orders the Assets topologically by their dependencies. Assets with no pending dependency
+ *  are decoded in parallel on a pool of background threads, see Asset.decode. The load of a decoded Asset, that
+ *  should only do the backend upload, is done on the game thread on UpdateEvent within a per frame budget. When all
+ *  Assets of a load group are loaded an ASSET_GROUP_LOADED event is fired besides the ASSET_LOADED of each Asset.
+ *  <p>
+ *  Components that use an Asset acquire and release it. A loaded Asset also references the Assets it depends on.
+ *  An Asset that was released by all its users is kept loaded but if a memory budget is set and the estimated size of
+ *  all loaded Assets exceeds it, the least recently released Assets are disposed until the budget is met again.
+ *  Assets that are loaded manually with loadAsset or loadAssetsAsync are pinned and never disposed by the budget
+ *  until they are disposed manually. Assets that are only loaded as dependency or by acquireAsset are not pinned.
+ *  <p>
+ *  Resources can be packed into AssetBundles that are added to the AssetSystem. The backend should resolve a 
+ *  resource name with getResource first and only open the resource by itself if no bundle contains it.
+ */
+public class AssetSystem extends ComponentSystem<AssetSystem> implements UpdateEventListener {
     
     public static final FFSystemTypeKey<AssetSystem> SYSTEM_KEY = FFSystemTypeKey.create( AssetSystem.class );
 
@@ -37,23 +72,100 @@ public class AssetSystem extends ComponentSystem<AssetSystem> {
         Asset.TYPE_KEY
     };
 
+    private static final int DECODE_THREADS = Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 );
+    private static final Comparator<Asset> COST_ORDER = new Comparator<Asset>() {
+        @Override
+        public final int compare( Asset asset1, Asset asset2 ) {
+            long cost1 = asset1.loadNanos + asset1.disposeNanos + asset1.dependencyWaitNanos;
+            long cost2 = asset2.loadNanos + asset2.disposeNanos + asset2.dependencyWaitNanos;
+            return ( cost1 < cost2 )? 1 : ( cost1 > cost2 )? -1 : 0;
+        }
+    };
+
     private final DynArray<Asset> assets;
     private final Map<String, Asset> nameMapping;
+    // reverse dependency index, the ids of the Assets that depend on an Asset by its id
+    private final DynArray<IntBag> dependentIndex;
+    private final List<AssetBundle> bundles;
+    
+    // asynchronous loading
+    private ExecutorService decodeExecutor;
+    private final ConcurrentLinkedQueue<Asset> decodedAssets;
+    private final ArrayDeque<Asset> uploadQueue;
+    private int[] pendingDependencies;
+    private final DynArray<IntBag> pendingDependents;
+    private final List<LoadGroup> loadGroups;
+    private int nextLoadGroupId;
+    private long uploadBudget;
+    
+    // reference counting and eviction, the unreferenced Assets in the order they were released
+    private final LinkedHashSet<Asset> unreferencedAssets;
+    private long memoryBudget;
+    private long loadedSize;
+    private int evictionCount;
+    private boolean evicting;
+    
+    // load statistics, durations in nanoseconds
+    private long totalLoadNanos;
+    private long totalDisposeNanos;
+    private long totalDependencyWaitNanos;
     
     AssetSystem() {
         super( SYSTEM_KEY );
         assets = DynArray.create( Asset.class );
         nameMapping = new HashMap<String, Asset>();
+        dependentIndex = DynArray.create( IntBag.class, 20, 10 );
+        bundles = new ArrayList<AssetBundle>();
+        
+        decodeExecutor = null;
+        decodedAssets = new ConcurrentLinkedQueue<Asset>();
+        uploadQueue = new ArrayDeque<Asset>();
+        pendingDependencies = new int[ 20 ];
+        Arrays.fill( pendingDependencies, -1 );
+        pendingDependents = DynArray.create( IntBag.class, 20, 10 );
+        loadGroups = new ArrayList<LoadGroup>();
+        nextLoadGroupId = 0;
+        uploadBudget = 4;
+        
+        unreferencedAssets = new LinkedHashSet<Asset>();
+        memoryBudget = 0;
+        loadedSize = 0;
+        evictionCount = 0;
+        evicting = false;
+        
+        totalLoadNanos = 0;
+        totalDisposeNanos = 0;
+        totalDependencyWaitNanos = 0;
     }
 
     @Override
     public void init( FFContext context ) {
         super.init( context );
+        
+        context.registerListener( UpdateEvent.TYPE_KEY, this );
     }
 
     @Override
     public final void dispose( FFContext context ) {
+        context.disposeListener( UpdateEvent.TYPE_KEY, this );
         clear();
+        bundles.clear();
+        
+        if ( decodeExecutor != null ) {
+            decodeExecutor.shutdownNow();
+            decodeExecutor = null;
+        }
+    }
+    
+    public final long getUploadBudget() {
+        return uploadBudget;
+    }
+
+    /** Sets the time in milliseconds per frame that is used to load asynchronously decoded Assets on the game thread.
+     *  At least one Asset is loaded per frame. Default is 4
+     */
+    public final void setUploadBudget( long uploadBudget ) {
+        this.uploadBudget = uploadBudget;
     }
     
     public final Asset getAsset( String assetName ) {
@@ -110,11 +222,324 @@ public class AssetSystem extends ComponentSystem<AssetSystem> {
     }
     
     public final void loadAsset( String assetName ) {
-        loadAsset( getAsset( assetName ) );
+        Asset asset = getAsset( assetName );
+        pin( asset );
+        loadAsset( asset );
     }
     
     public final void loadAsset( int assetId ) {
-        loadAsset( getAsset( assetId ) );
+        Asset asset = getAsset( assetId );
+        pin( asset );
+        loadAsset( asset );
+    }
+    
+    /** Opens the specified bundle file written by the AssetBundlePacker and adds it to the resources of this AssetSystem */
+    public final AssetBundle addBundle( File bundleFile ) {
+        try {
+            AssetBundle bundle = AssetBundle.open( bundleFile );
+            bundles.add( bundle );
+            return bundle;
+        } catch ( IOException e ) {
+            throw new FFInitException( "Failed to open asset bundle: " + bundleFile, e );
+        }
+    }
+    
+    public final void removeBundle( String bundleName ) {
+        for ( int i = 0; i < bundles.size(); i++ ) {
+            if ( bundles.get( i ).getName().equals( bundleName ) ) {
+                bundles.remove( i );
+                return;
+            }
+        }
+    }
+    
+    /** Gets the data of the resource with the specified name from the first added bundle that contains it as a 
+     *  read only ByteBuffer slice of the memory mapped bundle file, or null if no bundle contains the resource.
+     */
+    public final ByteBuffer getResource( String resourceName ) {
+        for ( int i = 0; i < bundles.size(); i++ ) {
+            ByteBuffer resource = bundles.get( i ).getResource( resourceName );
+            if ( resource != null ) {
+                return resource;
+            }
+        }
+        return null;
+    }
+    
+    /** Adds a reference to the specified Asset for a component that uses it and loads the Asset if needed.
+     *  A referenced Asset is never disposed by the memory budget.
+     */
+    public final void acquireAsset( int assetId ) {
+        Asset asset = getAsset( assetId );
+        if ( asset == null ) {
+            throw new IllegalArgumentException( "No Asset with id: " + assetId + " found." );
+        }
+        
+        reference( asset );
+        if ( !asset.loaded && !asset.loading ) {
+            loadAsset( asset );
+        }
+    }
+    
+    /** Removes a reference to the specified Asset. An Asset with no references left stays loaded 
+     *  until it is disposed manually or by the memory budget.
+     */
+    public final void releaseAsset( int assetId ) {
+        Asset asset = getAsset( assetId );
+        if ( asset == null ) {
+            return;
+        }
+        
+        release( asset );
+        evict();
+    }
+    
+    public final int getReferences( int assetId ) {
+        Asset asset = getAsset( assetId );
+        if ( asset == null ) {
+            return 0;
+        }
+        
+        return asset.references;
+    }
+    
+    public final long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /** Sets the budget in bytes for the estimated size of all loaded Assets. 0 means no budget and is the default */
+    public final void setMemoryBudget( long memoryBudget ) {
+        this.memoryBudget = memoryBudget;
+        evict();
+    }
+    
+    /** The estimated size in bytes of all loaded Assets */
+    public final long getLoadedSize() {
+        return loadedSize;
+    }
+    
+    /** The number of loaded Assets that were released by all their users and can be disposed by the memory budget */
+    public final int getUnreferencedCount() {
+        return unreferencedAssets.size();
+    }
+    
+    /** The number of Assets that were disposed by the memory budget so far */
+    public final int getEvictionCount() {
+        return evictionCount;
+    }
+    
+    /** The duration in nanoseconds of the last load of the specified Asset on the game thread */
+    public final long getLoadNanos( int assetId ) {
+        Asset asset = getAsset( assetId );
+        return ( asset != null )? asset.loadNanos : 0;
+    }
+    
+    /** The duration in nanoseconds of the last dispose of the specified Asset */
+    public final long getDisposeNanos( int assetId ) {
+        Asset asset = getAsset( assetId );
+        return ( asset != null )? asset.disposeNanos : 0;
+    }
+    
+    /** The time in nanoseconds the last load of the specified Asset had to wait for its dependencies to be loaded */
+    public final long getDependencyWaitNanos( int assetId ) {
+        Asset asset = getAsset( assetId );
+        return ( asset != null )? asset.dependencyWaitNanos : 0;
+    }
+    
+    /** The duration in nanoseconds of the last asynchronous decode of the specified Asset on a background thread */
+    public final long getDecodeNanos( int assetId ) {
+        Asset asset = getAsset( assetId );
+        return ( asset != null )? asset.decodeNanos : 0;
+    }
+    
+    /** The estimated size in bytes of the specified Asset on its last load */
+    public final long getAssetSize( int assetId ) {
+        Asset asset = getAsset( assetId );
+        return ( asset != null )? asset.reportedSize : 0;
+    }
+    
+    public final long getTotalLoadNanos() {
+        return totalLoadNanos;
+    }
+    
+    public final long getTotalDisposeNanos() {
+        return totalDisposeNanos;
+    }
+    
+    public final long getTotalDependencyWaitNanos() {
+        return totalDependencyWaitNanos;
+    }
+    
+    /** Creates a table of the load statistics of all Assets, one line per Asset sorted by the cost that is the sum of
+     *  the load, dispose and dependency wait time. Durations are in milliseconds and sizes in bytes.
+     */
+    public final String dumpLoadStatistics() {
+        List<Asset> sorted = new ArrayList<Asset>( assets.size() );
+        for ( Asset asset : assets ) {
+            sorted.add( asset );
+        }
+        Collections.sort( sorted, COST_ORDER );
+        
+        StringBuilder builder = new StringBuilder();
+        builder.append( String.format( Locale.ROOT, "%-32s %-20s %10s %10s %10s %10s %12s%n", 
+            "name", "type", "load", "dispose", "wait", "decode", "bytes" ) );
+        for ( Asset asset : sorted ) {
+            builder.append( String.format( Locale.ROOT, "%-32s %-20s %10.3f %10.3f %10.3f %10.3f %12d%n", 
+                asset.getName(),
+                asset.getClass().getSimpleName(),
+                asset.loadNanos / 1000000d,
+                asset.disposeNanos / 1000000d,
+                asset.dependencyWaitNanos / 1000000d,
+                asset.decodeNanos / 1000000d,
+                asset.reportedSize
+            ) );
+        }
+        builder.append( String.format( Locale.ROOT, "%-32s %-20s %10.3f %10.3f %10.3f %10s %12d%n", 
+            "total", "",
+            totalLoadNanos / 1000000d,
+            totalDisposeNanos / 1000000d,
+            totalDependencyWaitNanos / 1000000d,
+            "",
+            loadedSize
+        ) );
+        return builder.toString();
+    }
+    
+    public final int loadAssetsAsync( String... assetNames ) {
+        int[] assetIds = new int[ assetNames.length ];
+        for ( int i = 0; i < assetNames.length; i++ ) {
+            assetIds[ i ] = getAssetId( assetNames[ i ] );
+        }
+        return loadAssetsAsync( assetIds );
+    }
+    
+    /** Loads the specified Assets and all the Assets they depend on asynchronously as one load group.
+     *  Assets that are already loaded are skipped, Assets that are already loading within another group are awaited.
+     *  If an Asset fails to decode or to load, it and the Assets depending on it are not loaded, an ASSET_LOAD_FAILED event
+     *  is fired for each of them and an ASSET_GROUP_FAILED event for each load group that contains one of them.
+     *  @return the id of the load group that is fired with the ASSET_GROUP_LOADED event when all Assets are loaded
+     */
+    public final int loadAssetsAsync( int... assetIds ) {
+        IntBag group = new IntBag( assetIds.length, -1 );
+        for ( int assetId : assetIds ) {
+            collectDependencies( assetId, group );
+        }
+        for ( int assetId : assetIds ) {
+            pin( getAsset( assetId ) );
+        }
+        
+        // the assets of the group that are not loaded yet, the ones that are not already loading are loaded
+        // by this group in topological order
+        IntBag pending = new IntBag( group.size(), -1 );
+        IntBag notLoading = new IntBag( group.size(), -1 );
+        IntBag keptLoaded = new IntBag( 1, -1 );
+        IntIterator iterator = group.iterator();
+        while ( iterator.hasNext() ) {
+            Asset asset = getAsset( iterator.next() );
+            if ( asset.loaded ) {
+                // keep already loaded dependencies until the dependents are loaded and reference them
+                if ( unreferencedAssets.remove( asset ) ) {
+                    keptLoaded.add( asset.index() );
+                }
+                continue;
+            }
+            
+            pending.add( asset.index() );
+            if ( !asset.loading ) {
+                notLoading.add( asset.index() );
+            }
+        }
+        IntBag toLoad = topologicalOrder( notLoading );
+        
+        int loadGroupId = nextLoadGroupId++;
+        LoadGroup loadGroup = new LoadGroup( loadGroupId, pending, keptLoaded );
+        if ( pending.isEmpty() ) {
+            completeLoadGroup( loadGroup, null );
+            return loadGroupId;
+        }
+        loadGroups.add( loadGroup );
+        
+        final long now = System.nanoTime();
+        iterator = toLoad.iterator();
+        while ( iterator.hasNext() ) {
+            Asset asset = getAsset( iterator.next() );
+            asset.loading = true;
+            asset.decodeError = null;
+            asset.waitStart = now;
+        }
+        
+        // count the pending dependencies and register the dependents, dependencies are before dependents
+        iterator = toLoad.iterator();
+        while ( iterator.hasNext() ) {
+            int assetId = iterator.next();
+            ensurePendingCapacity( assetId + 1 );
+            int pending = 0;
+            IntBag dependsOn = getAsset( assetId ).dependsOn();
+            if ( dependsOn != null ) {
+                IntIterator dependencies = dependsOn.iterator();
+                while ( dependencies.hasNext() ) {
+                    int dependencyId = dependencies.next();
+                    if ( assets.contains( dependencyId ) && getAsset( dependencyId ).loading ) {
+                        pending++;
+                        if ( !pendingDependents.contains( dependencyId ) ) {
+                            pendingDependents.set( dependencyId, new IntBag( 2, -1 ) );
+                        }
+                        pendingDependents.get( dependencyId ).add( assetId );
+                    }
+                }
+            }
+            pendingDependencies[ assetId ] = pending;
+            if ( pending == 0 ) {
+                submitDecode( getAsset( assetId ) );
+            }
+        }
+        
+        return loadGroupId;
+    }
+    
+    /** Indicates if the specified load group is still loading */
+    public final boolean isLoading( int loadGroupId ) {
+        for ( int i = 0; i < loadGroups.size(); i++ ) {
+            if ( loadGroups.get( i ).loadGroupId == loadGroupId ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public final void update( UpdateEvent event ) {
+        Asset decoded;
+        while ( ( decoded = decodedAssets.poll() ) != null ) {
+            if ( decoded.decodeError != null ) {
+                Throwable error = decoded.decodeError;
+                decoded.decodeError = null;
+                asyncFailed( decoded, error );
+                continue;
+            }
+            uploadQueue.add( decoded );
+        }
+        
+        if ( uploadQueue.isEmpty() ) {
+            return;
+        }
+        
+        final long deadline = System.nanoTime() + uploadBudget * 1000000;
+        do {
+            Asset asset = uploadQueue.poll();
+            asset.loading = false;
+            if ( assets.contains( asset.index() ) && assets.get( asset.index() ) == asset && !asset.loaded ) {
+                try {
+                    load( asset );
+                } catch ( RuntimeException e ) {
+                    asyncFailed( asset, e );
+                    continue;
+                }
+            }
+            asyncLoaded( asset.index() );
+        } while ( !uploadQueue.isEmpty() && System.nanoTime() < deadline );
+        
+        evict();
     }
     
     public final boolean isLoaded( int assetId ) {
@@ -170,6 +595,9 @@ public class AssetSystem extends ComponentSystem<AssetSystem> {
         deleteAsset( asset );
     }
     
+    /** Deletes the specified Asset. If it is loaded it is disposed and so are all loaded Assets that depend on it
+     *  directly or indirectly. The dependent Assets are not deleted, use deleteAssetAndDependents for that.
+     */
     public final void deleteAsset( int assetId ) {
         Asset asset = getAsset( assetId );
         if ( asset == null ) {
@@ -177,6 +605,27 @@ public class AssetSystem extends ComponentSystem<AssetSystem> {
         }
         deleteAsset( asset );
     }
+    
+    /** Deletes the specified Asset and all Assets that depend on it directly or indirectly, loaded or not.
+     *  The loaded ones are disposed first.
+     */
+    public final void deleteAssetAndDependents( int assetId ) {
+        Asset asset = getAsset( assetId );
+        if ( asset == null ) {
+            return;
+        }
+        
+        IntBag dependents = new IntBag( 1, -1 );
+        collectDependents( asset.index(), dependents, new BitSet() );
+        deleteAsset( asset );
+        IntIterator iterator = dependents.iterator();
+        while ( iterator.hasNext() ) {
+            Asset dependent = getAsset( iterator.next() );
+            if ( dependent != null ) {
+                deleteAsset( dependent );
+            }
+        }
+    }
 
     public final boolean hasAsset( String assetName ) {
         Asset asset = getAsset( assetName );
@@ -196,6 +645,33 @@ public class AssetSystem extends ComponentSystem<AssetSystem> {
         return asset.index();
     }
     
+    /** Gets the ids of the Assets that directly depend on the specified Asset or null if there are none */
+    public final IntBag getDependents( int assetId ) {
+        if ( !dependentIndex.contains( assetId ) || dependentIndex.get( assetId ).isEmpty() ) {
+            return null;
+        }
+        
+        return dependentIndex.get( assetId );
+    }
+    
+    /** Gets the ids of all loaded Assets that directly or indirectly depend on the specified Asset and so are
+     *  disposed with it. The ids are ordered so that an Asset comes before the Assets it depends on.
+     */
+    public final IntBag getAffectedByDispose( int assetId ) {
+        IntBag dependents = new IntBag( 1, -1 );
+        collectDependents( assetId, dependents, new BitSet() );
+        
+        IntBag result = new IntBag( dependents.size(), -1 );
+        IntIterator iterator = dependents.iterator();
+        while ( iterator.hasNext() ) {
+            int dependentId = iterator.next();
+            if ( isLoaded( dependentId ) ) {
+                result.add( dependentId );
+            }
+        }
+        return result;
+    }
+    
     public final void clear() {
         for ( Asset asset : assets ) {
             deleteAsset( asset );
@@ -203,6 +679,7 @@ public class AssetSystem extends ComponentSystem<AssetSystem> {
         
         assets.clear();
         nameMapping.clear();
+        dependentIndex.clear();
     }
 
     @Override
@@ -217,49 +694,84 @@ public class AssetSystem extends ComponentSystem<AssetSystem> {
         };
     }
 
-    private IntBag disposeAsset( Asset asset ) {
-        IntBag toDisposeFirst = findeAssetsToDisposeFirst( asset.index() );
+    private void disposeAsset( Asset asset ) {
+        IntBag toDisposeFirst = new IntBag( 1, -1 );
+        collectDependents( asset.index(), toDisposeFirst, new BitSet() );
         if ( !toDisposeFirst.isEmpty() ) {
             IntIterator iterator = toDisposeFirst.iterator();
             while ( iterator.hasNext() ) {
                 Asset toDispose = getAsset( iterator.next() );
-                if ( toDispose.loaded ) {
+                if ( toDispose != null && toDispose.loaded ) {
                     dispose( toDispose );
                 }
             }
         }
         
         dispose( asset );
-        return toDisposeFirst;
     }
     
-    private IntBag findeAssetsToDisposeFirst( int assetId ) {
-        IntBag result = new IntBag( 1, -1 );
-        for ( Asset asset : assets ) {
-            IntBag disposeFirst = asset.dependsOn();
-            if ( disposeFirst != null ) {
-                IntIterator iterator = disposeFirst.iterator();
-                while ( iterator.hasNext() ) {
-                    int next = iterator.next();
-                    if ( next == assetId ) {
-                        result.add( next );
-                        break;
-                    }
-                }
+    // collects the direct and indirect dependents of an Asset so that each comes before the Assets it depends on
+    private void collectDependents( int assetId, IntBag result, BitSet visited ) {
+        if ( !dependentIndex.contains( assetId ) ) {
+            return;
+        }
+        
+        IntIterator iterator = dependentIndex.get( assetId ).iterator();
+        while ( iterator.hasNext() ) {
+            int dependentId = iterator.next();
+            if ( visited.get( dependentId ) ) {
+                continue;
             }
+            
+            visited.set( dependentId );
+            collectDependents( dependentId, result, visited );
+            result.add( dependentId );
         }
-        return result;
+    }
+    
+    private void indexDependencies( Asset asset ) {
+        unindexDependencies( asset );
+        
+        IntBag dependsOn = asset.dependsOn();
+        if ( dependsOn == null || dependsOn.isEmpty() ) {
+            return;
+        }
+        
+        IntBag indexed = new IntBag( dependsOn.size(), -1 );
+        IntIterator iterator = dependsOn.iterator();
+        while ( iterator.hasNext() ) {
+            int dependencyId = iterator.next();
+            if ( indexed.contains( dependencyId ) ) {
+                continue;
+            }
+            
+            if ( !dependentIndex.contains( dependencyId ) ) {
+                dependentIndex.set( dependencyId, new IntBag( 2, -1 ) );
+            }
+            dependentIndex.get( dependencyId ).add( asset.index() );
+            indexed.add( dependencyId );
+        }
+        asset.indexedDependencies = indexed;
+    }
+    
+    private void unindexDependencies( Asset asset ) {
+        if ( asset.indexedDependencies == null ) {
+            return;
+        }
+        
+        IntIterator iterator = asset.indexedDependencies.iterator();
+        while ( iterator.hasNext() ) {
+            int dependencyId = iterator.next();
+            if ( dependentIndex.contains( dependencyId ) ) {
+                dependentIndex.get( dependencyId ).remove( asset.index() );
+            }
+        }
+        asset.indexedDependencies = null;
     }
     
     private void deleteAsset( Asset asset ) {
         if ( asset.loaded ) {
-            IntBag alsoDisposedAssets = disposeAsset( asset );
-            if ( alsoDisposedAssets != null ) {
-                IntIterator iterator = alsoDisposedAssets.iterator();
-                while ( iterator.hasNext() ) {
-                    delete( iterator.next() );
-                }
-            }
+            disposeAsset( asset );
         }
         
         delete( asset.index() );
@@ -272,38 +784,343 @@ public class AssetSystem extends ComponentSystem<AssetSystem> {
         }
         
         nameMapping.remove( deleted.getName() );
+        unreferencedAssets.remove( deleted );
+        unindexDependencies( deleted );
+        dependentIndex.remove( assetId );
         
         context.notify( new AssetEvent( deleted, AssetEvent.Type.ASSET_DELETED ) );
         deleted.dispose();
     }
 
     private void dispose( Asset asset ) {
+        long start = System.nanoTime();
         asset.dispose( context );
+        asset.disposeNanos = System.nanoTime() - start;
+        totalDisposeNanos += asset.disposeNanos;
         context.notify( new AssetEvent( asset, AssetEvent.Type.ASSET_DISPOSED ) );
         asset.loaded = false;
+        asset.pinned = false;
+        
+        loadedSize -= asset.loadedSize;
+        asset.loadedSize = 0;
+        unreferencedAssets.remove( asset );
+        
+        IntBag dependsOn = asset.dependsOn();
+        if ( dependsOn != null ) {
+            IntIterator iterator = dependsOn.iterator();
+            while ( iterator.hasNext() ) {
+                Asset dependency = getAsset( iterator.next() );
+                if ( dependency != null ) {
+                    release( dependency );
+                }
+            }
+        }
+    }
+    
+    private void reference( Asset asset ) {
+        if ( asset.references++ == 0 ) {
+            unreferencedAssets.remove( asset );
+        }
+    }
+    
+    private void release( Asset asset ) {
+        if ( asset.references <= 0 ) {
+            return;
+        }
+        
+        if ( --asset.references == 0 && asset.loaded && !asset.pinned ) {
+            unreferencedAssets.add( asset );
+        }
+    }
+    
+    private void pin( Asset asset ) {
+        asset.pinned = true;
+        unreferencedAssets.remove( asset );
+    }
+    
+    // disposes the least recently released Assets until the loaded size is within the memory budget
+    private void evict() {
+        if ( memoryBudget <= 0 || evicting ) {
+            return;
+        }
+        
+        evicting = true;
+        try {
+            while ( loadedSize > memoryBudget && !unreferencedAssets.isEmpty() ) {
+                Asset leastRecentlyUsed = unreferencedAssets.iterator().next();
+                unreferencedAssets.remove( leastRecentlyUsed );
+                if ( leastRecentlyUsed.loaded && !leastRecentlyUsed.loading ) {
+                    disposeAsset( leastRecentlyUsed );
+                    evictionCount++;
+                }
+            }
+        } finally {
+            evicting = false;
+        }
+    }
+
+    private void collectDependencies( int assetId, IntBag result ) {
+        if ( !assets.contains( assetId ) ) {
+            throw new IllegalArgumentException( "No Asset with id: " + assetId + " found." );
+        }
+        if ( result.contains( assetId ) ) {
+            return;
+        }
+        
+        result.add( assetId );
+        IntBag dependsOn = getAsset( assetId ).dependsOn();
+        if ( dependsOn != null ) {
+            IntIterator iterator = dependsOn.iterator();
+            while ( iterator.hasNext() ) {
+                collectDependencies( iterator.next(), result );
+            }
+        }
+    }
+    
+    // Kahn's algorithm within the specified assets, returns them ordered so that each Asset comes after its dependencies
+    private IntBag topologicalOrder( IntBag assetIds ) {
+        IntBag ordered = new IntBag( assetIds.size(), -1 );
+        IntBag remaining = new IntBag( assetIds.size(), -1 );
+        IntIterator iterator = assetIds.iterator();
+        while ( iterator.hasNext() ) {
+            remaining.add( iterator.next() );
+        }
+        
+        boolean progress = true;
+        while ( !remaining.isEmpty() && progress ) {
+            progress = false;
+            for ( int i = 0; i < remaining.length(); i++ ) {
+                int assetId = remaining.get( i );
+                if ( assetId == remaining.getNullValue() || !dependenciesOrdered( assetId, remaining ) ) {
+                    continue;
+                }
+                
+                ordered.add( assetId );
+                remaining.remove( assetId );
+                progress = true;
+            }
+        }
+        
+        if ( !remaining.isEmpty() ) {
+            throw new FFInitException( "Cyclic Asset dependency within: " + remaining );
+        }
+        
+        return ordered;
+    }
+    
+    private boolean dependenciesOrdered( int assetId, IntBag remaining ) {
+        IntBag dependsOn = getAsset( assetId ).dependsOn();
+        if ( dependsOn == null ) {
+            return true;
+        }
+        
+        IntIterator iterator = dependsOn.iterator();
+        while ( iterator.hasNext() ) {
+            if ( remaining.contains( iterator.next() ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void submitDecode( final Asset asset ) {
+        asset.dependencyWaitNanos = System.nanoTime() - asset.waitStart;
+        totalDependencyWaitNanos += asset.dependencyWaitNanos;
+        
+        if ( decodeExecutor == null ) {
+            decodeExecutor = Executors.newFixedThreadPool( DECODE_THREADS, new DecodeThreadFactory() );
+        }
+        
+        decodeExecutor.execute( new Runnable() {
+            @Override
+            public final void run() {
+                long start = System.nanoTime();
+                try {
+                    asset.decode();
+                } catch ( Throwable t ) {
+                    asset.decodeError = t;
+                } finally {
+                    asset.decodeNanos = System.nanoTime() - start;
+                    decodedAssets.add( asset );
+                }
+            }
+        } );
+    }
+    
+    private void asyncLoaded( int assetId ) {
+        if ( assetId < pendingDependencies.length ) {
+            pendingDependencies[ assetId ] = -1;
+        }
+        
+        IntBag dependents = pendingDependents.remove( assetId );
+        if ( dependents != null ) {
+            IntIterator iterator = dependents.iterator();
+            while ( iterator.hasNext() ) {
+                int dependentId = iterator.next();
+                if ( --pendingDependencies[ dependentId ] == 0 && assets.contains( dependentId ) ) {
+                    submitDecode( getAsset( dependentId ) );
+                }
+            }
+        }
+        
+        for ( int i = loadGroups.size() - 1; i >= 0; i-- ) {
+            LoadGroup group = loadGroups.get( i );
+            if ( !group.pendingIds.contains( assetId ) ) {
+                continue;
+            }
+            
+            group.pendingIds.remove( assetId );
+            if ( group.pendingIds.isEmpty() ) {
+                loadGroups.remove( i );
+                completeLoadGroup( group, null );
+            }
+        }
+    }
+    
+    // fails the asset and all assets that wait for it directly or indirectly and the load groups of them
+    private void asyncFailed( Asset asset, Throwable error ) {
+        asset.loading = false;
+        asset.pinned = false;
+        int assetId = asset.index();
+        if ( assetId < pendingDependencies.length ) {
+            pendingDependencies[ assetId ] = -1;
+        }
+        context.notify( new AssetEvent( asset, AssetEvent.Type.ASSET_LOAD_FAILED, -1, error ) );
+        
+        for ( int i = loadGroups.size() - 1; i >= 0; i-- ) {
+            LoadGroup group = loadGroups.get( i );
+            if ( group.pendingIds.contains( assetId ) ) {
+                loadGroups.remove( i );
+                completeLoadGroup( group, error );
+            }
+        }
+        
+        IntBag dependents = pendingDependents.remove( assetId );
+        if ( dependents != null ) {
+            IntIterator iterator = dependents.iterator();
+            while ( iterator.hasNext() ) {
+                Asset dependent = getAsset( iterator.next() );
+                if ( dependent != null && dependent.loading ) {
+                    asyncFailed( dependent, error );
+                }
+            }
+        }
+    }
+    
+    private void completeLoadGroup( LoadGroup group, Throwable error ) {
+        // the kept loaded assets are managed by the memory budget again
+        IntIterator iterator = group.keptLoadedIds.iterator();
+        while ( iterator.hasNext() ) {
+            Asset asset = getAsset( iterator.next() );
+            if ( asset != null && asset.loaded && asset.references == 0 && !asset.pinned ) {
+                unreferencedAssets.add( asset );
+            }
+        }
+        
+        if ( error == null ) {
+            context.notify( new AssetEvent( null, AssetEvent.Type.ASSET_GROUP_LOADED, group.loadGroupId ) );
+        } else {
+            context.notify( new AssetEvent( null, AssetEvent.Type.ASSET_GROUP_FAILED, group.loadGroupId, error ) );
+        }
+        evict();
+    }
+    
+    private void ensurePendingCapacity( int capacity ) {
+        if ( capacity <= pendingDependencies.length ) {
+            return;
+        }
+        
+        int oldLength = pendingDependencies.length;
+        pendingDependencies = Arrays.copyOf( pendingDependencies, Math.max( capacity, oldLength * 2 ) );
+        Arrays.fill( pendingDependencies, oldLength, pendingDependencies.length, -1 );
     }
 
     private void loadAsset( Asset asset ) {
+        if ( asset.loading ) {
+            throw new IllegalStateException( "Asset: " + asset.getName() + " is loading asynchronously" );
+        }
+        
         IntBag loadFirst = asset.dependsOn();
         if ( loadFirst != null ) {
+            long start = System.nanoTime();
             IntIterator iterator = loadFirst.iterator();
             while ( iterator.hasNext() ) {
-                Asset assetToLoadFirst = getAsset( iterator.next() );
+                int dependencyId = iterator.next();
+                Asset assetToLoadFirst = getAsset( dependencyId );
+                if ( assetToLoadFirst == null ) {
+                    throw new IllegalStateException( "Asset: " + asset.getName() + " depends on the deleted Asset with id: " + dependencyId );
+                }
                 if ( !assetToLoadFirst.loaded ) {
                     load( assetToLoadFirst );
                 }
             }
+            if ( !asset.loaded ) {
+                asset.dependencyWaitNanos = System.nanoTime() - start;
+                totalDependencyWaitNanos += asset.dependencyWaitNanos;
+            }
         }
         
         load( asset );
+        evict();
     }
     
     private void load( Asset asset ) {
+        boolean wasLoaded = asset.loaded;
+        long start = System.nanoTime();
         asset.load( context );
+        long duration = System.nanoTime() - start;
         context.notify( new AssetEvent( asset, AssetEvent.Type.ASSET_LOADED ) );
         asset.loaded = true;
+        if ( wasLoaded ) {
+            return;
+        }
+        
+        asset.loadNanos = duration;
+        totalLoadNanos += duration;
+        // the dependencies may have changed since the Asset was created
+        indexDependencies( asset );
+        asset.loadedSize = asset.estimateSize();
+        asset.reportedSize = asset.loadedSize;
+        loadedSize += asset.loadedSize;
+        IntBag dependsOn = asset.dependsOn();
+        if ( dependsOn != null ) {
+            IntIterator iterator = dependsOn.iterator();
+            while ( iterator.hasNext() ) {
+                Asset dependency = getAsset( iterator.next() );
+                if ( dependency != null ) {
+                    reference( dependency );
+                }
+            }
+        }
+    }
+
+    
+    private static final class LoadGroup {
+        
+        final int loadGroupId;
+        // the assets of the group that are not loaded yet
+        final IntBag pendingIds;
+        // the loaded assets of the group that were taken from the memory budget while the group is loading
+        final IntBag keptLoadedIds;
+        
+        LoadGroup( int loadGroupId, IntBag pendingIds, IntBag keptLoadedIds ) {
+            this.loadGroupId = loadGroupId;
+            this.pendingIds = pendingIds;
+            this.keptLoadedIds = keptLoadedIds;
+        }
     }
+    
+    private static final class DecodeThreadFactory implements ThreadFactory {
+        
+        private final AtomicInteger threadNumber = new AtomicInteger( 1 );
 
+        @Override
+        public final Thread newThread( Runnable runnable ) {
+            Thread thread = new Thread( runnable, "FFAssetDecoder-" + threadNumber.getAndIncrement() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
     
     private final class AssetBuilder extends SystemComponentBuilder {
         
@@ -330,9 +1147,11 @@ public class AssetSystem extends ComponentSystem<AssetSystem> {
                 name = asset.getName();
             }
             nameMapping.put( name, asset );
+            indexDependencies( asset );
             context.notify( new AssetEvent( asset, AssetEvent.Type.ASSET_CREATED ) );
             
             if ( activate ) {
+                pin( asset );
                 load( asset );
             }
             
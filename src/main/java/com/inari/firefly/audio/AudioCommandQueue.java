@@ -0,0 +1,306 @@
+package com.inari.firefly.audio;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.inari.firefly.system.external.FFAudio;
+
+/** A single producer, single consumer ring buffer of audio commands. The game thread enqueues the commands and
+ *  a dedicated audio thread calls the FFAudio backend, so the game thread never waits on a blocking backend call.
+ *  <p>
+ *  A played sound is referenced by a handle that is returned immediately. The backend instance id of a handle is
+ *  resolved when the audio thread executes the play command. Later commands for the handle are executed after it,
+ *  so they always see the resolved instance id.
+ *  <p>
+ *  A handle is the index of a handle slot tagged with a generation. A slot is owned by its handle until it is 
+ *  released and is not reused before, so a long playing voice keeps its handle. A released slot gets a new 
+ *  generation on reuse, so a stale handle resolves to no instance instead of the instance of another voice.
+ *  <p>
+ *  If the audio thread is not started, the commands are executed immediately on the calling thread.
+ */
+final class AudioCommandQueue implements Runnable {
+
+    private static final int PLAY_SOUND = 0;
+    private static final int CHANGE_SOUND = 1;
+    private static final int STOP_SOUND = 2;
+    private static final int PLAY_MUSIC = 3;
+    private static final int CHANGE_MUSIC = 4;
+    private static final int STOP_MUSIC = 5;
+
+    private static final int HANDLE_BITS = 10;
+    private static final int HANDLES = 1 << HANDLE_BITS;
+    private static final int SLOT_MASK = HANDLES - 1;
+    private static final int GENERATION_MASK = Integer.MAX_VALUE >>> HANDLE_BITS;
+    private static final long IDLE_PARK_NANOS = 1000000;
+
+    private final FFAudio audio;
+    private final int mask;
+
+    // the command slots of the ring buffer
+    private final int[] type;
+    private final int[] soundId;
+    private final int[] handle;
+    private final int[] channel;
+    private final boolean[] looping;
+    private final float[] volume;
+    private final float[] pitch;
+    private final float[] pan;
+
+    // the next slot to write, written only by the producer
+    private final AtomicLong writeIndex = new AtomicLong( 0 );
+    // the next slot to read, written only by the consumer
+    private final AtomicLong readIndex = new AtomicLong( 0 );
+
+    // the backend instance ids and the handles they are resolved for by handle slot, written only by the consumer
+    private final AtomicLongArray instanceIds = new AtomicLongArray( HANDLES );
+    private final AtomicIntegerArray resolvedHandles = new AtomicIntegerArray( HANDLES );
+    // the generation and owned state by handle slot, used only by the producer
+    private final int[] generations = new int[ HANDLES ];
+    private final boolean[] owned = new boolean[ HANDLES ];
+    private int nextSlot = 0;
+
+    private volatile boolean running = false;
+    private volatile int failedCommands = 0;
+    private Thread thread;
+
+    AudioCommandQueue( FFAudio audio, int capacity ) {
+        if ( Integer.bitCount( capacity ) != 1 ) {
+            throw new IllegalArgumentException( "The capacity must be a power of two: " + capacity );
+        }
+
+        this.audio = audio;
+        mask = capacity - 1;
+        type = new int[ capacity ];
+        soundId = new int[ capacity ];
+        handle = new int[ capacity ];
+        channel = new int[ capacity ];
+        looping = new boolean[ capacity ];
+        volume = new float[ capacity ];
+        pitch = new float[ capacity ];
+        pan = new float[ capacity ];
+
+        for ( int i = 0; i < HANDLES; i++ ) {
+            instanceIds.set( i, -1 );
+            resolvedHandles.set( i, -1 );
+        }
+    }
+
+    final boolean isStarted() {
+        return thread != null;
+    }
+
+    final void start() {
+        if ( thread != null ) {
+            return;
+        }
+
+        running = true;
+        thread = new Thread( this, "FFAudio" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    /** Stops the audio thread and executes the remaining commands on the calling thread */
+    final void stop() {
+        if ( thread == null ) {
+            return;
+        }
+
+        running = false;
+        LockSupport.unpark( thread );
+        try {
+            thread.join();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+
+        while ( executeNext() ) {
+            // drain
+        }
+    }
+
+    final boolean hasPending() {
+        return readIndex.get() != writeIndex.get();
+    }
+
+    final int getFailedCommands() {
+        return failedCommands;
+    }
+
+    /** The backend instance id of the specified handle or -1 if the play command is not executed yet */
+    final long getInstanceId( int handle ) {
+        if ( handle < 0 ) {
+            return -1;
+        }
+        
+        int slot = handle & SLOT_MASK;
+        long instanceId = instanceIds.get( slot );
+        if ( resolvedHandles.get( slot ) != handle ) {
+            // not resolved yet or a stale handle of a reused slot
+            return -1;
+        }
+        return instanceId;
+    }
+
+    /** Enqueues a play command and returns the handle of the sound instance or -1 if the queue is full
+     *  or all handles are owned by playing voices. The handle is owned until it is released
+     */
+    final int playSound( int soundId, int channel, boolean looping, float volume, float pitch, float pan ) {
+        if ( writeIndex.get() - readIndex.get() > mask ) {
+            return -1;
+        }
+        
+        int slot = nextSlot;
+        for ( int i = 0; owned[ slot ]; i++ ) {
+            if ( i == HANDLES ) {
+                return -1;
+            }
+            slot = ( slot + 1 ) & SLOT_MASK;
+        }
+        nextSlot = ( slot + 1 ) & SLOT_MASK;
+        generations[ slot ] = ( generations[ slot ] + 1 ) & GENERATION_MASK;
+        int newHandle = ( generations[ slot ] << HANDLE_BITS ) | slot;
+
+        if ( !offer( PLAY_SOUND, soundId, newHandle, channel, looping, volume, pitch, pan, false ) ) {
+            return -1;
+        }
+        owned[ slot ] = true;
+        return newHandle;
+    }
+    
+    /** Releases the specified handle of a voice that is not playing anymore so that its slot can be reused */
+    final void releaseHandle( int handle ) {
+        if ( handle < 0 ) {
+            return;
+        }
+        
+        int slot = handle & SLOT_MASK;
+        if ( generations[ slot ] == handle >>> HANDLE_BITS ) {
+            owned[ slot ] = false;
+        }
+    }
+
+    final void changeSound( int soundId, int handle, float volume, float pitch, float pan ) {
+        offer( CHANGE_SOUND, soundId, handle, 0, false, volume, pitch, pan, true );
+    }
+
+    final void stopSound( int soundId, int handle ) {
+        offer( STOP_SOUND, soundId, handle, 0, false, 0, 0, 0, true );
+    }
+
+    final void playMusic( int soundId, boolean looping, float volume, float pan ) {
+        offer( PLAY_MUSIC, soundId, -1, 0, looping, volume, 0, pan, true );
+    }
+
+    final void changeMusic( int soundId, float volume, float pan ) {
+        offer( CHANGE_MUSIC, soundId, -1, 0, false, volume, 0, pan, true );
+    }
+
+    final void stopMusic( int soundId ) {
+        offer( STOP_MUSIC, soundId, -1, 0, false, 0, 0, 0, true );
+    }
+
+    @Override
+    public final void run() {
+        while ( running ) {
+            if ( !executeNext() ) {
+                LockSupport.parkNanos( this, IDLE_PARK_NANOS );
+            }
+        }
+    }
+
+    private boolean offer(
+        int commandType, int commandSoundId, int commandHandle, int commandChannel,
+        boolean commandLooping, float commandVolume, float commandPitch, float commandPan,
+        boolean waitIfFull
+    ) {
+        long write = writeIndex.get();
+        while ( write - readIndex.get() > mask ) {
+            // only commands that must not get lost wait for the audio thread to free a slot
+            if ( !waitIfFull || thread == null ) {
+                return false;
+            }
+            Thread.yield();
+        }
+
+        int slot = (int) ( write & mask );
+        type[ slot ] = commandType;
+        soundId[ slot ] = commandSoundId;
+        handle[ slot ] = commandHandle;
+        channel[ slot ] = commandChannel;
+        looping[ slot ] = commandLooping;
+        volume[ slot ] = commandVolume;
+        pitch[ slot ] = commandPitch;
+        pan[ slot ] = commandPan;
+        // publishes the slot to the consumer
+        writeIndex.lazySet( write + 1 );
+
+        if ( thread == null ) {
+            executeNext();
+        } else {
+            LockSupport.unpark( thread );
+        }
+        return true;
+    }
+
+    private boolean executeNext() {
+        long read = readIndex.get();
+        if ( read == writeIndex.get() ) {
+            return false;
+        }
+
+        int slot = (int) ( read & mask );
+        try {
+            execute( slot );
+        } catch ( RuntimeException e ) {
+            failedCommands++;
+        }
+        // frees the slot for the producer
+        readIndex.lazySet( read + 1 );
+        return true;
+    }
+
+    private void execute( int slot ) {
+        switch ( type[ slot ] ) {
+            case PLAY_SOUND: {
+                int handleSlot = handle[ slot ] & SLOT_MASK;
+                // invalidates the previous handle of the slot before the new instance id is visible
+                resolvedHandles.set( handleSlot, -1 );
+                long instanceId = audio.playSound( soundId[ slot ], channel[ slot ], looping[ slot ], volume[ slot ], pitch[ slot ], pan[ slot ] );
+                instanceIds.set( handleSlot, instanceId );
+                resolvedHandles.set( handleSlot, handle[ slot ] );
+                break;
+            }
+            case CHANGE_SOUND: {
+                long instanceId = getInstanceId( handle[ slot ] );
+                if ( instanceId >= 0 ) {
+                    audio.changeSound( soundId[ slot ], instanceId, volume[ slot ], pitch[ slot ], pan[ slot ] );
+                }
+                break;
+            }
+            case STOP_SOUND: {
+                long instanceId = getInstanceId( handle[ slot ] );
+                if ( instanceId >= 0 ) {
+                    audio.stopSound( soundId[ slot ], instanceId );
+                }
+                break;
+            }
+            case PLAY_MUSIC: {
+                audio.playMusic( soundId[ slot ], looping[ slot ], volume[ slot ], pan[ slot ] );
+                break;
+            }
+            case CHANGE_MUSIC: {
+                audio.changeMusic( soundId[ slot ], volume[ slot ], pan[ slot ] );
+                break;
+            }
+            case STOP_MUSIC: {
+                audio.stopMusic( soundId[ slot ] );
+                break;
+            }
+        }
+    }
+
+}
@@ -15,6 +15,7 @@
  ******************************************************************************/ 
 package com.inari.firefly.audio;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import com.inari.commons.StringUtils;
@@ -23,15 +24,28 @@ import com.inari.firefly.asset.AssetSystem;
 import com.inari.firefly.component.build.ComponentCreationException;
 import com.inari.firefly.control.ControllerSystem;
 import com.inari.firefly.system.FFContext;
+import com.inari.firefly.system.UpdateEvent;
+import com.inari.firefly.system.UpdateEventListener;
 import com.inari.firefly.system.component.ComponentSystem;
 import com.inari.firefly.system.component.SystemBuilderAdapter;
 import com.inari.firefly.system.component.SystemComponent.SystemComponentKey;
 import com.inari.firefly.system.component.SystemComponentBuilder;
-import com.inari.firefly.system.external.FFAudio;
 
+/** Plays the Sounds on the FFAudio backend. 
+ *  <p>
+ *  Voices of not streaming Sounds are limited by the maximum voices of a Sound and by the global voice budget. 
+ *  If there is no free voice the VoicePolicy decides whether a playing voice is stolen or the new one is dropped. 
+ *  A Sound that is played more then once within the same frame is only played once.
+ *  <p>
+ *  The backend calls are enqueued as commands. If the audio thread is enabled they are executed on a dedicated
+ *  thread so a blocking backend call never blocks the game thread, otherwise they are executed immediately.
+ *  The backend instance of a played voice is resolved asynchronously, see getInstanceId.
+ */
 public final class AudioSystem
     extends
-        ComponentSystem<AudioSystem> {
+        ComponentSystem<AudioSystem>
+    implements
+        UpdateEventListener {
     
     public static final FFSystemTypeKey<AudioSystem> SYSTEM_KEY = FFSystemTypeKey.create( AudioSystem.class );
     
@@ -41,13 +55,41 @@ public final class AudioSystem
 
     private AssetSystem assetSystem;
     private ControllerSystem controllerSystem;
-    private FFAudio audio;
+    private AudioCommandQueue commands;
     
     private final DynArray<Sound> sounds;
+    
+    // the playing voices of not streaming sounds, ordered by start time
+    private int voiceCount;
+    private int[] voiceSound;
+    private int[] voiceSoundId;
+    private int[] voiceHandle;
+    private long[] voiceEndTime;
+    private int[] voicePriority;
+    
+    private int voiceBudget;
+    private VoicePolicy voicePolicy;
+    private int droppedVoices;
+    private int stolenVoices;
+    // counts the updates to detect Sounds that are played more then once within the same frame
+    private long frame;
 
     AudioSystem() {
         super( SYSTEM_KEY );
         sounds = DynArray.create( Sound.class, 20, 10 );
+        
+        voiceCount = 0;
+        voiceSound = new int[ 32 ];
+        voiceSoundId = new int[ 32 ];
+        voiceHandle = new int[ 32 ];
+        voiceEndTime = new long[ 32 ];
+        voicePriority = new int[ 32 ];
+        
+        voiceBudget = 32;
+        voicePolicy = VoicePolicy.STEAL_OLDEST;
+        droppedVoices = 0;
+        stolenVoices = 0;
+        frame = 0;
     }
     
     @Override
@@ -56,20 +98,107 @@ public final class AudioSystem
         
         assetSystem = context.getSystem( AssetSystem. SYSTEM_KEY );
         controllerSystem = context.getSystem( ControllerSystem. SYSTEM_KEY );
-        audio = context.getAudio();
+        commands = new AudioCommandQueue( context.getAudio(), 256 );
         
         context.registerListener( AudioSystemEvent.TYPE_KEY, this );
+        context.registerListener( UpdateEvent.TYPE_KEY, this );
     }
     
     @Override
     public final void dispose( FFContext context ) {
         clear();
+        commands.stop();
         
         context.disposeListener( AudioSystemEvent.TYPE_KEY, this );
+        context.disposeListener( UpdateEvent.TYPE_KEY, this );
+    }
+    
+    @Override
+    public final void update( UpdateEvent event ) {
+        frame++;
+    }
+
+    public final boolean isAudioThread() {
+        return commands.isStarted();
+    }
+
+    /** Enables or disables the dedicated audio thread that calls the FFAudio backend. The backend must then be
+     *  usable from another thread then the game thread. Default is disabled
+     */
+    public final void setAudioThread( boolean audioThread ) {
+        if ( audioThread ) {
+            commands.start();
+        } else {
+            commands.stop();
+        }
+    }
+    
+    /** Indicates if there are audio commands that are not yet executed by the audio thread */
+    public final boolean hasPendingCommands() {
+        return commands.hasPending();
+    }
+    
+    /** The number of audio commands that failed with an exception within the backend */
+    public final int getFailedCommands() {
+        return commands.getFailedCommands();
+    }
+    
+    /** Gets the backend instance id of the last played voice of the specified Sound or -1 if it is 
+     *  not resolved yet by the audio thread
+     */
+    public final long getInstanceId( int soundId ) {
+        if ( !sounds.contains( soundId ) ) {
+            return -1;
+        }
+        
+        return commands.getInstanceId( sounds.get( soundId ).voiceHandle );
+    }
+
+    public final int getVoiceBudget() {
+        return voiceBudget;
+    }
+
+    /** Sets the maximum number of voices of all not streaming Sounds that play at the same time. 
+     *  0 means no limit. Default is 32
+     */
+    public final void setVoiceBudget( int voiceBudget ) {
+        this.voiceBudget = voiceBudget;
+    }
+
+    public final VoicePolicy getVoicePolicy() {
+        return voicePolicy;
+    }
+
+    public final void setVoicePolicy( VoicePolicy voicePolicy ) {
+        this.voicePolicy = voicePolicy;
+    }
+    
+    public final int getActiveVoices() {
+        expireVoices( context.getTimer().getTime() );
+        return voiceCount;
+    }
+    
+    public final int getActiveVoices( int soundId ) {
+        expireVoices( context.getTimer().getTime() );
+        return voicesOf( soundId );
+    }
+    
+    /** The number of voices that were not played because there was no free voice */
+    public final int getDroppedVoices() {
+        return droppedVoices;
+    }
+
+    /** The number of playing voices that were stopped to free a voice for a new one */
+    public final int getStolenVoices() {
+        return stolenVoices;
     }
 
     public final void clear() {
+        for ( int i = voiceCount - 1; i >= 0; i-- ) {
+            removeVoice( i );
+        }
         for ( Sound sound : sounds ) {
+            assetSystem.releaseAsset( sound.getSoundAssetId() );
             sound.dispose();
         }
         sounds.clear();
@@ -81,6 +210,12 @@ public final class AudioSystem
             return;
         }
         
+        for ( int i = voiceCount - 1; i >= 0; i-- ) {
+            if ( voiceSound[ i ] == soundId ) {
+                removeVoice( i );
+            }
+        }
+        assetSystem.releaseAsset( sound.getSoundAssetId() );
         sound.dispose();
     }
     
@@ -127,10 +262,21 @@ public final class AudioSystem
         }
         
         Sound sound = sounds.get( soundId );
+        sound.lastPlayFrame = -1;
         if ( sound.streaming ) {
-            audio.stopMusic( sound.getSoundId() );
+            commands.stopMusic( sound.getSoundId() );
         } else {
-            audio.stopSound( sound.getSoundId(), sound.instanceId );
+            boolean stopped = false;
+            for ( int i = voiceCount - 1; i >= 0; i-- ) {
+                if ( voiceSound[ i ] == soundId ) {
+                    commands.stopSound( voiceSoundId[ i ], voiceHandle[ i ] );
+                    removeVoice( i );
+                    stopped = true;
+                }
+            }
+            if ( !stopped && sound.voiceHandle >= 0 ) {
+                commands.stopSound( sound.getSoundId(), sound.voiceHandle );
+            }
         }
         
         int controllerId = sound.getControllerId();
@@ -149,15 +295,28 @@ public final class AudioSystem
         }
         
         Sound sound = sounds.get( soundId );
+        if ( sound.lastPlayFrame == frame ) {
+            // already played within this frame
+            return;
+        }
+        sound.lastPlayFrame = frame;
+        
         if ( sound.streaming ) {
-            audio.playMusic( 
+            commands.playMusic( 
                 sound.getSoundId(), 
                 sound.isLooping(), 
                 sound.getVolume(), 
                 sound.getPan() 
             );
         } else {
-            sound.instanceId = audio.playSound( 
+            long time = context.getTimer().getTime();
+            expireVoices( time );
+            if ( !allocateVoice( sound ) ) {
+                droppedVoices++;
+                return;
+            }
+            
+            int handle = commands.playSound( 
                 sound.getSoundId(), 
                 sound.getChannel(), 
                 sound.isLooping(), 
@@ -165,6 +324,14 @@ public final class AudioSystem
                 sound.getPitch(), 
                 sound.getPan() 
             );
+            if ( handle < 0 ) {
+                // the command queue is full
+                droppedVoices++;
+                return;
+            }
+            
+            sound.voiceHandle = handle;
+            addVoice( sound, ( sound.isLooping() )? Long.MAX_VALUE : time + sound.getDuration() );
         }
         
         int controllerId = sound.getControllerId();
@@ -173,6 +340,29 @@ public final class AudioSystem
         }
     }
 
+    public final void changeSound( String soundName ) {
+        changeSound( getSoundId( soundName ) );
+    }
+    
+    /** Applies the current volume, pitch and pan of the specified Sound to all its playing voices */
+    public final void changeSound( int soundId ) {
+        if ( !sounds.contains( soundId ) ) {
+            return;
+        }
+        
+        Sound sound = sounds.get( soundId );
+        if ( sound.streaming ) {
+            commands.changeMusic( sound.getSoundId(), sound.getVolume(), sound.getPan() );
+            return;
+        }
+        
+        for ( int i = 0; i < voiceCount; i++ ) {
+            if ( voiceSound[ i ] == soundId ) {
+                commands.changeSound( voiceSoundId[ i ], voiceHandle[ i ], sound.getVolume(), sound.getPitch(), sound.getPan() );
+            }
+        }
+    }
+
     public final SystemComponentBuilder getSoundBuilder() {
         return new SoundBuilder();
     }
@@ -189,6 +379,112 @@ public final class AudioSystem
         };
     }
 
+    // frees a voice for the specified sound if needed, returns false if the new voice has to be dropped
+    private boolean allocateVoice( Sound sound ) {
+        int maxVoices = sound.getMaxVoices();
+        if ( maxVoices > 0 && voicesOf( sound.index() ) >= maxVoices ) {
+            if ( voicePolicy == VoicePolicy.DROP_LOWEST ) {
+                return false;
+            }
+            // the oldest voice of the same sound regardless of its priority, that may have been changed since
+            int voice = oldestVoice( sound.index(), Integer.MAX_VALUE );
+            if ( voice < 0 ) {
+                return false;
+            }
+            stealVoice( voice );
+        }
+        
+        if ( voiceBudget > 0 && voiceCount >= voiceBudget ) {
+            int voice = ( voicePolicy == VoicePolicy.STEAL_OLDEST )? 
+                oldestVoice( -1, sound.getPriority() ) : 
+                lowestVoice( sound.getPriority() );
+            if ( voice < 0 ) {
+                return false;
+            }
+            stealVoice( voice );
+        }
+        
+        return true;
+    }
+    
+    // the oldest voice of the specified sound, or of any sound if -1, with the same or a lower priority
+    private int oldestVoice( int soundId, int priority ) {
+        for ( int i = 0; i < voiceCount; i++ ) {
+            if ( ( soundId < 0 || voiceSound[ i ] == soundId ) && voicePriority[ i ] <= priority ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    // the oldest of the voices with the lowest priority if it is lower then the specified priority
+    private int lowestVoice( int priority ) {
+        int result = -1;
+        int lowest = priority;
+        for ( int i = 0; i < voiceCount; i++ ) {
+            if ( voicePriority[ i ] < lowest ) {
+                lowest = voicePriority[ i ];
+                result = i;
+            }
+        }
+        return result;
+    }
+    
+    private int voicesOf( int soundId ) {
+        int result = 0;
+        for ( int i = 0; i < voiceCount; i++ ) {
+            if ( voiceSound[ i ] == soundId ) {
+                result++;
+            }
+        }
+        return result;
+    }
+    
+    private void stealVoice( int voice ) {
+        commands.stopSound( voiceSoundId[ voice ], voiceHandle[ voice ] );
+        removeVoice( voice );
+        stolenVoices++;
+    }
+    
+    private void expireVoices( long time ) {
+        for ( int i = voiceCount - 1; i >= 0; i-- ) {
+            if ( voiceEndTime[ i ] <= time ) {
+                removeVoice( i );
+            }
+        }
+    }
+    
+    private void addVoice( Sound sound, long endTime ) {
+        if ( voiceCount == voiceSound.length ) {
+            int capacity = voiceCount * 2;
+            voiceSound = Arrays.copyOf( voiceSound, capacity );
+            voiceSoundId = Arrays.copyOf( voiceSoundId, capacity );
+            voiceHandle = Arrays.copyOf( voiceHandle, capacity );
+            voiceEndTime = Arrays.copyOf( voiceEndTime, capacity );
+            voicePriority = Arrays.copyOf( voicePriority, capacity );
+        }
+        
+        voiceSound[ voiceCount ] = sound.index();
+        voiceSoundId[ voiceCount ] = sound.getSoundId();
+        voiceHandle[ voiceCount ] = sound.voiceHandle;
+        voiceEndTime[ voiceCount ] = endTime;
+        voicePriority[ voiceCount ] = sound.getPriority();
+        voiceCount++;
+    }
+    
+    private void removeVoice( int voice ) {
+        commands.releaseHandle( voiceHandle[ voice ] );
+        int move = voiceCount - voice - 1;
+        if ( move > 0 ) {
+            System.arraycopy( voiceSound, voice + 1, voiceSound, voice, move );
+            System.arraycopy( voiceSoundId, voice + 1, voiceSoundId, voice, move );
+            System.arraycopy( voiceHandle, voice + 1, voiceHandle, voice, move );
+            System.arraycopy( voiceEndTime, voice + 1, voiceEndTime, voice, move );
+            System.arraycopy( voicePriority, voice + 1, voicePriority, voice, move );
+        }
+        voiceCount--;
+    }
+
     private final class SoundBuilder extends SystemComponentBuilder {
         
         private SoundBuilder() {
@@ -208,6 +504,7 @@ public final class AudioSystem
             if ( asset == null ) {
                 throw new ComponentCreationException( "The SoundAsset with id: " + result.getSoundId() + " does not exist" );
             }
+            assetSystem.acquireAsset( asset.index() );
             result.soundId = asset.getSoundId();
             result.streaming = asset.isStreaming();
             
@@ -38,6 +38,9 @@ public final class Sound extends SystemComponent {
     public static final AttributeKey<Integer> CHANNEL = new AttributeKey<Integer>( "channel", Integer.class, Sound.class );
     public static final AttributeKey<String> CONTROLLER_NAME = new AttributeKey<String>( "controllerName", String.class, Sound.class );
     public static final AttributeKey<Integer> CONTROLLER_ID = new AttributeKey<Integer>( "controllerId", Integer.class, Sound.class );
+    public static final AttributeKey<Integer> MAX_VOICES = new AttributeKey<Integer>( "maxVoices", Integer.class, Sound.class );
+    public static final AttributeKey<Integer> PRIORITY = new AttributeKey<Integer>( "priority", Integer.class, Sound.class );
+    public static final AttributeKey<Long> DURATION = new AttributeKey<Long>( "duration", Long.class, Sound.class );
     public static final AttributeKey<?>[] ATTRIBUTE_KEYS = new AttributeKey[] {
         SOUND_ASSET_ID,
         LOOPING,
@@ -46,6 +49,9 @@ public final class Sound extends SystemComponent {
         PAN,
         CHANNEL,
         CONTROLLER_ID,
+        MAX_VOICES,
+        PRIORITY,
+        DURATION
     };
     
     private int soundAssetId;
@@ -55,10 +61,14 @@ public final class Sound extends SystemComponent {
     private float pan;
     private int controllerId;
     private int channel;
+    private int maxVoices;
+    private int priority;
+    private long duration;
     
     int soundId;
     boolean streaming;
-    long instanceId;
+    int voiceHandle;
+    long lastPlayFrame;
     
     Sound( int id ) {
         super( id );
@@ -69,9 +79,13 @@ public final class Sound extends SystemComponent {
         pan = 0;
         controllerId = -1;
         streaming = false;
-        instanceId = -1;
+        voiceHandle = -1;
         channel = 0;
         soundId = -1;
+        maxVoices = 0;
+        priority = 0;
+        duration = 1000;
+        lastPlayFrame = -1;
     }
     
     public final int getSoundId() {
@@ -143,8 +157,38 @@ public final class Sound extends SystemComponent {
         this.channel = channel;
     }
 
-    public long getInstanceId() {
-        return instanceId;
+    /** The handle of the last played voice of this Sound. Use AudioSystem.getInstanceId to get the backend instance id */
+    public final int getVoiceHandle() {
+        return voiceHandle;
+    }
+
+    public final int getMaxVoices() {
+        return maxVoices;
+    }
+
+    /** Sets the maximum number of voices of this Sound that play at the same time. 0 means no limit and is the default */
+    public final void setMaxVoices( int maxVoices ) {
+        this.maxVoices = maxVoices;
+    }
+
+    public final int getPriority() {
+        return priority;
+    }
+
+    /** Sets the priority of the voices of this Sound within the voice budget of the AudioSystem. Default is 0 */
+    public final void setPriority( int priority ) {
+        this.priority = priority;
+    }
+
+    public final long getDuration() {
+        return duration;
+    }
+
+    /** Sets the length of this Sound in milliseconds. The backend does not report when a voice has ended
+     *  so a not looping voice counts as playing for this time. Default is 1000
+     */
+    public final void setDuration( long duration ) {
+        this.duration = duration;
     }
 
     @Override
@@ -165,6 +209,9 @@ public final class Sound extends SystemComponent {
         pan = attributes.getValue( PAN, pan );
         controllerId = attributes.getIdForName( CONTROLLER_NAME, CONTROLLER_ID, Controller.TYPE_KEY, controllerId );
         channel = attributes.getValue( CHANNEL, channel );
+        maxVoices = attributes.getValue( MAX_VOICES, maxVoices );
+        priority = attributes.getValue( PRIORITY, priority );
+        duration = attributes.getValue( DURATION, duration );
     }
 
     @Override
@@ -178,6 +225,9 @@ public final class Sound extends SystemComponent {
         attributes.put( PAN, pan );
         attributes.put( CONTROLLER_ID, controllerId );
         attributes.put( CHANNEL, channel );
+        attributes.put( MAX_VOICES, maxVoices );
+        attributes.put( PRIORITY, priority );
+        attributes.put( DURATION, duration );
     }
 
 }
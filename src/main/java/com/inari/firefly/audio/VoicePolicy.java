@@ -0,0 +1,11 @@
+package com.inari.firefly.audio;
+
+/** Defines what the AudioSystem does when a Sound is played and there is no free voice left */
+public enum VoicePolicy {
+    /** Stops the oldest playing voice with the same or a lower priority. If there is none, the new voice is dropped */
+    STEAL_OLDEST,
+    /** Stops the playing voice with the lowest priority if it is lower then the priority of the new voice,
+     *  otherwise the new voice is dropped 
+     */
+    DROP_LOWEST
+}
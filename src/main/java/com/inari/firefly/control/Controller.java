@@ -22,9 +22,9 @@ import com.inari.commons.lang.list.IntBag;
 import com.inari.firefly.component.attr.AttributeKey;
 import com.inari.firefly.component.attr.AttributeMap;
 import com.inari.firefly.system.component.SystemComponent;
-import com.inari.firefly.system.external.FFTimer.UpdateScheduler;
+import com.inari.firefly.system.external.FFTimer.TickListener;
 
-public abstract class Controller extends SystemComponent {
+public abstract class Controller extends SystemComponent implements TickListener {
     
     public static final SystemComponentKey<Controller> TYPE_KEY = SystemComponentKey.create( Controller.class );
     public static final AttributeKey<Float> UPDATE_RESOLUTION = new AttributeKey<Float>( "updateResolution", Float.class, Controller.class );
@@ -32,7 +32,8 @@ public abstract class Controller extends SystemComponent {
     private float updateResolution;
     
     private boolean active = true;
-    private UpdateScheduler updateScheduler;
+    private int scheduleId;
+    private boolean due;
     protected final IntBag componentIds;
     
     
@@ -40,7 +41,8 @@ public abstract class Controller extends SystemComponent {
         super( id );
         componentIds = new IntBag( 10, -1 );
         updateResolution = -1;
-        updateScheduler = null;
+        scheduleId = -1;
+        due = false;
     }
     
     public final boolean isActive() {
@@ -61,6 +63,9 @@ public abstract class Controller extends SystemComponent {
     }
 
     public final void setUpdateResolution( float updateResolution ) {
+        if ( this.updateResolution != updateResolution ) {
+            cancelSchedule();
+        }
         this.updateResolution = updateResolution;
     }
     
@@ -83,7 +88,7 @@ public abstract class Controller extends SystemComponent {
     public void fromAttributes( AttributeMap attributes ) {
         super.fromAttributes( attributes );
         
-        updateResolution = attributes.getValue( UPDATE_RESOLUTION, updateResolution );
+        setUpdateResolution( attributes.getValue( UPDATE_RESOLUTION, updateResolution ) );
     }
 
     @Override
@@ -98,11 +103,12 @@ public abstract class Controller extends SystemComponent {
             return;
         }
         
-        if ( updateResolution >= 0 ) {
-            if ( updateScheduler == null ) {
-                updateScheduler = context.getTimer().createUpdateScheduler( updateResolution );
-            }
-            if ( updateScheduler.needsUpdate() ) {
+        if ( updateResolution > 0 ) {
+            if ( scheduleId < 0 ) {
+                scheduleId = context.getTimer().schedule( updateResolution, this );
+                update();
+            } else if ( due ) {
+                due = false;
                 update();
             }
             return;
@@ -111,6 +117,26 @@ public abstract class Controller extends SystemComponent {
         update();
     }
     
+    @Override
+    public final void onTick( long tick ) {
+        due = true;
+    }
+    
+    @Override
+    public void dispose() {
+        cancelSchedule();
+        
+        super.dispose();
+    }
+    
+    private void cancelSchedule() {
+        if ( scheduleId >= 0 ) {
+            context.getTimer().cancel( scheduleId );
+        }
+        scheduleId = -1;
+        due = false;
+    }
+    
     public abstract void update();
 
 }
@@ -1,7 +1,6 @@
 package com.inari.firefly.control.behavior;
 
 import com.inari.commons.lang.indexed.IIndexedTypeKey;
-import com.inari.firefly.system.FFContext;
 import com.inari.firefly.system.component.SystemComponent;
 
 public abstract class BehaviorNode extends SystemComponent {
@@ -17,6 +16,7 @@ public abstract class BehaviorNode extends SystemComponent {
         return TYPE_KEY;
     }
     
-    abstract void nextAction( int entityId, final EBehavoir behavior, final FFContext context );
+    /** Compiles this node into the specified node index of the specified BehaviorTree */
+    abstract void compile( final BehaviorTree tree, int node );
 
 }
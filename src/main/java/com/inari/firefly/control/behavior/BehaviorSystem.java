@@ -1,11 +1,13 @@
 package com.inari.firefly.control.behavior;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import com.inari.commons.lang.aspect.Aspects;
 import com.inari.commons.lang.list.DynArray;
 import com.inari.commons.lang.list.IntBag;
 import com.inari.firefly.FFInitException;
+import com.inari.firefly.control.behavior.Action.ActionState;
 import com.inari.firefly.entity.EntityActivationEvent;
 import com.inari.firefly.entity.EntityActivationListener;
 import com.inari.firefly.system.FFContext;
@@ -16,23 +18,54 @@ import com.inari.firefly.system.component.SystemBuilderAdapter;
 import com.inari.firefly.system.component.SystemComponent.SystemComponentKey;
 import com.inari.firefly.system.component.SystemComponentBuilder;
 
+/** Runs the behavior trees of entities with an EBehavoir component.
+ *  <p>
+ *  The BehaviorNode components of a tree are compiled once per root node into a BehaviorTree of flat primitive
+ *  arrays. Each entity only has a small running state in primitive arrays of this system indexed by entity id:
+ *  the running node of the tree, the state of it and the time it was started. Ticking an entity resumes the
+ *  running node, so an update is a loop over arrays without any component lookup or tree walk from the root.
+ *  <p>
+ *  Compiled trees are cached and dropped when a BehaviorNode is built or deleted. Active entities keep the tree
+ *  they were activated with.
+ */
 public final class BehaviorSystem extends ComponentSystem<BehaviorSystem> implements UpdateEventListener, EntityActivationListener {
     
     public static final FFSystemTypeKey<BehaviorSystem> SYSTEM_KEY = FFSystemTypeKey.create( BehaviorSystem.class );
     
     private static final SystemComponentKey<?>[] SUPPORTED_COMPONENT_TYPES = new SystemComponentKey[] {
-        Action.TYPE_KEY
+        Action.TYPE_KEY,
+        BehaviorNode.TYPE_KEY
     };
+    
+    private static final ActionState[] ACTION_STATES = ActionState.values();
+    private static final byte SUCCESS = (byte) ActionState.SUCCESS.ordinal();
+    private static final byte FAILURE = (byte) ActionState.FAILURE.ordinal();
+    private static final byte RUNNING = (byte) ActionState.RUNNING.ordinal();
 
     private final DynArray<BehaviorNode> behaviorNodes;
+    private final DynArray<BehaviorTree> behaviorTrees;
     private final DynArray<Action> actions;
     private final IntBag entityIds;
     
+    // running state per entity, indexed by entity id
+    private BehaviorTree[] entityTree;
+    private EBehavoir[] entityBehavior;
+    private int[] runningNode;
+    private byte[] actionState;
+    private long[] runStartTime;
+    
     BehaviorSystem() {
         super( SYSTEM_KEY );
         actions = DynArray.create( Action.class, 20, 10 );
         behaviorNodes = DynArray.create( BehaviorNode.class, 20, 10 );
+        behaviorTrees = DynArray.create( BehaviorTree.class, 20, 10 );
         entityIds = new IntBag( 50, -1 );
+        
+        entityTree = new BehaviorTree[ 50 ];
+        entityBehavior = new EBehavoir[ 50 ];
+        runningNode = new int[ 50 ];
+        actionState = new byte[ 50 ];
+        runStartTime = new long[ 50 ];
     }
     
     @Override
@@ -50,12 +83,24 @@ public final class BehaviorSystem extends ComponentSystem<BehaviorSystem> implem
 
     @Override
     public final void entityActivated( int entityId, final Aspects aspects ) {
+        final EBehavoir behavior = context.getEntityComponent( entityId, EBehavoir.TYPE_KEY );
+        ensureEntityCapacity( entityId + 1 );
+        entityTree[ entityId ] = getBehaviorTree( behavior.getRootNodeId() );
+        entityBehavior[ entityId ] = behavior;
+        runningNode[ entityId ] = -1;
+        actionState[ entityId ] = SUCCESS;
+        runStartTime[ entityId ] = 0;
         entityIds.add( entityId );
     }
 
     @Override
     public final void entityDeactivated( int entityId, final Aspects aspects ) {
         entityIds.remove( entityId );
+        if ( entityId < entityTree.length ) {
+            entityTree[ entityId ] = null;
+            entityBehavior[ entityId ] = null;
+            runningNode[ entityId ] = -1;
+        }
     }
     
     
@@ -65,6 +110,74 @@ public final class BehaviorSystem extends ComponentSystem<BehaviorSystem> implem
         context.disposeListener( EntityActivationEvent.TYPE_KEY, this );
     }
     
+    /** Get the state of the running behavior of the specified entity or of the last run if nothing is running */
+    public final ActionState getActionState( int entityId ) {
+        if ( entityId < 0 || entityId >= entityTree.length || entityTree[ entityId ] == null ) {
+            return null;
+        }
+        
+        return ACTION_STATES[ actionState[ entityId ] ];
+    }
+    
+    /** Get the id of the Action that is currently running for the specified entity or -1 if there is none */
+    public final int getRunningActionId( int entityId ) {
+        if ( entityId < 0 || entityId >= entityTree.length || entityTree[ entityId ] == null || runningNode[ entityId ] < 0 ) {
+            return -1;
+        }
+        
+        return entityTree[ entityId ].actionId[ runningNode[ entityId ] ];
+    }
+    
+    public final BehaviorNode getBehaviorNode( int nodeId ) {
+        if ( !behaviorNodes.contains( nodeId ) ) {
+            return null;
+        }
+        
+        return behaviorNodes.get( nodeId );
+    }
+    
+    public final int getBehaviorNodeId( String nodeName ) {
+        if ( nodeName == null ) {
+            return -1;
+        }
+        
+        for ( BehaviorNode node : behaviorNodes ) {
+            if ( nodeName.equals( node.getName() ) ) {
+                return node.index();
+            }
+        }
+        
+        return -1;
+    }
+    
+    public final void deleteBehaviorNode( int nodeId ) {
+        BehaviorNode node = behaviorNodes.remove( nodeId );
+        if ( node == null ) {
+            return;
+        }
+        
+        node.dispose();
+        behaviorTrees.clear();
+    }
+    
+    /** Compiles the behavior tree of the specified root node if it is not already compiled. This is done
+     *  implicitly on entity activation, use it to get a FFInitException of a misconfigured tree earlier.
+     */
+    public final void compileBehaviorTree( int rootNodeId ) {
+        getBehaviorTree( rootNodeId );
+    }
+    
+    private BehaviorTree getBehaviorTree( int rootNodeId ) {
+        if ( rootNodeId < 0 ) {
+            return null;
+        }
+        
+        if ( !behaviorTrees.contains( rootNodeId ) ) {
+            behaviorTrees.set( rootNodeId, BehaviorTree.compile( rootNodeId, behaviorNodes ) );
+        }
+        return behaviorTrees.get( rootNodeId );
+    }
+    
     public final Action getAction( int actionId ) {
         if ( !actions.contains( actionId ) ) {
             return null;
@@ -112,8 +225,13 @@ public final class BehaviorSystem extends ComponentSystem<BehaviorSystem> implem
         for ( Action action : actions ) {
             disposeAction( action );
         }
+        for ( BehaviorNode node : behaviorNodes ) {
+            node.dispose();
+        }
         
         actions.clear();
+        behaviorNodes.clear();
+        behaviorTrees.clear();
     }
     
     public final void performAction( int actionId, int entityId ) {
@@ -125,6 +243,7 @@ public final class BehaviorSystem extends ComponentSystem<BehaviorSystem> implem
     
     @Override
     public final void update( UpdateEvent event ) {
+        final long time = event.timer.getTime();
         final int nullValue = entityIds.getNullValue();
         for ( int i = 0; i < entityIds.length(); i++ ) {
             final int entityId = entityIds.get( i );
@@ -132,14 +251,139 @@ public final class BehaviorSystem extends ComponentSystem<BehaviorSystem> implem
                 continue;
             }
             
-            final EBehavoir behavior = context.getEntityComponent( entityId, EBehavoir.TYPE_KEY );
-            if ( behavior.runningActionId < 0 ) {
-                behaviorNodes.get( behavior.getRootNodeId() ).nextAction( entityId, behavior, context );
+            final BehaviorTree tree = entityTree[ entityId ];
+            if ( tree != null ) {
+                tick( tree, entityId, time );
+            }
+        }
+    }
+    
+    private void tick( final BehaviorTree tree, int entityId, long time ) {
+        int node = runningNode[ entityId ];
+        byte result = SUCCESS;
+        boolean enter = true;
+        
+        if ( node < 0 ) {
+            // start from the root
+            node = 0;
+        } else {
+            // resume the running leaf
+            result = checkLeaf( tree, node, entityId, time );
+            if ( result == RUNNING ) {
+                performAction( tree.actionId[ node ], entityId );
+                return;
+            }
+            enter = false;
+        }
+        
+        while ( true ) {
+            if ( enter ) {
+                final int first = tree.firstChild[ node ];
+                final int count = tree.childCount[ node ];
+                switch ( tree.type[ node ] ) {
+                    case BehaviorTree.SEQUENCE: {
+                        if ( count > 0 ) {
+                            node = first;
+                        } else {
+                            result = SUCCESS;
+                            enter = false;
+                        }
+                        break;
+                    }
+                    case BehaviorTree.SELECTION: {
+                        int child = nextSelection( tree, first, first + count, entityId );
+                        if ( child >= 0 ) {
+                            node = child;
+                        } else {
+                            result = FAILURE;
+                            enter = false;
+                        }
+                        break;
+                    }
+                    case BehaviorTree.RANDOM_SELECTION: {
+                        if ( count > 0 ) {
+                            node = first + FFContext.RANDOM.nextInt( count );
+                        } else {
+                            result = FAILURE;
+                            enter = false;
+                        }
+                        break;
+                    }
+                    default: {
+                        // start the leaf action
+                        runningNode[ entityId ] = node;
+                        actionState[ entityId ] = RUNNING;
+                        runStartTime[ entityId ] = time;
+                        performAction( tree.actionId[ node ], entityId );
+                        return;
+                    }
+                }
+                continue;
+            }
+            
+            // the node has finished with result, let the parent decide how to go on
+            final int parent = tree.parent[ node ];
+            if ( parent < 0 ) {
+                // the tree has finished, start again on next update
+                runningNode[ entityId ] = -1;
+                actionState[ entityId ] = result;
+                return;
+            }
+            
+            int next = -1;
+            final int end = tree.firstChild[ parent ] + tree.childCount[ parent ];
+            if ( tree.type[ parent ] == BehaviorTree.SEQUENCE ) {
+                if ( result == SUCCESS && node + 1 < end ) {
+                    next = node + 1;
+                }
+            } else if ( tree.type[ parent ] == BehaviorTree.SELECTION ) {
+                if ( result == FAILURE ) {
+                    next = nextSelection( tree, node + 1, end, entityId );
+                }
+            }
+            
+            if ( next >= 0 ) {
+                node = next;
+                enter = true;
+            } else {
+                node = parent;
             }
-            if ( behavior.runningActionId >= 0 ) {
-                actions.get( behavior.runningActionId ).action( entityId );
+        }
+    }
+    
+    private byte checkLeaf( final BehaviorTree tree, int node, int entityId, long time ) {
+        if ( tree.type[ node ] == BehaviorTree.TIMED_LEAF ) {
+            return ( time - runStartTime[ entityId ] > tree.duration[ node ] )? SUCCESS : RUNNING;
+        }
+        
+        final BCondition condition = tree.condition[ node ];
+        if ( condition == null ) {
+            return SUCCESS;
+        }
+        return (byte) condition.check( entityId, entityBehavior[ entityId ], context ).ordinal();
+    }
+    
+    private int nextSelection( final BehaviorTree tree, int from, int end, int entityId ) {
+        for ( int child = from; child < end; child++ ) {
+            final BCondition guard = tree.guard[ child ];
+            if ( guard == null || guard.check( entityId, entityBehavior[ entityId ], context ) == ActionState.RUNNING ) {
+                return child;
             }
         }
+        return -1;
+    }
+    
+    private void ensureEntityCapacity( int capacity ) {
+        if ( capacity <= entityTree.length ) {
+            return;
+        }
+        
+        int newCapacity = Math.max( capacity, entityTree.length * 2 );
+        entityTree = Arrays.copyOf( entityTree, newCapacity );
+        entityBehavior = Arrays.copyOf( entityBehavior, newCapacity );
+        runningNode = Arrays.copyOf( runningNode, newCapacity );
+        actionState = Arrays.copyOf( actionState, newCapacity );
+        runStartTime = Arrays.copyOf( runStartTime, newCapacity );
     }
 
     public final SystemComponentBuilder getActionBuilder( Class<? extends Action> componentType ) {
@@ -148,6 +392,13 @@ public final class BehaviorSystem extends ComponentSystem<BehaviorSystem> implem
         }
         return new ActionBuilder( componentType );
     }
+    
+    public final SystemComponentBuilder getBehaviorNodeBuilder( Class<? extends BehaviorNode> componentType ) {
+        if ( componentType == null ) {
+            throw new IllegalArgumentException( "componentType is needed for SystemComponentBuilder for component: " + BehaviorNode.TYPE_KEY.name() );
+        }
+        return new BehaviorNodeBuilder( componentType );
+    }
 
     @Override
     public final SystemComponentKey<?>[] supportedComponentTypes() {
@@ -157,7 +408,8 @@ public final class BehaviorSystem extends ComponentSystem<BehaviorSystem> implem
     @Override
     public final SystemBuilderAdapter<?>[] getSupportedBuilderAdapter() {
         return new SystemBuilderAdapter[] {
-            new ActionBuilderAdapter()
+            new ActionBuilderAdapter(),
+            new BehaviorNodeBuilderAdapter()
         };
     };
 
@@ -179,6 +431,25 @@ public final class BehaviorSystem extends ComponentSystem<BehaviorSystem> implem
         }
     }
 
+    private final class BehaviorNodeBuilder extends SystemComponentBuilder {
+        
+        private BehaviorNodeBuilder( Class<? extends BehaviorNode> componentType ) {
+            super( context, componentType );
+        }
+        
+        @Override
+        public final SystemComponentKey<BehaviorNode> systemComponentKey() {
+            return BehaviorNode.TYPE_KEY;
+        }
+
+        public int doBuild( int componentId, Class<?> componentType, boolean activate ) {
+            BehaviorNode result = createSystemComponent( componentId, componentType, context );
+            behaviorNodes.set( result.index(), result );
+            behaviorTrees.clear();
+            return result.index();
+        }
+    }
+
     private final class ActionBuilderAdapter extends SystemBuilderAdapter<Action> {
         private ActionBuilderAdapter() {
             super( BehaviorSystem.this, Action.TYPE_KEY );
@@ -213,4 +484,38 @@ public final class BehaviorSystem extends ComponentSystem<BehaviorSystem> implem
         }
     }
 
+    private final class BehaviorNodeBuilderAdapter extends SystemBuilderAdapter<BehaviorNode> {
+        private BehaviorNodeBuilderAdapter() {
+            super( BehaviorSystem.this, BehaviorNode.TYPE_KEY );
+        }
+        @Override
+        public final SystemComponentBuilder createComponentBuilder( Class<? extends BehaviorNode> componentType ) {
+            return getBehaviorNodeBuilder( componentType );
+        }
+        @Override
+        public final BehaviorNode get( int id ) {
+            return behaviorNodes.get( id );
+        }
+        @Override
+        public void delete( int id ) {
+            deleteBehaviorNode( id );
+        }
+        @Override
+        public final Iterator<BehaviorNode> getAll() {
+            return behaviorNodes.iterator();
+        }
+        @Override
+        public final int getId( String name ) {
+            return getBehaviorNodeId( name );
+        }
+        @Override
+        public final void activate( int id ) {
+            throw new UnsupportedOperationException( "BehaviorNode is not activable" );
+        }
+        @Override
+        public final void deactivate( int id ) {
+            throw new UnsupportedOperationException( "BehaviorNode is not activable" );
+        }
+    }
+
 }
@@ -0,0 +1,122 @@
+package com.inari.firefly.control.behavior;
+
+import java.util.Arrays;
+
+import com.inari.commons.lang.list.DynArray;
+import com.inari.firefly.FFInitException;
+
+/** A behavior tree that is compiled from the BehaviorNode components of a root node into flat primitive arrays.
+ *  The nodes are laid out breadth first so that the children of a node are a contiguous range of node indices
+ *  and the next sibling of a node is just the next index. The root is always on index 0.
+ *  <p>
+ *  A compiled tree is immutable and shared by all entities that have the same root node. The running state of an
+ *  entity is kept by the BehaviorSystem.
+ */
+final class BehaviorTree {
+
+    static final byte SEQUENCE = 0;
+    static final byte SELECTION = 1;
+    static final byte RANDOM_SELECTION = 2;
+    static final byte CONDITIONAL_LEAF = 3;
+    static final byte TIMED_LEAF = 4;
+
+    final int rootNodeId;
+
+    byte[] type;
+    int[] parent;
+    int[] firstChild;
+    int[] childCount;
+    int[] actionId;
+    long[] duration;
+    BCondition[] condition;
+    BCondition[] guard;
+    int[] sourceNodeId;
+    int size;
+
+    private BehaviorTree( int rootNodeId ) {
+        this.rootNodeId = rootNodeId;
+        type = new byte[ 10 ];
+        parent = new int[ 10 ];
+        firstChild = new int[ 10 ];
+        childCount = new int[ 10 ];
+        actionId = new int[ 10 ];
+        duration = new long[ 10 ];
+        condition = new BCondition[ 10 ];
+        guard = new BCondition[ 10 ];
+        sourceNodeId = new int[ 10 ];
+        size = 0;
+    }
+
+    /** Reserves the specified number of children for the specified composite node.
+     *  @return the node index of the first child, the children have to be defined with setChild
+     */
+    final int setComposite( int node, byte nodeType, int count ) {
+        type[ node ] = nodeType;
+        firstChild[ node ] = size;
+        childCount[ node ] = count;
+        ensureCapacity( size + count );
+        for ( int i = 0; i < count; i++ ) {
+            parent[ size + i ] = node;
+        }
+        size += count;
+        return firstChild[ node ];
+    }
+
+    final void setChild( int child, int nodeId, BCondition childGuard ) {
+        int ancestor = parent[ child ];
+        while ( ancestor >= 0 ) {
+            if ( sourceNodeId[ ancestor ] == nodeId ) {
+                throw new FFInitException( "Cycle in behavior tree of root node: " + rootNodeId + " on node: " + nodeId );
+            }
+            ancestor = parent[ ancestor ];
+        }
+
+        sourceNodeId[ child ] = nodeId;
+        guard[ child ] = childGuard;
+    }
+
+    final void setLeaf( int node, byte nodeType, int leafActionId, long leafDuration, BCondition leafCondition ) {
+        type[ node ] = nodeType;
+        firstChild[ node ] = -1;
+        childCount[ node ] = 0;
+        actionId[ node ] = leafActionId;
+        duration[ node ] = leafDuration;
+        condition[ node ] = leafCondition;
+    }
+
+    private void ensureCapacity( int capacity ) {
+        if ( capacity <= type.length ) {
+            return;
+        }
+
+        int newCapacity = Math.max( capacity, type.length * 2 );
+        type = Arrays.copyOf( type, newCapacity );
+        parent = Arrays.copyOf( parent, newCapacity );
+        firstChild = Arrays.copyOf( firstChild, newCapacity );
+        childCount = Arrays.copyOf( childCount, newCapacity );
+        actionId = Arrays.copyOf( actionId, newCapacity );
+        duration = Arrays.copyOf( duration, newCapacity );
+        condition = Arrays.copyOf( condition, newCapacity );
+        guard = Arrays.copyOf( guard, newCapacity );
+        sourceNodeId = Arrays.copyOf( sourceNodeId, newCapacity );
+    }
+
+    static final BehaviorTree compile( int rootNodeId, DynArray<BehaviorNode> behaviorNodes ) {
+        BehaviorTree tree = new BehaviorTree( rootNodeId );
+        tree.parent[ 0 ] = -1;
+        tree.sourceNodeId[ 0 ] = rootNodeId;
+        tree.size = 1;
+
+        // breadth first, compiling a node appends its children to the end
+        for ( int node = 0; node < tree.size; node++ ) {
+            int nodeId = tree.sourceNodeId[ node ];
+            if ( !behaviorNodes.contains( nodeId ) ) {
+                throw new FFInitException( "Missing BehaviorNode: " + nodeId + " in behavior tree of root node: " + rootNodeId );
+            }
+            behaviorNodes.get( nodeId ).compile( tree, node );
+        }
+
+        return tree;
+    }
+
+}
@@ -4,8 +4,6 @@ import java.util.Set;
 
 import com.inari.firefly.component.attr.AttributeKey;
 import com.inari.firefly.component.attr.AttributeMap;
-import com.inari.firefly.control.behavior.Action.ActionState;
-import com.inari.firefly.system.FFContext;
 
 public class ConditionalLeaf extends BehaviorNode {
     
@@ -20,15 +18,8 @@ public class ConditionalLeaf extends BehaviorNode {
     }
 
     @Override
-    final void nextAction( int entityId, final EBehavoir behavior, final FFContext context ) {
-        if ( behavior.actionState == ActionState.RUNNING ) {
-            // run further, succeed or fail
-            behavior.actionState = runCondition.check( entityId, behavior, context );
-        } else {
-            // start action
-            behavior.runningActionId = actionId;
-            behavior.actionState = ActionState.RUNNING;
-        }
+    final void compile( BehaviorTree tree, int node ) {
+        tree.setLeaf( node, BehaviorTree.CONDITIONAL_LEAF, actionId, 0, runCondition );
     }
     
     @Override
@@ -5,8 +5,6 @@ import java.util.Set;
 import com.inari.commons.lang.list.DynArray;
 import com.inari.firefly.component.attr.AttributeKey;
 import com.inari.firefly.component.attr.AttributeMap;
-import com.inari.firefly.control.behavior.Action.ActionState;
-import com.inari.firefly.system.FFContext;
 
 public final class ConditionalSelection extends BehaviorNode {
     
@@ -20,26 +18,18 @@ public final class ConditionalSelection extends BehaviorNode {
     }
 
     @Override
-    final void nextAction( int entityId, EBehavoir behavior, FFContext context ) {
-        int actualSubNodeId = behavior.getSubNodeMapping( index );
-        if ( actualSubNodeId >= 0 ) {
-            final BehaviorNode subNode = context.getSystemComponent( BehaviorNode.TYPE_KEY, actualSubNodeId );
-            subNode.nextAction( entityId, behavior, context );
-            if ( behavior.runningActionId >= 0 ) {
-                return;
+    final void compile( BehaviorTree tree, int node ) {
+        int count = 0;
+        for ( Mapping mapping : subNodeMapping ) {
+            if ( mapping != null ) {
+                count++;
             }
         }
         
-        behavior.removeNodeMapping( index );
-        // find next action
+        int child = tree.setComposite( node, BehaviorTree.SELECTION, count );
         for ( Mapping mapping : subNodeMapping ) {
-            if ( mapping.condition.check( entityId, behavior, context ) == ActionState.RUNNING ) {
-                final BehaviorNode subNode = context.getSystemComponent( BehaviorNode.TYPE_KEY, mapping.nodeMapping );
-                subNode.nextAction( entityId, behavior, context );
-                if ( behavior.runningActionId >= 0 ) {
-                    behavior.setNodeMapping( index, subNode.index() );
-                    return;
-                }
+            if ( mapping != null ) {
+                tree.setChild( child++, mapping.nodeMapping, mapping.condition );
             }
         }
     }
@@ -6,7 +6,6 @@ import com.inari.commons.lang.list.DynArray;
 import com.inari.commons.lang.list.IntBag;
 import com.inari.firefly.component.attr.AttributeKey;
 import com.inari.firefly.component.attr.AttributeMap;
-import com.inari.firefly.system.FFContext;
 
 public final class RandomSelection extends BehaviorNode {
     
@@ -20,24 +19,10 @@ public final class RandomSelection extends BehaviorNode {
     }
     
     @Override
-    final void nextAction( int entityId, EBehavoir behavior, FFContext context ) {
-        int actualSubNodeId = behavior.getSubNodeMapping( index );
-        if ( actualSubNodeId >= 0 ) {
-            final BehaviorNode subNode = context.getSystemComponent( BehaviorNode.TYPE_KEY, actualSubNodeId );
-            subNode.nextAction( entityId, behavior, context );
-            if ( behavior.runningActionId >= 0 ) {
-                return;
-            }
-        }
-        
-        behavior.removeNodeMapping( index );
-        // find next action
-        int nextIndex = FFContext.RANDOM.nextInt( nodeIds.size() );
-        final BehaviorNode subNode = context.getSystemComponent( BehaviorNode.TYPE_KEY, nextIndex );
-        subNode.nextAction( entityId, behavior, context );
-        if ( behavior.runningActionId >= 0 ) {
-            behavior.setNodeMapping( index, subNode.index() );
-            return;
+    final void compile( BehaviorTree tree, int node ) {
+        int child = tree.setComposite( node, BehaviorTree.RANDOM_SELECTION, nodeIds.size() );
+        for ( int i = 0; i < nodeIds.size(); i++ ) {
+            tree.setChild( child + i, nodeIds.get( i ), null );
         }
     }
     
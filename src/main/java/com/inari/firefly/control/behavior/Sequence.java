@@ -6,7 +6,6 @@ import com.inari.commons.lang.list.DynArray;
 import com.inari.commons.lang.list.IntBag;
 import com.inari.firefly.component.attr.AttributeKey;
 import com.inari.firefly.component.attr.AttributeMap;
-import com.inari.firefly.system.FFContext;
 
 public final class Sequence extends BehaviorNode {
     
@@ -20,29 +19,10 @@ public final class Sequence extends BehaviorNode {
     }
 
     @Override
-    final void nextAction( int entityId, EBehavoir behavior, FFContext context ) {
-        int actualSubNodeId = behavior.getSubNodeMapping( index );
-        if ( actualSubNodeId >= 0 ) {
-            final BehaviorNode subNode = context.getSystemComponent( BehaviorNode.TYPE_KEY, actualSubNodeId );
-            subNode.nextAction( entityId, behavior, context );
-            if ( behavior.runningActionId >= 0 ) {
-                return;
-            } else {
-                nextAction( nodeIds.indexOf( actualSubNodeId ) + 1, entityId, behavior, context );
-            }
-        }
-        
-        behavior.removeNodeMapping( index );
-        nextAction( 0, entityId, behavior, context );
-    }
-
-    private void nextAction( int startIndex, int entityId, EBehavoir behavior, FFContext context ) {
-        for ( int i = startIndex; i < nodeIds.size(); i++ ) {
-            final BehaviorNode subNode = context.getSystemComponent( BehaviorNode.TYPE_KEY, nodeIds.get( i ) );
-            subNode.nextAction( entityId, behavior, context );
-            if ( behavior.runningActionId >= 0 ) {
-                behavior.setNodeMapping( index, subNode.index() );
-            }
+    final void compile( BehaviorTree tree, int node ) {
+        int child = tree.setComposite( node, BehaviorTree.SEQUENCE, nodeIds.size() );
+        for ( int i = 0; i < nodeIds.size(); i++ ) {
+            tree.setChild( child + i, nodeIds.get( i ), null );
         }
     }
 
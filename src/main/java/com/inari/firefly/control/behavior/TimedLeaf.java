@@ -4,37 +4,22 @@ import java.util.Set;
 
 import com.inari.firefly.component.attr.AttributeKey;
 import com.inari.firefly.component.attr.AttributeMap;
-import com.inari.firefly.control.behavior.Action.ActionState;
-import com.inari.firefly.system.FFContext;
 
 public final class TimedLeaf extends BehaviorNode {
     
     public static final AttributeKey<Integer> ACTION_ID = AttributeKey.createInt( "actionId", TimedLeaf.class );
-    public static final AttributeKey<Long> DURATION = AttributeKey.createLong( "actionId", TimedLeaf.class );
+    public static final AttributeKey<Long> DURATION = AttributeKey.createLong( "duration", TimedLeaf.class );
     
     private int actionId;
     private long duration;
-    
-    private long runStartTime;
 
     protected TimedLeaf( int index ) {
         super( index );
     }
 
     @Override
-    final void nextAction( int entityId, EBehavoir behavior, FFContext context ) {
-        if ( behavior.actionState == ActionState.RUNNING ) {
-            if ( context.getTime() - runStartTime > duration ) {
-                behavior.runningActionId = -1;
-                behavior.actionState = ActionState.SUCCESS;
-                return;
-            }
-        } else {
-            // start action
-            behavior.runningActionId = actionId;
-            behavior.actionState = ActionState.RUNNING;
-            runStartTime = context.getTime();
-        }
+    final void compile( BehaviorTree tree, int node ) {
+        tree.setLeaf( node, BehaviorTree.TIMED_LEAF, actionId, duration, null );
     }
     
     @Override
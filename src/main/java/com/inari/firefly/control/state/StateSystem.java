@@ -15,6 +15,7 @@
  ******************************************************************************/ 
 package com.inari.firefly.control.state;
 
+import java.util.BitSet;
 import java.util.Iterator;
 
 import com.inari.commons.lang.indexed.Indexer;
@@ -26,8 +27,13 @@ import com.inari.firefly.system.component.ComponentSystem;
 import com.inari.firefly.system.component.SystemBuilderAdapter;
 import com.inari.firefly.system.component.SystemComponent.SystemComponentKey;
 import com.inari.firefly.system.component.SystemComponentBuilder;
-import com.inari.firefly.system.utils.Condition;
+import com.inari.firefly.system.utils.Triggerer;
 
+/** Runs the active Workflows. The state changes of the current state of a Workflow are only checked
+ *  when the Workflow is marked for a check, either by an ObservableCondition of the current state or with
+ *  checkWorkflow. Only Workflows with a current state that has a condition that is not observable are
+ *  polled on every update. Idle Workflows with observable conditions have no cost.
+ */
 public class StateSystem
     extends
         ComponentSystem<StateSystem>
@@ -41,11 +47,22 @@ public class StateSystem
     };
 
     private final DynArray<Workflow> workflows;
+    private final BitSet pendingWorkflows;
+    private final BitSet polledWorkflows;
+    
+    private final Triggerer workflowObserver = new Triggerer() {
+        @Override
+        public final void trigger( FFContext context, int componentId ) {
+            pendingWorkflows.set( componentId );
+        }
+    };
 
 
     public StateSystem() {
         super( SYSTEM_KEY );
         workflows = DynArray.create( Workflow.class, Indexer.getIndexedObjectSize( Workflow.class ), 10 ); 
+        pendingWorkflows = new BitSet();
+        polledWorkflows = new BitSet();
     }
     
     @Override
@@ -79,30 +96,36 @@ public class StateSystem
         }
         
         workflow.activate();
+        updateWorkflowCheck( workflow );
         context.notify( WorkflowEvent.createWorkflowStartedEvent( workflow.index(), workflow.getName(), workflow.getCurrentState() ) );
     }
 
+    /** Marks the specified Workflow to check the conditions of its current state on the next update. Use this
+     *  when a condition depends on something that is not observed by the condition itself
+     */
+    public final void checkWorkflow( int workflowId ) {
+        pendingWorkflows.set( workflowId );
+    }
+
     @Override
     public final void update( UpdateEvent event ) {
+        pendingWorkflows.or( polledWorkflows );
         
-        for ( int w = 0; w < workflows.size(); w++ ) {
+        // a Workflow that gets marked again by its state change is checked on the next update
+        for ( int w = pendingWorkflows.nextSetBit( 0 ); w >= 0; w = pendingWorkflows.nextSetBit( w + 1 ) ) {
+            pendingWorkflows.clear( w );
+            if ( !workflows.contains( w ) ) {
+                continue;
+            }
+            
             Workflow workflow = workflows.get( w );
-            if ( workflow != null && !workflow.isActive() ) {
+            if ( !workflow.isActive() ) {
                 continue;
             }
             
-            DynArray<StateChange> stateChangesOfCurrentState = workflow.getStateChangesOfCurrentState();
-            for ( int s = 0; s < stateChangesOfCurrentState.size(); s++ ) {
-                StateChange stateChange = stateChangesOfCurrentState.get( s );
-                Condition condition = stateChange.getCondition();
-                if ( condition == null ) {
-                    continue;
-                }
-                
-                if ( condition.check( context ) ) {
-                    doStateChange( workflow, stateChange );
-                    break;
-                }
+            StateChange stateChange = workflow.checkStateChanges();
+            if ( stateChange != null ) {
+                doStateChange( workflow, stateChange );
             }
         }
     }
@@ -118,8 +141,13 @@ public class StateSystem
     }
 
     private final void doStateChange( final Workflow workflow, final StateChange stateChange ) {
+        if ( stateChange == null ) {
+            return;
+        }
+        
         String toStateName = stateChange.getToStateName();
-        workflow.changeState( toStateName );
+        workflow.changeState( stateChange );
+        updateWorkflowCheck( workflow );
 
         if ( toStateName != null ) {
             context.notify( WorkflowEvent.createStateChangedEvent( workflow.index(), workflow.getName(), stateChange ) );
@@ -128,6 +156,12 @@ public class StateSystem
         }
     }
     
+    private void updateWorkflowCheck( final Workflow workflow ) {
+        // the conditions of a new state are checked once since they may already be fulfilled on entry
+        pendingWorkflows.set( workflow.index() );
+        polledWorkflows.set( workflow.index(), workflow.isPolled() );
+    }
+    
     public final boolean deleteWorkflow( String name ) {
         Workflow workflow = getWorkflow( name );
         if ( workflow == null ) {
@@ -171,6 +205,8 @@ public class StateSystem
             return;
         }
         
+        pendingWorkflows.clear( indexedId );
+        polledWorkflows.clear( indexedId );
         workflow.dispose();
     }
     
@@ -255,6 +291,7 @@ public class StateSystem
         @Override
         public int doBuild( int componentId, Class<?> subType, boolean activate ) {
             Workflow workflow = createSystemComponent( componentId, subType, context );
+            workflow.observer = workflowObserver;
             workflows.set( workflow.index(), workflow );
             
             if ( activate ) {
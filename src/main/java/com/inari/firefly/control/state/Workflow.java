@@ -26,6 +26,8 @@ import com.inari.firefly.system.component.SystemComponent;
 import com.inari.firefly.system.utils.Condition;
 import com.inari.firefly.system.utils.Disposable;
 import com.inari.firefly.system.utils.Initiable;
+import com.inari.firefly.system.utils.ObservableCondition;
+import com.inari.firefly.system.utils.Triggerer;
 
 public final class Workflow extends SystemComponent {
     
@@ -44,16 +46,28 @@ public final class Workflow extends SystemComponent {
     private DynArray<String> states;
     private DynArray<StateChange> stateChanges;
     
-    private String currentStateName;
-    private final DynArray<StateChange> stateChangesOfCurrentState;
+    // state names interned to ids and the state changes as table ordered by the id of their from state
+    private String[] stateNames;
+    private int stateCount;
+    private StateChange[] transitions;
+    private int[] transitionTarget;
+    private int[] stateTransitionStart;
+    private boolean[] statePolled;
+    private boolean compiled;
+    
+    private int currentStateId;
+    Triggerer observer;
 
     Workflow( int workflowId ) {
         super( workflowId );
         startStateName = null;
         states = null;
         stateChanges = null;
-        currentStateName = null;
-        stateChangesOfCurrentState = DynArray.create( StateChange.class, 10, 1 );
+        stateNames = new String[ 10 ];
+        stateCount = 0;
+        compiled = false;
+        currentStateId = -1;
+        observer = null;
     }
     
     @Override
@@ -62,53 +76,183 @@ public final class Workflow extends SystemComponent {
     }
     
     public final boolean isActive() {
-        return currentStateName != null;
+        return currentStateId >= 0;
     }
     
     final void activate() {
-        setCurrentState( startStateName );
+        compile();
+        changeState( getStateId( startStateName ) );
     }
 
     public final String getCurrentState() {
-        return currentStateName;
+        return ( currentStateId >= 0 )? stateNames[ currentStateId ] : null;
     }
     
-    final void setCurrentState( String stateName ) {
-        currentStateName = stateName;
-        updateStateChangesOfCurrentState();
+    public final int getCurrentStateId() {
+        return currentStateId;
     }
-
-    private void updateStateChangesOfCurrentState() {
-        stateChangesOfCurrentState.clear();
-        for ( int i = 0; i < stateChanges.capacity(); i++ ) {
-            StateChange stateChange = stateChanges.get( i );
-            if ( stateChange == null || !stateChange.fromStateName.equals( currentStateName ) ) {
-                continue;
+    
+    /** Get the interned id of the state with the specified name or -1 if there is no such state */
+    public final int getStateId( String stateName ) {
+        if ( stateName == null ) {
+            return -1;
+        }
+        
+        compile();
+        for ( int i = 0; i < stateCount; i++ ) {
+            if ( stateName.equals( stateNames[ i ] ) ) {
+                return i;
             }
-            stateChangesOfCurrentState.add( stateChange );
         }
+        return -1;
+    }
+    
+    public final String getStateName( int stateId ) {
+        compile();
+        return ( stateId >= 0 && stateId < stateCount )? stateNames[ stateId ] : null;
+    }
+    
+    /** Indicates if a condition of a state change of the current state has to be polled on every update
+     *  because it is not an ObservableCondition
+     */
+    final boolean isPolled() {
+        return currentStateId >= 0 && statePolled[ currentStateId ];
+    }
+    
+    /** Checks the conditions of the state changes of the current state
+     *  @return the first StateChange with a fulfilled condition or null if there is none
+     */
+    final StateChange checkStateChanges() {
+        if ( currentStateId < 0 ) {
+            return null;
+        }
+        
+        for ( int i = stateTransitionStart[ currentStateId ]; i < stateTransitionStart[ currentStateId + 1 ]; i++ ) {
+            Condition condition = transitions[ i ].condition;
+            if ( condition != null && condition.check( context ) ) {
+                return transitions[ i ];
+            }
+        }
+        return null;
     }
 
-    final void changeState( String newStateName ) {
-        if ( currentStateName != null ) {
-            for ( int i = 0; i < stateChangesOfCurrentState.size(); i++ ) {
-                StateChange stateChange = stateChangesOfCurrentState.get( i );
-                Condition condition = stateChange.getCondition();
-                if ( condition != null && condition instanceof Disposable ) {
+    final void changeState( StateChange stateChange ) {
+        changeState( getStateId( stateChange.toStateName ) );
+    }
+
+    private void changeState( int newStateId ) {
+        if ( currentStateId >= 0 ) {
+            for ( int i = stateTransitionStart[ currentStateId ]; i < stateTransitionStart[ currentStateId + 1 ]; i++ ) {
+                Condition condition = transitions[ i ].condition;
+                if ( condition instanceof ObservableCondition ) {
+                    ( (ObservableCondition) condition ).unobserve( context );
+                }
+                if ( condition instanceof Disposable ) {
                     ( (Disposable) condition ).dispose( context );
                 }
             }
         }
         
-        setCurrentState( newStateName );
+        currentStateId = newStateId;
+        if ( currentStateId < 0 ) {
+            return;
+        }
         
-        for ( int i = 0; i < stateChangesOfCurrentState.size(); i++ ) {
-            StateChange stateChange = stateChangesOfCurrentState.get( i );
-            Condition condition = stateChange.getCondition();
-            if ( condition != null && condition instanceof Initiable ) {
+        for ( int i = stateTransitionStart[ currentStateId ]; i < stateTransitionStart[ currentStateId + 1 ]; i++ ) {
+            Condition condition = transitions[ i ].condition;
+            if ( condition instanceof Initiable ) {
                 ( (Initiable) condition ).init( context );
             }
+            if ( condition instanceof ObservableCondition && observer != null ) {
+                ( (ObservableCondition) condition ).observe( context, index, observer );
+            }
+        }
+    }
+
+    private void compile() {
+        if ( compiled ) {
+            return;
+        }
+        
+        stateCount = 0;
+        if ( states != null ) {
+            for ( int i = 0; i < states.capacity(); i++ ) {
+                intern( states.get( i ) );
+            }
+        }
+        intern( startStateName );
+        
+        int transitionCount = 0;
+        if ( stateChanges != null ) {
+            for ( int i = 0; i < stateChanges.capacity(); i++ ) {
+                StateChange stateChange = stateChanges.get( i );
+                if ( stateChange != null ) {
+                    intern( stateChange.fromStateName );
+                    intern( stateChange.toStateName );
+                    transitionCount++;
+                }
+            }
+        }
+        
+        // counting sort of the state changes by the id of their from state
+        stateTransitionStart = new int[ stateCount + 1 ];
+        statePolled = new boolean[ stateCount ];
+        transitions = new StateChange[ transitionCount ];
+        transitionTarget = new int[ transitionCount ];
+        if ( stateChanges != null ) {
+            for ( int i = 0; i < stateChanges.capacity(); i++ ) {
+                StateChange stateChange = stateChanges.get( i );
+                if ( stateChange != null ) {
+                    stateTransitionStart[ internedId( stateChange.fromStateName ) + 1 ]++;
+                }
+            }
+        }
+        for ( int i = 0; i < stateCount; i++ ) {
+            stateTransitionStart[ i + 1 ] += stateTransitionStart[ i ];
         }
+        int[] fill = Arrays.copyOf( stateTransitionStart, stateCount );
+        if ( stateChanges != null ) {
+            for ( int i = 0; i < stateChanges.capacity(); i++ ) {
+                StateChange stateChange = stateChanges.get( i );
+                if ( stateChange == null ) {
+                    continue;
+                }
+                
+                int fromStateId = internedId( stateChange.fromStateName );
+                int t = fill[ fromStateId ]++;
+                transitions[ t ] = stateChange;
+                transitionTarget[ t ] = internedId( stateChange.toStateName );
+                if ( stateChange.condition != null && !( stateChange.condition instanceof ObservableCondition ) ) {
+                    statePolled[ fromStateId ] = true;
+                }
+            }
+        }
+        
+        compiled = true;
+    }
+    
+    private void intern( String stateName ) {
+        if ( stateName == null || internedId( stateName ) >= 0 ) {
+            return;
+        }
+        
+        if ( stateCount == stateNames.length ) {
+            stateNames = Arrays.copyOf( stateNames, stateCount * 2 );
+        }
+        stateNames[ stateCount++ ] = stateName;
+    }
+    
+    private int internedId( String stateName ) {
+        if ( stateName == null ) {
+            return -1;
+        }
+        
+        for ( int i = 0; i < stateCount; i++ ) {
+            if ( stateName.equals( stateNames[ i ] ) ) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public final String getStartStateName() {
@@ -117,6 +261,7 @@ public final class Workflow extends SystemComponent {
 
     public final void setStartStateName( String startStateName ) {
         this.startStateName = startStateName;
+        compiled = false;
     }
 
     public final DynArray<String> getStates() {
@@ -125,6 +270,7 @@ public final class Workflow extends SystemComponent {
 
     public final void setStates( DynArray<String> states ) {
         this.states = states;
+        compiled = false;
     }
     
     public final StateChange getStateChange( String name ) {
@@ -140,19 +286,21 @@ public final class Workflow extends SystemComponent {
     public final DynArray<StateChange> getStateChanges() {
         return stateChanges;
     }
-    
-    public final DynArray<StateChange> getStateChangesOfCurrentState() {
-        return stateChangesOfCurrentState;
-    }
 
     public final void setStateChanges( DynArray<StateChange> stateChanges ) {
         this.stateChanges = stateChanges;
+        compiled = false;
     }
     
     public final StateChange getStateChangeForTargetState( String targetStateName ) {
-        for ( StateChange stateChange : stateChanges ) {
-            if ( stateChange.getFromStateName().equals( currentStateName ) && targetStateName.equals( stateChange.toStateName ) ) {
-                return stateChange;
+        if ( currentStateId < 0 ) {
+            return null;
+        }
+        
+        int targetStateId = getStateId( targetStateName );
+        for ( int i = stateTransitionStart[ currentStateId ]; i < stateTransitionStart[ currentStateId + 1 ]; i++ ) {
+            if ( transitionTarget[ i ] == targetStateId ) {
+                return transitions[ i ];
             }
         }
         
@@ -160,14 +308,25 @@ public final class Workflow extends SystemComponent {
     }
     
     public final StateChange getStateChangeForCurrentState( String stateChangeName ) {
-        for ( StateChange stateChange : stateChanges ) {
-            if ( stateChangeName.equals( stateChange.getName() ) && stateChange.getFromStateName().equals( currentStateName ) ) {
-                return stateChange;
+        if ( currentStateId < 0 ) {
+            return null;
+        }
+        
+        for ( int i = stateTransitionStart[ currentStateId ]; i < stateTransitionStart[ currentStateId + 1 ]; i++ ) {
+            if ( stateChangeName.equals( transitions[ i ].name ) ) {
+                return transitions[ i ];
             }
         }
         
         return null;
     }
+    
+    @Override
+    public final void dispose() {
+        changeState( -1 );
+        
+        super.dispose();
+    }
 
     @Override
     public final Set<AttributeKey<?>> attributeKeys() {
@@ -183,6 +342,7 @@ public final class Workflow extends SystemComponent {
         startStateName = attributes.getValue( START_STATE_NAME, startStateName );
         states = attributes.getValue( STATES, states );
         stateChanges = attributes.getValue( STATE_CHANGES, stateChanges );
+        compiled = false;
     }
 
     @Override
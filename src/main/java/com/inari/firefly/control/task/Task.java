@@ -27,14 +27,25 @@ import com.inari.firefly.system.component.SystemComponent;
 import com.inari.firefly.system.utils.Trigger;
 import com.inari.firefly.system.utils.Triggerer;
 
+/** A Task is a unit of work that is run by the TaskSystem, explicitly or by one of its triggers.
+ *  <p>
+ *  A synchronous Task runs on the game thread within runTask. An asynchronous Task (ASYNC attribute) runs
+ *  runTask on a background thread of the TaskSystem and gets completeTask called on the game thread within
+ *  the next update after the run has finished, was cancelled or failed.
+ *  <p>
+ *  Rule for asynchronous Tasks: runTask must not use the FFContext or any system, component or entity of it.
+ *  It can use its own data, setProgress and isCancelled. Results are applied to the FFContext in completeTask.
+ */
 public abstract class Task extends SystemComponent {
     
     public static final SystemComponentKey<Task> TYPE_KEY = SystemComponentKey.create( Task.class );
 
     public static final AttributeKey<Boolean> REMOVE_AFTER_RUN = AttributeKey.createBoolean( "removeAfterRun", Task.class );
+    public static final AttributeKey<Boolean> ASYNC = AttributeKey.createBoolean( "async", Task.class );
     public static final AttributeKey<DynArray<Trigger>> TRIGGER = AttributeKey.createDynArray( "trigger", Task.class );
     private static final AttributeKey<?>[] ATTRIBUTE_KEYS = new AttributeKey[] { 
         REMOVE_AFTER_RUN,
+        ASYNC,
         TRIGGER
     };
     
@@ -47,8 +58,15 @@ public abstract class Task extends SystemComponent {
     
     
     private boolean removeAfterRun;
+    private boolean async;
     private final DynArray<Trigger> trigger;
     
+    // state of an asynchronous run, shared with the background thread
+    boolean running;
+    private volatile boolean cancelled;
+    private volatile float progress;
+    volatile Throwable error;
+    
     protected Task( int id ) {
         super( id );
         trigger = DynArray.create( Trigger.class, 1, 2 );
@@ -67,6 +85,52 @@ public abstract class Task extends SystemComponent {
         this.removeAfterRun = removeAfterRun;
     }
 
+    public final boolean isAsync() {
+        return async;
+    }
+
+    public final void setAsync( boolean async ) {
+        this.async = async;
+    }
+    
+    /** Indicates if an asynchronous run of this Task is pending, running or waiting for completion */
+    public final boolean isRunning() {
+        return running;
+    }
+
+    /** Indicates if the current asynchronous run was cancelled. A long running runTask should check this
+     *  regularly and return early if true. This is safe to call from the background thread.
+     */
+    public final boolean isCancelled() {
+        return cancelled;
+    }
+    
+    /** Get the progress of the current asynchronous run from 0 to 1 as reported by the Task */
+    public final float getProgress() {
+        return progress;
+    }
+    
+    /** Reports the progress of the current run from 0 to 1. This is safe to call from the background thread */
+    protected final void setProgress( float progress ) {
+        this.progress = progress;
+    }
+
+    /** Get the exception that failed the last asynchronous run or null if it didn't fail */
+    public final Throwable getError() {
+        return error;
+    }
+    
+    final void startRun() {
+        running = true;
+        cancelled = false;
+        progress = 0f;
+        error = null;
+    }
+    
+    final void cancel() {
+        cancelled = true;
+    }
+
     public final void addTrigger( Trigger trigger ) {
         this.trigger.add( trigger );
         trigger.register( context, index(), TASK_TRIGGERER );
@@ -101,6 +165,7 @@ public abstract class Task extends SystemComponent {
         super.fromAttributes( attributes );
         
         removeAfterRun = attributes.getValue( REMOVE_AFTER_RUN, removeAfterRun );
+        async = attributes.getValue( ASYNC, async );
         if ( attributes.contains( TRIGGER ) ) {
             clearTrigger();
             DynArray<Trigger> triggers = attributes.getValue( TRIGGER );
@@ -117,9 +182,17 @@ public abstract class Task extends SystemComponent {
         super.toAttributes( attributes );
         
         attributes.put( REMOVE_AFTER_RUN, removeAfterRun );
+        attributes.put( ASYNC, async );
         attributes.put( TRIGGER, trigger );
     }
 
     public abstract void runTask();
+    
+    /** Called on the game thread after an asynchronous run has finished, also if it was cancelled or failed.
+     *  Apply the result of the run to the FFContext here. Does nothing by default.
+     */
+    protected void completeTask() {
+        // by default there is nothing to complete
+    }
 
 }
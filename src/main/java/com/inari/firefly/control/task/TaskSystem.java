@@ -15,16 +15,31 @@
  ******************************************************************************/ 
 package com.inari.firefly.control.task;
 
+import java.util.ArrayDeque;
 import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.inari.commons.lang.list.DynArray;
 import com.inari.firefly.system.FFContext;
+import com.inari.firefly.system.UpdateEvent;
+import com.inari.firefly.system.UpdateEventListener;
 import com.inari.firefly.system.component.ComponentSystem;
 import com.inari.firefly.system.component.SystemBuilderAdapter;
 import com.inari.firefly.system.component.SystemComponent.SystemComponentKey;
 import com.inari.firefly.system.component.SystemComponentBuilder;
 
-public final class TaskSystem extends ComponentSystem<TaskSystem> {
+/** Runs Tasks. A synchronous Task runs directly on the game thread. An asynchronous Task runs on a bounded pool
+ *  of background threads. Tasks that don't fit into the queue of the pool wait on the game thread until there is
+ *  space again. Finished runs are put into a completion queue that is drained on every UpdateEvent, calling
+ *  completeTask of each finished Task on the game thread.
+ */
+public final class TaskSystem extends ComponentSystem<TaskSystem> implements UpdateEventListener {
     
     public static final FFSystemTypeKey<TaskSystem> SYSTEM_KEY = FFSystemTypeKey.create( TaskSystem.class );
     
@@ -32,11 +47,23 @@ public final class TaskSystem extends ComponentSystem<TaskSystem> {
         Task.TYPE_KEY,
     };
 
+    private static final int DEFAULT_ASYNC_THREADS = 2;
+    private static final int ASYNC_QUEUE_CAPACITY = 16;
+
     private final DynArray<Task> tasks;
     
+    private int asyncThreads;
+    private ThreadPoolExecutor executor;
+    private final ArrayDeque<Task> waitingTasks;
+    private final ConcurrentLinkedQueue<Task> completedTasks;
+    
     TaskSystem() {
         super( SYSTEM_KEY );
         tasks = DynArray.create( Task.class, 20, 10 );
+        asyncThreads = DEFAULT_ASYNC_THREADS;
+        executor = null;
+        waitingTasks = new ArrayDeque<Task>();
+        completedTasks = new ConcurrentLinkedQueue<Task>();
     }
 
     @Override
@@ -44,12 +71,43 @@ public final class TaskSystem extends ComponentSystem<TaskSystem> {
         super.init( context );
         
         context.registerListener( TaskSystemEvent.TYPE_KEY, this );
+        context.registerListener( UpdateEvent.TYPE_KEY, this );
     }
     
     @Override
     public final void dispose( FFContext context ) {
         context.disposeListener( TaskSystemEvent.TYPE_KEY, this );
+        context.disposeListener( UpdateEvent.TYPE_KEY, this );
         clear();
+        
+        if ( executor != null ) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+    
+    public final int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    /** Sets the number of background threads for asynchronous Tasks, default is 2 */
+    public final void setAsyncThreads( int asyncThreads ) {
+        if ( asyncThreads <= 0 ) {
+            throw new IllegalArgumentException( "asyncThreads must be greater then 0: " + asyncThreads );
+        }
+        
+        this.asyncThreads = asyncThreads;
+        if ( executor == null ) {
+            return;
+        }
+        
+        if ( asyncThreads > executor.getMaximumPoolSize() ) {
+            executor.setMaximumPoolSize( asyncThreads );
+            executor.setCorePoolSize( asyncThreads );
+        } else {
+            executor.setCorePoolSize( asyncThreads );
+            executor.setMaximumPoolSize( asyncThreads );
+        }
     }
     
     public final Task getTask( int taskId ) {
@@ -71,10 +129,13 @@ public final class TaskSystem extends ComponentSystem<TaskSystem> {
 
     public final void clear() {
         for ( Task task : tasks ) {
+            task.cancel();
             disposeSystemComponent( task );
         }
         
         tasks.clear();
+        waitingTasks.clear();
+        completedTasks.clear();
     }
     
     public final int getTaskId( String taskName ) {
@@ -95,21 +156,100 @@ public final class TaskSystem extends ComponentSystem<TaskSystem> {
         Task task = tasks.remove( taskId );
 
         if ( task != null ) {
+            // a running asynchronous run is cancelled and its completion ignored
+            task.cancel();
+            waitingTasks.remove( task );
             disposeSystemComponent( task );
         }
     }
 
+    /** Runs the specified Task. An asynchronous Task is only started if it is not already running */
     public final void runTask( int taskId ) {
         if ( !tasks.contains( taskId ) ) {
             return;
         }
         
         Task task = tasks.get( taskId );
+        if ( task.isAsync() ) {
+            runAsync( task );
+            return;
+        }
+        
         task.runTask();
         if ( task.removeAfterRun() && tasks.contains( taskId ) ) {
             tasks.remove( taskId );
         }
     }
+    
+    /** Cancels the current asynchronous run of the specified Task. A run that has not started yet is not started
+     *  at all, a started run is flagged as cancelled. The Task gets completed on one of the next updates anyway.
+     */
+    public final void cancelTask( int taskId ) {
+        if ( !tasks.contains( taskId ) ) {
+            return;
+        }
+        
+        Task task = tasks.get( taskId );
+        if ( !task.isRunning() ) {
+            return;
+        }
+        
+        task.cancel();
+        if ( waitingTasks.remove( task ) ) {
+            completedTasks.add( task );
+        }
+    }
+
+    @Override
+    public final void update( UpdateEvent event ) {
+        while ( !waitingTasks.isEmpty() && submit( waitingTasks.peek() ) ) {
+            waitingTasks.poll();
+        }
+        
+        Task task;
+        while ( ( task = completedTasks.poll() ) != null ) {
+            final int taskId = task.index();
+            if ( !tasks.contains( taskId ) || tasks.get( taskId ) != task ) {
+                // deleted while running
+                continue;
+            }
+            
+            task.running = false;
+            task.completeTask();
+            if ( task.removeAfterRun() && tasks.contains( taskId ) ) {
+                tasks.remove( taskId );
+            }
+        }
+    }
+    
+    private void runAsync( final Task task ) {
+        if ( task.isRunning() ) {
+            return;
+        }
+        
+        task.startRun();
+        if ( !submit( task ) ) {
+            waitingTasks.add( task );
+        }
+    }
+    
+    private boolean submit( final Task task ) {
+        if ( executor == null ) {
+            executor = new ThreadPoolExecutor( 
+                asyncThreads, asyncThreads, 
+                0L, TimeUnit.MILLISECONDS, 
+                new ArrayBlockingQueue<Runnable>( ASYNC_QUEUE_CAPACITY ), 
+                new TaskThreadFactory() 
+            );
+        }
+        
+        try {
+            executor.execute( new AsyncRun( task ) );
+            return true;
+        } catch ( RejectedExecutionException e ) {
+            return false;
+        }
+    }
 
     public final SystemComponentBuilder getTaskBuilder( Class<? extends Task> componentType ) {
         if ( componentType == null ) {
@@ -130,6 +270,40 @@ public final class TaskSystem extends ComponentSystem<TaskSystem> {
         };
     }
 
+    private final class AsyncRun implements Runnable {
+        
+        private final Task task;
+        
+        private AsyncRun( Task task ) {
+            this.task = task;
+        }
+
+        @Override
+        public final void run() {
+            try {
+                if ( !task.isCancelled() ) {
+                    task.runTask();
+                }
+            } catch ( Throwable t ) {
+                task.error = t;
+            } finally {
+                completedTasks.add( task );
+            }
+        }
+    }
+    
+    private static final class TaskThreadFactory implements ThreadFactory {
+        
+        private final AtomicInteger threadNumber = new AtomicInteger( 1 );
+
+        @Override
+        public final Thread newThread( Runnable runnable ) {
+            Thread thread = new Thread( runnable, "FFTaskSystem-" + threadNumber.getAndIncrement() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+
     private final class TaskBuilder extends SystemComponentBuilder {
         
         private TaskBuilder( Class<? extends Task> componentType ) {
@@ -0,0 +1,71 @@
+package com.inari.firefly.entity;
+
+import com.inari.commons.lang.aspect.Aspects;
+import com.inari.firefly.system.FFContext;
+import com.inari.firefly.system.utils.Condition;
+import com.inari.firefly.system.utils.Trigger;
+import com.inari.firefly.system.utils.Triggerer;
+
+/** A Trigger that triggers when an entity that has at least the specified component aspects gets activated
+ *  or deactivated. It is subscribed to the EntityActivationEvent and only called for matching entities,
+ *  so it has no cost as long as no such entity changes.
+ */
+public final class EntityActivationTrigger extends Trigger implements EntityActivationListener {
+
+    public enum Type {
+        ACTIVATED,
+        DEACTIVATED
+    }
+
+    private final Aspects aspects;
+    private final Type triggerType;
+
+    public EntityActivationTrigger( Aspects aspects, Type triggerType ) {
+        this( aspects, triggerType, null );
+    }
+
+    public EntityActivationTrigger( Aspects aspects, Type triggerType, Condition condition ) {
+        super( condition );
+        this.aspects = aspects;
+        this.triggerType = triggerType;
+    }
+
+    @Override
+    public final void register( FFContext context, int componentId, Triggerer triggerer ) {
+        super.register( context, componentId, triggerer );
+        context.registerListener( EntityActivationEvent.TYPE_KEY, this );
+    }
+
+    @Override
+    public final void dispose( FFContext context ) {
+        context.disposeListener( EntityActivationEvent.TYPE_KEY, this );
+    }
+
+    @Override
+    public final boolean match( Aspects aspects ) {
+        return aspects.include( this.aspects );
+    }
+
+    @Override
+    public final void entityActivated( int entityId, Aspects aspects ) {
+        if ( triggerType == Type.ACTIVATED ) {
+            trigger();
+        }
+    }
+
+    @Override
+    public final void entityDeactivated( int entityId, Aspects aspects ) {
+        if ( triggerType == Type.DEACTIVATED ) {
+            trigger();
+        }
+    }
+
+    private void trigger() {
+        if ( condition != null && !condition.check( context ) ) {
+            return;
+        }
+
+        triggerer.trigger( context, componentId );
+    }
+
+}
@@ -1,8 +1,8 @@
 package com.inari.firefly.graphics;
 
+import com.inari.commons.geom.Rectangle;
 import com.inari.firefly.entity.EntitySystem;
 import com.inari.firefly.graphics.shape.EShape;
-import com.inari.firefly.system.RenderEvent;
 import com.inari.firefly.system.RenderEventListener;
 import com.inari.firefly.system.component.SystemComponent;
 import com.inari.firefly.system.external.FFGraphics;
@@ -12,6 +12,9 @@ public abstract class BaseRenderer extends SystemComponent implements RenderEven
 
     protected FFGraphics graphics;
     protected EntitySystem entitySystem;
+    protected RenderPlan renderPlan;
+    
+    private final RenderBounds clipBounds = new RenderBounds();
 
     //protected final TransformDataCollector transformCollector = new TransformDataCollector();
 
@@ -25,16 +28,30 @@ public abstract class BaseRenderer extends SystemComponent implements RenderEven
         
         graphics = context.getGraphics();
         entitySystem = context.getSystem( EntitySystem.SYSTEM_KEY );
-        context.registerListener( RenderEvent.TYPE_KEY, this );
+        renderPlan = context.getSystem( RenderPlan.SYSTEM_KEY );
+        renderPlan.register( this );
     }
 
     @Override
     public void dispose() {
-        context.disposeListener( RenderEvent.TYPE_KEY, this );
+        renderPlan.unregister( this );
         
         super.dispose();
     };
     
+    /** Indicates if this renderer has something to render for the specified View and Layer. This is used by the
+     *  {@link RenderPlan} to skip this renderer for View/Layer pairs without content. The default implementation
+     *  always returns true. A renderer that overrides this must make sure the {@link RenderPlan} gets invalidated
+     *  whenever the result of this method may change.
+     *  
+     * @param viewId the id of the View
+     * @param layerId the id of the Layer
+     * @return true if this renderer has content for the specified View and Layer
+     */
+    public boolean hasContent( int viewId, int layerId ) {
+        return true;
+    }
+    
     protected final void render( final SpriteRenderable sprite, final TransformDataCollector transformCollector ) {
         graphics.renderSprite( sprite, transformCollector );
     }
@@ -47,6 +64,30 @@ public abstract class BaseRenderer extends SystemComponent implements RenderEven
         graphics.renderSprite( sprite, transformCollector );
     }
     
+    /** Renders the sprite for each of the first count x/y offset pairs of the packed positions with one instanced draw.
+     *  The parent transforms are resolved only once for all instances
+     */
+    protected final void render( final SpriteRenderable sprite, final int parentId, final TransformDataCollector transformCollector, final float[] positions, final int count ) {
+        if ( parentId >= 0 ) {
+            collectTransformData( parentId, transformCollector );
+        }
+        
+        render( sprite, transformCollector, positions, count );
+    }
+    
+    /** Renders the sprite for each of the first count x/y offset pairs of the packed positions with one instanced draw */
+    protected final void render( final SpriteRenderable sprite, final TransformDataCollector transformCollector, final float[] positions, final int count ) {
+        if ( count <= 0 ) {
+            return;
+        }
+        
+        graphics.renderSprites( sprite, transformCollector, positions, count );
+    }
+    
+    protected final void render( final EShape shape, final TransformDataCollector transformCollector ) {
+        graphics.renderShape( shape, transformCollector );
+    }
+    
     protected final void render( final EShape shape, final int parentId, final TransformDataCollector transformCollector ) {
         if ( parentId >= 0 ) {
             collectTransformData( parentId, transformCollector );
@@ -55,7 +96,32 @@ public abstract class BaseRenderer extends SystemComponent implements RenderEven
         graphics.renderShape( shape,transformCollector );
     }
     
-    private void collectTransformData( final int parentId, final TransformDataCollector transformCollector ) {
+    /** Indicates whether the specified local region of a renderable, transformed by the specified TransformData,
+     *  overlaps the clip of the RenderEvent. Renderers use this to skip renderables outside the clip
+     */
+    protected final boolean isInClip( final TransformData transform, float x, float y, float width, float height, final Rectangle clip ) {
+        clipBounds.set( x, y, width, height );
+        clipBounds.transform( transform );
+        return clipBounds.intersects( clip );
+    }
+    
+    /** Indicates whether the local region of the specified shape, transformed by the specified TransformData,
+     *  overlaps the clip of the RenderEvent. A shape without vertices is always within the clip
+     */
+    protected final boolean isInClip( final TransformData transform, final EShape shape, final Rectangle clip ) {
+        if ( !clipBounds.set( shape ) ) {
+            return true;
+        }
+        clipBounds.transform( transform );
+        return clipBounds.intersects( clip );
+    }
+    
+    /** Adds the transforms of the parent with the specified id and all its parents to the TransformDataCollector */
+    protected final void collectTransformData( final int parentId, final TransformDataCollector transformCollector ) {
+        if ( parentId < 0 ) {
+            return;
+        }
+        
         ETransform parentTransform = entitySystem.getComponent( parentId, ETransform.TYPE_KEY );
         if ( parentTransform != null ) {
             transformCollector.add( parentTransform );
@@ -72,7 +138,7 @@ public abstract class BaseRenderer extends SystemComponent implements RenderEven
         void add( ETransform transform );
     }
 
-    protected final class ExactTransformDataCollector implements TransformDataCollector {
+    public static final class ExactTransformDataCollector implements TransformDataCollector {
 
         public float xpos, ypos;
         public float pivotx, pivoty;
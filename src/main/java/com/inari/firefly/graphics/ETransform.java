@@ -15,6 +15,7 @@
  ******************************************************************************/ 
 package com.inari.firefly.graphics;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
@@ -24,7 +25,9 @@ import com.inari.commons.lang.indexed.IIndexedTypeKey;
 import com.inari.firefly.component.attr.AttributeKey;
 import com.inari.firefly.component.attr.AttributeMap;
 import com.inari.firefly.entity.EntityComponent;
+import com.inari.firefly.graphics.BaseRenderer.ExactTransformDataCollector;
 import com.inari.firefly.graphics.view.Layer;
+import com.inari.firefly.graphics.view.LayerCache;
 import com.inari.firefly.graphics.view.View;
 import com.inari.firefly.physics.animation.EntityFloatAnimationAdapter;
 import com.inari.firefly.physics.animation.FloatAnimation;
@@ -69,6 +72,18 @@ public final class ETransform extends EntityComponent {
     private float rotation;
     private int parentId;
     
+    // scratch objects to mark the world bounds of a transform dirty, transforms are only changed on the update thread
+    private static final ExactTransformDataCollector DIRTY_TRANSFORM = new ExactTransformDataCollector();
+    private static final RenderBounds DIRTY_BOUNDS = new RenderBounds();
+
+    // the cache of the Layer if the entity is active on a cached Layer, set by the LayerCacheSystem
+    LayerCache layerCache;
+    // the local region of the renderable of the entity on a cached Layer. The width is negative if the region is unknown
+    float boundsX, boundsY, boundsWidth, boundsHeight;
+    // the transform of the parent and the transforms of the active children, linked by the LayerCacheSystem
+    ETransform parentTransform;
+    ArrayList<ETransform> childTransforms;
+    
     ETransform() {
         super( TYPE_KEY );
         position = new PositionF();
@@ -88,6 +103,9 @@ public final class ETransform extends EntityComponent {
         scaley = 1;
         rotation = 0;
         parentId = -1;
+        layerCache = null;
+        boundsWidth = -1;
+        unlinkTransforms();
     }
     
     public final int getViewId() {
@@ -111,7 +129,9 @@ public final class ETransform extends EntityComponent {
     }
 
     public final void setXpos( float xpos ) {
+        markCacheDirty();
         position.x = xpos;
+        markCacheDirty();
     }
 
     public final float getYpos() {
@@ -119,7 +139,9 @@ public final class ETransform extends EntityComponent {
     }
 
     public final void setYpos( float ypos ) {
+        markCacheDirty();
         position.y = ypos;
+        markCacheDirty();
     }
 
     public final float getPivotx() {
@@ -127,7 +149,9 @@ public final class ETransform extends EntityComponent {
     }
 
     public final void setPivotx( float pivotx ) {
+        markCacheDirty();
         pivotPosition.x = pivotx;
+        markCacheDirty();
     }
 
     public final float getPivoty() {
@@ -135,12 +159,16 @@ public final class ETransform extends EntityComponent {
     }
 
     public final void setPivoty( float pivoty ) {
+        markCacheDirty();
         pivotPosition.y = pivoty;
+        markCacheDirty();
     }
 
     public final void move( final float dx, final float dy ) {
+        markCacheDirty();
         position.x += dx;
         position.y += dy;
+        markCacheDirty();
     }
 
     public final float getScalex() {
@@ -148,7 +176,9 @@ public final class ETransform extends EntityComponent {
     }
 
     public final void setScalex( float scalex ) {
+        markCacheDirty();
         this.scalex = scalex;
+        markCacheDirty();
     }
 
     public final float getScaley() {
@@ -156,7 +186,9 @@ public final class ETransform extends EntityComponent {
     }
 
     public final void setScaley( float scaley ) {
+        markCacheDirty();
         this.scaley = scaley;
+        markCacheDirty();
     }
 
     public final float getRotation() {
@@ -164,7 +196,9 @@ public final class ETransform extends EntityComponent {
     }
 
     public final void setRotation( float rotation ) {
+        markCacheDirty();
         this.rotation = rotation;
+        markCacheDirty();
     }
 
     public final int getParentId() {
@@ -175,6 +209,58 @@ public final class ETransform extends EntityComponent {
         this.parentId = parentId;
     }
 
+    // marks the world bounds of the renderable of this transform dirty and the bounds of all children, 
+    // because a child is rendered relative to its parent
+    final void markCacheDirty() {
+        if ( layerCache != null ) {
+            DIRTY_TRANSFORM.set( this );
+            for ( ETransform parent = parentTransform; parent != null; parent = parent.parentTransform ) {
+                DIRTY_TRANSFORM.add( parent );
+            }
+            
+            if ( boundsWidth < 0 ) {
+                layerCache.markDirty( DIRTY_TRANSFORM.getXOffset(), DIRTY_TRANSFORM.getYOffset() );
+            } else {
+                DIRTY_BOUNDS.set( boundsX, boundsY, boundsWidth, boundsHeight );
+                DIRTY_BOUNDS.transform( DIRTY_TRANSFORM );
+                layerCache.markDirty( DIRTY_BOUNDS );
+            }
+        }
+        
+        if ( childTransforms != null ) {
+            for ( int i = 0; i < childTransforms.size(); i++ ) {
+                childTransforms.get( i ).markCacheDirty();
+            }
+        }
+    }
+    
+    final void linkParent( ETransform parent ) {
+        parentTransform = parent;
+        if ( parent.childTransforms == null ) {
+            parent.childTransforms = new ArrayList<ETransform>();
+        }
+        parent.childTransforms.add( this );
+    }
+    
+    final void unlinkParent() {
+        if ( parentTransform == null ) {
+            return;
+        }
+        
+        parentTransform.childTransforms.remove( this );
+        parentTransform = null;
+    }
+    
+    private void unlinkTransforms() {
+        unlinkParent();
+        if ( childTransforms != null ) {
+            for ( int i = 0; i < childTransforms.size(); i++ ) {
+                childTransforms.get( i ).parentTransform = null;
+            }
+            childTransforms.clear();
+        }
+    }
+
     @Override
     public final Set<AttributeKey<?>> attributeKeys() {
         return new HashSet<AttributeKey<?>>( Arrays.asList( ATTRIBUTE_KEYS ) );
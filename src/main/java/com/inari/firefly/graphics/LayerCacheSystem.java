@@ -0,0 +1,167 @@
+package com.inari.firefly.graphics;
+
+import com.inari.commons.geom.Rectangle;
+import com.inari.commons.lang.aspect.Aspects;
+import com.inari.commons.lang.indexed.IndexedTypeKey;
+import com.inari.firefly.FFInitException;
+import com.inari.firefly.entity.EntityActivationEvent;
+import com.inari.firefly.entity.EntityActivationListener;
+import com.inari.firefly.entity.EntitySystem;
+import com.inari.firefly.graphics.shape.EShape;
+import com.inari.firefly.graphics.sprite.ESprite;
+import com.inari.firefly.graphics.sprite.ESpriteMultiplier;
+import com.inari.firefly.graphics.sprite.SpriteViewSystem;
+import com.inari.firefly.graphics.tile.ETile;
+import com.inari.firefly.graphics.view.Layer;
+import com.inari.firefly.graphics.view.LayerCache;
+import com.inari.firefly.graphics.view.ViewSystem;
+import com.inari.firefly.system.FFContext;
+import com.inari.firefly.system.FFSystem;
+
+/** Connects the ETransform of entities that get activated on a cached {@link Layer} with the {@link LayerCache}
+ *  of the Layer so that moves of the entity mark the affected chunks of the cache dirty. Activation and deactivation
+ *  of such an entity also marks the chunks of its bounds dirty.
+ *  <p>
+ *  The bounds of an entity are the region of its sprite, sprite multiplier or shape, transformed by the ETransform
+ *  of the entity and its parents. If the region is unknown, a region of the dirty margin of the Layer around the
+ *  position of the entity is used. The ETransform of an active entity is linked to the ETransform of its parent so 
+ *  that a move of the parent also marks the bounds of its children dirty.
+ *  <p>
+ *  Tile entities are not connected here because the chunks of their cells are marked dirty by the TileGrid.
+ */
+public final class LayerCacheSystem implements FFSystem, EntityActivationListener {
+
+    public static final FFSystemTypeKey<LayerCacheSystem> SYSTEM_KEY = FFSystemTypeKey.create( LayerCacheSystem.class );
+
+    private EntitySystem entitySystem;
+    private ViewSystem viewSystem;
+    private SpriteViewSystem spriteViewSystem;
+    private final RenderBounds shapeBounds = new RenderBounds();
+
+    LayerCacheSystem() {}
+
+    @Override
+    public final IndexedTypeKey indexedTypeKey() {
+        return SYSTEM_KEY;
+    }
+
+    @Override
+    public final FFSystemTypeKey<LayerCacheSystem> systemTypeKey() {
+        return SYSTEM_KEY;
+    }
+
+    @Override
+    public final void init( FFContext context ) throws FFInitException {
+        entitySystem = context.getSystem( EntitySystem.SYSTEM_KEY );
+        viewSystem = context.getSystem( ViewSystem.SYSTEM_KEY );
+        spriteViewSystem = context.getSystem( SpriteViewSystem.SYSTEM_KEY );
+
+        context.registerListener( EntityActivationEvent.TYPE_KEY, this );
+    }
+
+    @Override
+    public final void dispose( FFContext context ) {
+        context.disposeListener( EntityActivationEvent.TYPE_KEY, this );
+    }
+
+    /** Get the cache of the specified Layer of the specified View or null if there is no such Layer or the Layer is not cached */
+    public final LayerCache getCache( int viewId, int layerId ) {
+        if ( !viewSystem.isLayeringEnabled( viewId ) ) {
+            return null;
+        }
+
+        Layer layer = viewSystem.getLayer( layerId );
+        if ( layer == null || layer.getViewId() != viewId ) {
+            return null;
+        }
+
+        return layer.getCache();
+    }
+    
+    /** Updates the bounds of an active entity on a cached Layer after the size of its renderable has changed,
+     *  for example because of another sprite or changed shape vertices. The chunks of the old and the new bounds
+     *  are marked dirty
+     */
+    public final void updateBounds( int entityId ) {
+        final ETransform transform = entitySystem.getComponent( entityId, ETransform.TYPE_KEY );
+        if ( transform == null || transform.layerCache == null ) {
+            return;
+        }
+        
+        transform.markCacheDirty();
+        setBounds( entityId, transform );
+        transform.markCacheDirty();
+    }
+
+    @Override
+    public final boolean match( Aspects aspects ) {
+        return aspects.contains( ETransform.TYPE_KEY ) && !aspects.contains( ETile.TYPE_KEY );
+    }
+
+    @Override
+    public final void entityActivated( int entityId, Aspects aspects ) {
+        final ETransform transform = entitySystem.getComponent( entityId, ETransform.TYPE_KEY );
+        final int parentId = transform.getParentId();
+        if ( entitySystem.isActive( parentId ) || entitySystem.isRestored( parentId ) ) {
+            final ETransform parent = entitySystem.getComponent( parentId, ETransform.TYPE_KEY );
+            if ( parent != null ) {
+                transform.linkParent( parent );
+            }
+        }
+        
+        final LayerCache cache = getCache( transform.getViewId(), transform.getLayerId() );
+        if ( cache == null ) {
+            return;
+        }
+
+        transform.layerCache = cache;
+        setBounds( entityId, transform );
+        transform.markCacheDirty();
+    }
+
+    @Override
+    public final void entityDeactivated( int entityId, Aspects aspects ) {
+        final ETransform transform = entitySystem.getComponent( entityId, ETransform.TYPE_KEY );
+        if ( transform.layerCache != null ) {
+            transform.markCacheDirty();
+            transform.layerCache = null;
+            transform.boundsWidth = -1;
+        }
+        transform.unlinkParent();
+    }
+    
+    private void setBounds( int entityId, ETransform transform ) {
+        transform.boundsWidth = -1;
+        
+        final ESprite sprite = entitySystem.getComponent( entityId, ESprite.TYPE_KEY );
+        if ( sprite != null ) {
+            final Rectangle region = spriteViewSystem.getSpriteRegion( sprite.getSpriteId() );
+            if ( region == null ) {
+                return;
+            }
+            
+            final ESpriteMultiplier multiplier = entitySystem.getComponent( entityId, ESpriteMultiplier.TYPE_KEY );
+            if ( multiplier != null ) {
+                transform.boundsX = multiplier.getMinX();
+                transform.boundsY = multiplier.getMinY();
+                transform.boundsWidth = multiplier.getMaxX() - multiplier.getMinX() + region.width;
+                transform.boundsHeight = multiplier.getMaxY() - multiplier.getMinY() + region.height;
+            } else {
+                transform.boundsX = 0;
+                transform.boundsY = 0;
+                transform.boundsWidth = region.width;
+                transform.boundsHeight = region.height;
+            }
+            return;
+        }
+        
+        final EShape shape = entitySystem.getComponent( entityId, EShape.TYPE_KEY );
+        if ( shape != null && shapeBounds.set( shape ) ) {
+            transform.boundsX = shapeBounds.x;
+            transform.boundsY = shapeBounds.y;
+            transform.boundsWidth = shapeBounds.width;
+            transform.boundsHeight = shapeBounds.height;
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.inari.firefly.graphics;
+
+import com.inari.commons.geom.Rectangle;
+import com.inari.firefly.system.external.ShapeData;
+import com.inari.firefly.system.external.TransformData;
+
+/** An axis aligned region that bounds a renderable. The region is first set to the local region of the renderable
+ *  and then transformed into world coordinates by the TransformData of the renderable the same way it is rendered:
+ *  scaled and rotated around the pivot and moved by the offset.
+ *  <p>
+ *  This is used to cull renderables against the clip of a RenderEvent and to mark the chunks of a cached Layer dirty.
+ */
+public final class RenderBounds {
+
+    public float x, y, width, height;
+
+    public final void set( float x, float y, float width, float height ) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /** Sets the local region of the specified shape.
+     *
+     * @param shape the shape
+     * @return false if the shape has no vertices and the region is unknown
+     */
+    public final boolean set( ShapeData shape ) {
+        final float[] vertices = shape.getVertices();
+        if ( vertices == null || vertices.length < 2 ) {
+            return false;
+        }
+
+        switch ( shape.getShapeType() ) {
+            case RECTANGLE: {
+                if ( vertices.length >= 4 ) {
+                    set( vertices[ 0 ], vertices[ 1 ], vertices[ 2 ], vertices[ 3 ] );
+                    return true;
+                }
+                break;
+            }
+            case CIRCLE:
+            case ARC:
+            case CONE: {
+                if ( vertices.length >= 3 ) {
+                    final float radius = Math.abs( vertices[ 2 ] );
+                    set( vertices[ 0 ] - radius, vertices[ 1 ] - radius, 2 * radius, 2 * radius );
+                    return true;
+                }
+                break;
+            }
+            default: {}
+        }
+
+        float minX = vertices[ 0 ], minY = vertices[ 1 ], maxX = minX, maxY = minY;
+        for ( int i = 2; i + 1 < vertices.length; i += 2 ) {
+            minX = Math.min( minX, vertices[ i ] );
+            minY = Math.min( minY, vertices[ i + 1 ] );
+            maxX = Math.max( maxX, vertices[ i ] );
+            maxY = Math.max( maxY, vertices[ i + 1 ] );
+        }
+        set( minX, minY, maxX - minX, maxY - minY );
+        return true;
+    }
+
+    /** Transforms the local region into world coordinates by the specified TransformData */
+    public final void transform( TransformData transform ) {
+        if ( !transform.hasScale() && !transform.hasRotation() ) {
+            x += transform.getXOffset();
+            y += transform.getYOffset();
+            return;
+        }
+
+        final float pivotX = transform.getPivotX();
+        final float pivotY = transform.getPivotY();
+        final float scaleX = transform.getScaleX();
+        final float scaleY = transform.getScaleY();
+        final double angle = Math.toRadians( transform.getRotation() );
+        final float cos = (float) Math.cos( angle );
+        final float sin = (float) Math.sin( angle );
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for ( int corner = 0; corner < 4; corner++ ) {
+            final float dx = ( ( ( corner & 1 ) == 0 )? x : x + width ) - pivotX;
+            final float dy = ( ( ( corner & 2 ) == 0 )? y : y + height ) - pivotY;
+            final float cornerX = pivotX + dx * scaleX * cos - dy * scaleY * sin;
+            final float cornerY = pivotY + dx * scaleX * sin + dy * scaleY * cos;
+            minX = Math.min( minX, cornerX );
+            minY = Math.min( minY, cornerY );
+            maxX = Math.max( maxX, cornerX );
+            maxY = Math.max( maxY, cornerY );
+        }
+
+        set( minX + transform.getXOffset(), minY + transform.getYOffset(), maxX - minX, maxY - minY );
+    }
+
+    /** Indicates whether this region overlaps or touches the specified clip */
+    public final boolean intersects( Rectangle clip ) {
+        return x <= clip.x + clip.width && x + width >= clip.x && y <= clip.y + clip.height && y + height >= clip.y;
+    }
+
+    @Override
+    public final String toString() {
+        return "RenderBounds [x=" + x + ", y=" + y + ", width=" + width + ", height=" + height + "]";
+    }
+
+}
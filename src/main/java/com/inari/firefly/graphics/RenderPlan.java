@@ -0,0 +1,144 @@
+package com.inari.firefly.graphics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.inari.commons.lang.indexed.IndexedTypeKey;
+import com.inari.commons.lang.list.DynArray;
+import com.inari.firefly.FFInitException;
+import com.inari.firefly.graphics.view.ViewEvent;
+import com.inari.firefly.graphics.view.ViewEventListener;
+import com.inari.firefly.system.FFContext;
+import com.inari.firefly.system.FFSystem;
+
+/** The RenderPlan holds all registered {@link BaseRenderer} and lists for each View/Layer pair the renderers that
+ *  actually have content to render for the pair. The render loop only calls the listed renderers instead of notifying
+ *  every renderer for every View and Layer.
+ *  <p>
+ *  The list of a View/Layer pair is calculated on demand and cached until the plan gets invalidated. The plan is
+ *  invalidated when a renderer is registered or unregistered, or when a system that feeds a renderer signals a change
+ *  of its content registrations by calling {@link #invalidate()}. This is usually done when the content for a View/Layer
+ *  pair changes from empty to not empty or vice versa.
+ */
+public final class RenderPlan implements FFSystem, ViewEventListener {
+
+    public static final FFSystemTypeKey<RenderPlan> SYSTEM_KEY = FFSystemTypeKey.create( RenderPlan.class );
+
+    private final List<BaseRenderer> renderer;
+    private final DynArray<DynArray<RenderPass>> passesPerViewAndLayer;
+    private int version = 0;
+
+    RenderPlan() {
+        renderer = new ArrayList<BaseRenderer>();
+        passesPerViewAndLayer = DynArray.createTyped( DynArray.class, 10, 10 );
+    }
+
+    @Override
+    public final IndexedTypeKey indexedTypeKey() {
+        return SYSTEM_KEY;
+    }
+
+    @Override
+    public final FFSystemTypeKey<RenderPlan> systemTypeKey() {
+        return SYSTEM_KEY;
+    }
+
+    @Override
+    public final void init( FFContext context ) throws FFInitException {
+        context.registerListener( ViewEvent.TYPE_KEY, this );
+    }
+
+    @Override
+    public final void dispose( FFContext context ) {
+        context.disposeListener( ViewEvent.TYPE_KEY, this );
+        renderer.clear();
+        passesPerViewAndLayer.clear();
+    }
+
+    public final void register( BaseRenderer baseRenderer ) {
+        if ( renderer.contains( baseRenderer ) ) {
+            return;
+        }
+
+        renderer.add( baseRenderer );
+        invalidate();
+    }
+
+    public final void unregister( BaseRenderer baseRenderer ) {
+        if ( renderer.remove( baseRenderer ) ) {
+            invalidate();
+        }
+    }
+
+    /** Invalidates all cached View/Layer render passes. They are recalculated on next request */
+    public final void invalidate() {
+        version++;
+    }
+
+    /** Use this to get the renderers that have content to render for the specified View and Layer.
+     *  The result is cached and only recalculated if the plan was invalidated since the last request.
+     *
+     * @param viewId the id of the View
+     * @param layerId the id of the Layer or 0 if layering is not enabled for the View
+     * @return the renderers that have content for the specified View and Layer in registration order
+     */
+    public final List<BaseRenderer> getRenderers( int viewId, int layerId ) {
+        RenderPass pass = getPass( viewId, layerId );
+        if ( pass.version != version ) {
+            pass.renderer.clear();
+            for ( int i = 0; i < renderer.size(); i++ ) {
+                BaseRenderer r = renderer.get( i );
+                if ( r.hasContent( viewId, layerId ) ) {
+                    pass.renderer.add( r );
+                }
+            }
+            pass.version = version;
+        }
+
+        return pass.renderer;
+    }
+
+    @Override
+    public final void onViewEvent( ViewEvent event ) {
+        if ( event.isOfType( ViewEvent.Type.VIEW_DELETED ) ) {
+            passesPerViewAndLayer.remove( event.getView().index() );
+        }
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append( "RenderPlan [renderer=" );
+        builder.append( renderer.size() );
+        builder.append( ", version=" );
+        builder.append( version );
+        builder.append( "]" );
+        return builder.toString();
+    }
+
+    private RenderPass getPass( int viewId, int layerId ) {
+        DynArray<RenderPass> passesPerLayer;
+        if ( passesPerViewAndLayer.contains( viewId ) ) {
+            passesPerLayer = passesPerViewAndLayer.get( viewId );
+        } else {
+            passesPerLayer = DynArray.create( RenderPass.class, 10, 10 );
+            passesPerViewAndLayer.set( viewId, passesPerLayer );
+        }
+
+        RenderPass pass;
+        if ( passesPerLayer.contains( layerId ) ) {
+            pass = passesPerLayer.get( layerId );
+        } else {
+            pass = new RenderPass();
+            passesPerLayer.set( layerId, pass );
+        }
+
+        return pass;
+    }
+
+    private static final class RenderPass {
+        int version = -1;
+        final List<BaseRenderer> renderer = new ArrayList<BaseRenderer>();
+    }
+
+}
@@ -103,6 +103,12 @@ public final class TextureAsset extends Asset implements TextureData {
         attributes.put( RESOURCE_NAME, resourceName );
     }
 
+    @Override
+    protected final long estimateSize() {
+        // four bytes per pixel
+        return 4L * width * height;
+    }
+
     @Override
     public final Disposable load( FFContext context ) {
         if ( loaded ) {
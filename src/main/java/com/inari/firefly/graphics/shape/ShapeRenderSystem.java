@@ -1,5 +1,6 @@
 package com.inari.firefly.graphics.shape;
 
+import com.inari.commons.geom.Rectangle;
 import com.inari.commons.lang.aspect.Aspects;
 import com.inari.commons.lang.indexed.IIndexedTypeKey;
 import com.inari.commons.lang.indexed.IndexedTypeKey;
@@ -11,6 +12,7 @@ import com.inari.firefly.entity.EntityActivationListener;
 import com.inari.firefly.entity.EntitySystem;
 import com.inari.firefly.graphics.BaseRenderer;
 import com.inari.firefly.graphics.ETransform;
+import com.inari.firefly.graphics.RenderPlan;
 import com.inari.firefly.system.FFContext;
 import com.inari.firefly.system.FFSystem;
 import com.inari.firefly.system.RenderEvent;
@@ -26,6 +28,7 @@ public final class ShapeRenderSystem
     
     private EntitySystem entitySystem;
     private final DynArray<DynArray<IntBag>> shapesPerViewAndLayer;
+    private RenderPlan renderPlan;
     private ShapeRenderer shapeRenderer;
     
     
@@ -46,15 +49,14 @@ public final class ShapeRenderSystem
     @Override
     public final void init( FFContext context ) throws FFInitException {
         entitySystem = context.getSystem( EntitySystem.SYSTEM_KEY );
+        renderPlan = context.getSystem( RenderPlan.SYSTEM_KEY );
         shapeRenderer = new ShapeRenderer( context );
         
-        context.registerListener( RenderEvent.TYPE_KEY, shapeRenderer );
         context.registerListener( EntityActivationEvent.TYPE_KEY, this );
     }
     
     @Override
     public final void dispose( FFContext context ) {
-        context.disposeListener( RenderEvent.TYPE_KEY, shapeRenderer );
         context.disposeListener( EntityActivationEvent.TYPE_KEY, this );
         
         shapeRenderer.dispose();
@@ -68,13 +70,20 @@ public final class ShapeRenderSystem
     public final void entityActivated( int entityId, final Aspects aspects ) {
         final ETransform transform = entitySystem.getComponent( entityId, ETransform.TYPE_KEY );
         final IntBag renderablesOfView = getShapeIds( transform.getViewId(), transform.getLayerId(), true );
+        final boolean wasEmpty = renderablesOfView.isEmpty();
         renderablesOfView.add( entityId );
+        if ( wasEmpty ) {
+            renderPlan.invalidate();
+        }
     }
     
     public final void entityDeactivated( int entityId, final Aspects aspects ) {
         final ETransform transform = entitySystem.getComponent( entityId, ETransform.TYPE_KEY );
         final IntBag renderablesOfView = getShapeIds( transform.getViewId(), transform.getLayerId(), false );
         renderablesOfView.remove( entityId );
+        if ( renderablesOfView.isEmpty() ) {
+            renderPlan.invalidate();
+        }
     }
     
     private final IntBag getShapeIds( int viewId, int layerId, boolean createNew ) {
@@ -112,6 +121,12 @@ public final class ShapeRenderSystem
             init();
         }
 
+        @Override
+        public final boolean hasContent( int viewId, int layerId ) {
+            final IntBag shapeIds = getShapeIds( viewId, layerId, false );
+            return shapeIds != null && !shapeIds.isEmpty();
+        }
+
         @Override
         public final void render( RenderEvent event ) {
             IntBag shapeIds = getShapeIds( event.getViewId(), event.getLayerId(), false );
@@ -119,6 +134,7 @@ public final class ShapeRenderSystem
                 return;
             }
             
+            final Rectangle clip = event.getClip();
             final int nullValue = shapeIds.getNullValue();
             for ( int i = 0; i < shapeIds.length(); i++ ) {
                 int entityId = shapeIds.get( i );
@@ -129,7 +145,11 @@ public final class ShapeRenderSystem
                 EShape shape = entitySystem.getComponent( entityId, EShape.TYPE_KEY );
                 ETransform transform = entitySystem.getComponent( entityId, ETransform.TYPE_KEY );
                 transformCollector.set( transform );
-                render( shape, transform.getParentId(), transformCollector );
+                collectTransformData( transform.getParentId(), transformCollector );
+                if ( !isInClip( transformCollector, shape, clip ) ) {
+                    continue;
+                }
+                render( shape, transformCollector );
             }
         }
 
@@ -60,6 +60,9 @@ public final class ESprite extends EntityComponent implements SpriteRenderable {
     private BlendMode blendMode;
     private int shaderId;
     
+    // the SpriteAsset that is referenced while the entity is active
+    int spriteAssetId = -1;
+    
     
     public ESprite() {
         super( TYPE_KEY );
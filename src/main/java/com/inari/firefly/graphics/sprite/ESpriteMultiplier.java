@@ -10,47 +10,185 @@ import com.inari.firefly.component.attr.AttributeKey;
 import com.inari.firefly.component.attr.AttributeMap;
 import com.inari.firefly.entity.EntityComponent;
 
+/** Renders the sprite of an entity multiple times, once for each position. The positions are offsets to the
+ *  position of the entities transform and are stored packed as x/y pairs in a float array so that they can
+ *  be submitted as one instanced draw without any conversion.
+ */
 public final class ESpriteMultiplier extends EntityComponent {
-    
+
     public static final EntityComponentTypeKey<ESpriteMultiplier> TYPE_KEY = EntityComponentTypeKey.create( ESpriteMultiplier.class );
-    
+
     public static final AttributeKey<DynArray<PositionF>> MULTI_POSITIONS = AttributeKey.createDynArray( "positions", ESpriteMultiplier.class );
-    private static final AttributeKey<?>[] ATTRIBUTE_KEYS = new AttributeKey[] { 
+    private static final AttributeKey<?>[] ATTRIBUTE_KEYS = new AttributeKey[] {
         MULTI_POSITIONS
     };
+
+    private static final int INITIAL_CAPACITY = 20;
+
+    private float[] positions;
+    private int size;
     
-    private final DynArray<PositionF> positions;
-    
+    // the bounds of all positions, updated on demand after the positions have changed
+    private float minX, minY, maxX, maxY;
+    private boolean boundsValid;
+
     public ESpriteMultiplier() {
         super( TYPE_KEY );
-        positions = DynArray.create( PositionF.class, 20, 10 );
+        positions = new float[ INITIAL_CAPACITY * 2 ];
+        size = 0;
     }
 
     @Override
     public final void resetAttributes() {
-        positions.clear();
+        size = 0;
+        boundsValid = false;
+    }
+
+    /** Get the number of positions */
+    public final int size() {
+        return size;
+    }
+
+    public final float getX( int index ) {
+        checkIndex( index );
+        return positions[ index * 2 ];
     }
 
-    public final DynArray<PositionF> getPositions() {
+    public final float getY( int index ) {
+        checkIndex( index );
+        return positions[ index * 2 + 1 ];
+    }
+
+    /** Get the packed positions as x/y pairs. Only the first size() pairs are valid. Don't keep a reference
+     *  to the returned array because it is replaced when the capacity is exceeded
+     */
+    public final float[] getPackedPositions() {
         return positions;
     }
     
+    /** Get the smallest x offset of all positions or 0 if there are no positions */
+    public final float getMinX() {
+        updateBounds();
+        return minX;
+    }
+    
+    /** Get the smallest y offset of all positions or 0 if there are no positions */
+    public final float getMinY() {
+        updateBounds();
+        return minY;
+    }
+    
+    /** Get the largest x offset of all positions or 0 if there are no positions */
+    public final float getMaxX() {
+        updateBounds();
+        return maxX;
+    }
+    
+    /** Get the largest y offset of all positions or 0 if there are no positions */
+    public final float getMaxY() {
+        updateBounds();
+        return maxY;
+    }
+
+    public final int add( float x, float y ) {
+        ensureCapacity( size + 1 );
+        positions[ size * 2 ] = x;
+        positions[ size * 2 + 1 ] = y;
+        boundsValid = false;
+        return size++;
+    }
+
+    public final void set( int index, float x, float y ) {
+        checkIndex( index );
+        positions[ index * 2 ] = x;
+        positions[ index * 2 + 1 ] = y;
+        boundsValid = false;
+    }
+
+    /** Removes the position at the specified index. The following positions are shifted to keep the rendering order */
+    public final void remove( int index ) {
+        checkIndex( index );
+        System.arraycopy( positions, ( index + 1 ) * 2, positions, index * 2, ( size - index - 1 ) * 2 );
+        size--;
+        boundsValid = false;
+    }
+
+    /** Replaces all positions with the specified number of x/y pairs from the specified packed positions */
+    public final void setPackedPositions( float[] packedPositions, int count ) {
+        ensureCapacity( count );
+        System.arraycopy( packedPositions, 0, positions, 0, count * 2 );
+        size = count;
+        boundsValid = false;
+    }
+
+    public final void clear() {
+        size = 0;
+        boundsValid = false;
+    }
+
     @Override
     public final Set<AttributeKey<?>> attributeKeys() {
         return new HashSet<AttributeKey<?>>( Arrays.asList( ATTRIBUTE_KEYS ) );
     }
-    
+
     @Override
     public final void fromAttributes( AttributeMap attributes ) {
-        positions.clear();
+        size = 0;
+        boundsValid = false;
         if ( attributes.contains( MULTI_POSITIONS ) ) {
-            positions.addAll( attributes.getValue( MULTI_POSITIONS ) );
+            DynArray<PositionF> multiPositions = attributes.getValue( MULTI_POSITIONS );
+            for ( int i = 0; i < multiPositions.capacity(); i++ ) {
+                PositionF pos = multiPositions.get( i );
+                if ( pos != null ) {
+                    add( pos.x, pos.y );
+                }
+            }
         }
     }
 
     @Override
     public final void toAttributes( AttributeMap attributes ) {
-        attributes.put( MULTI_POSITIONS, positions );
+        DynArray<PositionF> multiPositions = DynArray.create( PositionF.class, Math.max( size, 1 ), 10 );
+        for ( int i = 0; i < size; i++ ) {
+            multiPositions.add( new PositionF( positions[ i * 2 ], positions[ i * 2 + 1 ] ) );
+        }
+        attributes.put( MULTI_POSITIONS, multiPositions );
+    }
+
+    private void updateBounds() {
+        if ( boundsValid ) {
+            return;
+        }
+        
+        minX = minY = maxX = maxY = 0;
+        for ( int i = 0; i < size; i++ ) {
+            final float x = positions[ i * 2 ];
+            final float y = positions[ i * 2 + 1 ];
+            if ( i == 0 ) {
+                minX = maxX = x;
+                minY = maxY = y;
+                continue;
+            }
+            minX = Math.min( minX, x );
+            minY = Math.min( minY, y );
+            maxX = Math.max( maxX, x );
+            maxY = Math.max( maxY, y );
+        }
+        boundsValid = true;
+    }
+
+    private void checkIndex( int index ) {
+        if ( index < 0 || index >= size ) {
+            throw new IndexOutOfBoundsException( "index: " + index + " size: " + size );
+        }
+    }
+
+    private void ensureCapacity( int capacity ) {
+        if ( positions.length >= capacity * 2 ) {
+            return;
+        }
+
+        positions = Arrays.copyOf( positions, Math.max( capacity * 2, positions.length * 2 ) );
     }
 
 }
@@ -0,0 +1,209 @@
+package com.inari.firefly.graphics.sprite;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import com.inari.firefly.asset.AssetSystem;
+import com.inari.firefly.component.attr.AttributeKey;
+import com.inari.firefly.component.attr.AttributeMap;
+import com.inari.firefly.physics.animation.IntAnimation;
+
+/** A sprite frame animation that is shared by many entities, like the walk cycle of a crowd. The entities reference
+ *  the clip with an AnimationMapping of the ESprite sprite id adapter like any other IntAnimation.
+ *  <p>
+ *  The current frame of the clip is computed once per update. Each entity has a phase offset in frames,
+ *  stored in a primitive array indexed by entity id, so that the entities don't walk in lockstep. The sprite id
+ *  of an entity is resolved by a plain array lookup of the current frame plus its phase offset.
+ *  <p>
+ *  The SpriteAssets of the frames are acquired when the clip is activated and released when it is disposed, so that
+ *  they are not disposed by the memory budget of the AssetSystem while the clip shows them.
+ */
+public final class SpriteClip extends IntAnimation {
+
+    public static final AttributeKey<int[]> SPRITE_IDS = new AttributeKey<int[]>( "spriteIds", int[].class, SpriteClip.class );
+    public static final AttributeKey<Integer> FRAME_DURATION = AttributeKey.createInt( "frameDuration", SpriteClip.class );
+    private static final AttributeKey<?>[] ATTRIBUTE_KEYS = new AttributeKey[] {
+        SPRITE_IDS,
+        FRAME_DURATION
+    };
+
+    private int[] spriteIds;
+    private int frameDuration;
+    private int[] phaseOffsets;
+    private int currentFrame;
+    // the acquired SpriteAssets of the frames or null if not acquired
+    private int[] frameAssetIds;
+
+    SpriteClip( int id ) {
+        super( id );
+        spriteIds = new int[ 0 ];
+        frameDuration = 100;
+        phaseOffsets = new int[ 0 ];
+        currentFrame = 0;
+    }
+
+    public final int[] getSpriteIds() {
+        return Arrays.copyOf( spriteIds, spriteIds.length );
+    }
+
+    public final void setSpriteIds( int[] spriteIds ) {
+        final boolean acquired = frameAssetIds != null;
+        releaseFrames();
+        this.spriteIds = Arrays.copyOf( spriteIds, spriteIds.length );
+        if ( acquired ) {
+            acquireFrames();
+        }
+    }
+
+    /** The duration of one frame in milliseconds */
+    public final int getFrameDuration() {
+        return frameDuration;
+    }
+
+    public final void setFrameDuration( int frameDuration ) {
+        this.frameDuration = frameDuration;
+    }
+
+    public final int getCurrentFrame() {
+        return currentFrame;
+    }
+
+    public final int getPhaseOffset( int entityId ) {
+        return ( entityId < phaseOffsets.length )? phaseOffsets[ entityId ] : 0;
+    }
+
+    /** Sets the phase offset in frames the specified entity is ahead of the clip, or behind it if negative.
+     *  The offset is cleared when the entity is deactivated.
+     */
+    public final void setPhaseOffset( int entityId, int frames ) {
+        if ( entityId >= phaseOffsets.length ) {
+            phaseOffsets = Arrays.copyOf( phaseOffsets, Math.max( entityId + 1, phaseOffsets.length * 2 ) );
+        }
+        phaseOffsets[ entityId ] = frames;
+    }
+
+    @Override
+    public final void activate() {
+        super.activate();
+        acquireFrames();
+    }
+
+    @Override
+    protected final void entityDeactivated( int entityId ) {
+        if ( entityId < phaseOffsets.length ) {
+            phaseOffsets[ entityId ] = 0;
+        }
+    }
+
+    @Override
+    public final int getInitValue() {
+        return ( spriteIds.length > 0 )? spriteIds[ 0 ] : -1;
+    }
+
+    @Override
+    public final int getValue( int entityId, int currentValue ) {
+        final int frames = spriteIds.length;
+        if ( frames == 0 ) {
+            return currentValue;
+        }
+
+        int frame = currentFrame;
+        if ( entityId < phaseOffsets.length ) {
+            frame += phaseOffsets[ entityId ];
+        }
+
+        if ( looping ) {
+            frame = ( ( frame % frames ) + frames ) % frames;
+        } else if ( frame >= frames ) {
+            frame = frames - 1;
+        } else if ( frame < 0 ) {
+            frame = 0;
+        }
+        return spriteIds[ frame ];
+    }
+
+    @Override
+    public final void update() {
+        final int frames = spriteIds.length;
+        if ( frames == 0 || frameDuration <= 0 ) {
+            return;
+        }
+
+        long frame = runningTime / frameDuration;
+        if ( looping ) {
+            currentFrame = (int) ( frame % frames );
+        } else if ( frame >= frames ) {
+            finish();
+            currentFrame = frames - 1;
+        } else {
+            currentFrame = (int) frame;
+        }
+    }
+
+    @Override
+    public final void reset() {
+        super.reset();
+        currentFrame = 0;
+    }
+
+    @Override
+    public final void dispose() {
+        releaseFrames();
+        phaseOffsets = new int[ 0 ];
+        super.dispose();
+    }
+
+    private void acquireFrames() {
+        if ( frameAssetIds != null ) {
+            return;
+        }
+
+        final SpriteViewSystem spriteViewSystem = context.getSystem( SpriteViewSystem.SYSTEM_KEY );
+        final AssetSystem assetSystem = context.getSystem( AssetSystem.SYSTEM_KEY );
+        frameAssetIds = new int[ spriteIds.length ];
+        for ( int i = 0; i < spriteIds.length; i++ ) {
+            frameAssetIds[ i ] = spriteViewSystem.getSpriteAssetId( spriteIds[ i ] );
+            if ( frameAssetIds[ i ] >= 0 ) {
+                assetSystem.acquireAsset( frameAssetIds[ i ] );
+            }
+        }
+    }
+
+    private void releaseFrames() {
+        if ( frameAssetIds == null ) {
+            return;
+        }
+
+        final AssetSystem assetSystem = context.getSystem( AssetSystem.SYSTEM_KEY );
+        for ( int i = 0; i < frameAssetIds.length; i++ ) {
+            if ( frameAssetIds[ i ] >= 0 ) {
+                assetSystem.releaseAsset( frameAssetIds[ i ] );
+            }
+        }
+        frameAssetIds = null;
+    }
+
+    @Override
+    public final Set<AttributeKey<?>> attributeKeys() {
+        Set<AttributeKey<?>> attributeKeys = super.attributeKeys();
+        attributeKeys.addAll( Arrays.asList( ATTRIBUTE_KEYS ) );
+        return attributeKeys;
+    }
+
+    @Override
+    public final void fromAttributes( AttributeMap attributes ) {
+        super.fromAttributes( attributes );
+        if ( attributes.contains( SPRITE_IDS ) ) {
+            setSpriteIds( attributes.getValue( SPRITE_IDS ) );
+        }
+        frameDuration = attributes.getValue( FRAME_DURATION, frameDuration );
+    }
+
+    @Override
+    public final void toAttributes( AttributeMap attributes ) {
+        super.toAttributes( attributes );
+        attributes.put( SPRITE_IDS, getSpriteIds() );
+        attributes.put( FRAME_DURATION, frameDuration );
+    }
+
+}
@@ -1,20 +1,25 @@
 package com.inari.firefly.graphics.sprite;
 
+import java.util.Arrays;
 import java.util.Comparator;
 
-import com.inari.commons.geom.PositionF;
+import com.inari.commons.geom.Rectangle;
 import com.inari.commons.lang.aspect.Aspects;
 import com.inari.commons.lang.indexed.IIndexedTypeKey;
 import com.inari.commons.lang.indexed.IndexedTypeKey;
 import com.inari.commons.lang.indexed.IndexedTypeSet;
 import com.inari.commons.lang.list.DynArray;
 import com.inari.firefly.FFInitException;
+import com.inari.firefly.asset.AssetEvent;
+import com.inari.firefly.asset.AssetEventListener;
+import com.inari.firefly.asset.AssetSystem;
 import com.inari.firefly.entity.EntityActivationEvent;
 import com.inari.firefly.entity.EntityActivationListener;
 import com.inari.firefly.entity.EntityComponent;
 import com.inari.firefly.entity.EntitySystem;
 import com.inari.firefly.graphics.BaseRenderer;
 import com.inari.firefly.graphics.ETransform;
+import com.inari.firefly.graphics.RenderPlan;
 import com.inari.firefly.graphics.SpriteRenderable;
 import com.inari.firefly.system.FFContext;
 import com.inari.firefly.system.FFSystem;
@@ -24,7 +29,8 @@ import com.inari.firefly.system.component.SystemComponent.SystemComponentKey;
 public final class SpriteViewSystem 
     implements 
         FFSystem, 
-        EntityActivationListener {
+        EntityActivationListener,
+        AssetEventListener {
     
     public static final FFSystemTypeKey<SpriteViewSystem> SYSTEM_KEY = FFSystemTypeKey.create( SpriteViewSystem.class );
     public static final Aspects MATCHING_ASPECTS = EntityComponent.ASPECT_GROUP.createAspects( 
@@ -35,12 +41,18 @@ public final class SpriteViewSystem
     private static final SystemComponentKey<SpriteRenderer> SPRITE_RENDERER_TYPE_KEY = SystemComponentKey.create( SpriteRenderer.class );
 
     private EntitySystem entitySystem;
+    private AssetSystem assetSystem;
     private final DynArray<DynArray<DynArray<IndexedTypeSet>>> spritesPerViewAndLayer;
+    private RenderPlan renderPlan;
     private SpriteRenderer spriteRenderer;
     
+    // the SpriteAsset id of a loaded sprite by sprite id, to reference the SpriteAsset of an activated ESprite
+    private int[] spriteAssetIds;
+    
     
     SpriteViewSystem() {
         spritesPerViewAndLayer = DynArray.createTyped( DynArray.class, 20, 10 );
+        spriteAssetIds = new int[ 0 ];
     }
     
     @Override
@@ -56,16 +68,18 @@ public final class SpriteViewSystem
     @Override
     public final void init( FFContext context ) throws FFInitException {
         entitySystem = context.getSystem( EntitySystem.SYSTEM_KEY );
+        assetSystem = context.getSystem( AssetSystem.SYSTEM_KEY );
+        renderPlan = context.getSystem( RenderPlan.SYSTEM_KEY );
         spriteRenderer = new SpriteRenderer( context );
         
-        context.registerListener( RenderEvent.TYPE_KEY, spriteRenderer );
         context.registerListener( EntityActivationEvent.TYPE_KEY, this );
+        context.registerListener( AssetEvent.TYPE_KEY, this );
     }
     
     @Override
     public final void dispose( FFContext context ) {
-        context.disposeListener( RenderEvent.TYPE_KEY, spriteRenderer );
         context.disposeListener( EntityActivationEvent.TYPE_KEY, this );
+        context.disposeListener( AssetEvent.TYPE_KEY, this );
         
         spriteRenderer.dispose();
     }
@@ -79,8 +93,17 @@ public final class SpriteViewSystem
         final IndexedTypeSet components = entitySystem.getComponents( entityId );
         final ETransform transform = components.get( ETransform.TYPE_KEY );
         final DynArray<IndexedTypeSet> renderablesOfView = getSprites( transform.getViewId(), transform.getLayerId(), true );
+        final ESprite sprite = components.get( ESprite.TYPE_KEY );
+        sprite.spriteAssetId = getSpriteAssetId( sprite.getSpriteId() );
+        if ( sprite.spriteAssetId >= 0 ) {
+            assetSystem.acquireAsset( sprite.spriteAssetId );
+        }
+        final boolean wasEmpty = renderablesOfView.isEmpty();
         renderablesOfView.add( components );
         renderablesOfView.sort( RENDERABLE_COMPARATOR );
+        if ( wasEmpty ) {
+            renderPlan.invalidate();
+        }
     }
     
     public final void entityDeactivated( int entityId, final Aspects aspects ) {
@@ -88,6 +111,71 @@ public final class SpriteViewSystem
         final ETransform transform = components.get( ETransform.TYPE_KEY );
         final DynArray<IndexedTypeSet> renderablesOfView = getSprites( transform.getViewId(), transform.getLayerId(), false );
         renderablesOfView.remove( components );
+        // releases the SpriteAsset referenced on activation, the sprite id may have changed by an animation since
+        final ESprite sprite = components.get( ESprite.TYPE_KEY );
+        if ( sprite.spriteAssetId >= 0 ) {
+            assetSystem.releaseAsset( sprite.spriteAssetId );
+            sprite.spriteAssetId = -1;
+        }
+        if ( renderablesOfView.isEmpty() ) {
+            renderPlan.invalidate();
+        }
+    }
+    
+    @Override
+    public final void onAssetEvent( AssetEvent event ) {
+        if ( !( event.asset instanceof SpriteAsset ) ) {
+            return;
+        }
+        
+        int assetId = event.asset.index();
+        switch ( event.eventType ) {
+            case ASSET_LOADED: {
+                int spriteId = ( (SpriteAsset) event.asset ).getSpriteId();
+                if ( spriteId < 0 ) {
+                    return;
+                }
+                if ( spriteId >= spriteAssetIds.length ) {
+                    int length = spriteAssetIds.length;
+                    spriteAssetIds = Arrays.copyOf( spriteAssetIds, spriteId + 100 );
+                    Arrays.fill( spriteAssetIds, length, spriteAssetIds.length, -1 );
+                }
+                spriteAssetIds[ spriteId ] = assetId;
+                break;
+            }
+            case ASSET_DISPOSED: 
+            case ASSET_DELETED: {
+                // the sprite id is already reset when the event is fired
+                for ( int i = 0; i < spriteAssetIds.length; i++ ) {
+                    if ( spriteAssetIds[ i ] == assetId ) {
+                        spriteAssetIds[ i ] = -1;
+                    }
+                }
+                break;
+            }
+            default: {}
+        }
+    }
+    
+    /** Gets the id of the SpriteAsset that has loaded the sprite with the specified id or -1 if there is none */
+    public final int getSpriteAssetId( int spriteId ) {
+        if ( spriteId < 0 || spriteId >= spriteAssetIds.length ) {
+            return -1;
+        }
+        
+        return spriteAssetIds[ spriteId ];
+    }
+    
+    /** Gets the texture region of the loaded sprite with the specified id or null if there is no such sprite.
+     *  The size of the region is the size of the rendered sprite without scaling
+     */
+    public final Rectangle getSpriteRegion( int spriteId ) {
+        final int spriteAssetId = getSpriteAssetId( spriteId );
+        if ( spriteAssetId < 0 ) {
+            return null;
+        }
+        
+        return assetSystem.getAssetAs( spriteAssetId, SpriteAsset.class ).getTextureRegion();
     }
 
     private final DynArray<IndexedTypeSet> getSprites( int viewId, int layerId, boolean createNew ) {
@@ -150,6 +238,12 @@ public final class SpriteViewSystem
             init();
         }
 
+        @Override
+        public final boolean hasContent( int viewId, int layerId ) {
+            final DynArray<IndexedTypeSet> sprites = getSprites( viewId, layerId, false );
+            return sprites != null && !sprites.isEmpty();
+        }
+
         @Override
         public final void render( RenderEvent event ) {
             final DynArray<IndexedTypeSet> spritesToRender = getSprites( event.getViewId(), event.getLayerId(), false );
@@ -157,6 +251,7 @@ public final class SpriteViewSystem
                 return;
             }
             
+            final Rectangle clip = event.getClip();
             for ( int i = 0; i < spritesToRender.capacity(); i++ ) {
                 final IndexedTypeSet components = spritesToRender.get( i );
                 if ( components == null ) {
@@ -165,23 +260,28 @@ public final class SpriteViewSystem
 
                 final ESprite sprite = components.get( ESprite.TYPE_KEY );
                 final ETransform transform = components.get( ETransform.TYPE_KEY );
+                transformCollector.set( transform );
+                collectTransformData( transform.getParentId(), transformCollector );
+                // sprites of unknown size are never culled
+                final Rectangle region = getSpriteRegion( sprite.getSpriteId() );
                 
                 if ( components.contains( ESpriteMultiplier.TYPE_KEY.index() ) ) {
                     final ESpriteMultiplier multiplier = components.get( ESpriteMultiplier.TYPE_KEY );
-                    final DynArray<PositionF> positions = multiplier.getPositions();
-                    
-                    for ( int p = 0; p < positions.capacity(); p++ ) {
-                        PositionF pos = positions.get( p );
-                        if ( pos == null ) {
-                            continue;
-                        }
-                        
-                        transformCollector.set( transform, pos.x, pos.y );
-                        render( sprite, transform.getParentId(), transformCollector );
+                    if ( region != null && !isInClip( 
+                            transformCollector, 
+                            multiplier.getMinX(), multiplier.getMinY(), 
+                            multiplier.getMaxX() - multiplier.getMinX() + region.width, 
+                            multiplier.getMaxY() - multiplier.getMinY() + region.height, 
+                            clip 
+                        ) ) {
+                        continue;
                     }
+                    render( sprite, transformCollector, multiplier.getPackedPositions(), multiplier.size() );
                 } else {
-                    transformCollector.set( transform );
-                    render( sprite, transform.getParentId(), transformCollector );
+                    if ( region != null && !isInClip( transformCollector, 0, 0, region.width, region.height, clip ) ) {
+                        continue;
+                    }
+                    render( sprite, transformCollector );
                 }
             }
         }
@@ -13,6 +13,12 @@ public final class DefaultTextRenderer extends TextRenderer {
         super( id );
     }
 
+    @Override
+    public final boolean hasContent( int viewId, int layerId ) {
+        DynArray<IndexedTypeSet> texts = textSystem.getTexts( viewId, layerId );
+        return texts != null && !texts.isEmpty();
+    }
+
     @Override
     public final void render( RenderEvent event ) {
         int viewId = event.getViewId();
@@ -40,31 +46,32 @@ public final class DefaultTextRenderer extends TextRenderer {
             }
             
             ETransform transform = components.get( ETransform.TYPE_KEY );
-            FontAsset font = assetSystem.getAssetAs( text.getFontAssetId(), FontAsset.class );
+            GlyphLayout layout = text.glyphLayout;
+            TextBuffer textBuffer = text.getTextBuffer();
+            if ( textBuffer.isDirty() || !layout.isValid( text.getFontAssetId(), transform.getScalex(), transform.getScaley() ) ) {
+                FontAsset font = assetSystem.getAssetAs( text.getFontAssetId(), FontAsset.class );
+                if ( font == null ) {
+                    continue;
+                }
+                layout.update( textBuffer, font, transform.getScalex(), transform.getScaley() );
+                textBuffer.clearDirty();
+            }
             
-            char[] chars = text.getText().toCharArray();
             textRenderable.blendMode = text.getBlendMode();
             textRenderable.tintColor = text.getTintColor();
             textRenderable.shaderId = text.getShaderId();
             transformCollector.set( transform );
-            float horizontalStep = ( font.getCharWidth() + font.getCharSpace() ) * transform.getScalex();
-            float verticalStep = ( font.getCharHeight() + font.getLineSpace() ) * transform.getScaley();
+            final float xpos = transformCollector.xpos;
+            final float ypos = transformCollector.ypos;
+            final int[] spriteIds = layout.spriteIds;
+            final float[] xOffsets = layout.xOffsets;
+            final float[] yOffsets = layout.yOffsets;
             
-            for ( char character : chars ) {
-                if ( character == '\n' ) {
-                    transformCollector.xpos = transform.getXpos();
-                    transformCollector.ypos += verticalStep;
-                    continue;
-                }
-                
-                if ( character == ' ' ) {
-                    transformCollector.xpos += horizontalStep;
-                    continue;
-                }
-
-                textRenderable.spriteId = font.getSpriteId( character );
+            for ( int j = 0; j < layout.size; j++ ) {
+                textRenderable.spriteId = spriteIds[ j ];
+                transformCollector.xpos = xpos + xOffsets[ j ];
+                transformCollector.ypos = ypos + yOffsets[ j ];
                 render( textRenderable, transformCollector );
-                transformCollector.xpos += horizontalStep;
             }
         }
     }
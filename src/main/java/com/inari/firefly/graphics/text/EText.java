@@ -35,11 +35,15 @@ public class EText extends EntityComponent {
     
     private int rendererId;
     private int fontAssetId;
-    private StringBuffer textBuffer;
+    private final TextBuffer textBuffer = new TextBuffer();
     private final RGBColor tintColor = new RGBColor();
     private BlendMode blendMode;
     private int shaderId;
     
+    final GlyphLayout glyphLayout = new GlyphLayout();
+    // the FontAsset that is referenced while the entity is active
+    int acquiredFontAssetId = -1;
+    
     public EText() {
         super( TYPE_KEY );
         resetAttributes();
@@ -49,10 +53,11 @@ public class EText extends EntityComponent {
     public final void resetAttributes() {
         rendererId = -1;
         fontAssetId = -1;
-        textBuffer = new StringBuffer();
+        textBuffer.clear();
         setTintColor( new RGBColor( 1f, 1f, 1f, 1f ) );
         blendMode = BlendMode.NONE;
         shaderId = -1;
+        glyphLayout.invalidate();
     }
 
     public final int getRendererId() {
@@ -69,9 +74,13 @@ public class EText extends EntityComponent {
 
     public final void setFontAssetId( int fontAssetId ) {
         this.fontAssetId = fontAssetId;
+        glyphLayout.invalidate();
     }
     
-    public final StringBuffer getTextBuffer() {
+    /** Use this to get the underling {@link TextBuffer} of this text. The buffer can be modified directly,
+     *  the renderer recognizes changes by the buffers dirty flag.
+     */
+    public final TextBuffer getTextBuffer() {
         return textBuffer;
     }
 
@@ -79,17 +88,37 @@ public class EText extends EntityComponent {
         return textBuffer.toString();
     }
 
-    public final void setText( String text ) {
-        textBuffer = new StringBuffer( text );
+    public final void setText( CharSequence text ) {
+        textBuffer.set( text );
+    }
+    
+    /** Sets the specified int value as text without creating a new String */
+    public final void setText( int value ) {
+        textBuffer.set( value );
+    }
+    
+    /** Sets the specified long value as text without creating a new String */
+    public final void setText( long value ) {
+        textBuffer.set( value );
     }
     
-    public final void appendText( String text ) {
+    /** Sets the specified float value with the specified number of fraction digits as text without creating a new String */
+    public final void setText( float value, int precision ) {
+        textBuffer.set( value, precision );
+    }
+    
+    public final void appendText( CharSequence text ) {
         textBuffer.append( text );
     }
     
-    public final void prependText( String text ) {
+    public final void prependText( CharSequence text ) {
         textBuffer.insert( 0, text );
     }
+    
+    /** Notifies this text that it has changed and the cached glyph layout has to be recalculated */
+    public final void textChanged() {
+        textBuffer.markDirty();
+    }
 
     public final BlendMode getBlendMode() {
         return blendMode;
@@ -126,7 +155,7 @@ public class EText extends EntityComponent {
     @Override
     public final void fromAttributes( AttributeMap attributes ) {
         rendererId = attributes.getIdForName( RENDERER_NAME, RENDERER_ID, TextRenderer.TYPE_KEY, rendererId );
-        fontAssetId = attributes.getIdForName( FONT_ASSET_NAME, FONT_ASSET_ID, Asset.TYPE_KEY, fontAssetId );
+        setFontAssetId( attributes.getIdForName( FONT_ASSET_NAME, FONT_ASSET_ID, Asset.TYPE_KEY, fontAssetId ) );
         if ( attributes.contains( TEXT ) ) {
             setText( attributes.getValue( TEXT ) );
         }
@@ -185,6 +185,12 @@ public final class FontAsset extends Asset implements TextureData {
         attributes.put( DEFAULT_CHAR, defaultChar );
     }
 
+    @Override
+    protected final long estimateSize() {
+        // four bytes per pixel of the font texture
+        return 4L * textureWidth * textureHeight;
+    }
+
     @Override
     public final Disposable load( FFContext context ) {
         if ( loaded ) {
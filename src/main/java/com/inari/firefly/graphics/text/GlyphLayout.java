@@ -0,0 +1,78 @@
+package com.inari.firefly.graphics.text;
+
+/** Cached glyph run of an {@link EText}. Holds the sprite id of each visible glyph and its offset relative to the
+ *  texts transform position. The layout is calculated once and reused until the text, the font or the scale changes.
+ */
+final class GlyphLayout {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private boolean valid = false;
+    private int fontAssetId = -1;
+    private float scalex = 1f;
+    private float scaley = 1f;
+
+    int size = 0;
+    int[] spriteIds = new int[ INITIAL_CAPACITY ];
+    float[] xOffsets = new float[ INITIAL_CAPACITY ];
+    float[] yOffsets = new float[ INITIAL_CAPACITY ];
+
+    final void invalidate() {
+        valid = false;
+    }
+
+    final boolean isValid( int fontAssetId, float scalex, float scaley ) {
+        return valid &&
+            this.fontAssetId == fontAssetId &&
+            this.scalex == scalex &&
+            this.scaley == scaley;
+    }
+
+    final boolean usesFont( int fontAssetId ) {
+        return this.fontAssetId == fontAssetId;
+    }
+
+    final void update( CharSequence text, FontAsset font, float scalex, float scaley ) {
+        size = 0;
+        ensureCapacity( text.length() );
+
+        float horizontalStep = ( font.getCharWidth() + font.getCharSpace() ) * scalex;
+        float verticalStep = ( font.getCharHeight() + font.getLineSpace() ) * scaley;
+        float xOffset = 0f;
+        float yOffset = 0f;
+
+        for ( int i = 0; i < text.length(); i++ ) {
+            char character = text.charAt( i );
+            if ( character == '\n' ) {
+                xOffset = 0f;
+                yOffset += verticalStep;
+                continue;
+            }
+
+            if ( character != ' ' ) {
+                spriteIds[ size ] = font.getSpriteId( character );
+                xOffsets[ size ] = xOffset;
+                yOffsets[ size ] = yOffset;
+                size++;
+            }
+
+            xOffset += horizontalStep;
+        }
+
+        fontAssetId = font.index();
+        this.scalex = scalex;
+        this.scaley = scaley;
+        valid = true;
+    }
+
+    private void ensureCapacity( int capacity ) {
+        if ( spriteIds.length >= capacity ) {
+            return;
+        }
+
+        spriteIds = new int[ capacity ];
+        xOffsets = new float[ capacity ];
+        yOffsets = new float[ capacity ];
+    }
+
+}
@@ -0,0 +1,268 @@
+package com.inari.firefly.graphics.text;
+
+import java.util.Arrays;
+
+/** A reusable, not synchronized, char[] backed text buffer that is used for texts that changes frequently
+ *  like score, timer or frame rate labels. All setters and append methods are allocation free as long as the
+ *  capacity of the buffer is sufficient and numbers are formatted directly into the buffer.
+ *  <p>
+ *  The buffer tracks whether its content has changed since the last call of {@link #clearDirty()}. A
+ *  write that puts the same character at the same position does not raise the dirty flag, so a label that
+ *  is set to the same value every frame stays clean and the renderer can skip the re-layout of its glyphs.
+ */
+public final class TextBuffer implements CharSequence {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final long[] POW_10 = new long[] {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+
+    private char[] chars;
+    private int length = 0;
+
+    private boolean dirty = true;
+    private int cleanLength = 0;
+
+    public TextBuffer() {
+        this( DEFAULT_CAPACITY );
+    }
+
+    public TextBuffer( int capacity ) {
+        chars = new char[ capacity ];
+    }
+
+    @Override
+    public final int length() {
+        return length;
+    }
+
+    @Override
+    public final char charAt( int index ) {
+        if ( index < 0 || index >= length ) {
+            throw new IndexOutOfBoundsException( "index: " + index + " length: " + length );
+        }
+        return chars[ index ];
+    }
+
+    @Override
+    public final CharSequence subSequence( int start, int end ) {
+        if ( start < 0 || end > length || start > end ) {
+            throw new IndexOutOfBoundsException( "start: " + start + " end: " + end + " length: " + length );
+        }
+        return new String( chars, start, end - start );
+    }
+
+    /** Indicates if the content of this buffer has changed since the last call of {@link #clearDirty()} */
+    public final boolean isDirty() {
+        return dirty || length != cleanLength;
+    }
+
+    /** Marks this buffer as changed */
+    public final void markDirty() {
+        dirty = true;
+    }
+
+    /** Marks the current content of this buffer as clean. Usually called by the renderer after a re-layout */
+    public final void clearDirty() {
+        dirty = false;
+        cleanLength = length;
+    }
+
+    public final TextBuffer clear() {
+        length = 0;
+        return this;
+    }
+
+    public final TextBuffer set( CharSequence text ) {
+        length = 0;
+        return append( text );
+    }
+
+    public final TextBuffer set( long value ) {
+        length = 0;
+        return append( value );
+    }
+
+    public final TextBuffer set( float value, int precision ) {
+        length = 0;
+        return append( value, precision );
+    }
+
+    public final TextBuffer setCharAt( int index, char character ) {
+        if ( index < 0 || index >= length ) {
+            throw new IndexOutOfBoundsException( "index: " + index + " length: " + length );
+        }
+        put( index, character );
+        return this;
+    }
+
+    /** Sets the given characters to this buffer starting at specified index. The buffer is expanded if needed */
+    public final TextBuffer setChars( int start, char[] characters ) {
+        int end = start + characters.length;
+        ensureCapacity( end );
+        for ( int i = 0; i < characters.length; i++ ) {
+            put( start + i, characters[ i ] );
+        }
+        if ( end > length ) {
+            length = end;
+        }
+        return this;
+    }
+
+    /** Writes the specified value right aligned into the region of this buffer from start with specified width.
+     *  The rest of the region is filled with the padding character. If the value needs more digits then the width
+     *  of the region, the region is filled with '#'
+     */
+    public final TextBuffer setNumber( int start, int width, long value, char padding ) {
+        int end = start + width;
+        ensureCapacity( end );
+        if ( end > length ) {
+            length = end;
+        }
+
+        int digits = digits( value );
+        if ( digits > width ) {
+            for ( int i = start; i < end; i++ ) {
+                put( i, '#' );
+            }
+            return this;
+        }
+
+        int numberStart = end - digits;
+        for ( int i = start; i < numberStart; i++ ) {
+            put( i, padding );
+        }
+        writeNumber( numberStart, digits, value );
+        return this;
+    }
+
+    public final TextBuffer append( char character ) {
+        ensureCapacity( length + 1 );
+        put( length++, character );
+        return this;
+    }
+
+    public final TextBuffer append( char character, int count ) {
+        ensureCapacity( length + count );
+        for ( int i = 0; i < count; i++ ) {
+            put( length++, character );
+        }
+        return this;
+    }
+
+    public final TextBuffer append( CharSequence text ) {
+        if ( text == null ) {
+            return this;
+        }
+
+        int textLength = text.length();
+        ensureCapacity( length + textLength );
+        for ( int i = 0; i < textLength; i++ ) {
+            put( length++, text.charAt( i ) );
+        }
+        return this;
+    }
+
+    public final TextBuffer append( long value ) {
+        int digits = digits( value );
+        ensureCapacity( length + digits );
+        writeNumber( length, digits, value );
+        length += digits;
+        return this;
+    }
+
+    /** Appends the specified float value with a fixed number of fraction digits (max 9). The value is rounded half up */
+    public final TextBuffer append( float value, int precision ) {
+        if ( precision < 0 || precision >= POW_10.length ) {
+            throw new IllegalArgumentException( "precision must be within 0 and " + ( POW_10.length - 1 ) );
+        }
+        if ( Float.isNaN( value ) ) {
+            return append( "NaN" );
+        }
+        if ( Float.isInfinite( value ) ) {
+            return append( ( value < 0 ) ? "-Infinity" : "Infinity" );
+        }
+
+        long scale = POW_10[ precision ];
+        long scaled = Math.round( Math.abs( (double) value ) * scale );
+        if ( value < 0 && scaled != 0 ) {
+            append( '-' );
+        }
+        append( scaled / scale );
+        if ( precision > 0 ) {
+            append( '.' );
+            long fraction = scaled % scale;
+            int fractionDigits = digits( fraction );
+            append( '0', precision - fractionDigits );
+            append( fraction );
+        }
+        return this;
+    }
+
+    public final TextBuffer insert( int index, CharSequence text ) {
+        if ( index < 0 || index > length ) {
+            throw new IndexOutOfBoundsException( "index: " + index + " length: " + length );
+        }
+
+        int textLength = text.length();
+        if ( textLength == 0 ) {
+            return this;
+        }
+
+        ensureCapacity( length + textLength );
+        System.arraycopy( chars, index, chars, index + textLength, length - index );
+        for ( int i = 0; i < textLength; i++ ) {
+            chars[ index + i ] = text.charAt( i );
+        }
+        length += textLength;
+        dirty = true;
+        return this;
+    }
+
+    @Override
+    public final String toString() {
+        return new String( chars, 0, length );
+    }
+
+    private void put( int index, char character ) {
+        if ( chars[ index ] != character ) {
+            chars[ index ] = character;
+            dirty = true;
+        }
+    }
+
+    private void writeNumber( int start, int digits, long value ) {
+        // works with the negative value to also support Long.MIN_VALUE
+        long v = value;
+        if ( value < 0 ) {
+            put( start, '-' );
+        } else {
+            v = -value;
+        }
+
+        int index = start + digits - 1;
+        do {
+            put( index--, (char) ( '0' - ( v % 10 ) ) );
+            v /= 10;
+        } while ( v != 0 );
+    }
+
+    private static int digits( long value ) {
+        int digits = ( value < 0 ) ? 2 : 1;
+        long v = ( value < 0 ) ? value : -value;
+        while ( v <= -10 ) {
+            v /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private void ensureCapacity( int capacity ) {
+        if ( chars.length >= capacity ) {
+            return;
+        }
+
+        chars = Arrays.copyOf( chars, Math.max( capacity, chars.length * 2 ) );
+    }
+
+}
@@ -6,12 +6,15 @@ import com.inari.commons.lang.aspect.Aspects;
 import com.inari.commons.lang.indexed.IndexedTypeSet;
 import com.inari.commons.lang.list.DynArray;
 import com.inari.firefly.FFInitException;
+import com.inari.firefly.asset.AssetEvent;
+import com.inari.firefly.asset.AssetEventListener;
+import com.inari.firefly.asset.AssetSystem;
 import com.inari.firefly.entity.EntityActivationEvent;
 import com.inari.firefly.entity.EntityActivationListener;
 import com.inari.firefly.entity.EntitySystem;
 import com.inari.firefly.graphics.ETransform;
+import com.inari.firefly.graphics.RenderPlan;
 import com.inari.firefly.system.FFContext;
-import com.inari.firefly.system.RenderEvent;
 import com.inari.firefly.system.component.ComponentSystem;
 import com.inari.firefly.system.component.SystemBuilderAdapter;
 import com.inari.firefly.system.component.SystemComponent.SystemComponentKey;
@@ -21,7 +24,8 @@ public class TextSystem
     extends 
         ComponentSystem<TextSystem>
     implements 
-        EntityActivationListener {
+        EntityActivationListener,
+        AssetEventListener {
     
     public static final String DEFAULT_TEXT_RENDERER_NAME = "DEFAULT_TEXT_RENDERER";
     public static final FFSystemTypeKey<TextSystem> SYSTEM_KEY = FFSystemTypeKey.create( TextSystem.class );
@@ -30,6 +34,8 @@ public class TextSystem
     };
 
     private EntitySystem entitySystem;
+    private AssetSystem assetSystem;
+    private RenderPlan renderPlan;
 
     private final DynArray<TextRenderer> renderer;
     private final DynArray<DynArray<DynArray<IndexedTypeSet>>> textPerViewAndLayer;
@@ -44,6 +50,8 @@ public class TextSystem
     public final void init( FFContext context ) throws FFInitException {
         super.init( context );
         entitySystem = context.getSystem( EntitySystem.SYSTEM_KEY );
+        assetSystem = context.getSystem( AssetSystem.SYSTEM_KEY );
+        renderPlan = context.getSystem( RenderPlan.SYSTEM_KEY );
         
         // build and register default text renderer
         getRendererBuilder( DefaultTextRenderer.class )
@@ -51,12 +59,13 @@ public class TextSystem
             .build();
         
         context.registerListener( EntityActivationEvent.TYPE_KEY, this );
-        
+        context.registerListener( AssetEvent.TYPE_KEY, this );
     }
 
     @Override
     public final void dispose( FFContext context ) {
         context.disposeListener( EntityActivationEvent.TYPE_KEY, this );
+        context.disposeListener( AssetEvent.TYPE_KEY, this );
         
         for ( TextRenderer r : renderer ) {
             r.dispose();
@@ -88,7 +97,6 @@ public class TextSystem
     public final void deleteRenderer( int id ) {
         TextRenderer removed = renderer.remove( id );
         if ( removed != null ) {
-            context.disposeListener( RenderEvent.TYPE_KEY, removed );
             removed.dispose();
         }
     }
@@ -106,6 +114,9 @@ public class TextSystem
     
     public final void clear() {
         textPerViewAndLayer.clear();
+        if ( renderPlan != null ) {
+            renderPlan.invalidate();
+        }
     }
 
     @Override
@@ -116,13 +127,53 @@ public class TextSystem
     public final void entityActivated( int entityId, final Aspects aspects ) {
         final IndexedTypeSet components = entitySystem.getComponents( entityId );
         final ETransform transform = components.get( ETransform.TYPE_KEY );
-        getTexts( transform.getViewId(), transform.getLayerId(), true ).add( components );
+        final DynArray<IndexedTypeSet> texts = getTexts( transform.getViewId(), transform.getLayerId(), true );
+        final EText text = components.get( EText.TYPE_KEY );
+        text.acquiredFontAssetId = text.getFontAssetId();
+        if ( text.acquiredFontAssetId >= 0 ) {
+            assetSystem.acquireAsset( text.acquiredFontAssetId );
+        }
+        final boolean wasEmpty = texts.isEmpty();
+        texts.add( components );
+        if ( wasEmpty ) {
+            renderPlan.invalidate();
+        }
     }
     
     public final void entityDeactivated( int entityId, final Aspects aspects ) {
         final IndexedTypeSet components = entitySystem.getComponents( entityId );
         final ETransform transform = components.get( ETransform.TYPE_KEY );
-        getTexts( transform.getViewId(), transform.getLayerId(), false ).remove( components );
+        final DynArray<IndexedTypeSet> texts = getTexts( transform.getViewId(), transform.getLayerId(), false );
+        texts.remove( components );
+        // releases the FontAsset referenced on activation, the font may have changed since
+        final EText text = components.get( EText.TYPE_KEY );
+        if ( text.acquiredFontAssetId >= 0 ) {
+            assetSystem.releaseAsset( text.acquiredFontAssetId );
+            text.acquiredFontAssetId = -1;
+        }
+        if ( texts.isEmpty() ) {
+            renderPlan.invalidate();
+        }
+    }
+    
+    @Override
+    public final void onAssetEvent( AssetEvent event ) {
+        if ( !( event.asset instanceof FontAsset ) ) {
+            return;
+        }
+        
+        // the sprite ids of a font changes on reload so all cached glyph layouts that uses the font are invalid
+        int fontAssetId = event.asset.index();
+        for ( DynArray<DynArray<IndexedTypeSet>> textPerLayer : textPerViewAndLayer ) {
+            for ( DynArray<IndexedTypeSet> textsOfLayer : textPerLayer ) {
+                for ( IndexedTypeSet components : textsOfLayer ) {
+                    EText text = components.get( EText.TYPE_KEY );
+                    if ( text.glyphLayout.usesFont( fontAssetId ) ) {
+                        text.glyphLayout.invalidate();
+                    }
+                }
+            }
+        }
     }
     
     public final DynArray<IndexedTypeSet> getTexts( int viewId, int layerId ) {
@@ -11,6 +11,12 @@ public class NormalFastTileGridRenderer extends TileGridRenderer {
         super( id );
     }
 
+    @Override
+    public final boolean hasContent( int viewId, int layerId ) {
+        TileGrid tileGrid = tileGridSystem.getTileGrid( viewId, layerId );
+        return tileGrid != null && tileGrid.getRendererId() == index();
+    }
+
     @Override
     public final void render( RenderEvent event ) {
         int viewId = event.getViewId();
@@ -21,10 +27,15 @@ public class NormalFastTileGridRenderer extends TileGridRenderer {
           return;
         }
         
+        final ETile[] tiles = tileGridSystem.renderInfo.tiles;
         TileGridIterator tileGridIterator = tileGrid.getTileGridIterator( event.getClip() );
         while( tileGridIterator.hasNext() ) {
-            ETile tile = entitySystem.getComponent( tileGridIterator.next(), ETile.TYPE_KEY );
-            graphics.renderSprite( tile, tileGridIterator.getWorldXPos(), tileGridIterator.getWorldYPos() );
+            int entityId = tileGridIterator.next();
+            if ( entityId >= tiles.length || tiles[ entityId ] == null ) {
+                continue;
+            }
+            
+            graphics.renderSprite( tiles[ entityId ], tileGridIterator.getWorldXPos(), tileGridIterator.getWorldYPos() );
         }
     }
 
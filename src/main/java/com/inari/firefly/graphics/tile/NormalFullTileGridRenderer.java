@@ -14,6 +14,12 @@ public final class NormalFullTileGridRenderer extends TileGridRenderer {
         super( id );
     }
 
+    @Override
+    public final boolean hasContent( int viewId, int layerId ) {
+        TileGrid tileGrid = tileGridSystem.getTileGrid( viewId, layerId );
+        return tileGrid != null && ( tileGrid.getRendererId() < 0 || tileGrid.getRendererId() == index() );
+    }
+
     @Override
     public final void render( RenderEvent event ) {
         int viewId = event.getViewId();
@@ -24,11 +30,17 @@ public final class NormalFullTileGridRenderer extends TileGridRenderer {
             return;
         }
         
+        final ETile[] tiles = tileGridSystem.renderInfo.tiles;
+        final ETransform[] transforms = tileGridSystem.renderInfo.transforms;
         TileGridIterator tileGridIterator = tileGrid.getTileGridIterator( event.getClip() );
         while( tileGridIterator.hasNext() ) {
             int entityId = tileGridIterator.next();
-            ETile tile = entitySystem.getComponent( entityId, ETile.TYPE_KEY );
-            ETransform transform = entitySystem.getComponent( entityId, ETransform.TYPE_KEY );
+            if ( entityId >= tiles.length || tiles[ entityId ] == null ) {
+                continue;
+            }
+            
+            ETile tile = tiles[ entityId ];
+            ETransform transform = transforms[ entityId ];
             
             transformCollector.set( transform );
             transformCollector.xpos += tileGridIterator.getWorldXPos();
@@ -22,13 +22,16 @@ import java.util.Set;
 import com.inari.commons.GeomUtils;
 import com.inari.commons.geom.Direction;
 import com.inari.commons.geom.Position;
+import com.inari.commons.geom.PositionF;
 import com.inari.commons.geom.Rectangle;
 import com.inari.commons.geom.Vector2f;
 import com.inari.commons.lang.IntIterator;
 import com.inari.commons.lang.indexed.IndexedTypeKey;
 import com.inari.firefly.component.attr.AttributeKey;
 import com.inari.firefly.component.attr.AttributeMap;
+import com.inari.firefly.graphics.RenderPlan;
 import com.inari.firefly.graphics.view.Layer;
+import com.inari.firefly.graphics.view.LayerCache;
 import com.inari.firefly.graphics.view.View;
 import com.inari.firefly.system.component.SystemComponent;
 
@@ -49,6 +52,10 @@ public final class TileGrid extends SystemComponent {
     public static final AttributeKey<Float> WORLD_XPOS = new AttributeKey<Float>( "worldXPos", Float.class, TileGrid.class );
     public static final AttributeKey<Float> WORLD_YPOS = new AttributeKey<Float>( "worldYPos", Float.class, TileGrid.class );
     public static final AttributeKey<Boolean> SPHERICAL = new AttributeKey<Boolean>( "spherical", Boolean.class, TileGrid.class );
+    /** The name of a tile map file to stream the grid from. The size of a streamed grid is defined by the file */
+    public static final AttributeKey<String> MAP_FILE_NAME = new AttributeKey<String>( "mapFileName", String.class, TileGrid.class );
+    /** The number of chunks that are loaded ahead of the visible area of the View of a streamed grid */
+    public static final AttributeKey<Integer> STREAM_LOAD_AHEAD = new AttributeKey<Integer>( "streamLoadAhead", Integer.class, TileGrid.class );
     public static final AttributeKey<?>[] ATTRIBUTE_KEYS = new AttributeKey[] {
         RENDERER_ID,
         VIEW_ID,
@@ -59,10 +66,19 @@ public final class TileGrid extends SystemComponent {
         CELL_HEIGHT,
         WORLD_XPOS,
         WORLD_YPOS,
-        SPHERICAL
+        SPHERICAL,
+        MAP_FILE_NAME,
+        STREAM_LOAD_AHEAD
     };
     
     public final static int NULL_VALUE = -1;
+    
+    /** The grid is stored in quadratic chunks of CHUNK_SIZE x CHUNK_SIZE cells. A chunk is only allocated on first write */
+    public final static int CHUNK_SHIFT = 5;
+    public final static int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    final static int CHUNK_MASK = CHUNK_SIZE - 1;
+    // shared sentinel for all chunks that have no tile at all. This is never written
+    final static int[] EMPTY_CHUNK = createEmptyChunk();
 
     private int rendererId;
     private int viewId;
@@ -76,7 +92,26 @@ public final class TileGrid extends SystemComponent {
     float worldYPos;
     private boolean spherical;
     
-    int[][] grid;
+    int xChunks;
+    int yChunks;
+    int[][] chunks;
+    private int[] chunkTileCount;
+    
+    // streaming from a memory-mapped tile map file
+    private String mapFileName;
+    private int streamLoadAhead;
+    private TileGridMapFile mapFile;
+    private boolean[] chunkLoaded;
+    private boolean[] chunkModified;
+    private int[] loadedChunks;
+    private int loadedChunkCount;
+    private final ArrayDeque<int[]> chunkPool = new ArrayDeque<int[]>();
+    private final Rectangle streamWindow = new Rectangle( -1, -1, 0, 0 );
+    private float lastViewXPos = Float.NaN;
+    private float lastViewYPos = Float.NaN;
+    
+    // the cache of the Layer if the TileGrid is on a cached Layer, set by the TileGridSystem
+    LayerCache layerCache;
     
     final Rectangle normalisedWorldBounds = new Rectangle( 0, 0, 0, 0 );
 
@@ -92,6 +127,8 @@ public final class TileGrid extends SystemComponent {
         worldXPos = 0;
         worldYPos = 0;
         spherical = false;
+        mapFileName = null;
+        streamLoadAhead = 1;
         createGrid();
     }
     
@@ -105,7 +142,13 @@ public final class TileGrid extends SystemComponent {
     }
 
     public final void setRendererId( int rendererId ) {
+        if ( this.rendererId == rendererId ) {
+            return;
+        }
+        
         this.rendererId = rendererId;
+        // the renderer that has content for the View and Layer of this grid has changed
+        invalidateRenderPlan();
     }
 
     public final int getViewId() {
@@ -182,6 +225,32 @@ public final class TileGrid extends SystemComponent {
         this.spherical = spherical;
     }
 
+    public final String getMapFileName() {
+        return mapFileName;
+    }
+
+    /** Indicates if this grid streams its chunks from a tile map file. Only the chunks around the visible area of the
+     *  View of a streamed grid are loaded. Cells of not loaded chunks are reported as empty.
+     */
+    public final boolean isStreamed() {
+        return mapFile != null;
+    }
+
+    public final int getStreamLoadAhead() {
+        return streamLoadAhead;
+    }
+
+    public final void setStreamLoadAhead( int streamLoadAhead ) {
+        this.streamLoadAhead = streamLoadAhead;
+    }
+
+    @Override
+    public final void dispose() {
+        closeMapFile();
+        
+        super.dispose();
+    }
+
     @Override
     public final Set<AttributeKey<?>> attributeKeys() {
         Set<AttributeKey<?>> attributeKeys = super.attributeKeys();
@@ -193,7 +262,7 @@ public final class TileGrid extends SystemComponent {
     public final void fromAttributes( AttributeMap attributes ) {
         super.fromAttributes( attributes );
         
-        rendererId = attributes.getIdForName( RENDERER_NAME, RENDERER_ID, TileGridRenderer.TYPE_KEY, rendererId );
+        setRendererId( attributes.getIdForName( RENDERER_NAME, RENDERER_ID, TileGridRenderer.TYPE_KEY, rendererId ) );
         viewId = attributes.getIdForName( VIEW_NAME, VIEW_ID, View.TYPE_KEY, viewId );
         layerId = attributes.getIdForName( LAYER_NAME, LAYER_ID, Layer.TYPE_KEY, layerId );
         width = attributes.getValue( WIDTH, width );
@@ -203,6 +272,13 @@ public final class TileGrid extends SystemComponent {
         worldXPos = attributes.getValue( WORLD_XPOS, worldXPos );
         worldYPos = attributes.getValue( WORLD_YPOS, worldYPos );
         spherical = attributes.getValue( SPHERICAL, spherical );
+        streamLoadAhead = attributes.getValue( STREAM_LOAD_AHEAD, streamLoadAhead );
+        String newMapFileName = attributes.getValue( MAP_FILE_NAME, mapFileName );
+        if ( newMapFileName != null && !newMapFileName.equals( mapFileName ) ) {
+            closeMapFile();
+            mapFile = TileGridMapFile.open( newMapFileName, context );
+            mapFileName = newMapFileName;
+        }
         createGrid();
     }
 
@@ -220,6 +296,10 @@ public final class TileGrid extends SystemComponent {
         attributes.put( WORLD_XPOS, worldXPos );
         attributes.put( WORLD_YPOS, worldXPos );
         attributes.put( SPHERICAL, spherical );
+        if ( mapFileName != null ) {
+            attributes.put( MAP_FILE_NAME, mapFileName );
+            attributes.put( STREAM_LOAD_AHEAD, streamLoadAhead );
+        }
     }
     
     public final int get( int xpos, int ypos ) {
@@ -232,7 +312,7 @@ public final class TileGrid extends SystemComponent {
             return -1;
         }
         
-        return grid[ ypos ][ xpos ];
+        return chunks[ chunkIndex( xpos, ypos ) ][ cellIndex( xpos, ypos ) ];
     }
     
     public final int getTileAt( final Position worldPos ) {
@@ -258,7 +338,21 @@ public final class TileGrid extends SystemComponent {
             xpos = xpos % width;
             ypos = ypos % height;
         }
-        grid[ ypos ][ xpos ] = entityId;
+        checkBounds( xpos, ypos );
+        
+        int chunkIndex = chunkIndex( xpos, ypos );
+        int cellIndex = cellIndex( xpos, ypos );
+        prepareWrite( chunkIndex );
+        if ( chunks[ chunkIndex ][ cellIndex ] == entityId ) {
+            return;
+        }
+        
+        if ( entityId == NULL_VALUE ) {
+            resetCell( chunkIndex, cellIndex );
+        } else {
+            setCell( chunkIndex, cellIndex, entityId );
+        }
+        markCacheDirty( xpos, ypos );
     }
     
     public final int reset( int xpos, int ypos ) {
@@ -266,8 +360,14 @@ public final class TileGrid extends SystemComponent {
             xpos = xpos % width;
             ypos = ypos % height;
         }
-        int old = grid[ ypos ][ xpos ];
-        grid[ ypos ][ xpos ] = NULL_VALUE;
+        checkBounds( xpos, ypos );
+        
+        int chunkIndex = chunkIndex( xpos, ypos );
+        prepareWrite( chunkIndex );
+        int old = resetCell( chunkIndex, cellIndex( xpos, ypos ) );
+        if ( old != NULL_VALUE ) {
+            markCacheDirty( xpos, ypos );
+        }
         return old;
     }
     
@@ -280,8 +380,14 @@ public final class TileGrid extends SystemComponent {
             xpos = xpos % width;
             ypos = ypos % height;
         }
-        if ( grid[ ypos ][ xpos ] == entityId ) {
-            grid[ ypos ][ xpos ] = NULL_VALUE;
+        checkBounds( xpos, ypos );
+        
+        int chunkIndex = chunkIndex( xpos, ypos );
+        int cellIndex = cellIndex( xpos, ypos );
+        prepareWrite( chunkIndex );
+        if ( chunks[ chunkIndex ][ cellIndex ] == entityId ) {
+            resetCell( chunkIndex, cellIndex );
+            markCacheDirty( xpos, ypos );
         }
     }
     
@@ -324,21 +430,127 @@ public final class TileGrid extends SystemComponent {
         return TileGridIterator.getInstance( worldClip, this );
     }
 
-    private void createGrid() {
-        int[][] old = grid;
-        grid = new int[ height ][ width ];
-        
+    final void markCacheDirty() {
+        if ( layerCache != null ) {
+            layerCache.markDirty( worldXPos, worldYPos, width * cellWidth, height * cellHeight );
+        }
+    }
+
+    private void markCacheDirty( int xpos, int ypos ) {
+        if ( layerCache != null ) {
+            layerCache.markDirty( worldXPos + xpos * cellWidth, worldYPos + ypos * cellHeight, cellWidth, cellHeight );
+        }
+    }
+
+    /** Indicates if the chunk at the specified chunk coordinates has no tile at all */
+    public final boolean isEmptyChunk( int xChunk, int yChunk ) {
+        return chunks[ yChunk * xChunks + xChunk ] == EMPTY_CHUNK;
+    }
+
+    /** Creates a dense copy of this grid for debugging and testing */
+    final int[][] gridToArray() {
+        int[][] result = new int[ height ][ width ];
         for ( int y = 0; y < height; y++ ) {
             for ( int x = 0; x < width; x++ ) {
-                grid[ y ][ x ] = NULL_VALUE;
+                result[ y ][ x ] = chunks[ chunkIndex( x, y ) ][ cellIndex( x, y ) ];
+            }
+        }
+        return result;
+    }
+
+    final int chunkIndex( final int xpos, final int ypos ) {
+        return ( ypos >> CHUNK_SHIFT ) * xChunks + ( xpos >> CHUNK_SHIFT );
+    }
+
+    static final int cellIndex( final int xpos, final int ypos ) {
+        return ( ( ypos & CHUNK_MASK ) << CHUNK_SHIFT ) | ( xpos & CHUNK_MASK );
+    }
+
+    final boolean isEmptyChunkRow( final int yChunk, final int xChunkFrom, final int xChunkTo ) {
+        int rowStart = yChunk * xChunks;
+        for ( int x = xChunkFrom; x <= xChunkTo; x++ ) {
+            if ( chunks[ rowStart + x ] != EMPTY_CHUNK ) {
+                return false;
             }
         }
+        return true;
+    }
+
+    private void setCell( final int chunkIndex, final int cellIndex, final int entityId ) {
+        int[] chunk = chunks[ chunkIndex ];
+        if ( chunk == EMPTY_CHUNK ) {
+            chunk = createEmptyChunk();
+            chunks[ chunkIndex ] = chunk;
+        }
+        if ( chunk[ cellIndex ] == NULL_VALUE ) {
+            chunkTileCount[ chunkIndex ]++;
+        }
+        chunk[ cellIndex ] = entityId;
+    }
+
+    private int resetCell( final int chunkIndex, final int cellIndex ) {
+        int[] chunk = chunks[ chunkIndex ];
+        int old = chunk[ cellIndex ];
+        if ( old == NULL_VALUE ) {
+            return NULL_VALUE;
+        }
+        
+        chunk[ cellIndex ] = NULL_VALUE;
+        if ( --chunkTileCount[ chunkIndex ] == 0 && mapFile == null ) {
+            // release the chunk if it has no tile anymore
+            chunks[ chunkIndex ] = EMPTY_CHUNK;
+        }
+        return old;
+    }
+
+    private void checkBounds( final int xpos, final int ypos ) {
+        if ( ypos < 0 || ypos >= height ) {
+            throw new ArrayIndexOutOfBoundsException( String.valueOf( ypos ) );
+        }
+        if ( xpos < 0 || xpos >= width ) {
+            throw new ArrayIndexOutOfBoundsException( String.valueOf( xpos ) );
+        }
+    }
+
+    private void createGrid() {
+        int[][] oldChunks = chunks;
+        int oldXChunks = xChunks;
+        if ( mapFile != null ) {
+            width = mapFile.getWidth();
+            height = mapFile.getHeight();
+        }
         
-        if ( old != null && old.length > 0 && old[ 0 ].length > 0 ) {
-            int lowerHeight = ( old.length < height )? old.length : height;
-            int lowerWidth = ( old[ 0 ].length < width )? old[ 0 ].length : width;
-            for ( int y = 0; y < lowerHeight; y++ ) {
-                System.arraycopy( old[ y ], 0, grid[ y ], 0, lowerWidth );
+        xChunks = ( width + CHUNK_MASK ) >> CHUNK_SHIFT;
+        yChunks = ( height + CHUNK_MASK ) >> CHUNK_SHIFT;
+        chunks = new int[ xChunks * yChunks ][];
+        chunkTileCount = new int[ xChunks * yChunks ];
+        Arrays.fill( chunks, EMPTY_CHUNK );
+        
+        if ( mapFile != null ) {
+            // a streamed grid is always reloaded from its map file
+            chunkLoaded = new boolean[ chunks.length ];
+            chunkModified = new boolean[ chunks.length ];
+            loadedChunks = new int[ chunks.length ];
+            loadedChunkCount = 0;
+            streamWindow.x = -1;
+            lastViewXPos = Float.NaN;
+            lastViewYPos = Float.NaN;
+        } else if ( oldChunks != null ) {
+            for ( int i = 0; i < oldChunks.length; i++ ) {
+                int[] chunk = oldChunks[ i ];
+                if ( chunk == EMPTY_CHUNK ) {
+                    continue;
+                }
+                
+                int xOffset = ( i % oldXChunks ) << CHUNK_SHIFT;
+                int yOffset = ( i / oldXChunks ) << CHUNK_SHIFT;
+                for ( int cell = 0; cell < chunk.length; cell++ ) {
+                    int x = xOffset + ( cell & CHUNK_MASK );
+                    int y = yOffset + ( cell >> CHUNK_SHIFT );
+                    if ( chunk[ cell ] != NULL_VALUE && x < width && y < height ) {
+                        setCell( chunkIndex( x, y ), cellIndex( x, y ), chunk[ cell ] );
+                    }
+                }
             }
         }
         
@@ -346,6 +558,125 @@ public final class TileGrid extends SystemComponent {
         normalisedWorldBounds.height = height;
     }
     
+    /** Loads the chunks of a streamed grid that are within or ahead of the visible area of the View and evicts
+     *  the chunks behind it. Chunks that were modified since they are loaded are never evicted. The load window is
+     *  extended by the load ahead in all directions and once more in the direction the View is moving.
+     */
+    final void updateStreaming( final PositionF viewWorldPosition, final Rectangle viewBounds ) {
+        final float chunkWorldWidth = cellWidth * CHUNK_SIZE;
+        final float chunkWorldHeight = cellHeight * CHUNK_SIZE;
+        if ( mapFile == null || chunkWorldWidth <= 0 || chunkWorldHeight <= 0 ) {
+            return;
+        }
+        
+        float dx = ( Float.isNaN( lastViewXPos ) )? 0f : viewWorldPosition.x - lastViewXPos;
+        float dy = ( Float.isNaN( lastViewYPos ) )? 0f : viewWorldPosition.y - lastViewYPos;
+        lastViewXPos = viewWorldPosition.x;
+        lastViewYPos = viewWorldPosition.y;
+        
+        int x1 = (int) Math.floor( ( viewWorldPosition.x - worldXPos ) / chunkWorldWidth ) - streamLoadAhead - ( ( dx < 0 )? streamLoadAhead : 0 );
+        int y1 = (int) Math.floor( ( viewWorldPosition.y - worldYPos ) / chunkWorldHeight ) - streamLoadAhead - ( ( dy < 0 )? streamLoadAhead : 0 );
+        int x2 = (int) Math.floor( ( viewWorldPosition.x - worldXPos + viewBounds.width ) / chunkWorldWidth ) + streamLoadAhead + ( ( dx > 0 )? streamLoadAhead : 0 );
+        int y2 = (int) Math.floor( ( viewWorldPosition.y - worldYPos + viewBounds.height ) / chunkWorldHeight ) + streamLoadAhead + ( ( dy > 0 )? streamLoadAhead : 0 );
+        x1 = Math.max( 0, x1 );
+        y1 = Math.max( 0, y1 );
+        x2 = Math.min( xChunks - 1, x2 );
+        y2 = Math.min( yChunks - 1, y2 );
+        
+        if ( streamWindow.x == x1 && streamWindow.y == y1 && streamWindow.width == x2 - x1 + 1 && streamWindow.height == y2 - y1 + 1 ) {
+            return;
+        }
+        streamWindow.x = x1;
+        streamWindow.y = y1;
+        streamWindow.width = x2 - x1 + 1;
+        streamWindow.height = y2 - y1 + 1;
+        
+        // evict behind, with one chunk tolerance to not evict and reload on small back and forth moves
+        for ( int i = loadedChunkCount - 1; i >= 0; i-- ) {
+            int chunkIndex = loadedChunks[ i ];
+            int cx = chunkIndex % xChunks;
+            int cy = chunkIndex / xChunks;
+            if ( !chunkModified[ chunkIndex ] && ( cx < x1 - 1 || cx > x2 + 1 || cy < y1 - 1 || cy > y2 + 1 ) ) {
+                evictChunk( i );
+            }
+        }
+        
+        for ( int y = y1; y <= y2; y++ ) {
+            for ( int x = x1; x <= x2; x++ ) {
+                loadChunk( y * xChunks + x );
+            }
+        }
+    }
+
+    // makes sure that a chunk of a streamed grid is loaded before it is changed and keeps it from being evicted
+    private void prepareWrite( final int chunkIndex ) {
+        if ( mapFile != null ) {
+            loadChunk( chunkIndex );
+            chunkModified[ chunkIndex ] = true;
+        }
+    }
+
+    private void loadChunk( final int chunkIndex ) {
+        if ( chunkLoaded[ chunkIndex ] ) {
+            return;
+        }
+        
+        chunkLoaded[ chunkIndex ] = true;
+        loadedChunks[ loadedChunkCount++ ] = chunkIndex;
+        if ( !mapFile.hasChunk( chunkIndex ) ) {
+            return;
+        }
+        
+        int[] chunk = ( chunkPool.isEmpty() )? createEmptyChunk() : chunkPool.pollLast();
+        chunkTileCount[ chunkIndex ] = mapFile.readChunk( chunkIndex, chunk );
+        chunks[ chunkIndex ] = chunk;
+        if ( layerCache != null ) {
+            float chunkWorldWidth = cellWidth * CHUNK_SIZE;
+            float chunkWorldHeight = cellHeight * CHUNK_SIZE;
+            layerCache.markDirty( 
+                worldXPos + ( chunkIndex % xChunks ) * chunkWorldWidth, 
+                worldYPos + ( chunkIndex / xChunks ) * chunkWorldHeight, 
+                chunkWorldWidth, 
+                chunkWorldHeight 
+            );
+        }
+    }
+
+    private void evictChunk( final int loadedIndex ) {
+        int chunkIndex = loadedChunks[ loadedIndex ];
+        if ( chunks[ chunkIndex ] != EMPTY_CHUNK ) {
+            chunkPool.add( chunks[ chunkIndex ] );
+            chunks[ chunkIndex ] = EMPTY_CHUNK;
+        }
+        chunkTileCount[ chunkIndex ] = 0;
+        chunkLoaded[ chunkIndex ] = false;
+        loadedChunks[ loadedIndex ] = loadedChunks[ --loadedChunkCount ];
+    }
+
+    private void invalidateRenderPlan() {
+        if ( context != null ) {
+            context.getSystem( RenderPlan.SYSTEM_KEY ).invalidate();
+        }
+    }
+
+    private void closeMapFile() {
+        if ( mapFile != null ) {
+            mapFile.close();
+            mapFile = null;
+            mapFileName = null;
+            chunkLoaded = null;
+            chunkModified = null;
+            loadedChunks = null;
+            chunkPool.clear();
+        }
+    }
+
+    static int[] createEmptyChunk() {
+        int[] chunk = new int[ CHUNK_SIZE * CHUNK_SIZE ];
+        Arrays.fill( chunk, NULL_VALUE );
+        return chunk;
+    }
+    
     
     public final static class TileGridIterator implements IntIterator {
         
@@ -371,7 +702,7 @@ public final class TileGrid extends SystemComponent {
     
         @Override
         public final int next() {
-            int result = tileGrid.grid[ clip.y ][ clip.x ];
+            int result = tileGrid.chunks[ tileGrid.chunkIndex( clip.x, clip.y ) ][ cellIndex( clip.x, clip.y ) ];
             calcWorldPosition();
             clip.x++;
             findNext();
@@ -406,6 +737,7 @@ public final class TileGrid extends SystemComponent {
     
             this.tileGrid = tileGrid;
             
+            skipEmptyChunkRows();
             findNext();
         }
         
@@ -422,7 +754,13 @@ public final class TileGrid extends SystemComponent {
         private void findNext() {
             while ( clip.y < ysize ) {
                 while( clip.x < xsize ) {
-                    if ( tileGrid.grid[ clip.y ][ clip.x ] != TileGrid.NULL_VALUE ) {
+                    final int[] chunk = tileGrid.chunks[ tileGrid.chunkIndex( clip.x, clip.y ) ];
+                    if ( chunk == EMPTY_CHUNK ) {
+                        // skip the rest of the empty chunk on this row
+                        clip.x = ( ( clip.x >> CHUNK_SHIFT ) + 1 ) << CHUNK_SHIFT;
+                        continue;
+                    }
+                    if ( chunk[ cellIndex( clip.x, clip.y ) ] != TileGrid.NULL_VALUE ) {
                         hasNext = true;
                         return;
                     }
@@ -430,11 +768,21 @@ public final class TileGrid extends SystemComponent {
                 }
                 clip.x = xorig;
                 clip.y++;
+                skipEmptyChunkRows();
             }
             
             dispose();
         }
         
+        // skips all rows of chunks that have no tile within the clip
+        private void skipEmptyChunkRows() {
+            final int xChunkFrom = xorig >> CHUNK_SHIFT;
+            final int xChunkTo = ( xsize - 1 ) >> CHUNK_SHIFT;
+            while ( clip.y < ysize && tileGrid.isEmptyChunkRow( clip.y >> CHUNK_SHIFT, xChunkFrom, xChunkTo ) ) {
+                clip.y = ( ( clip.y >> CHUNK_SHIFT ) + 1 ) << CHUNK_SHIFT;
+            }
+        }
+        
         private void dispose() {
             hasNext = false;
             tileGrid = null;
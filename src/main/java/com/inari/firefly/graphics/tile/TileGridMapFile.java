@@ -0,0 +1,319 @@
+package com.inari.firefly.graphics.tile;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.inari.commons.geom.Position;
+import com.inari.commons.lang.list.DynArray;
+import com.inari.firefly.FFInitException;
+import com.inari.firefly.entity.EEntity;
+import com.inari.firefly.entity.EntitySystem;
+import com.inari.firefly.system.FFContext;
+
+/** A binary tile map file that is memory-mapped and used as streaming backing of a {@link TileGrid}.
+ *  The file stores the grid in the same chunks of {@link TileGrid#CHUNK_SIZE} x {@link TileGrid#CHUNK_SIZE} cells
+ *  the TileGrid uses. Only chunks that contains at least one tile are stored so the file stays sparse as the grid.
+ *  <p>
+ *  The entity ids of tiles are not stable between runs, so the cells store a tile key instead that is the index
+ *  of the entity name of the tile within the tile table of the file. The keys are mapped back to the ids of the 
+ *  entities with these names on the first read of a chunk that uses them.
+ *  <p>
+ *  File layout, all values are big-endian int:
+ *  <pre>
+ *  header: magic, version, width, height, chunkSize, tileCount
+ *  tiles:  one entry per tile key, the length of the entity name and one value per char of the name
+ *  index:  one entry per chunk in row order, the slot of the chunk data or -1 for an empty chunk
+ *  data:   CHUNK_SIZE * CHUNK_SIZE tile keys per slot in row order
+ *  </pre>
+ */
+public final class TileGridMapFile {
+
+    public static final int MAGIC = 0x46465447;
+    public static final int VERSION = 2;
+
+    private static final int HEADER_INTS = 6;
+    private static final int CHUNK_INTS = TileGrid.CHUNK_SIZE * TileGrid.CHUNK_SIZE;
+
+    private final String fileName;
+    private final RandomAccessFile file;
+    private final IntBuffer data;
+    private final int width;
+    private final int height;
+    private final int xChunks;
+    private final int yChunks;
+    private final String[] tileNames;
+    private final int indexOffset;
+    
+    // the entity ids of the tile keys, resolved by name on first use
+    private final int[] tileIds;
+    private final FFContext context;
+
+    private TileGridMapFile( String fileName, RandomAccessFile file, IntBuffer data, FFContext context ) {
+        this.fileName = fileName;
+        this.file = file;
+        this.data = data;
+        this.context = context;
+
+        if ( data.get( 0 ) != MAGIC || data.get( 1 ) != VERSION ) {
+            throw new FFInitException( "The file: " + fileName + " is not a tile map file of version: " + VERSION );
+        }
+        if ( data.get( 4 ) != TileGrid.CHUNK_SIZE ) {
+            throw new FFInitException( "Chunk size mismatch of tile map file: " + fileName + " expected: " + TileGrid.CHUNK_SIZE );
+        }
+
+        width = data.get( 2 );
+        height = data.get( 3 );
+        xChunks = chunks( width );
+        yChunks = chunks( height );
+        
+        tileNames = new String[ data.get( 5 ) ];
+        int position = HEADER_INTS;
+        for ( int i = 0; i < tileNames.length; i++ ) {
+            char[] name = new char[ data.get( position++ ) ];
+            for ( int c = 0; c < name.length; c++ ) {
+                name[ c ] = (char) data.get( position++ );
+            }
+            tileNames[ i ] = new String( name );
+        }
+        indexOffset = position;
+        tileIds = new int[ tileNames.length ];
+        Arrays.fill( tileIds, -1 );
+    }
+
+    public final String getFileName() {
+        return fileName;
+    }
+
+    public final int getWidth() {
+        return width;
+    }
+
+    public final int getHeight() {
+        return height;
+    }
+    
+    public final int getTileCount() {
+        return tileNames.length;
+    }
+    
+    /** The entity name of the tile with the specified tile key */
+    public final String getTileName( int tileKey ) {
+        return tileNames[ tileKey ];
+    }
+
+    public final boolean hasChunk( int chunkIndex ) {
+        return data.get( indexOffset + chunkIndex ) >= 0;
+    }
+
+    /** Reads the cells of the specified chunk into the target array with the tile keys mapped to entity ids.
+     *  @return the number of cells of the chunk that have a tile or 0 if the chunk is empty and the target was not touched
+     */
+    public final int readChunk( int chunkIndex, int[] target ) {
+        int slot = data.get( indexOffset + chunkIndex );
+        if ( slot < 0 ) {
+            return 0;
+        }
+
+        data.position( indexOffset + xChunks * yChunks + slot * CHUNK_INTS );
+        data.get( target, 0, CHUNK_INTS );
+
+        int count = 0;
+        for ( int i = 0; i < CHUNK_INTS; i++ ) {
+            if ( target[ i ] != TileGrid.NULL_VALUE ) {
+                target[ i ] = getTileId( target[ i ] );
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private int getTileId( int tileKey ) {
+        if ( tileIds[ tileKey ] < 0 ) {
+            if ( context == null ) {
+                throw new FFInitException( "The tiles of tile map file: " + fileName + " can't be resolved without a context" );
+            }
+            int entityId = context.getSystem( EntitySystem.SYSTEM_KEY ).getEntityId( tileNames[ tileKey ] );
+            if ( entityId < 0 ) {
+                throw new FFInitException( "No tile entity with name: " + tileNames[ tileKey ] + " found for tile map file: " + fileName );
+            }
+            tileIds[ tileKey ] = entityId;
+        }
+        return tileIds[ tileKey ];
+    }
+
+    public final void close() {
+        try {
+            file.close();
+        } catch ( IOException e ) {
+            throw new FFInitException( "Failed to close tile map file: " + fileName, e );
+        }
+    }
+
+    /** Opens and maps the specified tile map file read only. The tile keys are mapped to the tile entities
+     *  of the specified FFContext
+     */
+    public static final TileGridMapFile open( String fileName, FFContext context ) {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile( fileName, "r" );
+            FileChannel channel = file.getChannel();
+            IntBuffer data = channel.map( MapMode.READ_ONLY, 0, channel.size() ).asIntBuffer();
+            return new TileGridMapFile( fileName, file, data, context );
+        } catch ( IOException e ) {
+            closeQuietly( file );
+            throw new FFInitException( "Failed to open tile map file: " + fileName, e );
+        } catch ( RuntimeException e ) {
+            closeQuietly( file );
+            throw e;
+        }
+    }
+
+    /** Writes the current content of the specified not streamed TileGrid into a tile map file. The tile entities 
+     *  of the grid must have an entity name within the specified FFContext
+     */
+    public static final void write( File file, TileGrid tileGrid, FFContext context ) {
+        if ( tileGrid.isStreamed() ) {
+            throw new FFInitException( "A streamed TileGrid has only the chunks around its View loaded and can't be written" );
+        }
+        
+        Map<Integer, Integer> tileKeys = new LinkedHashMap<Integer, Integer>();
+        int[][] chunks = new int[ tileGrid.chunks.length ][];
+        for ( int chunkIndex = 0; chunkIndex < chunks.length; chunkIndex++ ) {
+            int[] chunk = tileGrid.chunks[ chunkIndex ];
+            if ( isEmpty( chunk ) ) {
+                continue;
+            }
+            
+            chunks[ chunkIndex ] = TileGrid.createEmptyChunk();
+            for ( int i = 0; i < CHUNK_INTS; i++ ) {
+                if ( chunk[ i ] != TileGrid.NULL_VALUE ) {
+                    chunks[ chunkIndex ][ i ] = getTileKey( tileKeys, chunk[ i ] );
+                }
+            }
+        }
+        write( file, tileGrid.getWidth(), tileGrid.getHeight(), tileNames( tileKeys, context ), chunks );
+    }
+
+    /** Bulk import of tiles that are defined by the grid positions of their ETile component into a tile map file.
+     *  After the import the grid positions of the ETile components are not needed anymore for a TileGrid that
+     *  streams from the file and can be cleared before the tile entities get activated.
+     *
+     * @param file the tile map file to create
+     * @param width the width of the grid in cells
+     * @param height the height of the grid in cells
+     * @param context the FFContext to get the ETile components from
+     * @param tileEntityIds the ids of the tile entities to import
+     */
+    public static final void importTiles( File file, int width, int height, FFContext context, int... tileEntityIds ) {
+        int xChunks = chunks( width );
+        int[][] chunks = new int[ xChunks * chunks( height ) ][];
+        Map<Integer, Integer> tileKeys = new LinkedHashMap<Integer, Integer>();
+
+        for ( int entityId : tileEntityIds ) {
+            int tileKey = getTileKey( tileKeys, entityId );
+            ETile tile = context.getEntityComponent( entityId, ETile.TYPE_KEY );
+            DynArray<Position> gridPositions = tile.getGridPositions();
+            for ( int i = 0; i < gridPositions.capacity(); i++ ) {
+                Position position = gridPositions.get( i );
+                if ( position == null ) {
+                    continue;
+                }
+                if ( position.x < 0 || position.x >= width || position.y < 0 || position.y >= height ) {
+                    throw new FFInitException( "Grid position: " + position + " of tile entity: " + entityId + " is out of grid bounds" );
+                }
+
+                int chunkIndex = ( position.y >> TileGrid.CHUNK_SHIFT ) * xChunks + ( position.x >> TileGrid.CHUNK_SHIFT );
+                if ( chunks[ chunkIndex ] == null ) {
+                    chunks[ chunkIndex ] = TileGrid.createEmptyChunk();
+                }
+                chunks[ chunkIndex ][ TileGrid.cellIndex( position.x, position.y ) ] = tileKey;
+            }
+        }
+
+        write( file, width, height, tileNames( tileKeys, context ), chunks );
+    }
+    
+    private static int getTileKey( Map<Integer, Integer> tileKeys, int entityId ) {
+        Integer tileKey = tileKeys.get( entityId );
+        if ( tileKey == null ) {
+            tileKey = tileKeys.size();
+            tileKeys.put( entityId, tileKey );
+        }
+        return tileKey;
+    }
+    
+    private static String[] tileNames( Map<Integer, Integer> tileKeys, FFContext context ) {
+        String[] tileNames = new String[ tileKeys.size() ];
+        for ( Map.Entry<Integer, Integer> tileKey : tileKeys.entrySet() ) {
+            int entityId = tileKey.getKey();
+            EEntity entity = context.getEntityComponent( entityId, EEntity.TYPE_KEY );
+            if ( entity == null || entity.getEntityName() == null ) {
+                throw new FFInitException( "The tile entity: " + entityId + " needs an entity name to be stored in a tile map file" );
+            }
+            tileNames[ tileKey.getValue() ] = entity.getEntityName();
+        }
+        return tileNames;
+    }
+
+    private static void write( File file, int width, int height, String[] tileNames, int[][] chunks ) {
+        try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) ) ) {
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+            out.writeInt( width );
+            out.writeInt( height );
+            out.writeInt( TileGrid.CHUNK_SIZE );
+            out.writeInt( tileNames.length );
+            for ( String tileName : tileNames ) {
+                out.writeInt( tileName.length() );
+                for ( int c = 0; c < tileName.length(); c++ ) {
+                    out.writeInt( tileName.charAt( c ) );
+                }
+            }
+
+            int slot = 0;
+            for ( int[] chunk : chunks ) {
+                out.writeInt( ( isEmpty( chunk ) )? -1 : slot++ );
+            }
+            for ( int[] chunk : chunks ) {
+                if ( isEmpty( chunk ) ) {
+                    continue;
+                }
+                for ( int i = 0; i < CHUNK_INTS; i++ ) {
+                    out.writeInt( chunk[ i ] );
+                }
+            }
+        } catch ( IOException e ) {
+            throw new FFInitException( "Failed to write tile map file: " + file, e );
+        }
+    }
+
+    private static boolean isEmpty( int[] chunk ) {
+        return chunk == null || chunk == TileGrid.EMPTY_CHUNK;
+    }
+
+    private static int chunks( int cells ) {
+        return ( cells + TileGrid.CHUNK_MASK ) >> TileGrid.CHUNK_SHIFT;
+    }
+
+    private static void closeQuietly( RandomAccessFile file ) {
+        if ( file == null ) {
+            return;
+        }
+        try {
+            file.close();
+        } catch ( IOException e ) {
+            // ignore, the original failure is reported
+        }
+    }
+
+}
@@ -25,11 +25,16 @@ import com.inari.firefly.entity.EntityActivationEvent;
 import com.inari.firefly.entity.EntityActivationListener;
 import com.inari.firefly.entity.EntitySystem;
 import com.inari.firefly.graphics.ETransform;
+import com.inari.firefly.graphics.LayerCacheSystem;
+import com.inari.firefly.graphics.RenderPlan;
+import com.inari.firefly.graphics.view.View;
 import com.inari.firefly.graphics.view.ViewEvent;
 import com.inari.firefly.graphics.view.ViewEvent.Type;
 import com.inari.firefly.graphics.view.ViewEventListener;
+import com.inari.firefly.graphics.view.ViewSystem;
 import com.inari.firefly.system.FFContext;
-import com.inari.firefly.system.RenderEvent;
+import com.inari.firefly.system.UpdateEvent;
+import com.inari.firefly.system.UpdateEventListener;
 import com.inari.firefly.system.component.ComponentSystem;
 import com.inari.firefly.system.component.SystemBuilderAdapter;
 import com.inari.firefly.system.component.SystemComponent.SystemComponentKey;
@@ -40,7 +45,8 @@ public final class TileGridSystem
         ComponentSystem<TileGridSystem>
     implements
         ViewEventListener,
-        EntityActivationListener {
+        EntityActivationListener,
+        UpdateEventListener {
     
     public static final FFSystemTypeKey<TileGridSystem> SYSTEM_KEY = FFSystemTypeKey.create( TileGridSystem.class ); 
     private static final SystemComponentKey<?>[] SUPPORTED_COMPONENT_TYPES = new SystemComponentKey[] {
@@ -49,22 +55,30 @@ public final class TileGridSystem
     };
 
     private EntitySystem entitySystem;
+    private RenderPlan renderPlan;
+    private LayerCacheSystem layerCacheSystem;
+    private ViewSystem viewSystem;
     
     private final DynArray<TileGridRenderer> renderer;
     private final DynArray<TileGrid> tileGrids;
     private final DynArray<DynArray<TileGrid>> tileGridOfViewsPerLayer;
+    final TileRenderInfo renderInfo;
     
     public TileGridSystem() {
         super( SYSTEM_KEY );
         renderer = DynArray.create( TileGridRenderer.class, 5, 5 );
         tileGrids = DynArray.create( TileGrid.class, 20, 10 );
         tileGridOfViewsPerLayer = DynArray.createTyped( DynArray.class, 10, 10 );
+        renderInfo = new TileRenderInfo();
     }
     
     @Override
     public void init( FFContext context ) {
         super.init( context );
         entitySystem = context.getSystem( EntitySystem.SYSTEM_KEY );
+        renderPlan = context.getSystem( RenderPlan.SYSTEM_KEY );
+        layerCacheSystem = context.getSystem( LayerCacheSystem.SYSTEM_KEY );
+        viewSystem = context.getSystem( ViewSystem.SYSTEM_KEY );
         
         // build and register default tile grid renderer
         getRendererBuilder( NormalFastTileGridRenderer.class )
@@ -77,6 +91,7 @@ public final class TileGridSystem
         context.registerListener( ViewEvent.TYPE_KEY, this );
         context.registerListener( EntityActivationEvent.TYPE_KEY, this );
         context.registerListener( TileSystemEvent.TYPE_KEY, this );
+        context.registerListener( UpdateEvent.TYPE_KEY, this );
     }
 
     public final TileGridRendererBuilder getRendererBuilder( Class<? extends TileGridRenderer> componentType ) {
@@ -88,9 +103,9 @@ public final class TileGridSystem
         context.disposeListener( ViewEvent.TYPE_KEY, this );
         context.disposeListener( EntityActivationEvent.TYPE_KEY, this );
         context.disposeListener( TileSystemEvent.TYPE_KEY, this );
+        context.disposeListener( UpdateEvent.TYPE_KEY, this );
         
         for ( TileGridRenderer r : renderer ) {
-            context.disposeListener( RenderEvent.TYPE_KEY, r );
             r.dispose();
         }
         
@@ -115,6 +130,7 @@ public final class TileGridSystem
         final TileGrid tileGrid = getTileGrid( transform.getViewId(), transform.getLayerId() );
         final DynArray<Position> gridPositions = tile.getGridPositions();
         
+        renderInfo.set( entityId, tile, transform );
         for ( int i = 0; i < gridPositions.capacity(); i++ ) {
             if ( !gridPositions.contains( i ) ) {
                 continue;
@@ -137,6 +153,7 @@ public final class TileGridSystem
             
             tileGrid.resetIfMatch( entityId, gridPositions.get( i ) );
         }
+        renderInfo.remove( entityId );
     }
     
     @Override
@@ -147,6 +164,21 @@ public final class TileGridSystem
         }
     }
     
+    @Override
+    public final void update( UpdateEvent event ) {
+        for ( int i = 0; i < tileGrids.capacity(); i++ ) {
+            TileGrid tileGrid = tileGrids.get( i );
+            if ( tileGrid == null || !tileGrid.isStreamed() ) {
+                continue;
+            }
+            
+            View view = viewSystem.getView( tileGrid.getViewId() );
+            if ( view != null && view.isActive() ) {
+                tileGrid.updateStreaming( view.getWorldPosition(), view.getBounds() );
+            }
+        }
+    }
+    
     @Override
     public final boolean match( Aspects aspects ) {
         return aspects.contains( ETile.TYPE_KEY );
@@ -173,7 +205,6 @@ public final class TileGridSystem
     public final void deleteRenderer( int id ) {
         TileGridRenderer r = renderer.remove( id );
         if ( r != null ) {
-            context.disposeListener( RenderEvent.TYPE_KEY, r );
             r.dispose();
         }
     }
@@ -243,6 +274,7 @@ public final class TileGridSystem
                 tileGrids.remove( tileGrid.index() );
                 disposeSystemComponent( tileGrid );
             }
+            renderPlan.invalidate();
         }
     }
     
@@ -260,8 +292,10 @@ public final class TileGridSystem
         }
         
         TileGrid removed = tileGridsForView.remove( layerId );
+        removed.markCacheDirty();
         tileGrids.remove( removed.index() );
         disposeSystemComponent( removed );
+        renderPlan.invalidate();
     }
     
     public final void deleteTileGrid( int tileGridId ) {
@@ -270,7 +304,9 @@ public final class TileGridSystem
         }
         
         TileGrid removed = tileGrids.get( tileGridId );
+        removed.markCacheDirty();
         tileGridOfViewsPerLayer.get( removed.getViewId() ).remove( removed.getLayerId() );
+        renderPlan.invalidate();
     };
 
     public final SystemComponentBuilder getTileGridBuilder() {
@@ -294,6 +330,7 @@ public final class TileGridSystem
     public final void clear() {
         tileGridOfViewsPerLayer.clear();
         renderer.clear();
+        renderInfo.clear();
     }
     
     private final class TileGridBuilder extends SystemComponentBuilder {
@@ -326,10 +363,13 @@ public final class TileGridSystem
                 tileGridOfViewsPerLayer.set( viewId, DynArray.create( TileGrid.class, 20, 10 ) );
             }
 
+            tileGrid.layerCache = layerCacheSystem.getCache( viewId, layerId );
+            tileGrid.markCacheDirty();
             tileGrids.set( tileGrid.index(), tileGrid );
             tileGridOfViewsPerLayer
                 .get( viewId )
                 .set( layerId, tileGrid );
+            renderPlan.invalidate();
 
             return tileGrid.index();
         }
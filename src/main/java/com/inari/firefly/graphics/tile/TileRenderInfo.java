@@ -0,0 +1,49 @@
+package com.inari.firefly.graphics.tile;
+
+import java.util.Arrays;
+
+import com.inari.firefly.graphics.ETransform;
+
+/** Compact render data of all active tile entities, indexed by entity id. The components of a tile entity are
+ *  resolved once on activation so that the TileGridRenderer can render the cells of a TileGrid with plain array
+ *  lookups instead of entity component lookups for every visible cell on every frame.
+ *  <p>
+ *  The components itself are referenced, so changes of sprite, tint or transform of an active tile are reflected
+ *  without any update.
+ */
+final class TileRenderInfo {
+    
+    private static final int INITIAL_CAPACITY = 100;
+    
+    ETile[] tiles;
+    ETransform[] transforms;
+    
+    TileRenderInfo() {
+        tiles = new ETile[ INITIAL_CAPACITY ];
+        transforms = new ETransform[ INITIAL_CAPACITY ];
+    }
+    
+    final void set( int entityId, ETile tile, ETransform transform ) {
+        if ( entityId >= tiles.length ) {
+            int capacity = Math.max( entityId + 1, tiles.length * 2 );
+            tiles = Arrays.copyOf( tiles, capacity );
+            transforms = Arrays.copyOf( transforms, capacity );
+        }
+        
+        tiles[ entityId ] = tile;
+        transforms[ entityId ] = transform;
+    }
+    
+    final void remove( int entityId ) {
+        if ( entityId < tiles.length ) {
+            tiles[ entityId ] = null;
+            transforms[ entityId ] = null;
+        }
+    }
+    
+    final void clear() {
+        Arrays.fill( tiles, null );
+        Arrays.fill( transforms, null );
+    }
+
+}
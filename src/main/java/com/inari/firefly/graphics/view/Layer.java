@@ -18,6 +18,7 @@ package com.inari.firefly.graphics.view;
 import java.util.Arrays;
 import java.util.Set;
 
+import com.inari.commons.geom.Rectangle;
 import com.inari.commons.lang.indexed.IndexedTypeKey;
 import com.inari.firefly.component.attr.AttributeKey;
 import com.inari.firefly.component.attr.AttributeMap;
@@ -32,11 +33,31 @@ public final class Layer extends SystemComponent {
     
     public static final AttributeKey<String> VIEW_NAME = new AttributeKey<String>( "viewName", String.class, Layer.class );
     public static final AttributeKey<Integer> VIEW_ID = new AttributeKey<Integer>( "viewId", Integer.class, Layer.class );
+    /** Opt-in cached layer mode. A cached Layer is rendered into offscreen chunks that are only redrawn when they get dirty */
+    public static final AttributeKey<Boolean> CACHED = new AttributeKey<Boolean>( "cached", Boolean.class, Layer.class );
+    /** The world area of a cached Layer that is cached. Mandatory for a cached Layer */
+    public static final AttributeKey<Rectangle> CACHE_BOUNDS = new AttributeKey<Rectangle>( "cacheBounds", Rectangle.class, Layer.class );
+    public static final AttributeKey<Integer> CACHE_CHUNK_SIZE = new AttributeKey<Integer>( "cacheChunkSize", Integer.class, Layer.class );
+    /** The margin around an entity position that is marked dirty when the entity moves on a cached Layer */
+    public static final AttributeKey<Integer> CACHE_DIRTY_MARGIN = new AttributeKey<Integer>( "cacheDirtyMargin", Integer.class, Layer.class );
     public static final AttributeKey<?>[] ATTRIBUTE_KEYS = new AttributeKey[] { 
-        VIEW_ID
+        VIEW_ID,
+        CACHED,
+        CACHE_BOUNDS,
+        CACHE_CHUNK_SIZE,
+        CACHE_DIRTY_MARGIN
     };
+    
+    public static final int DEFAULT_CACHE_CHUNK_SIZE = 256;
+    public static final int DEFAULT_CACHE_DIRTY_MARGIN = 32;
 
     private int viewId;
+    private boolean cached;
+    private Rectangle cacheBounds;
+    private int cacheChunkSize = DEFAULT_CACHE_CHUNK_SIZE;
+    private int cacheDirtyMargin = DEFAULT_CACHE_DIRTY_MARGIN;
+    
+    private LayerCache cache;
     
     boolean active = false;
     
@@ -57,6 +78,22 @@ public final class Layer extends SystemComponent {
         return active;
     }
 
+    public final boolean isCached() {
+        return cached;
+    }
+
+    /** Get the offscreen cache of this Layer or null if this Layer is not cached */
+    public final LayerCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public final void dispose() {
+        disposeCache();
+        
+        super.dispose();
+    }
+
     @Override
     public final Set<AttributeKey<?>> attributeKeys() {
         Set<AttributeKey<?>> attributeKeys = super.attributeKeys();
@@ -72,6 +109,19 @@ public final class Layer extends SystemComponent {
         if ( viewId < 0 ) {
             throw new ComponentCreationException( "Missing mandatory viewId attribute" );
         }
+        
+        cached = attributes.getValue( CACHED, cached );
+        cacheBounds = attributes.getValue( CACHE_BOUNDS, cacheBounds );
+        cacheChunkSize = attributes.getValue( CACHE_CHUNK_SIZE, cacheChunkSize );
+        cacheDirtyMargin = attributes.getValue( CACHE_DIRTY_MARGIN, cacheDirtyMargin );
+        
+        disposeCache();
+        if ( cached ) {
+            if ( cacheBounds == null ) {
+                throw new ComponentCreationException( "Missing mandatory cacheBounds attribute for cached Layer" );
+            }
+            cache = new LayerCache( context.getGraphics(), cacheBounds, cacheChunkSize, cacheDirtyMargin );
+        }
     }
 
     @Override
@@ -79,6 +129,19 @@ public final class Layer extends SystemComponent {
         super.toAttributes( attributes );
         
         attributes.put( VIEW_ID, viewId );
+        if ( cached ) {
+            attributes.put( CACHED, cached );
+            attributes.put( CACHE_BOUNDS, new Rectangle( cacheBounds ) );
+            attributes.put( CACHE_CHUNK_SIZE, cacheChunkSize );
+            attributes.put( CACHE_DIRTY_MARGIN, cacheDirtyMargin );
+        }
+    }
+    
+    private void disposeCache() {
+        if ( cache != null ) {
+            cache.dispose();
+            cache = null;
+        }
     }
 
 }
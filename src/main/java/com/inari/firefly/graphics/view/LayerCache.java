@@ -0,0 +1,153 @@
+package com.inari.firefly.graphics.view;
+
+import java.util.Arrays;
+
+import com.inari.commons.geom.Rectangle;
+import com.inari.firefly.graphics.RenderBounds;
+import com.inari.firefly.system.external.FFGraphics;
+
+/** The offscreen cache of a cached {@link Layer}. The cached world area of the Layer is split into quadratic chunks
+ *  of the same size and every chunk is rendered into its own offscreen target of the {@link FFGraphics}. A chunk is
+ *  only re-rendered when it is marked as dirty, otherwise the content of its offscreen target is reused.
+ *  <p>
+ *  TileGrid cell changes and ETransform changes of entities on the Layer mark the chunks of the old and the new bounds
+ *  of the entities renderable dirty automatically, also for the children of a moved parent. Any other change of the 
+ *  Layers content, like a changed color of an entity, must be signaled by calling one of the markDirty methods and a
+ *  change of the size of the renderable of an entity by LayerCacheSystem.updateBounds.
+ */
+public final class LayerCache {
+
+    public static final int NULL_TARGET = -1;
+
+    private final FFGraphics graphics;
+    private final Rectangle bounds;
+    private final int chunkSize;
+    private final int dirtyMargin;
+    private final int xChunks;
+    private final int yChunks;
+
+    private final int[] targetIds;
+    private final boolean[] dirty;
+
+    LayerCache( FFGraphics graphics, Rectangle bounds, int chunkSize, int dirtyMargin ) {
+        this.graphics = graphics;
+        this.bounds = new Rectangle( bounds );
+        this.chunkSize = chunkSize;
+        this.dirtyMargin = dirtyMargin;
+        xChunks = ( bounds.width + chunkSize - 1 ) / chunkSize;
+        yChunks = ( bounds.height + chunkSize - 1 ) / chunkSize;
+
+        targetIds = new int[ xChunks * yChunks ];
+        dirty = new boolean[ xChunks * yChunks ];
+        Arrays.fill( targetIds, NULL_TARGET );
+        markAllDirty();
+    }
+
+    public final int getChunkSize() {
+        return chunkSize;
+    }
+
+    public final int getXChunks() {
+        return xChunks;
+    }
+
+    public final int getYChunks() {
+        return yChunks;
+    }
+
+    public final int getChunkIndex( int xChunk, int yChunk ) {
+        return yChunk * xChunks + xChunk;
+    }
+
+    public final boolean isDirty( int chunkIndex ) {
+        return dirty[ chunkIndex ];
+    }
+
+    public final void clearDirty( int chunkIndex ) {
+        dirty[ chunkIndex ] = false;
+    }
+
+    public final void markAllDirty() {
+        Arrays.fill( dirty, true );
+    }
+
+    /** Marks the chunks dirty that are overlapped by the quadratic region of the size of two times the dirty margin
+     *  around the specified world position. This is used for entities where the extent of the renderable is unknown.
+     */
+    public final void markDirty( float xpos, float ypos ) {
+        markDirty( xpos - dirtyMargin, ypos - dirtyMargin, 2 * dirtyMargin, 2 * dirtyMargin );
+    }
+
+    /** Marks all chunks dirty that are overlapped by the specified world region */
+    public final void markDirty( float xpos, float ypos, float width, float height ) {
+        int x1 = Math.max( 0, (int) Math.floor( ( xpos - bounds.x ) / chunkSize ) );
+        int y1 = Math.max( 0, (int) Math.floor( ( ypos - bounds.y ) / chunkSize ) );
+        int x2 = Math.min( xChunks, (int) Math.ceil( ( xpos - bounds.x + width ) / chunkSize ) );
+        int y2 = Math.min( yChunks, (int) Math.ceil( ( ypos - bounds.y + height ) / chunkSize ) );
+
+        for ( int y = y1; y < y2; y++ ) {
+            for ( int x = x1; x < x2; x++ ) {
+                dirty[ y * xChunks + x ] = true;
+            }
+        }
+    }
+
+    /** Marks all chunks dirty that are overlapped by the specified world bounds */
+    public final void markDirty( RenderBounds bounds ) {
+        markDirty( bounds.x, bounds.y, bounds.width, bounds.height );
+    }
+
+    /** Maps the specified world clip to the range of chunks it overlaps. The result is in chunk units and
+     *  has a width or height of zero if the clip don't overlaps the cached area at all.
+     */
+    public final void mapToChunks( final Rectangle worldClip, final Rectangle result ) {
+        result.x = Math.max( 0, (int) Math.floor( (double) ( worldClip.x - bounds.x ) / chunkSize ) );
+        result.y = Math.max( 0, (int) Math.floor( (double) ( worldClip.y - bounds.y ) / chunkSize ) );
+        result.width = Math.max( 0, Math.min( xChunks, (int) Math.ceil( (double) ( worldClip.x - bounds.x + worldClip.width ) / chunkSize ) ) - result.x );
+        result.height = Math.max( 0, Math.min( yChunks, (int) Math.ceil( (double) ( worldClip.y - bounds.y + worldClip.height ) / chunkSize ) ) - result.y );
+    }
+
+    public final void getChunkBounds( int xChunk, int yChunk, final Rectangle result ) {
+        result.x = bounds.x + xChunk * chunkSize;
+        result.y = bounds.y + yChunk * chunkSize;
+        result.width = chunkSize;
+        result.height = chunkSize;
+    }
+
+    public final boolean hasTarget( int chunkIndex ) {
+        return targetIds[ chunkIndex ] != NULL_TARGET;
+    }
+
+    /** Get the offscreen target id of the specified chunk. The offscreen target is created on first request */
+    public final int getTargetId( int chunkIndex ) {
+        if ( targetIds[ chunkIndex ] == NULL_TARGET ) {
+            targetIds[ chunkIndex ] = graphics.createOffscreenTarget( chunkSize, chunkSize );
+            dirty[ chunkIndex ] = true;
+        }
+
+        return targetIds[ chunkIndex ];
+    }
+
+    final void dispose() {
+        for ( int i = 0; i < targetIds.length; i++ ) {
+            if ( targetIds[ i ] != NULL_TARGET ) {
+                graphics.disposeOffscreenTarget( targetIds[ i ] );
+                targetIds[ i ] = NULL_TARGET;
+            }
+        }
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append( "LayerCache [bounds=" );
+        builder.append( bounds );
+        builder.append( ", chunkSize=" );
+        builder.append( chunkSize );
+        builder.append( ", chunks=" );
+        builder.append( xChunks ).append( "x" ).append( yChunks );
+        builder.append( "]" );
+        return builder.toString();
+    }
+
+}
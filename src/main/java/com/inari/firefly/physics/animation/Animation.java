@@ -134,6 +134,23 @@ public abstract class Animation extends SystemComponent {
      */
     public abstract void update();
     
+    // pooled animations are recycled by the AnimationSystem when finished instead of disposed
+    boolean isPooled() {
+        return false;
+    }
+    
+    // applies the value of an animation that has its own target, additional to the AnimationMappings
+    void applyTarget() {
+        // by default an Animation is applied to its AnimationMappings only
+    }
+    
+    /** This is called by the AnimationSystem when an entity that is mapped to this Animation is deactivated.
+     *  Override this to clear state that is kept per entity, the entity id may be reused by another entity.
+     */
+    protected void entityDeactivated( int entityId ) {
+        // by default an Animation keeps no state per entity
+    }
+    
     public void reset() {
         active = false;
         finished = false;
@@ -8,6 +8,8 @@ public final class AnimationMapping {
     public final AttributeAnimationAdapterKey<?> adapterKey;
     
     int entityId;
+    // the slot of this mapping within the active mappings of the AnimationSystem or -1 if not active
+    int slot = -1;
     
     
     public AnimationMapping( String animationName, AttributeAnimationAdapterKey<?> adapterKey ) {
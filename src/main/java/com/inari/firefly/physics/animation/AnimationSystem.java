@@ -15,12 +15,14 @@
  ******************************************************************************/ 
 package com.inari.firefly.physics.animation;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import com.inari.commons.lang.aspect.Aspects;
 import com.inari.commons.lang.list.DynArray;
 import com.inari.firefly.entity.EntityActivationEvent;
 import com.inari.firefly.entity.EntityActivationListener;
+import com.inari.firefly.physics.animation.AttributeAnimationAdapter.AttributeAnimationAdapterKey;
 import com.inari.firefly.system.FFContext;
 import com.inari.firefly.system.UpdateEvent;
 import com.inari.firefly.system.UpdateEventListener;
@@ -38,6 +40,11 @@ public final class AnimationSystem
     
     public static final FFSystemTypeKey<AnimationSystem> SYSTEM_KEY = FFSystemTypeKey.create( AnimationSystem.class );
     
+    // a tween handle is the animation id of the tween tagged with the generation of the tween
+    private static final int TWEEN_ID_BITS = 20;
+    private static final int TWEEN_ID_MASK = ( 1 << TWEEN_ID_BITS ) - 1;
+    private static final int TWEEN_GENERATION_MASK = Integer.MAX_VALUE >>> TWEEN_ID_BITS;
+    
     private static final SystemComponentKey<?>[] SUPPORTED_COMPONENT_TYPES = new SystemComponentKey[] {
         Animation.TYPE_KEY,
         AnimationResolver.TYPE_KEY
@@ -45,11 +52,39 @@ public final class AnimationSystem
 
     final DynArray<Animation> animations;
     final DynArray<AnimationMapping> activeMappings;
+    
+    // dense index of the active mappings per animation id. The mappings of an animation are linked over
+    // the slots of activeMappings, mappingAnimation holds the animation id a slot is linked to or -1
+    private int[] animationMappingHead;
+    private int[] nextMappingOfAnimation;
+    private int[] prevMappingOfAnimation;
+    private int[] mappingAnimation;
+    private int[] freeMappingSlots;
+    private int freeMappingSlotCount;
+    private int mappingSlots;
+    // the active mappings that are not linked since their animation is not built yet
+    int unindexedMappings;
+    
+    // free-lists of the ids of finished, pooled tweens per tween type
+    private final TweenPool floatTweens = new TweenPool();
+    private final TweenPool intTweens = new TweenPool();
+    // the generation of the tween by animation id, incremented each time a tween is obtained
+    private int[] tweenGenerations = new int[ 20 ];
 
     AnimationSystem() {
         super( SYSTEM_KEY );
         animations = DynArray.create( Animation.class, 20, 10 );
         activeMappings = DynArray.create( AnimationMapping.class, 100, 100 );
+        
+        animationMappingHead = new int[ 20 ];
+        Arrays.fill( animationMappingHead, -1 );
+        nextMappingOfAnimation = new int[ 100 ];
+        prevMappingOfAnimation = new int[ 100 ];
+        mappingAnimation = new int[ 100 ];
+        freeMappingSlots = new int[ 100 ];
+        freeMappingSlotCount = 0;
+        mappingSlots = 0;
+        unindexedMappings = 0;
     }
     
     @Override
@@ -89,29 +124,34 @@ public final class AnimationSystem
                 animationMapping.animationId = getAnimationId( animationMapping.animationName );
             }
             
-            activeMappings.add( animationMapping );
+            addMapping( animationMapping );
         }
     }
 
     @Override
     public final void entityDeactivated( int entityId, Aspects aspects ) {
-        for ( int i = 0; i < activeMappings.capacity(); i++ ) {
-            AnimationMapping animationMapping = activeMappings.get( i );
-            if ( animationMapping == null ) {
+        DynArray<AnimationMapping> animationMappings = context.getEntityComponent( entityId, EAnimation.TYPE_KEY ).getAnimationMappings();
+        for ( int i = 0; i < animationMappings.capacity(); i++ ) {
+            final AnimationMapping animationMapping = animationMappings.get( i );
+            if ( animationMapping == null || animationMapping.slot < 0 ) {
                 continue;
             }
             
-            if ( animationMapping.entityId == entityId ) {
-                activeMappings.remove( i );
+            if ( animationMapping.animationId >= 0 && animations.contains( animationMapping.animationId ) ) {
+                animations.get( animationMapping.animationId ).entityDeactivated( entityId );
             }
+            removeMapping( animationMapping );
         }
     }
     
     public final void clear() {
         for ( Animation animation : animations ) {
+            removeMappingsOf( animation.index() );
             disposeSystemComponent( animation );
         }
         animations.clear();
+        floatTweens.size = 0;
+        intTweens.size = 0;
     }
 
     final void onAnimationEvent( AnimationSystemEvent event ) {
@@ -169,11 +209,18 @@ public final class AnimationSystem
                 if ( animation.active ) {
                     animation.systemUpdate();
                     applyValueAttribute( animation );
+                    animation.applyTarget();
+                    continue;
+                }
+                
+                if ( animation.finished && animation.isPooled() ) {
+                    recycleTween( animation );
                     continue;
                 }
                 
                 if ( animation.finished ) {
                     animations.remove( animation.index() );
+                    removeMappingsOf( animation.index() );
                     animation.dispose();
                     continue;
                 }
@@ -188,17 +235,225 @@ public final class AnimationSystem
     }
     
     private void applyValueAttribute( Animation animation ) {
-        for ( int i = 0; i < activeMappings.capacity(); i++ ) {
-            AnimationMapping animationMapping = activeMappings.get( i );
-            if ( animationMapping == null ) {
-                continue;
-            }
+        final int animationId = animation.index();
+        if ( animationId >= animationMappingHead.length ) {
+            return;
+        }
+        
+        for ( int slot = animationMappingHead[ animationId ]; slot >= 0; slot = nextMappingOfAnimation[ slot ] ) {
+            AnimationMapping animationMapping = activeMappings.get( slot );
             animationMapping
                 .adapterKey
                 .getAdapterInstance()
                 .apply( animationMapping.entityId, animation, context );
         }
     }
+    
+    private void addMapping( AnimationMapping animationMapping ) {
+        int slot;
+        if ( freeMappingSlotCount > 0 ) {
+            slot = freeMappingSlots[ --freeMappingSlotCount ];
+        } else {
+            slot = mappingSlots++;
+            if ( slot >= mappingAnimation.length ) {
+                int capacity = mappingAnimation.length * 2;
+                nextMappingOfAnimation = Arrays.copyOf( nextMappingOfAnimation, capacity );
+                prevMappingOfAnimation = Arrays.copyOf( prevMappingOfAnimation, capacity );
+                mappingAnimation = Arrays.copyOf( mappingAnimation, capacity );
+                freeMappingSlots = Arrays.copyOf( freeMappingSlots, capacity );
+            }
+        }
+        
+        animationMapping.slot = slot;
+        activeMappings.set( slot, animationMapping );
+        mappingAnimation[ slot ] = -1;
+        unindexedMappings++;
+        if ( animationMapping.animationId >= 0 ) {
+            indexMapping( slot, animationMapping.animationId );
+        }
+    }
+    
+    private void removeMapping( AnimationMapping animationMapping ) {
+        int slot = animationMapping.slot;
+        if ( mappingAnimation[ slot ] >= 0 ) {
+            unindexMapping( slot );
+        }
+        unindexedMappings--;
+        
+        activeMappings.remove( slot );
+        freeMappingSlots[ freeMappingSlotCount++ ] = slot;
+        animationMapping.slot = -1;
+    }
+    
+    private void indexMapping( int slot, int animationId ) {
+        if ( animationId >= animationMappingHead.length ) {
+            int oldCapacity = animationMappingHead.length;
+            animationMappingHead = Arrays.copyOf( animationMappingHead, Math.max( animationId + 1, oldCapacity * 2 ) );
+            Arrays.fill( animationMappingHead, oldCapacity, animationMappingHead.length, -1 );
+        }
+        
+        int head = animationMappingHead[ animationId ];
+        nextMappingOfAnimation[ slot ] = head;
+        prevMappingOfAnimation[ slot ] = -1;
+        if ( head >= 0 ) {
+            prevMappingOfAnimation[ head ] = slot;
+        }
+        animationMappingHead[ animationId ] = slot;
+        mappingAnimation[ slot ] = animationId;
+        unindexedMappings--;
+    }
+    
+    private void unindexMapping( int slot ) {
+        int prev = prevMappingOfAnimation[ slot ];
+        int next = nextMappingOfAnimation[ slot ];
+        if ( prev >= 0 ) {
+            nextMappingOfAnimation[ prev ] = next;
+        } else {
+            animationMappingHead[ mappingAnimation[ slot ] ] = next;
+        }
+        if ( next >= 0 ) {
+            prevMappingOfAnimation[ next ] = prev;
+        }
+        mappingAnimation[ slot ] = -1;
+        unindexedMappings++;
+    }
+    
+    // removes all mappings of a removed animation from the active mappings. They are added again when their entity is
+    // activated again, a mapping by name is then resolved to the animation with that name
+    private void removeMappingsOf( int animationId ) {
+        if ( animationId >= animationMappingHead.length ) {
+            return;
+        }
+        
+        while ( animationMappingHead[ animationId ] >= 0 ) {
+            AnimationMapping animationMapping = activeMappings.get( animationMappingHead[ animationId ] );
+            removeMapping( animationMapping );
+            if ( animationMapping.animationName != null ) {
+                animationMapping.animationId = -1;
+            }
+        }
+    }
+    
+    private void indexMappingsOf( Animation animation ) {
+        if ( unindexedMappings == 0 ) {
+            return;
+        }
+        
+        final int animationId = animation.index();
+        final String name = animation.getName();
+        for ( int slot = 0; slot < mappingSlots; slot++ ) {
+            if ( mappingAnimation[ slot ] >= 0 || !activeMappings.contains( slot ) ) {
+                continue;
+            }
+            
+            AnimationMapping animationMapping = activeMappings.get( slot );
+            if ( animationMapping.animationName != null && animationMapping.animationName.equals( name ) ) {
+                animationMapping.animationId = animationId;
+            }
+            if ( animationMapping.animationId == animationId ) {
+                indexMapping( slot, animationId );
+            }
+        }
+    }
+
+    /** Starts a pooled fire-and-forget tween of a float attribute of an entity, like the alpha of the tint color of a
+     *  sprite for a fade. The tween is recycled automatically when finished. No AnimationMapping is needed.
+     *  <p>
+     *  The returned handle identifies this run of the tween only. After the tween is recycled the handle is stale 
+     *  and stopTween and isTweenActive ignore it, even if the pooled tween is running again for another caller.
+     * 
+     * @param entityId the id of the entity to tween
+     * @param attribute the key of the float animation adapter of the attribute to tween
+     * @param from the start value
+     * @param to the end value
+     * @param duration the duration in milliseconds
+     * @param easing the Easing of the interpolation or null for linear
+     * @return the handle of the tween
+     */
+    public final int tween( int entityId, AttributeAnimationAdapterKey<? extends EntityFloatAnimationAdapter> attribute, float from, float to, long duration, Easing easing ) {
+        FloatTween tween = (FloatTween) animations.get( obtainTween( FloatTween.class, floatTweens ) );
+        tween.set( entityId, attribute, from, to, duration, easing );
+        tween.activate();
+        tween.applyTarget();
+        return tweenHandle( tween.index() );
+    }
+    
+    /** Starts a pooled fire-and-forget tween of an int attribute of an entity. See tween */
+    public final int tweenInt( int entityId, AttributeAnimationAdapterKey<? extends EntityIntAnimationAdapter> attribute, int from, int to, long duration, Easing easing ) {
+        IntTween tween = (IntTween) animations.get( obtainTween( IntTween.class, intTweens ) );
+        tween.set( entityId, attribute, from, to, duration, easing );
+        tween.activate();
+        tween.applyTarget();
+        return tweenHandle( tween.index() );
+    }
+    
+    /** Stops a running tween, for example because its entity gets deactivated. The tween is recycled on next update.
+     *  A stale handle of a recycled tween is ignored
+     */
+    public final void stopTween( int tweenHandle ) {
+        Animation animation = getTween( tweenHandle );
+        if ( animation != null && animation.active ) {
+            animation.finish();
+        }
+    }
+    
+    /** Indicates whether the tween of the specified handle is still running */
+    public final boolean isTweenActive( int tweenHandle ) {
+        Animation animation = getTween( tweenHandle );
+        return animation != null && animation.active;
+    }
+    
+    private Animation getTween( int tweenHandle ) {
+        if ( tweenHandle < 0 ) {
+            return null;
+        }
+        
+        int animationId = tweenHandle & TWEEN_ID_MASK;
+        if ( !animations.contains( animationId ) || animationId >= tweenGenerations.length ) {
+            return null;
+        }
+        
+        Animation animation = animations.get( animationId );
+        if ( !animation.isPooled() || tweenGenerations[ animationId ] != tweenHandle >>> TWEEN_ID_BITS ) {
+            return null;
+        }
+        return animation;
+    }
+    
+    private int tweenHandle( int animationId ) {
+        if ( animationId >= tweenGenerations.length ) {
+            tweenGenerations = Arrays.copyOf( tweenGenerations, Math.max( animationId + 1, tweenGenerations.length * 2 ) );
+        }
+        
+        int generation = ( tweenGenerations[ animationId ] + 1 ) & TWEEN_GENERATION_MASK;
+        tweenGenerations[ animationId ] = generation;
+        return ( generation << TWEEN_ID_BITS ) | animationId;
+    }
+    
+    private int obtainTween( Class<? extends Animation> type, TweenPool pool ) {
+        while ( pool.size > 0 ) {
+            int animationId = pool.ids[ --pool.size ];
+            // only an idle recycled tween of the type is reused, deleted tweens are removed from the pool
+            if ( !animations.contains( animationId ) ) {
+                continue;
+            }
+            Animation animation = animations.get( animationId );
+            if ( animation.isPooled() && type.isInstance( animation ) && !animation.active && !animation.finished ) {
+                return animationId;
+            }
+        }
+        
+        return getAnimationBuilder( type ).build();
+    }
+    
+    private void recycleTween( Animation animation ) {
+        animation.reset();
+        TweenPool pool = ( animation instanceof FloatTween )? floatTweens : intTweens;
+        if ( pool.size == pool.ids.length ) {
+            pool.ids = Arrays.copyOf( pool.ids, pool.ids.length * 2 );
+        }
+        pool.ids[ pool.size++ ] = animation.index();
+    }
 
     public final Animation getAnimation( int animationId ) {
         if ( animationId < 0 ) {
@@ -275,7 +530,13 @@ public final class AnimationSystem
             return;
         }
         
-        disposeSystemComponent( animations.remove( animationId ) );
+        Animation animation = animations.remove( animationId );
+        if ( animation.isPooled() ) {
+            floatTweens.remove( animationId );
+            intTweens.remove( animationId );
+        }
+        removeMappingsOf( animationId );
+        disposeSystemComponent( animation );
     }
 
     public final SystemComponentBuilder getAnimationBuilder( Class<? extends Animation> componentType ) {
@@ -299,6 +560,20 @@ public final class AnimationSystem
     };
     
 
+    private static final class TweenPool {
+        int[] ids = new int[ 20 ];
+        int size = 0;
+        
+        void remove( int animationId ) {
+            for ( int i = 0; i < size; i++ ) {
+                if ( ids[ i ] == animationId ) {
+                    ids[ i ] = ids[ --size ];
+                    return;
+                }
+            }
+        }
+    }
+
     private final class AnimationBuilder extends SystemComponentBuilder {
         
         private AnimationBuilder( Class<? extends Animation> componentType ) { 
@@ -314,6 +589,7 @@ public final class AnimationSystem
         public int doBuild( int componentId, Class<?> componentType, boolean activate ) {
             Animation animation = createSystemComponent( componentId, componentType, context );
             animations.set( animation.index(), animation );
+            indexMappingsOf( animation );
 
             if ( activate ) {
                 animation.active = true;
@@ -0,0 +1,70 @@
+package com.inari.firefly.physics.animation;
+
+/** Easing functions that map the normalized progress t in the range of 0 to 1 of an interpolation
+ *  to the normalized interpolation factor.
+ */
+public enum Easing {
+    
+    LINEAR {
+        @Override
+        public final float apply( float t ) {
+            return t;
+        }
+    },
+    /** Holds the start value until the end of the interpolation */
+    STEP {
+        @Override
+        public final float apply( float t ) {
+            return ( t >= 1f )? 1f : 0f;
+        }
+    },
+    QUAD_IN {
+        @Override
+        public final float apply( float t ) {
+            return t * t;
+        }
+    },
+    QUAD_OUT {
+        @Override
+        public final float apply( float t ) {
+            return t * ( 2f - t );
+        }
+    },
+    QUAD_IN_OUT {
+        @Override
+        public final float apply( float t ) {
+            return ( t < 0.5f )? 2f * t * t : -1f + ( 4f - 2f * t ) * t;
+        }
+    },
+    CUBIC_IN {
+        @Override
+        public final float apply( float t ) {
+            return t * t * t;
+        }
+    },
+    CUBIC_OUT {
+        @Override
+        public final float apply( float t ) {
+            float f = t - 1f;
+            return f * f * f + 1f;
+        }
+    },
+    CUBIC_IN_OUT {
+        @Override
+        public final float apply( float t ) {
+            if ( t < 0.5f ) {
+                return 4f * t * t * t;
+            }
+            float f = 2f * t - 2f;
+            return 0.5f * f * f * f + 1f;
+        }
+    };
+    
+    public abstract float apply( float t );
+    
+    /** Interpolates between from and to for the normalized progress t with this easing */
+    public final float interpolate( float from, float to, float t ) {
+        return from + ( to - from ) * apply( t );
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.inari.firefly.physics.animation;
+
+import java.util.Arrays;
+
+/** An immutable track of float keyframes stored in two primitive arrays, the keyframe times in milliseconds
+ *  in ascending order and the values at these times. The value between two keyframes is interpolated with
+ *  the Easing of the track.
+ *  <p>
+ *  A track has no state. The current segment of an evaluation is kept as cursor by the user of the track,
+ *  usually an Animation, and is passed to the next evaluation. Since the time advances in small steps, the
+ *  segment search starts from the cursor and is amortized O(1).
+ */
+public final class FloatKeyframeTrack {
+    
+    private final float[] times;
+    private final float[] values;
+    private final Easing easing;
+    
+    public FloatKeyframeTrack( float[] times, float[] values, Easing easing ) {
+        if ( times.length == 0 || times.length != values.length ) {
+            throw new IllegalArgumentException( "A track needs at least one keyframe and the same number of times and values" );
+        }
+        for ( int i = 1; i < times.length; i++ ) {
+            if ( times[ i ] < times[ i - 1 ] ) {
+                throw new IllegalArgumentException( "Keyframe times must be in ascending order: " + Arrays.toString( times ) );
+            }
+        }
+        
+        this.times = Arrays.copyOf( times, times.length );
+        this.values = Arrays.copyOf( values, values.length );
+        this.easing = ( easing != null )? easing : Easing.LINEAR;
+    }
+    
+    public final int size() {
+        return times.length;
+    }
+    
+    public final float getTime( int index ) {
+        return times[ index ];
+    }
+    
+    public final float getValue( int index ) {
+        return values[ index ];
+    }
+    
+    public final Easing getEasing() {
+        return easing;
+    }
+    
+    /** The time of the last keyframe */
+    public final float getDuration() {
+        return times[ times.length - 1 ];
+    }
+    
+    /** Get the index of the keyframe that starts the segment of the specified time, searching from the specified cursor.
+     *  Times before the first keyframe map to 0 and times after the last keyframe to the last keyframe.
+     */
+    public final int seek( float time, int cursor ) {
+        int last = times.length - 1;
+        if ( cursor < 0 ) {
+            cursor = 0;
+        } else if ( cursor > last ) {
+            cursor = last;
+        }
+        
+        while ( cursor < last && time >= times[ cursor + 1 ] ) {
+            cursor++;
+        }
+        while ( cursor > 0 && time < times[ cursor ] ) {
+            cursor--;
+        }
+        return cursor;
+    }
+    
+    /** Evaluates the value at the specified time within the segment of the specified cursor, see seek */
+    public final float evaluate( float time, int cursor ) {
+        if ( cursor >= times.length - 1 ) {
+            return values[ times.length - 1 ];
+        }
+        
+        float start = times[ cursor ];
+        if ( time <= start ) {
+            return values[ cursor ];
+        }
+        
+        float length = times[ cursor + 1 ] - start;
+        float t = ( length > 0 )? Math.min( 1f, ( time - start ) / length ) : 1f;
+        return easing.interpolate( values[ cursor ], values[ cursor + 1 ], t );
+    }
+    
+    /** Bulk evaluation of several tracks that share one clock. The cursor of each track is updated
+     *  within the cursors array and its value is stored at the same index within the result array.
+     */
+    public static final void evaluate( final FloatKeyframeTrack[] tracks, final int[] cursors, final float time, final float[] result ) {
+        for ( int i = 0; i < tracks.length; i++ ) {
+            FloatKeyframeTrack track = tracks[ i ];
+            int cursor = track.seek( time, cursors[ i ] );
+            cursors[ i ] = cursor;
+            result[ i ] = track.evaluate( time, cursor );
+        }
+    }
+
+    @Override
+    public final String toString() {
+        return "FloatKeyframeTrack [times=" + Arrays.toString( times ) + ", values=" + Arrays.toString( values ) + ", easing=" + easing + "]";
+    }
+
+}
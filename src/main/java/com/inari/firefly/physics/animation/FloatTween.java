@@ -0,0 +1,67 @@
+package com.inari.firefly.physics.animation;
+
+import com.inari.firefly.entity.EntitySystem;
+import com.inari.firefly.physics.animation.AttributeAnimationAdapter.AttributeAnimationAdapterKey;
+
+/** A pooled fire-and-forget FloatAnimation that interpolates one attribute of one entity from a start to an end
+ *  value within a duration. FloatTweens are obtained and recycled by the AnimationSystem, see AnimationSystem.tween
+ */
+public final class FloatTween extends FloatAnimation {
+    
+    private final TweenPlayback playback;
+    private EntitySystem entitySystem;
+
+    FloatTween( int id ) {
+        super( id );
+        playback = new TweenPlayback();
+    }
+
+    @Override
+    public final void init() {
+        super.init();
+        
+        entitySystem = context.getSystem( EntitySystem.SYSTEM_KEY );
+    }
+    
+    final void set( int entityId, AttributeAnimationAdapterKey<?> adapterKey, float from, float to, long duration, Easing easing ) {
+        playback.set( entityId, adapterKey, from, to, duration, easing );
+    }
+
+    public final int getEntityId() {
+        return playback.getEntityId();
+    }
+
+    @Override
+    public final float getInitValue() {
+        return playback.getFrom();
+    }
+
+    @Override
+    public final float getValue( int componentId, float currentValue ) {
+        return playback.getValue();
+    }
+
+    @Override
+    public final void update() {
+        if ( playback.update( runningTime ) ) {
+            finish();
+        }
+    }
+
+    @Override
+    final boolean isPooled() {
+        return true;
+    }
+
+    @Override
+    final void applyTarget() {
+        playback.apply( this, entitySystem, context );
+    }
+
+    @Override
+    public final void reset() {
+        super.reset();
+        playback.reset();
+    }
+
+}
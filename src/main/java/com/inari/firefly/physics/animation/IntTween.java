@@ -0,0 +1,68 @@
+package com.inari.firefly.physics.animation;
+
+import com.inari.firefly.entity.EntitySystem;
+import com.inari.firefly.physics.animation.AttributeAnimationAdapter.AttributeAnimationAdapterKey;
+
+/** A pooled fire-and-forget IntAnimation that interpolates one attribute of one entity from a start to an end
+ *  value within a duration. IntTweens are obtained and recycled by the AnimationSystem, see AnimationSystem.tweenInt.
+ *  The value is interpolated as float and rounded to the nearest int.
+ */
+public final class IntTween extends IntAnimation {
+    
+    private final TweenPlayback playback;
+    private EntitySystem entitySystem;
+
+    IntTween( int id ) {
+        super( id );
+        playback = new TweenPlayback();
+    }
+
+    @Override
+    public final void init() {
+        super.init();
+        
+        entitySystem = context.getSystem( EntitySystem.SYSTEM_KEY );
+    }
+    
+    final void set( int entityId, AttributeAnimationAdapterKey<?> adapterKey, float from, float to, long duration, Easing easing ) {
+        playback.set( entityId, adapterKey, from, to, duration, easing );
+    }
+
+    public final int getEntityId() {
+        return playback.getEntityId();
+    }
+
+    @Override
+    public final int getInitValue() {
+        return Math.round( playback.getFrom() );
+    }
+
+    @Override
+    public final int getValue( int componentId, int currentValue ) {
+        return Math.round( playback.getValue() );
+    }
+
+    @Override
+    public final void update() {
+        if ( playback.update( runningTime ) ) {
+            finish();
+        }
+    }
+
+    @Override
+    final boolean isPooled() {
+        return true;
+    }
+
+    @Override
+    final void applyTarget() {
+        playback.apply( this, entitySystem, context );
+    }
+
+    @Override
+    public final void reset() {
+        super.reset();
+        playback.reset();
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.inari.firefly.physics.animation;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import com.inari.firefly.component.attr.AttributeKey;
+import com.inari.firefly.component.attr.AttributeMap;
+
+/** A FloatAnimation that plays a FloatKeyframeTrack over the running time of the Animation.
+ *  A not looping animation finishes with the value of the last keyframe.
+ */
+public final class KeyframeFloatAnimation extends FloatAnimation {
+    
+    public static final AttributeKey<FloatKeyframeTrack> TRACK = AttributeKey.create( "track", FloatKeyframeTrack.class, KeyframeFloatAnimation.class );
+    private static final AttributeKey<?>[] ATTRIBUTE_KEYS = new AttributeKey[] {
+        TRACK
+    };
+    
+    private final KeyframePlayback playback;
+
+    KeyframeFloatAnimation( int id ) {
+        super( id );
+        playback = new KeyframePlayback();
+    }
+
+    public final FloatKeyframeTrack getTrack() {
+        return playback.getTrack();
+    }
+
+    public final void setTrack( FloatKeyframeTrack track ) {
+        playback.setTrack( track );
+    }
+
+    @Override
+    public final float getInitValue() {
+        return playback.getInitValue();
+    }
+
+    @Override
+    public final float getValue( int componentId, float currentValue ) {
+        if ( !playback.hasTrack() ) {
+            return currentValue;
+        }
+        
+        return playback.getValue();
+    }
+
+    @Override
+    public final void update() {
+        if ( playback.update( runningTime, looping ) ) {
+            finish();
+        }
+    }
+
+    @Override
+    public final void reset() {
+        super.reset();
+        playback.reset();
+    }
+
+    @Override
+    public final Set<AttributeKey<?>> attributeKeys() {
+        Set<AttributeKey<?>> attributeKeys = super.attributeKeys();
+        attributeKeys.addAll( Arrays.asList( ATTRIBUTE_KEYS ) );
+        return attributeKeys;
+    }
+
+    @Override
+    public final void fromAttributes( AttributeMap attributes ) {
+        super.fromAttributes( attributes );
+        setTrack( attributes.getValue( TRACK, playback.getTrack() ) );
+    }
+
+    @Override
+    public final void toAttributes( AttributeMap attributes ) {
+        super.toAttributes( attributes );
+        attributes.put( TRACK, playback.getTrack() );
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.inari.firefly.physics.animation;
+
+/** The playback of a FloatKeyframeTrack over the running time of an Animation, shared by KeyframeFloatAnimation 
+ *  and KeyframeIntAnimation that can't have a common super class besides Animation.
+ *  The segment of the last update is cached as cursor so that an update needs no search through the keyframes.
+ */
+final class KeyframePlayback {
+    
+    private FloatKeyframeTrack track;
+    private int cursor;
+    private float lastTime;
+    private float value;
+    
+    KeyframePlayback() {
+        track = null;
+        reset();
+    }
+
+    final FloatKeyframeTrack getTrack() {
+        return track;
+    }
+
+    final void setTrack( FloatKeyframeTrack track ) {
+        this.track = track;
+        reset();
+    }
+    
+    final boolean hasTrack() {
+        return track != null;
+    }
+    
+    final float getInitValue() {
+        return ( track != null )? track.getValue( 0 ) : 0;
+    }
+    
+    final float getValue() {
+        return value;
+    }
+
+    /** Updates the value for the specified running time and returns true if a not looping playback has finished */
+    final boolean update( long runningTime, boolean looping ) {
+        if ( track == null ) {
+            return false;
+        }
+        
+        float time = runningTime;
+        float duration = track.getDuration();
+        if ( time >= duration ) {
+            if ( !looping || duration <= 0 ) {
+                value = track.getValue( track.size() - 1 );
+                return true;
+            }
+            time = time % duration;
+        }
+        
+        if ( time < lastTime ) {
+            // looped, start the search from the first segment again
+            cursor = 0;
+        }
+        lastTime = time;
+        cursor = track.seek( time, cursor );
+        value = track.evaluate( time, cursor );
+        return false;
+    }
+
+    final void reset() {
+        cursor = 0;
+        lastTime = 0;
+        value = getInitValue();
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.inari.firefly.physics.animation;
+
+import com.inari.firefly.entity.EntitySystem;
+import com.inari.firefly.physics.animation.AttributeAnimationAdapter.AttributeAnimationAdapterKey;
+import com.inari.firefly.system.FFContext;
+
+/** The target and interpolation of a tween, shared by FloatTween and IntTween that can't have a common super class
+ *  besides Animation. The value is interpolated as float.
+ */
+final class TweenPlayback {
+    
+    private int entityId;
+    private AttributeAnimationAdapterKey<?> adapterKey;
+    private float from;
+    private float to;
+    private long duration;
+    private Easing easing;
+    private float value;
+    
+    final void set( int entityId, AttributeAnimationAdapterKey<?> adapterKey, float from, float to, long duration, Easing easing ) {
+        this.entityId = entityId;
+        this.adapterKey = adapterKey;
+        this.from = from;
+        this.to = to;
+        this.duration = duration;
+        this.easing = ( easing != null )? easing : Easing.LINEAR;
+        value = from;
+    }
+    
+    final int getEntityId() {
+        return entityId;
+    }
+    
+    final float getFrom() {
+        return from;
+    }
+    
+    final float getValue() {
+        return value;
+    }
+    
+    /** Updates the value for the specified running time and returns true if the tween has finished */
+    final boolean update( long runningTime ) {
+        if ( duration <= 0 || runningTime >= duration ) {
+            value = to;
+            return true;
+        }
+        
+        value = easing.interpolate( from, to, (float) runningTime / duration );
+        return false;
+    }
+    
+    /** Applies the current value of the specified tween animation to the target attribute if the entity is active */
+    final void apply( Animation tween, EntitySystem entitySystem, FFContext context ) {
+        if ( adapterKey != null && entitySystem.isActive( entityId ) ) {
+            adapterKey.getAdapterInstance().apply( entityId, tween, context );
+        }
+    }
+    
+    final void reset() {
+        value = from;
+    }
+
+}
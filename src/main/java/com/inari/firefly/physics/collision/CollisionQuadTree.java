@@ -29,18 +29,23 @@ public final class CollisionQuadTree extends SystemComponent {
     public static final AttributeKey<Rectangle> WORLD_AREA = new AttributeKey<Rectangle>( "world_area", Rectangle.class, CollisionQuadTree.class );
     public static final AttributeKey<Integer> MAX_ENTRIES_OF_AREA = new AttributeKey<Integer>( "maxEntities", Integer.class, CollisionQuadTree.class );
     public static final AttributeKey<Integer> MAX_LEVEL = new AttributeKey<Integer>( "maxLevel", Integer.class, CollisionQuadTree.class );
+    /** Use the loose quadtree variant that also stores entities that straddle a split line in the children */
+    public static final AttributeKey<Boolean> LOOSE = new AttributeKey<Boolean>( "loose", Boolean.class, CollisionQuadTree.class );
     private static final AttributeKey<?>[] ATTRIBUTE_KEYS = new AttributeKey[] { 
         LAYER_ID,
         WORLD_AREA,
         MAX_ENTRIES_OF_AREA,
-        MAX_LEVEL
+        MAX_LEVEL,
+        LOOSE
     };
 
     private int viewId;
     private int layerId;
     private int maxEntities;
     private int maxLevel;
+    private boolean loose;
     private Node rootNode;
+    private LooseQuadTree looseTree;
     
     private int matchingIndex;
     private final DynArray<IntIterator> matching;
@@ -54,7 +59,9 @@ public final class CollisionQuadTree extends SystemComponent {
         
         this.maxEntities = 10;
         this.maxLevel = 10;
+        this.loose = false;
         this.rootNode = null;
+        this.looseTree = null;
         
         matching = DynArray.create( IntIterator.class, maxLevel, 10 );
         matchingIndex = 0;
@@ -104,6 +111,21 @@ public final class CollisionQuadTree extends SystemComponent {
         this.maxLevel = maxLevel;
     }
     
+    public final boolean isLoose() {
+        return loose;
+    }
+
+    /** Switches between the classic and the loose quadtree variant. This resets the tree and should
+     *  be done before any entity is added
+     */
+    public final void setLoose( boolean loose ) {
+        this.loose = loose;
+        Rectangle worldArea = getWorldArea();
+        if ( worldArea != null ) {
+            setWorldArea( worldArea );
+        }
+    }
+
     public final Rectangle getWorldArea() {
         if ( rootNode == null ) {
             return null;
@@ -114,6 +136,7 @@ public final class CollisionQuadTree extends SystemComponent {
     
     public final void setWorldArea( Rectangle worldArea ) {
         rootNode = new Node( 0, worldArea );
+        looseTree = ( loose )? new LooseQuadTree( worldArea, maxEntities, maxLevel ) : null;
         matching.clear();
         matchingIndex = 0;
     }
@@ -133,6 +156,7 @@ public final class CollisionQuadTree extends SystemComponent {
         layerId = attributes.getIdForName( LAYER_NAME, LAYER_ID, Layer.TYPE_KEY, layerId );
         maxEntities = attributes.getValue( MAX_ENTRIES_OF_AREA, maxEntities );
         maxLevel = attributes.getValue( MAX_LEVEL, maxLevel );
+        loose = attributes.getValue( LOOSE, loose );
         
         if ( attributes.contains( WORLD_AREA ) ) {
             setWorldArea( attributes.getValue( WORLD_AREA ) );
@@ -147,10 +171,16 @@ public final class CollisionQuadTree extends SystemComponent {
         attributes.put( LAYER_ID, layerId );
         attributes.put( MAX_ENTRIES_OF_AREA, maxEntities );
         attributes.put( MAX_LEVEL, maxLevel );
+        attributes.put( LOOSE, loose );
         attributes.put( WORLD_AREA, rootNode.area );
     } 
 
     public final void add( int entityId ) {
+        if ( looseTree != null ) {
+            looseTree.add( entityId, getCollisionBounds( entityId ) );
+            return;
+        }
+        
         rootNode.add( 
             entityId, 
             getCollisionBounds( entityId )
@@ -158,10 +188,26 @@ public final class CollisionQuadTree extends SystemComponent {
     }
 
     public final void remove( int entityId ) {
+        if ( looseTree != null ) {
+            looseTree.remove( entityId );
+            return;
+        }
+        
         rootNode.remove( entityId );
     }
     
+    /** Relocates a moved entity within a loose tree. The classic tree keeps an entity in the node it was added to */
+    public final void update( int entityId ) {
+        if ( looseTree != null ) {
+            looseTree.update( entityId, getCollisionBounds( entityId ) );
+        }
+    }
+    
     public final IntIterator get( Rectangle scanBounds ) {
+        if ( looseTree != null ) {
+            return looseTree.get( scanBounds );
+        }
+        
         matching.clear();
         matchingIndex = 0;
         rootNode.get( scanBounds );
@@ -313,6 +359,10 @@ public final class CollisionQuadTree extends SystemComponent {
     
     @Override
     public final String toString() {
+        if ( looseTree != null ) {
+            return looseTree.toString();
+        }
+        
         StringBuilder builder = new StringBuilder();
         builder.append( "EntityCollisionQuadTree: maxEntities=" ).append( maxEntities );
         builder.append( " maxLevel=" ).append( maxLevel ).append( "[\n" );
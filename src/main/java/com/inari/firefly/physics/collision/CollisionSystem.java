@@ -123,13 +123,18 @@ public final class CollisionSystem
             final ECollision collision = context.getEntityComponent( entityId, ECollision.TYPE_KEY );
             final ContactScan contactScan = collision.getContactScan();
             final int collisionResolverId = collision.getCollisionResolverId();
-            
             scanContacts( entityId, collision );
             
             if ( collisionResolverId >= 0 ) {
                 collisionResolvers.get( collisionResolverId ).resolve( entityId );
             }
             
+            // the resolver may have moved the entity, so the tree is updated with the resolved position
+            final CollisionQuadTree quadTree = getCollisionQuadTreeForEntity( entityId );
+            if ( quadTree != null ) {
+                quadTree.update( entityId );
+            }
+            
             if ( contactScan.hasAnyContact() ) {
                 contactEvent.entityId = entityId;
                 context.notify( contactEvent );
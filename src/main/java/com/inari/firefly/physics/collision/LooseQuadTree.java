@@ -0,0 +1,426 @@
+package com.inari.firefly.physics.collision;
+
+import java.util.Arrays;
+
+import com.inari.commons.geom.Rectangle;
+import com.inari.commons.lang.IntIterator;
+
+/** A loose quadtree variant of the {@link CollisionQuadTree} that is stored in flat int arrays.
+ *  <p>
+ *  The loose bounds of a node are its area extended by the half of its size on each side. An entity is stored in the
+ *  deepest node that contains the center of the entity and is not smaller then the entity. So entities that
+ *  straddle a split line are moved down into the children like all others and don't pile up in the upper nodes.
+ *  <p>
+ *  The four children of a node are allocated as a group of consecutive node slots. Groups of children that get empty
+ *  are released to a pool and reused on the next split. The entities of a node are linked in a double linked list
+ *  over arrays indexed by entity id that also holds the back-reference to the node of an entity. This makes remove
+ *  and update of an entity O(1) instead of a search through the whole tree.
+ */
+final class LooseQuadTree {
+
+    private static final int NULL = -1;
+    private static final int INITIAL_NODE_CAPACITY = 4 * 8 + 1;
+    private static final int INITIAL_ENTITY_CAPACITY = 64;
+
+    private final int maxEntities;
+    private final int maxLevel;
+
+    // node slots, slot 0 is the root node
+    private int[] nodeX;
+    private int[] nodeY;
+    private int[] nodeWidth;
+    private int[] nodeHeight;
+    private int[] nodeLevel;
+    private int[] nodeParent;
+    private int[] nodeFirstChild;
+    private int[] nodeHead;
+    private int[] nodeSize;
+    private int nodeSlots;
+    private int[] freeGroups;
+    private int freeGroupCount;
+
+    // entity slots indexed by entity id
+    private int[] entityNode;
+    private int[] entityNext;
+    private int[] entityPrev;
+    private int[] entityX;
+    private int[] entityY;
+    private int[] entityWidth;
+    private int[] entityHeight;
+
+    private int[] stack;
+    private int[] result;
+    private int resultSize;
+    private final ResultIterator resultIterator = new ResultIterator();
+
+    LooseQuadTree( Rectangle area, int maxEntities, int maxLevel ) {
+        this.maxEntities = maxEntities;
+        this.maxLevel = maxLevel;
+
+        nodeX = new int[ INITIAL_NODE_CAPACITY ];
+        nodeY = new int[ INITIAL_NODE_CAPACITY ];
+        nodeWidth = new int[ INITIAL_NODE_CAPACITY ];
+        nodeHeight = new int[ INITIAL_NODE_CAPACITY ];
+        nodeLevel = new int[ INITIAL_NODE_CAPACITY ];
+        nodeParent = new int[ INITIAL_NODE_CAPACITY ];
+        nodeFirstChild = new int[ INITIAL_NODE_CAPACITY ];
+        nodeHead = new int[ INITIAL_NODE_CAPACITY ];
+        nodeSize = new int[ INITIAL_NODE_CAPACITY ];
+        stack = new int[ INITIAL_NODE_CAPACITY ];
+        freeGroups = new int[ 8 ];
+        freeGroupCount = 0;
+
+        entityNode = new int[ INITIAL_ENTITY_CAPACITY ];
+        entityNext = new int[ INITIAL_ENTITY_CAPACITY ];
+        entityPrev = new int[ INITIAL_ENTITY_CAPACITY ];
+        entityX = new int[ INITIAL_ENTITY_CAPACITY ];
+        entityY = new int[ INITIAL_ENTITY_CAPACITY ];
+        entityWidth = new int[ INITIAL_ENTITY_CAPACITY ];
+        entityHeight = new int[ INITIAL_ENTITY_CAPACITY ];
+        Arrays.fill( entityNode, NULL );
+        result = new int[ INITIAL_ENTITY_CAPACITY ];
+
+        initNode( 0, area.x, area.y, area.width, area.height, 0, NULL );
+        nodeSlots = 1;
+    }
+
+    final Rectangle getArea() {
+        return new Rectangle( nodeX[ 0 ], nodeY[ 0 ], nodeWidth[ 0 ], nodeHeight[ 0 ] );
+    }
+
+    final boolean contains( int entityId ) {
+        return entityId < entityNode.length && entityNode[ entityId ] != NULL;
+    }
+
+    final void add( int entityId, Rectangle bounds ) {
+        ensureEntityCapacity( entityId );
+        if ( entityNode[ entityId ] != NULL ) {
+            remove( entityId );
+        }
+
+        setBounds( entityId, bounds );
+        insert( entityId );
+    }
+
+    final void remove( int entityId ) {
+        if ( !contains( entityId ) ) {
+            return;
+        }
+
+        int node = entityNode[ entityId ];
+        unlink( entityId );
+        collapse( nodeParent[ node ] );
+    }
+
+    /** Updates the bounds of an entity. The entity is only relocated within the tree if it don't fits into its node
+     *  anymore or if it now fits into one of the children of its node
+     */
+    final void update( int entityId, Rectangle bounds ) {
+        if ( !contains( entityId ) ) {
+            return;
+        }
+
+        setBounds( entityId, bounds );
+        int node = entityNode[ entityId ];
+        if ( fits( node, entityId ) && ( nodeFirstChild[ node ] == NULL || childFor( node, entityId ) == NULL ) ) {
+            return;
+        }
+
+        unlink( entityId );
+        collapse( nodeParent[ node ] );
+        insert( entityId );
+    }
+
+    /** Get all entities with bounds that intersects the specified bounds. The returned iterator is reused on next call */
+    final IntIterator get( Rectangle bounds ) {
+        resultSize = 0;
+        int top = 0;
+        stack[ top++ ] = 0;
+        while ( top > 0 ) {
+            int node = stack[ --top ];
+            for ( int entityId = nodeHead[ node ]; entityId != NULL; entityId = entityNext[ entityId ] ) {
+                if ( intersects( entityId, bounds ) ) {
+                    addResult( entityId );
+                }
+            }
+
+            int first = nodeFirstChild[ node ];
+            if ( first == NULL ) {
+                continue;
+            }
+            for ( int child = first; child < first + 4; child++ ) {
+                if ( ( nodeSize[ child ] > 0 || nodeFirstChild[ child ] != NULL ) && looseIntersects( child, bounds ) ) {
+                    stack[ top++ ] = child;
+                }
+            }
+        }
+
+        resultIterator.index = 0;
+        return resultIterator;
+    }
+
+    private void insert( int entityId ) {
+        int node = 0;
+        if ( isCenterInside( 0, entityId ) ) {
+            while ( nodeFirstChild[ node ] != NULL ) {
+                int child = childFor( node, entityId );
+                if ( child == NULL ) {
+                    break;
+                }
+                node = child;
+            }
+        }
+
+        link( entityId, node );
+        if ( nodeFirstChild[ node ] == NULL && nodeSize[ node ] > maxEntities && nodeLevel[ node ] < maxLevel ) {
+            split( node );
+        }
+    }
+
+    private void split( int node ) {
+        int first = allocateGroup();
+        int x = nodeX[ node ];
+        int y = nodeY[ node ];
+        int width = nodeWidth[ node ] / 2;
+        int height = nodeHeight[ node ] / 2;
+        int level = nodeLevel[ node ] + 1;
+
+        initNode( first, x, y, width, height, level, node );
+        initNode( first + 1, x + width, y, width, height, level, node );
+        initNode( first + 2, x + width, y + height, width, height, level, node );
+        initNode( first + 3, x, y + height, width, height, level, node );
+        nodeFirstChild[ node ] = first;
+
+        int entityId = nodeHead[ node ];
+        while ( entityId != NULL ) {
+            int next = entityNext[ entityId ];
+            int child = childFor( node, entityId );
+            if ( child != NULL ) {
+                unlink( entityId );
+                link( entityId, child );
+            }
+            entityId = next;
+        }
+
+        for ( int child = first; child < first + 4; child++ ) {
+            if ( nodeSize[ child ] > maxEntities && level < maxLevel ) {
+                split( child );
+            }
+        }
+    }
+
+    // releases the children of the node and its parents as long as they are all empty leafs
+    private void collapse( int node ) {
+        while ( node != NULL ) {
+            int first = nodeFirstChild[ node ];
+            for ( int child = first; child < first + 4; child++ ) {
+                if ( nodeFirstChild[ child ] != NULL || nodeSize[ child ] > 0 ) {
+                    return;
+                }
+            }
+
+            releaseGroup( first );
+            nodeFirstChild[ node ] = NULL;
+            node = nodeParent[ node ];
+        }
+    }
+
+    private int childFor( int node, int entityId ) {
+        int first = nodeFirstChild[ node ];
+        if ( entityWidth[ entityId ] > nodeWidth[ first ] || entityHeight[ entityId ] > nodeHeight[ first ] ) {
+            return NULL;
+        }
+
+        boolean right = entityX[ entityId ] + entityWidth[ entityId ] / 2 >= nodeX[ first + 1 ];
+        boolean bottom = entityY[ entityId ] + entityHeight[ entityId ] / 2 >= nodeY[ first + 3 ];
+        if ( bottom ) {
+            return ( right )? first + 2 : first + 3;
+        }
+        return ( right )? first + 1 : first;
+    }
+
+    private boolean fits( int node, int entityId ) {
+        if ( node == 0 ) {
+            return true;
+        }
+
+        return isCenterInside( node, entityId ) &&
+            entityWidth[ entityId ] <= nodeWidth[ node ] &&
+            entityHeight[ entityId ] <= nodeHeight[ node ];
+    }
+
+    private boolean isCenterInside( int node, int entityId ) {
+        int centerX = entityX[ entityId ] + entityWidth[ entityId ] / 2;
+        int centerY = entityY[ entityId ] + entityHeight[ entityId ] / 2;
+        return centerX >= nodeX[ node ] && centerX < nodeX[ node ] + nodeWidth[ node ] &&
+            centerY >= nodeY[ node ] && centerY < nodeY[ node ] + nodeHeight[ node ];
+    }
+
+    private boolean intersects( int entityId, Rectangle bounds ) {
+        return entityX[ entityId ] <= bounds.x + bounds.width && entityX[ entityId ] + entityWidth[ entityId ] >= bounds.x &&
+            entityY[ entityId ] <= bounds.y + bounds.height && entityY[ entityId ] + entityHeight[ entityId ] >= bounds.y;
+    }
+
+    private boolean looseIntersects( int node, Rectangle bounds ) {
+        int x = nodeX[ node ] - nodeWidth[ node ] / 2;
+        int y = nodeY[ node ] - nodeHeight[ node ] / 2;
+        return x <= bounds.x + bounds.width && x + 2 * nodeWidth[ node ] >= bounds.x &&
+            y <= bounds.y + bounds.height && y + 2 * nodeHeight[ node ] >= bounds.y;
+    }
+
+    private void link( int entityId, int node ) {
+        int head = nodeHead[ node ];
+        entityNode[ entityId ] = node;
+        entityPrev[ entityId ] = NULL;
+        entityNext[ entityId ] = head;
+        if ( head != NULL ) {
+            entityPrev[ head ] = entityId;
+        }
+        nodeHead[ node ] = entityId;
+        nodeSize[ node ]++;
+    }
+
+    private void unlink( int entityId ) {
+        int node = entityNode[ entityId ];
+        int prev = entityPrev[ entityId ];
+        int next = entityNext[ entityId ];
+        if ( prev != NULL ) {
+            entityNext[ prev ] = next;
+        } else {
+            nodeHead[ node ] = next;
+        }
+        if ( next != NULL ) {
+            entityPrev[ next ] = prev;
+        }
+        nodeSize[ node ]--;
+        entityNode[ entityId ] = NULL;
+    }
+
+    private void setBounds( int entityId, Rectangle bounds ) {
+        entityX[ entityId ] = bounds.x;
+        entityY[ entityId ] = bounds.y;
+        entityWidth[ entityId ] = bounds.width;
+        entityHeight[ entityId ] = bounds.height;
+    }
+
+    private void initNode( int node, int x, int y, int width, int height, int level, int parent ) {
+        nodeX[ node ] = x;
+        nodeY[ node ] = y;
+        nodeWidth[ node ] = width;
+        nodeHeight[ node ] = height;
+        nodeLevel[ node ] = level;
+        nodeParent[ node ] = parent;
+        nodeFirstChild[ node ] = NULL;
+        nodeHead[ node ] = NULL;
+        nodeSize[ node ] = 0;
+    }
+
+    private int allocateGroup() {
+        if ( freeGroupCount > 0 ) {
+            return freeGroups[ --freeGroupCount ];
+        }
+
+        ensureNodeCapacity( nodeSlots + 4 );
+        int first = nodeSlots;
+        nodeSlots += 4;
+        return first;
+    }
+
+    private void releaseGroup( int first ) {
+        if ( freeGroupCount == freeGroups.length ) {
+            freeGroups = Arrays.copyOf( freeGroups, freeGroups.length * 2 );
+        }
+        freeGroups[ freeGroupCount++ ] = first;
+    }
+
+    private void addResult( int entityId ) {
+        if ( resultSize == result.length ) {
+            result = Arrays.copyOf( result, result.length * 2 );
+        }
+        result[ resultSize++ ] = entityId;
+    }
+
+    private void ensureNodeCapacity( int capacity ) {
+        if ( capacity <= nodeX.length ) {
+            return;
+        }
+
+        int newCapacity = Math.max( capacity, nodeX.length * 2 );
+        nodeX = Arrays.copyOf( nodeX, newCapacity );
+        nodeY = Arrays.copyOf( nodeY, newCapacity );
+        nodeWidth = Arrays.copyOf( nodeWidth, newCapacity );
+        nodeHeight = Arrays.copyOf( nodeHeight, newCapacity );
+        nodeLevel = Arrays.copyOf( nodeLevel, newCapacity );
+        nodeParent = Arrays.copyOf( nodeParent, newCapacity );
+        nodeFirstChild = Arrays.copyOf( nodeFirstChild, newCapacity );
+        nodeHead = Arrays.copyOf( nodeHead, newCapacity );
+        nodeSize = Arrays.copyOf( nodeSize, newCapacity );
+        stack = Arrays.copyOf( stack, newCapacity );
+    }
+
+    private void ensureEntityCapacity( int entityId ) {
+        if ( entityId < entityNode.length ) {
+            return;
+        }
+
+        int oldCapacity = entityNode.length;
+        int newCapacity = Math.max( entityId + 1, oldCapacity * 2 );
+        entityNode = Arrays.copyOf( entityNode, newCapacity );
+        entityNext = Arrays.copyOf( entityNext, newCapacity );
+        entityPrev = Arrays.copyOf( entityPrev, newCapacity );
+        entityX = Arrays.copyOf( entityX, newCapacity );
+        entityY = Arrays.copyOf( entityY, newCapacity );
+        entityWidth = Arrays.copyOf( entityWidth, newCapacity );
+        entityHeight = Arrays.copyOf( entityHeight, newCapacity );
+        Arrays.fill( entityNode, oldCapacity, newCapacity, NULL );
+    }
+
+    private void toString( StringBuilder builder, int node ) {
+        for ( int i = -1; i < nodeLevel[ node ]; i++ ) {
+            builder.append( "  " );
+        }
+        builder.append( "Node [level=" ).append( nodeLevel[ node ] );
+        builder.append( ", area=" ).append( new Rectangle( nodeX[ node ], nodeY[ node ], nodeWidth[ node ], nodeHeight[ node ] ) );
+        builder.append( ", entities=[" );
+        for ( int entityId = nodeHead[ node ]; entityId != NULL; entityId = entityNext[ entityId ] ) {
+            builder.append( entityId );
+            if ( entityNext[ entityId ] != NULL ) {
+                builder.append( ", " );
+            }
+        }
+        builder.append( "]]" );
+
+        int first = nodeFirstChild[ node ];
+        if ( first != NULL ) {
+            for ( int child = first; child < first + 4; child++ ) {
+                builder.append( "\n" );
+                toString( builder, child );
+            }
+        }
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append( "LooseQuadTree: maxEntities=" ).append( maxEntities );
+        builder.append( " maxLevel=" ).append( maxLevel ).append( "[\n" );
+        toString( builder, 0 );
+        builder.append( "\n]" );
+        return builder.toString();
+    }
+
+    private final class ResultIterator implements IntIterator {
+
+        int index = 0;
+
+        @Override
+        public final boolean hasNext() {
+            return index < resultSize;
+        }
+        @Override
+        public final int next() {
+            return result[ index++ ];
+        }
+    }
+
+}
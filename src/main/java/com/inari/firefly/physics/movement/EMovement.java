@@ -24,9 +24,9 @@ import com.inari.firefly.component.attr.AttributeKey;
 import com.inari.firefly.component.attr.AttributeMap;
 import com.inari.firefly.entity.EntityComponent;
 import com.inari.firefly.system.external.FFTimer;
-import com.inari.firefly.system.external.FFTimer.UpdateScheduler;
+import com.inari.firefly.system.external.FFTimer.TickListener;
 
-public final class EMovement extends EntityComponent {
+public final class EMovement extends EntityComponent implements TickListener {
     
     public static final EntityComponentTypeKey<EMovement> TYPE_KEY = EntityComponentTypeKey.create( EMovement.class );
     
@@ -45,7 +45,9 @@ public final class EMovement extends EntityComponent {
     final Vector2f velocity = new Vector2f( 0, 0 );
     float updateResolution;
 
-    private UpdateScheduler updateScheduler = null;
+    private FFTimer timer = null;
+    private int scheduleId = -1;
+    private boolean due = false;
 
     public EMovement() {
         super( TYPE_KEY );
@@ -58,7 +60,7 @@ public final class EMovement extends EntityComponent {
         setVelocityX( 0f );
         setVelocityY( 0f );
         updateResolution = -1;
-        updateScheduler = null;
+        cancelSchedule();
     }
 
     public final boolean isActive() {
@@ -100,6 +102,9 @@ public final class EMovement extends EntityComponent {
     }
 
     public final void setUpdateResolution( float updateResolution ) {
+        if ( this.updateResolution != updateResolution ) {
+            cancelSchedule();
+        }
         this.updateResolution = updateResolution;
     }
     
@@ -108,11 +113,29 @@ public final class EMovement extends EntityComponent {
             return true;
         }
         
-        if ( updateScheduler == null ) {
-            updateScheduler = timer.createUpdateScheduler( updateResolution );
+        if ( scheduleId < 0 ) {
+            this.timer = timer;
+            scheduleId = timer.schedule( updateResolution, this );
+            return true;
         }
         
-        return updateScheduler.needsUpdate();
+        boolean needsUpdate = due;
+        due = false;
+        return needsUpdate;
+    }
+
+    @Override
+    public final void onTick( long tick ) {
+        due = true;
+    }
+    
+    private void cancelSchedule() {
+        if ( scheduleId >= 0 ) {
+            timer.cancel( scheduleId );
+        }
+        timer = null;
+        scheduleId = -1;
+        due = false;
     }
 
     public final boolean isMoving() {
@@ -129,7 +152,7 @@ public final class EMovement extends EntityComponent {
         active = attributes.getValue( ACTIVE, active );
         velocity.dx = attributes.getValue( VELOCITY_X, velocity.dx );
         velocity.dy = attributes.getValue( VELOCITY_Y, velocity.dy );
-        updateResolution = attributes.getValue( UPDATE_RESOLUTION, updateResolution );
+        setUpdateResolution( attributes.getValue( UPDATE_RESOLUTION, updateResolution ) );
     }
 
     @Override
@@ -63,6 +63,11 @@ import com.inari.firefly.system.info.SystemInfoDisplay;
  *  - Serialize / Load one or many {@link Component} from {@link Attributes}
  *  - ...
  *  </pre>
+ *  <p>
+ *  The FFContext and everything that is accessed through it, systems, components, entities and events, are not thread safe
+ *  and must only be used from the game thread. The only exception is notify that may be used from other threads
+ *  if the IEventDispatcher implementation is thread safe. Background work like asynchronous tasks of the TaskSystem
+ *  has to work on its own data and hand the result back to the game thread.
  * 
  *  TODO: provide some example code that shows how to work with the FFContext
  **/
@@ -29,9 +29,13 @@ import com.inari.firefly.control.state.StateSystem;
 import com.inari.firefly.control.task.TaskSystem;
 import com.inari.firefly.entity.EntitySystem;
 import com.inari.firefly.entity.prefab.EntityPrefabSystem;
+import com.inari.firefly.graphics.BaseRenderer;
+import com.inari.firefly.graphics.LayerCacheSystem;
+import com.inari.firefly.graphics.RenderPlan;
 import com.inari.firefly.graphics.sprite.SpriteViewSystem;
 import com.inari.firefly.graphics.tile.TileGridSystem;
 import com.inari.firefly.graphics.view.Layer;
+import com.inari.firefly.graphics.view.LayerCache;
 import com.inari.firefly.graphics.view.View;
 import com.inari.firefly.graphics.view.ViewSystem;
 import com.inari.firefly.physics.animation.AnimationSystem;
@@ -48,10 +52,14 @@ public abstract class FireFlyApp {
     
     protected FFGraphics graphics;
     protected ViewSystem viewSystem;
+    protected RenderPlan renderPlan;
 
     private final UpdateEvent updateEvent;
     private final RenderEvent renderEvent;
     private final PostRenderEvent postRenderEvent;
+    
+    private final Rectangle viewClip = new Rectangle();
+    private final Rectangle chunkClip = new Rectangle();
 
     private boolean disposed = false;
 
@@ -66,6 +74,7 @@ public abstract class FireFlyApp {
         
         this.graphics = context.getGraphics();
         viewSystem = context.getSystem( ViewSystem.SYSTEM_KEY );
+        renderPlan = context.getSystem( RenderPlan.SYSTEM_KEY );
         
         context.loadSystem( AssetSystem.SYSTEM_KEY );
         context.loadSystem( StateSystem.SYSTEM_KEY );
@@ -74,6 +83,7 @@ public abstract class FireFlyApp {
         context.loadSystem( ControllerSystem.SYSTEM_KEY );
         context.loadSystem( AnimationSystem.SYSTEM_KEY );
         context.loadSystem( AudioSystem.SYSTEM_KEY );
+        context.loadSystem( LayerCacheSystem.SYSTEM_KEY );
         context.loadSystem( TileGridSystem.SYSTEM_KEY );
         context.loadSystem( SpriteViewSystem.SYSTEM_KEY );
         context.loadSystem( TaskSystem.SYSTEM_KEY );
@@ -98,6 +108,7 @@ public abstract class FireFlyApp {
     
     public final void update() {
         updateEvent.timer.tick();
+        updateEvent.timer.updateSchedule();
         context.notify( updateEvent );
     }
     
@@ -139,25 +150,95 @@ public abstract class FireFlyApp {
         renderEvent.clip.width = bounds.width;
         renderEvent.clip.height = bounds.height;
 
-        graphics.startRendering( view, true );
-        
         if ( !viewSystem.isLayeringEnabled( viewId ) ) {
-            context.notify( renderEvent );
+            graphics.startRendering( view, true );
+            render( viewId, 0 );
         } else {
             
             List<Layer> layersOfView = viewSystem.getLayersOfView( viewId );
+            // dirty chunks of cached layers are rendered to their offscreen targets before the view rendering starts
+            for ( int i = 0; i < layersOfView.size(); i++ ) {
+                Layer layer = layersOfView.get( i );
+                if ( layer.isActive() && layer.isCached() ) {
+                    updateCache( viewId, layer );
+                }
+            }
+            
+            graphics.startRendering( view, true );
             for ( int i = 0; i < layersOfView.size(); i++ ) {
                 Layer layer = layersOfView.get( i );
                 if ( !layer.isActive() ) {
                     continue;
                 }
-                renderEvent.layerId = layer.index();
-                context.notify( renderEvent );
+                if ( layer.isCached() ) {
+                    renderCache( layer.getCache() );
+                } else {
+                    render( viewId, layer.index() );
+                }
             }
             renderEvent.layerId = 0;
         } 
 
         graphics.endRendering( view );
     }
+    
+    private void updateCache( final int viewId, final Layer layer ) {
+        final LayerCache cache = layer.getCache();
+        final Rectangle clip = renderEvent.clip;
+        viewClip.x = clip.x;
+        viewClip.y = clip.y;
+        viewClip.width = clip.width;
+        viewClip.height = clip.height;
+        
+        cache.mapToChunks( viewClip, chunkClip );
+        for ( int y = chunkClip.y; y < chunkClip.y + chunkClip.height; y++ ) {
+            for ( int x = chunkClip.x; x < chunkClip.x + chunkClip.width; x++ ) {
+                int chunkIndex = cache.getChunkIndex( x, y );
+                int targetId = cache.getTargetId( chunkIndex );
+                if ( !cache.isDirty( chunkIndex ) ) {
+                    continue;
+                }
+                
+                cache.getChunkBounds( x, y, clip );
+                graphics.startOffscreenRendering( targetId, clip, true );
+                render( viewId, layer.index() );
+                graphics.endOffscreenRendering( targetId );
+                cache.clearDirty( chunkIndex );
+            }
+        }
+        
+        clip.x = viewClip.x;
+        clip.y = viewClip.y;
+        clip.width = viewClip.width;
+        clip.height = viewClip.height;
+    }
+    
+    private void renderCache( final LayerCache cache ) {
+        cache.mapToChunks( renderEvent.clip, chunkClip );
+        for ( int y = chunkClip.y; y < chunkClip.y + chunkClip.height; y++ ) {
+            for ( int x = chunkClip.x; x < chunkClip.x + chunkClip.width; x++ ) {
+                int chunkIndex = cache.getChunkIndex( x, y );
+                if ( !cache.hasTarget( chunkIndex ) ) {
+                    continue;
+                }
+                
+                cache.getChunkBounds( x, y, viewClip );
+                graphics.renderOffscreenTarget( cache.getTargetId( chunkIndex ), viewClip.x, viewClip.y );
+            }
+        }
+    }
+    
+    private void render( final int viewId, final int layerId ) {
+        renderEvent.layerId = layerId;
+        
+        // only the renderers that have content for the view and layer are called directly
+        final List<BaseRenderer> renderers = renderPlan.getRenderers( viewId, layerId );
+        for ( int i = 0; i < renderers.size(); i++ ) {
+            renderers.get( i ).render( renderEvent );
+        }
+        
+        // other listeners that are registered directly for the RenderEvent
+        context.notify( renderEvent );
+    }
 
 }
@@ -7,6 +7,7 @@ import com.inari.firefly.asset.Asset;
 import com.inari.firefly.graphics.BlendMode;
 import com.inari.firefly.graphics.SpriteRenderable;
 import com.inari.firefly.graphics.text.FontAsset;
+import com.inari.firefly.graphics.text.TextBuffer;
 import com.inari.firefly.graphics.view.View;
 import com.inari.firefly.graphics.view.ViewSystem;
 import com.inari.firefly.system.external.FFGraphics;
@@ -21,7 +22,8 @@ final class SystemInfoDisplayImpl implements SystemInfoDisplay, PostRenderEventL
     
     boolean active = false;
     final DynArray<SystemInfo> infos = DynArray.create( SystemInfo.class, 10, 10 );
-    final StringBuffer textbuffer = new StringBuffer();
+    final TextBuffer textbuffer = new TextBuffer( 128 );
+    private int[] charSpriteIds = new int[ 128 ];
     
     private int width = 0;
     private int horizontalStep;
@@ -66,7 +68,7 @@ final class SystemInfoDisplayImpl implements SystemInfoDisplay, PostRenderEventL
     @Override
     public final SystemInfoDisplay addSystemInfo( SystemInfo systemInfo ) {
         infos.add( systemInfo );
-        textbuffer.append( new char[ systemInfo.getLength() ]  );
+        textbuffer.append( ' ', systemInfo.getLength() );
         textbuffer.append( '\n' );
         if ( width < systemInfo.getLength() ) {
             width = systemInfo.getLength();
@@ -108,23 +110,37 @@ final class SystemInfoDisplayImpl implements SystemInfoDisplay, PostRenderEventL
         infoDisplayBackground.rectVertices[ 3 ] = infos.size() * verticalStep + verticalStep;
         graphics.renderShape( infoDisplayBackground );
         
+        if ( textbuffer.isDirty() ) {
+            updateCharSpriteIds();
+        }
+        
         int xpos = 5;
         int ypos = 5;
 
         for ( int i = 0; i < textbuffer.length(); i++ ) {
-            char character = textbuffer.charAt( i );
-            if ( character == '\n' ) {
+            if ( textbuffer.charAt( i ) == '\n' ) {
                 xpos = 0;
                 ypos += verticalStep;
                 continue;
             }
 
-            textRenderable.spriteId = defaultFontAsset.getSpriteId( character );
+            textRenderable.spriteId = charSpriteIds[ i ];
             graphics.renderSprite( textRenderable, xpos, ypos );
             xpos += horizontalStep;
         }
     }
     
+    private void updateCharSpriteIds() {
+        if ( charSpriteIds.length < textbuffer.length() ) {
+            charSpriteIds = new int[ textbuffer.length() ];
+        }
+        
+        for ( int i = 0; i < textbuffer.length(); i++ ) {
+            charSpriteIds[ i ] = defaultFontAsset.getSpriteId( textbuffer.charAt( i ) );
+        }
+        textbuffer.clearDirty();
+    }
+    
     private final SystemInfoDisplayImpl.TextRenderable textRenderable = new TextRenderable(); 
     private static final class TextRenderable implements SpriteRenderable {
         
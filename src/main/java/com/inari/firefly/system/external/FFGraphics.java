@@ -49,12 +49,32 @@ public interface FFGraphics extends FFContextInitiable, ViewEventListener {
     
     void renderSprite( SpriteRenderable renderableSprite, TransformData tranform );
     
+    /** Renders the sprite once for each of the first count x/y offset pairs of the packed positions array with one instanced draw.
+     *  Each instance is rendered with the specified transform where the offset of the instance is added to the transform position
+     */
+    void renderSprites( SpriteRenderable renderableSprite, TransformData tranform, float[] positions, int count );
+    
     void renderShape( ShapeData data );
     
     void renderShape( ShapeData data, TransformData tranform );
 
     void endRendering( View view );
     
+    /** Creates an offscreen render target with the specified size in pixel and returns its identifier */
+    int createOffscreenTarget( int width, int height );
+    
+    void disposeOffscreenTarget( int targetId );
+    
+    /** Starts rendering into the specified offscreen target. The world area of the specified bounds is mapped to the
+     *  whole target. Is called before the rendering of a View starts and ends with endOffscreenRendering
+     */
+    void startOffscreenRendering( int targetId, Rectangle worldBounds, boolean clear );
+    
+    void endOffscreenRendering( int targetId );
+    
+    /** Renders the content of the specified offscreen target at the specified world position of the current View */
+    void renderOffscreenTarget( int targetId, float xpos, float ypos );
+    
     void flush( DynArray<View> virtualViews );
     
     byte[] getScreenshotPixels( Rectangle area );
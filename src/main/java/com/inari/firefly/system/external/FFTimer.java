@@ -1,19 +1,60 @@
 package com.inari.firefly.system.external;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public abstract class FFTimer {
     
+    // hierarchical timing wheel, level 0 has one slot per millisecond and each further level
+    // has slots of the size of the whole previous level
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SLOTS = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SLOTS - 1;
+    private static final int WHEEL_LEVELS = 4;
+    private static final int NULL = -1;
+    // an update time gap bigger then this is not stepped through but the wheel is moved with the remaining delays kept
+    private static final long MAX_CATCH_UP = WHEEL_SLOTS * WHEEL_SLOTS;
+    // a schedule id is the index of the entry tagged with the generation of the entry
+    private static final int ENTRY_BITS = 20;
+    private static final int ENTRY_MASK = ( 1 << ENTRY_BITS ) - 1;
+    private static final int GENERATION_MASK = Integer.MAX_VALUE >>> ENTRY_BITS;
+    
     protected long lastUpdateTime, time, timeElapsed;
     
-    private final Map<Float, UpdateScheduler> updateSchedulers;
+    private final int[] slotHead;
+    private long wheelTime;
+    private TickListener[] listeners;
+    private long[] dueTime;
+    private long[] interval;
+    private long[] ticks;
+    private int[] entrySlot;
+    private int[] entryNext;
+    private int[] entryPrev;
+    private int[] generations;
+    private int[] freeEntries;
+    private int freeEntryCount;
+    private int entrySlots;
+    private int[] dueEntries;
     
     protected FFTimer() {
         lastUpdateTime = 0;
         time = 0;
         timeElapsed = 0;
-        updateSchedulers = new HashMap<Float, UpdateScheduler>();
+        
+        slotHead = new int[ WHEEL_LEVELS * WHEEL_SLOTS ];
+        Arrays.fill( slotHead, NULL );
+        wheelTime = -1;
+        listeners = new TickListener[ 50 ];
+        dueTime = new long[ 50 ];
+        interval = new long[ 50 ];
+        ticks = new long[ 50 ];
+        entrySlot = new int[ 50 ];
+        entryNext = new int[ 50 ];
+        entryPrev = new int[ 50 ];
+        generations = new int[ 50 ];
+        freeEntries = new int[ 50 ];
+        freeEntryCount = 0;
+        entrySlots = 0;
+        dueEntries = new int[ 50 ];
     }
 
     public final long getLastUpdateTime() {
@@ -30,14 +71,252 @@ public abstract class FFTimer {
 
     public abstract void tick();
     
+    /** Creates a new polling UpdateScheduler for the specified resolution. For many subscribers prefer schedule
+     *  that only calls the subscribers that are due instead of polling each of them on every update
+     */
     public final UpdateScheduler createUpdateScheduler( float resolution ) {
-        UpdateScheduler updateScheduler = updateSchedulers.get( resolution );
-        if ( updateScheduler == null ) {
-            updateScheduler = new UpdateScheduler( resolution );
-            updateSchedulers.put( resolution, updateScheduler );
+        return new UpdateScheduler( resolution );
+    }
+    
+    /** Schedules the specified TickListener with the specified resolution in ticks per second. The first tick is
+     *  one interval of the resolution after the call, so a subscriber that updates immediately when it schedules 
+     *  has the same interval between the first and the second update as between all following updates.
+     *  @return the schedule id to cancel the schedule with
+     */
+    public final int schedule( float resolution, TickListener listener ) {
+        return schedule( resolution, getInterval( resolution ), listener );
+    }
+    
+    /** Schedules the specified TickListener with the specified resolution in ticks per second. The phase
+     *  in milliseconds delays the first tick, use it to spread subscribers of the same resolution over time.
+     *  @return the schedule id to cancel the schedule with
+     */
+    public final int schedule( float resolution, long phase, TickListener listener ) {
+        if ( resolution <= 0 ) {
+            throw new IllegalArgumentException( "resolution must be greater then 0: " + resolution );
+        }
+        
+        return add( listener, getInterval( resolution ), phase );
+    }
+    
+    /** Schedules the specified TickListener to be called every interval milliseconds, the first time after
+     *  the specified delay in milliseconds.
+     *  @return the schedule id to cancel the schedule with
+     */
+    public final int scheduleEvery( long interval, long delay, TickListener listener ) {
+        if ( interval <= 0 ) {
+            throw new IllegalArgumentException( "interval must be greater then 0: " + interval );
         }
         
-        return updateScheduler;
+        return add( listener, interval, delay );
+    }
+    
+    /** Schedules the specified TickListener to be called once when the specified delay in milliseconds has elapsed.
+     *  This is the deadline queue for one-shot timeouts, the schedule id gets invalid once the listener was called.
+     *  @return the schedule id to cancel the schedule with before it is due
+     */
+    public final int scheduleOnce( long delay, TickListener listener ) {
+        return add( listener, 0, delay );
+    }
+    
+    /** Cancels the schedule with the specified id. An id of a schedule that was already canceled or of a one-shot 
+     *  schedule that was already called is ignored, also if its entry is used by another schedule meanwhile
+     */
+    public final void cancel( int scheduleId ) {
+        if ( scheduleId < 0 ) {
+            return;
+        }
+        
+        int entry = scheduleId & ENTRY_MASK;
+        if ( entry >= entrySlots || listeners[ entry ] == null || generations[ entry ] != scheduleId >>> ENTRY_BITS ) {
+            return;
+        }
+        
+        unlink( entry );
+        release( entry );
+    }
+    
+    private long getInterval( float resolution ) {
+        return Math.max( 1, (long) ( 1000 / resolution ) );
+    }
+    
+    private int add( TickListener listener, long entryInterval, long delay ) {
+        if ( wheelTime < 0 ) {
+            wheelTime = lastUpdateTime;
+        }
+        
+        int entry;
+        if ( freeEntryCount > 0 ) {
+            entry = freeEntries[ --freeEntryCount ];
+        } else {
+            if ( entrySlots > ENTRY_MASK ) {
+                throw new IllegalStateException( "Maximum number of schedules reached: " + entrySlots );
+            }
+            entry = entrySlots++;
+            ensureEntryCapacity( entrySlots );
+        }
+        
+        listeners[ entry ] = listener;
+        interval[ entry ] = entryInterval;
+        dueTime[ entry ] = lastUpdateTime + Math.max( 0, delay );
+        ticks[ entry ] = 0;
+        generations[ entry ] = ( generations[ entry ] + 1 ) & GENERATION_MASK;
+        insert( entry, wheelTime + 1 );
+        return ( generations[ entry ] << ENTRY_BITS ) | entry;
+    }
+    
+    private void release( int entry ) {
+        listeners[ entry ] = null;
+        freeEntries[ freeEntryCount++ ] = entry;
+    }
+    
+    /** Advances the scheduling to the last update time and calls all TickListener that are due in between.
+     *  This is called by the FireFlyApp on every update just after the tick. The work is proportional to the
+     *  elapsed milliseconds and the number of due listeners, not to the number of scheduled listeners.
+     *  If the update time jumped, for example on the first tick of a timer that starts with system time or after
+     *  the application was suspended, all schedules are moved with the jump and keep their remaining delay.
+     */
+    public final void updateSchedule() {
+        if ( wheelTime < 0 ) {
+            return;
+        }
+        if ( entrySlots == freeEntryCount ) {
+            // nothing scheduled
+            wheelTime = lastUpdateTime;
+            return;
+        }
+        if ( lastUpdateTime - wheelTime > MAX_CATCH_UP ) {
+            // the jump itself consumes no delay, nothing is due within the jumped update
+            moveWheel( lastUpdateTime );
+            return;
+        }
+        
+        while ( wheelTime < lastUpdateTime ) {
+            wheelTime++;
+            
+            // cascade the entries of the next slot of the upper levels down when a lower level wrapped around
+            long t = wheelTime;
+            for ( int level = 1; level < WHEEL_LEVELS && ( t & WHEEL_MASK ) == 0; level++ ) {
+                t >>= WHEEL_BITS;
+                cascade( level * WHEEL_SLOTS + (int) ( t & WHEEL_MASK ) );
+            }
+            
+            // detach the due entries first since listeners may cancel or schedule within the call
+            int slot = (int) ( wheelTime & WHEEL_MASK );
+            int dueCount = 0;
+            for ( int entry = slotHead[ slot ]; entry != NULL; entry = entryNext[ entry ] ) {
+                if ( dueCount == dueEntries.length ) {
+                    dueEntries = Arrays.copyOf( dueEntries, dueCount * 2 );
+                }
+                dueEntries[ dueCount++ ] = entry;
+                entrySlot[ entry ] = NULL;
+            }
+            slotHead[ slot ] = NULL;
+            
+            for ( int i = 0; i < dueCount; i++ ) {
+                int entry = dueEntries[ i ];
+                if ( listeners[ entry ] != null && entrySlot[ entry ] == NULL ) {
+                    fire( entry );
+                }
+            }
+        }
+    }
+    
+    private void fire( int entry ) {
+        TickListener listener = listeners[ entry ];
+        long tick = ticks[ entry ]++;
+        if ( interval[ entry ] > 0 ) {
+            dueTime[ entry ] += interval[ entry ];
+            insert( entry, wheelTime + 1 );
+        } else {
+            // one-shot, the entry is free before the call so that the listener can schedule again
+            release( entry );
+        }
+        listener.onTick( tick );
+    }
+    
+    private void moveWheel( long newWheelTime ) {
+        long shift = newWheelTime - wheelTime;
+        Arrays.fill( slotHead, NULL );
+        wheelTime = newWheelTime;
+        for ( int entry = 0; entry < entrySlots; entry++ ) {
+            if ( listeners[ entry ] == null || entrySlot[ entry ] == NULL ) {
+                continue;
+            }
+            
+            dueTime[ entry ] += shift;
+            insert( entry, wheelTime + 1 );
+        }
+    }
+    
+    private void cascade( int slot ) {
+        int entry = slotHead[ slot ];
+        slotHead[ slot ] = NULL;
+        while ( entry != NULL ) {
+            int next = entryNext[ entry ];
+            entrySlot[ entry ] = NULL;
+            insert( entry, wheelTime );
+            entry = next;
+        }
+    }
+    
+    private void insert( int entry, long minDue ) {
+        long due = Math.max( dueTime[ entry ], minDue );
+        long delta = due - wheelTime;
+        int level = 0;
+        while ( level < WHEEL_LEVELS - 1 && delta >= ( 1L << ( WHEEL_BITS * ( level + 1 ) ) ) ) {
+            level++;
+        }
+        if ( level == WHEEL_LEVELS - 1 && delta >= ( 1L << ( WHEEL_BITS * WHEEL_LEVELS ) ) ) {
+            // beyond the range of the wheel, park in the farthest slot and re-check on cascade
+            due = wheelTime + ( 1L << ( WHEEL_BITS * WHEEL_LEVELS ) ) - 1;
+        }
+        
+        int slot = level * WHEEL_SLOTS + (int) ( ( due >> ( WHEEL_BITS * level ) ) & WHEEL_MASK );
+        int head = slotHead[ slot ];
+        entrySlot[ entry ] = slot;
+        entryPrev[ entry ] = NULL;
+        entryNext[ entry ] = head;
+        if ( head != NULL ) {
+            entryPrev[ head ] = entry;
+        }
+        slotHead[ slot ] = entry;
+    }
+    
+    private void unlink( int entry ) {
+        int slot = entrySlot[ entry ];
+        if ( slot == NULL ) {
+            return;
+        }
+        
+        int prev = entryPrev[ entry ];
+        int next = entryNext[ entry ];
+        if ( prev != NULL ) {
+            entryNext[ prev ] = next;
+        } else {
+            slotHead[ slot ] = next;
+        }
+        if ( next != NULL ) {
+            entryPrev[ next ] = prev;
+        }
+        entrySlot[ entry ] = NULL;
+    }
+    
+    private void ensureEntryCapacity( int capacity ) {
+        if ( capacity <= listeners.length ) {
+            return;
+        }
+        
+        int newCapacity = Math.max( capacity, listeners.length * 2 );
+        listeners = Arrays.copyOf( listeners, newCapacity );
+        dueTime = Arrays.copyOf( dueTime, newCapacity );
+        interval = Arrays.copyOf( interval, newCapacity );
+        ticks = Arrays.copyOf( ticks, newCapacity );
+        entrySlot = Arrays.copyOf( entrySlot, newCapacity );
+        entryNext = Arrays.copyOf( entryNext, newCapacity );
+        entryPrev = Arrays.copyOf( entryPrev, newCapacity );
+        generations = Arrays.copyOf( generations, newCapacity );
+        freeEntries = Arrays.copyOf( freeEntries, newCapacity );
     }
 
     @Override
@@ -53,6 +332,14 @@ public abstract class FFTimer {
         return builder.toString();
     }
 
+    /** A subscriber of the timing wheel of the FFTimer, see schedule */
+    public interface TickListener {
+        
+        /** Called on every scheduled tick with the number of the tick, starting with 0 */
+        void onTick( long tick );
+        
+    }
+
     public final class UpdateScheduler {
         
         private final float resolution;
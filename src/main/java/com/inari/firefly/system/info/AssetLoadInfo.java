@@ -0,0 +1,40 @@
+package com.inari.firefly.system.info;
+
+import com.inari.firefly.asset.AssetSystem;
+import com.inari.firefly.graphics.text.TextBuffer;
+import com.inari.firefly.system.FFContext;
+
+/** Shows the total time spent to load Assets in milliseconds and the estimated size of all loaded Assets in KB */
+public final class AssetLoadInfo implements SystemInfo {
+    
+    private static final int LOAD_START = 7;
+    private static final int LOAD_LENGTH = 7;
+    private static final int SIZE_START = 18;
+    private static final int SIZE_LENGTH = 9;
+    private char[] info = "LOADms:......0 KB:........0".toCharArray();
+    
+    private boolean initialized = false;
+
+    @Override
+    public final String name() {
+        return "AssetLoadInfo";
+    }
+
+    @Override
+    public final int getLength() {
+        return info.length;
+    }
+
+    @Override
+    public final void update( FFContext context, TextBuffer buffer, int bufferStartPointer ) {
+        if ( !initialized ) {
+            buffer.setChars( bufferStartPointer, info );
+            initialized = true;
+        }
+        
+        AssetSystem assetSystem = context.getSystem( AssetSystem.SYSTEM_KEY );
+        buffer.setNumber( bufferStartPointer + LOAD_START, LOAD_LENGTH, assetSystem.getTotalLoadNanos() / 1000000, '.' );
+        buffer.setNumber( bufferStartPointer + SIZE_START, SIZE_LENGTH, assetSystem.getLoadedSize() / 1024, '.' );
+    }
+
+}
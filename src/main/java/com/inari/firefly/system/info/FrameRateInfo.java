@@ -1,5 +1,6 @@
 package com.inari.firefly.system.info;
 
+import com.inari.firefly.graphics.text.TextBuffer;
 import com.inari.firefly.system.FFContext;
 import com.inari.firefly.system.external.FFTimer;
 
@@ -8,6 +9,7 @@ public final class FrameRateInfo implements SystemInfo {
     private long lastSecondTime = -1;
     private int frames = 0;
     
+    private static final int FPS_START = 4;
     private char[] info = "FPS:.........00".toCharArray();
 
     @Override
@@ -21,7 +23,7 @@ public final class FrameRateInfo implements SystemInfo {
     }
 
     @Override
-    public final void update( FFContext context, StringBuffer buffer, int bufferStartPointer ) {
+    public final void update( FFContext context, TextBuffer buffer, int bufferStartPointer ) {
         FFTimer timer = context.getTimer();
         if ( lastSecondTime < 0 ) {
             lastSecondTime = timer.getTime();
@@ -33,20 +35,18 @@ public final class FrameRateInfo implements SystemInfo {
         frames++;
         long duration = timer.getTime() - lastSecondTime;
         if ( duration > 1000 ) {
-            updateFPS( buffer, bufferStartPointer, String.valueOf( frames ) );
+            updateFPS( buffer, bufferStartPointer, frames );
             frames = 0;
             lastSecondTime = timer.getTime();
         }
     }
     
-    private void updateFPS( StringBuffer buffer, int bufferStartPointer, String fps ) {
-        buffer.replace( bufferStartPointer + ( info.length - fps.length() ) ,  bufferStartPointer + info.length, fps );
+    private void updateFPS( TextBuffer buffer, int bufferStartPointer, int fps ) {
+        buffer.setNumber( bufferStartPointer + FPS_START, info.length - FPS_START, fps, '.' );
     }
 
-    private void setText( StringBuffer buffer, int bufferStartPointer ) {
-        for ( int i = 0; i < info.length; i++ ) {
-            buffer.setCharAt( i + bufferStartPointer, info[ i ] );
-        }
+    private void setText( TextBuffer buffer, int bufferStartPointer ) {
+        buffer.setChars( bufferStartPointer, info );
     }
 
 }
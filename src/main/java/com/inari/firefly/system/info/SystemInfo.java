@@ -1,5 +1,6 @@
 package com.inari.firefly.system.info;
 
+import com.inari.firefly.graphics.text.TextBuffer;
 import com.inari.firefly.system.FFContext;
 
 public interface SystemInfo {
@@ -8,7 +9,7 @@ public interface SystemInfo {
     
     int getLength();
     
-    void update( FFContext context, StringBuffer buffer, int bufferStartPointer );
+    void update( FFContext context, TextBuffer buffer, int bufferStartPointer );
     
 
 }
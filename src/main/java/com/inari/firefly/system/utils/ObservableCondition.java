@@ -0,0 +1,19 @@
+package com.inari.firefly.system.utils;
+
+import com.inari.firefly.system.FFContext;
+
+/** A Condition that declares what it depends on by observing it, for example by registering as listener for the
+ *  events or component changes it depends on. The observer is triggered whenever the result of check may have
+ *  changed, so the condition is only checked then and not polled on every update.
+ */
+public interface ObservableCondition extends Condition {
+
+    /** Starts observing the dependencies of this condition and triggers the specified observer
+     *  with the specified component id on every change of them.
+     */
+    void observe( FFContext context, int componentId, Triggerer observer );
+
+    /** Stops observing the dependencies of this condition */
+    void unobserve( FFContext context );
+
+}
@@ -1,11 +1,20 @@
 package com.inari.firefly.system.utils;
 
 import com.inari.firefly.system.FFContext;
+import com.inari.firefly.system.external.FFTimer.TickListener;
 
-public final class TimedCondition implements Condition, Initiable, Disposable {
+/** A Condition that is fulfilled after the specified time in milliseconds since it was initialized.
+ *  While observed it doesn't need to be polled, it is scheduled as a one-shot deadline on the FFTimer.
+ */
+public final class TimedCondition implements ObservableCondition, Initiable, Disposable, TickListener {
     
     private final long timeTo;
     private long startTime = -1;
+    
+    private FFContext context;
+    private int componentId;
+    private Triggerer observer;
+    private int scheduleId = -1;
 
     public TimedCondition( long timeTo ) {
         super();
@@ -32,4 +41,33 @@ public final class TimedCondition implements Condition, Initiable, Disposable {
         return !( context.getTime() - startTime < timeTo );
     }
 
+    @Override
+    public final void observe( FFContext context, int componentId, Triggerer observer ) {
+        this.context = context;
+        this.componentId = componentId;
+        this.observer = observer;
+        scheduleId = context.getTimer().scheduleOnce( timeTo, this );
+    }
+
+    @Override
+    public final void unobserve( FFContext context ) {
+        if ( scheduleId >= 0 ) {
+            context.getTimer().cancel( scheduleId );
+        }
+        scheduleId = -1;
+        observer = null;
+        this.context = null;
+    }
+
+    @Override
+    public final void onTick( long tick ) {
+        scheduleId = -1;
+        if ( !check( context ) ) {
+            // the context time is behind the timer, wait for the rest
+            scheduleId = context.getTimer().scheduleOnce( Math.max( 1, timeTo - ( context.getTime() - startTime ) ), this );
+            return;
+        }
+        observer.trigger( context, componentId );
+    }
+
 }
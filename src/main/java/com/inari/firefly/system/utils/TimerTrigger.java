@@ -0,0 +1,65 @@
+package com.inari.firefly.system.utils;
+
+import com.inari.firefly.system.FFContext;
+import com.inari.firefly.system.external.FFTimer.TickListener;
+
+/** A Trigger that triggers once after the specified delay in milliseconds since it was registered or, if repeating,
+ *  every delay milliseconds. It is scheduled on the FFTimer and is not polled so it has no cost until it is due.
+ *  An optional Condition is checked when due and the trigger is skipped if the condition is not fulfilled.
+ */
+public final class TimerTrigger extends Trigger implements TickListener {
+
+    private final long delay;
+    private final boolean repeat;
+    private int scheduleId = -1;
+
+    public TimerTrigger( long delay, boolean repeat ) {
+        this( delay, repeat, null );
+    }
+
+    public TimerTrigger( long delay, boolean repeat, Condition condition ) {
+        super( condition );
+        this.delay = Math.max( 1, delay );
+        this.repeat = repeat;
+    }
+
+    public final long getDelay() {
+        return delay;
+    }
+
+    public final boolean isRepeat() {
+        return repeat;
+    }
+
+    @Override
+    public final void register( FFContext context, int componentId, Triggerer triggerer ) {
+        super.register( context, componentId, triggerer );
+
+        if ( repeat ) {
+            scheduleId = context.getTimer().scheduleEvery( delay, delay, this );
+        } else {
+            scheduleId = context.getTimer().scheduleOnce( delay, this );
+        }
+    }
+
+    @Override
+    public final void dispose( FFContext context ) {
+        if ( scheduleId >= 0 ) {
+            context.getTimer().cancel( scheduleId );
+        }
+        scheduleId = -1;
+    }
+
+    @Override
+    public final void onTick( long tick ) {
+        if ( !repeat ) {
+            scheduleId = -1;
+        }
+        if ( condition != null && !condition.check( context ) ) {
+            return;
+        }
+
+        triggerer.trigger( context, componentId );
+    }
+
+}
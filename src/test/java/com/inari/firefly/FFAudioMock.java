@@ -27,6 +27,10 @@ public class FFAudioMock implements FFAudio {
         log.clear();
     }
     
+    public String getLog() {
+        return log.toString();
+    }
+    
     @Override
     public long playSound( int soundId, int chanel, boolean looping, float volume, float pitch, float pan ) {
         log.add( "playSound" );
@@ -105,6 +105,11 @@ public class FFGraphicsMock implements FFGraphics {
         log.add( "renderSprite::Sprite(" + spriteRenderable.getSpriteId() + ")" );
     }
 
+    @Override
+    public final void renderSprites( SpriteRenderable spriteRenderable, TransformData transformData, float[] positions, int count ) {
+        log.add( "renderSprites::Sprite(" + spriteRenderable.getSpriteId() + ")x" + count + " offset(" + transformData.getXOffset() + "," + transformData.getYOffset() + ")" );
+    }
+
     @Override
     public void renderShape( ShapeData data ) {
         log.add( "renderShape:: " + data );
@@ -120,6 +125,31 @@ public class FFGraphicsMock implements FFGraphics {
         log.add( "endRendering::View(" + view.getName() + ")" );
     }
 
+    @Override
+    public int createOffscreenTarget( int width, int height ) {
+        return loadedAssets.add( "offscreen:" + width + "x" + height );
+    }
+
+    @Override
+    public void disposeOffscreenTarget( int targetId ) {
+        loadedAssets.remove( targetId );
+    }
+
+    @Override
+    public void startOffscreenRendering( int targetId, Rectangle worldBounds, boolean clear ) {
+        log.add( "startOffscreenRendering::Target(" + targetId + ")" );
+    }
+
+    @Override
+    public void endOffscreenRendering( int targetId ) {
+        log.add( "endOffscreenRendering::Target(" + targetId + ")" );
+    }
+
+    @Override
+    public void renderOffscreenTarget( int targetId, float xpos, float ypos ) {
+        log.add( "renderOffscreenTarget::Target(" + targetId + ")" );
+    }
+
     @Override
     public void flush( DynArray<View> virtualViews ) {
         log.add( "flush" );
@@ -146,6 +176,20 @@ public class FFGraphicsMock implements FFGraphics {
     public String log() {
         return log.toString();
     }
+    
+    public int logCount( String entryPrefix ) {
+        int count = 0;
+        for ( String entry : log ) {
+            if ( entry.startsWith( entryPrefix ) ) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    public void clearLog() {
+        log.clear();
+    }
 
     @Override
     public String toString() {
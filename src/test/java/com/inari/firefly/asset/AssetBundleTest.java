@@ -0,0 +1,72 @@
+package com.inari.firefly.asset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.inari.firefly.FFTest;
+
+public class AssetBundleTest extends FFTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] texture = new byte[ 1000 ];
+        for ( int i = 0; i < texture.length; i++ ) {
+            texture[ i ] = (byte) i;
+        }
+        byte[] sound = new byte[] { 1, 2, 3 };
+
+        File file = File.createTempFile( "bundle", ".ffab" );
+        file.deleteOnExit();
+        new AssetBundlePacker()
+            .add( "textures/tiles.png", texture )
+            .add( "sounds/jump.ogg", sound )
+            .add( "empty", new byte[ 0 ] )
+            .write( file );
+
+        AssetBundle bundle = AssetBundle.open( file );
+        assertEquals( 3, bundle.size() );
+        assertTrue( bundle.contains( "textures/tiles.png" ) );
+        assertFalse( bundle.contains( "textures/other.png" ) );
+        assertResource( texture, bundle.getResource( "textures/tiles.png" ) );
+        assertResource( sound, bundle.getResource( "sounds/jump.ogg" ) );
+        assertResource( new byte[ 0 ], bundle.getResource( "empty" ) );
+        assertNull( bundle.getResource( "textures/other.png" ) );
+        // a slice is independent of other slices of the same resource
+        bundle.getResource( "sounds/jump.ogg" ).get();
+        assertResource( sound, bundle.getResource( "sounds/jump.ogg" ) );
+    }
+
+    @Test
+    public void testResolveResource() throws IOException {
+        File file = File.createTempFile( "bundle", ".ffab" );
+        file.deleteOnExit();
+        new AssetBundlePacker()
+            .add( "font.png", new byte[] { 42 } )
+            .write( file );
+
+        AssetSystem assetSystem = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        assertNull( assetSystem.getResource( "font.png" ) );
+        assetSystem.addBundle( file );
+        assertResource( new byte[] { 42 }, assetSystem.getResource( "font.png" ) );
+        assetSystem.removeBundle( file.getName() );
+        assertNull( assetSystem.getResource( "font.png" ) );
+    }
+
+    private void assertResource( byte[] expected, ByteBuffer resource ) {
+        assertEquals( expected.length, resource.remaining() );
+        byte[] data = new byte[ resource.remaining() ];
+        resource.get( data );
+        for ( int i = 0; i < expected.length; i++ ) {
+            assertEquals( expected[ i ], data[ i ] );
+        }
+    }
+
+}
@@ -10,6 +10,7 @@ import java.util.Set;
 
 import org.junit.Test;
 
+import com.inari.commons.lang.list.IntBag;
 import com.inari.firefly.FFTest;
 import com.inari.firefly.component.attr.AttributeKey;
 import com.inari.firefly.component.attr.AttributeMap;
@@ -217,6 +218,332 @@ public class AssetSystemTest extends FFTest {
         );
     }
     
+    @Test
+    public void testLoadAssetsAsync() throws InterruptedException {
+        AssetSystem service = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        int baseId = service.getAssetBuilder( DecodingAsset.class )
+            .set( Asset.NAME, "base" )
+        .build();
+        int dependentId = service.getAssetBuilder( DecodingAsset.class )
+            .set( Asset.NAME, "dependent" )
+        .build();
+        DecodingAsset base = (DecodingAsset) service.getAsset( baseId );
+        DecodingAsset dependent = (DecodingAsset) service.getAsset( dependentId );
+        dependent.dependency = base;
+        dependent.dependsOn = new IntBag( 1, -1 );
+        dependent.dependsOn.add( baseId );
+        
+        int loadGroupId = service.loadAssetsAsync( dependentId );
+        assertTrue( service.isLoading( loadGroupId ) );
+        assertFalse( base.isLoaded() );
+        assertFalse( dependent.isLoaded() );
+        
+        long deadline = System.currentTimeMillis() + 5000;
+        while ( service.isLoading( loadGroupId ) && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 1 );
+            firefly.update();
+        }
+        
+        assertFalse( service.isLoading( loadGroupId ) );
+        assertTrue( base.isLoaded() );
+        assertTrue( dependent.isLoaded() );
+        assertTrue( base.decoded );
+        // the dependency was loaded before the dependent was decoded
+        assertTrue( dependent.dependencyLoadedOnDecode );
+        assertTrue( eventLog.toString().contains( "AssetEvent [eventType=ASSET_GROUP_LOADED, loadGroupId=" + loadGroupId + "]" ) );
+    }
+    
+    @Test
+    public void testLoadAssetsAsyncSkipsLoaded() throws InterruptedException {
+        AssetSystem service = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        int baseId = service.getAssetBuilder( DecodingAsset.class ).set( Asset.NAME, "base" ).build();
+        int dependentId = service.getAssetBuilder( DecodingAsset.class ).set( Asset.NAME, "dependent" ).build();
+        DecodingAsset base = (DecodingAsset) service.getAsset( baseId );
+        DecodingAsset dependent = (DecodingAsset) service.getAsset( dependentId );
+        dependent.dependsOn = new IntBag( 1, -1 );
+        dependent.dependsOn.add( baseId );
+        service.loadAsset( baseId );
+        
+        int loadGroupId = service.loadAssetsAsync( dependentId );
+        awaitLoadGroup( service, loadGroupId );
+        
+        assertTrue( dependent.isLoaded() );
+        assertTrue( dependent.decoded );
+        // the loaded dependency is not decoded again
+        assertFalse( base.decoded );
+    }
+    
+    @Test
+    public void testLoadAssetsAsyncDecodeFailure() throws InterruptedException {
+        AssetSystem service = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        int baseId = service.getAssetBuilder( DecodingAsset.class ).set( Asset.NAME, "base" ).build();
+        int dependentId = service.getAssetBuilder( DecodingAsset.class ).set( Asset.NAME, "dependent" ).build();
+        DecodingAsset base = (DecodingAsset) service.getAsset( baseId );
+        DecodingAsset dependent = (DecodingAsset) service.getAsset( dependentId );
+        base.failDecode = true;
+        dependent.dependsOn = new IntBag( 1, -1 );
+        dependent.dependsOn.add( baseId );
+        
+        int loadGroupId = service.loadAssetsAsync( dependentId );
+        awaitLoadGroup( service, loadGroupId );
+        
+        assertFalse( base.isLoaded() );
+        assertFalse( dependent.isLoaded() );
+        assertFalse( dependent.decoded );
+        assertTrue( eventLog.toString().contains( "AssetEvent [eventType=ASSET_LOAD_FAILED, assetId=" + baseId + "]" ) );
+        assertTrue( eventLog.toString().contains( "AssetEvent [eventType=ASSET_LOAD_FAILED, assetId=" + dependentId + "]" ) );
+        assertTrue( eventLog.toString().contains( "AssetEvent [eventType=ASSET_GROUP_FAILED, loadGroupId=" + loadGroupId + "]" ) );
+        
+        // the failed assets are not loading anymore and can be loaded again
+        service.loadAsset( baseId );
+        service.loadAsset( dependentId );
+        assertTrue( dependent.isLoaded() );
+    }
+    
+    @Test
+    public void testLoadAssetsAsyncLoadFailure() throws InterruptedException {
+        AssetSystem service = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        int baseId = service.getAssetBuilder( DecodingAsset.class ).set( Asset.NAME, "base" ).build();
+        int dependentId = service.getAssetBuilder( DecodingAsset.class ).set( Asset.NAME, "dependent" ).build();
+        DecodingAsset base = (DecodingAsset) service.getAsset( baseId );
+        DecodingAsset dependent = (DecodingAsset) service.getAsset( dependentId );
+        base.failLoad = true;
+        dependent.dependsOn = new IntBag( 1, -1 );
+        dependent.dependsOn.add( baseId );
+        
+        // the load on the game thread fails within update and is reported like a decode failure
+        int loadGroupId = service.loadAssetsAsync( dependentId );
+        awaitLoadGroup( service, loadGroupId );
+        
+        assertTrue( base.decoded );
+        assertFalse( base.isLoaded() );
+        assertFalse( dependent.isLoaded() );
+        assertFalse( dependent.decoded );
+        assertTrue( eventLog.toString().contains( "AssetEvent [eventType=ASSET_LOAD_FAILED, assetId=" + baseId + "]" ) );
+        assertTrue( eventLog.toString().contains( "AssetEvent [eventType=ASSET_LOAD_FAILED, assetId=" + dependentId + "]" ) );
+        assertTrue( eventLog.toString().contains( "AssetEvent [eventType=ASSET_GROUP_FAILED, loadGroupId=" + loadGroupId + "]" ) );
+        
+        base.failLoad = false;
+        service.loadAsset( dependentId );
+        assertTrue( base.isLoaded() );
+        assertTrue( dependent.isLoaded() );
+    }
+    
+    private void awaitLoadGroup( AssetSystem service, int loadGroupId ) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ( service.isLoading( loadGroupId ) && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 1 );
+            firefly.update();
+        }
+        assertFalse( service.isLoading( loadGroupId ) );
+    }
+    
+    @Test
+    public void testReferencesAndEviction() {
+        AssetSystem service = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        int asset1 = service.getAssetBuilder( SizedAsset.class ).set( Asset.NAME, "asset1" ).build();
+        int asset2 = service.getAssetBuilder( SizedAsset.class ).set( Asset.NAME, "asset2" ).build();
+        int asset3 = service.getAssetBuilder( SizedAsset.class ).set( Asset.NAME, "asset3" ).build();
+        service.setMemoryBudget( 250 );
+        
+        service.acquireAsset( asset1 );
+        service.acquireAsset( asset2 );
+        service.acquireAsset( asset3 );
+        service.acquireAsset( asset3 );
+        assertEquals( 2, service.getReferences( asset3 ) );
+        // referenced assets are never evicted
+        assertEquals( 300, service.getLoadedSize() );
+        assertEquals( 0, service.getEvictionCount() );
+        
+        service.releaseAsset( asset2 );
+        service.releaseAsset( asset1 );
+        // asset2 was released first and is evicted
+        assertFalse( service.isLoaded( asset2 ) );
+        assertTrue( service.isLoaded( asset1 ) );
+        assertEquals( 200, service.getLoadedSize() );
+        assertEquals( 1, service.getUnreferencedCount() );
+        assertEquals( 1, service.getEvictionCount() );
+        
+        // acquiring again protects and loads it if needed
+        service.acquireAsset( asset1 );
+        service.acquireAsset( asset2 );
+        assertTrue( service.isLoaded( asset2 ) );
+        assertEquals( 0, service.getUnreferencedCount() );
+        assertEquals( 300, service.getLoadedSize() );
+    }
+    
+    @Test
+    public void testManuallyLoadedAssetIsPinned() {
+        AssetSystem service = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        int baseId = service.getAssetBuilder( SizedAsset.class ).set( Asset.NAME, "base" ).build();
+        int dependentId = service.getAssetBuilder( DecodingAsset.class ).set( Asset.NAME, "dependent" ).build();
+        ( (DecodingAsset) service.getAsset( dependentId ) ).dependsOn = new IntBag( 1, -1 );
+        ( (DecodingAsset) service.getAsset( dependentId ) ).dependsOn.add( baseId );
+        service.loadAsset( baseId );
+        service.setMemoryBudget( 50 );
+        
+        service.acquireAsset( dependentId );
+        assertEquals( 1, service.getReferences( baseId ) );
+        service.releaseAsset( dependentId );
+        // the dependent is evicted and releases the base that was loaded manually and so is kept
+        assertFalse( service.isLoaded( dependentId ) );
+        assertTrue( service.isLoaded( baseId ) );
+        assertEquals( 0, service.getReferences( baseId ) );
+        assertEquals( 0, service.getUnreferencedCount() );
+        
+        // a manual dispose unpins it
+        service.disposeAsset( baseId );
+        service.acquireAsset( baseId );
+        service.releaseAsset( baseId );
+        assertFalse( service.isLoaded( baseId ) );
+    }
+    
+    @Test
+    public void testDisposeDependents() {
+        AssetSystem service = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        int assetA = service.getAssetBuilder( DecodingAsset.class ).set( Asset.NAME, "A" ).build();
+        int assetB = service.getAssetBuilder( DecodingAsset.class ).set( Asset.NAME, "B" ).build();
+        int assetC = service.getAssetBuilder( DecodingAsset.class ).set( Asset.NAME, "C" ).build();
+        ( (DecodingAsset) service.getAsset( assetB ) ).dependsOn = new IntBag( 1, -1 );
+        ( (DecodingAsset) service.getAsset( assetB ) ).dependsOn.add( assetA );
+        ( (DecodingAsset) service.getAsset( assetC ) ).dependsOn = new IntBag( 1, -1 );
+        ( (DecodingAsset) service.getAsset( assetC ) ).dependsOn.add( assetB );
+        service.loadAsset( assetA );
+        service.loadAsset( assetB );
+        service.loadAsset( assetC );
+        
+        IntBag dependents = service.getDependents( assetA );
+        assertEquals( 1, dependents.size() );
+        assertEquals( assetB, dependents.get( 0 ) );
+        // C depends on B so it is disposed first
+        IntBag affected = service.getAffectedByDispose( assetA );
+        assertEquals( 2, affected.size() );
+        assertEquals( assetC, affected.get( 0 ) );
+        assertEquals( assetB, affected.get( 1 ) );
+        
+        service.disposeAsset( assetA );
+        assertFalse( service.isLoaded( assetA ) );
+        assertFalse( service.isLoaded( assetB ) );
+        assertFalse( service.isLoaded( assetC ) );
+        
+        service.deleteAsset( assetC );
+        assertTrue( service.getDependents( assetB ) == null );
+    }
+
+    @Test
+    public void testDeleteDependents() {
+        AssetSystem service = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        int assetA = service.getAssetBuilder( DecodingAsset.class ).set( Asset.NAME, "A" ).build();
+        int assetB = service.getAssetBuilder( DecodingAsset.class ).set( Asset.NAME, "B" ).build();
+        int assetC = service.getAssetBuilder( DecodingAsset.class ).set( Asset.NAME, "C" ).build();
+        ( (DecodingAsset) service.getAsset( assetB ) ).dependsOn = new IntBag( 1, -1 );
+        ( (DecodingAsset) service.getAsset( assetB ) ).dependsOn.add( assetA );
+        ( (DecodingAsset) service.getAsset( assetC ) ).dependsOn = new IntBag( 1, -1 );
+        ( (DecodingAsset) service.getAsset( assetC ) ).dependsOn.add( assetB );
+        service.loadAsset( assetA );
+        service.loadAsset( assetB );
+        service.loadAsset( assetC );
+
+        // deleting a loaded asset disposes the dependents but keeps them
+        service.deleteAsset( assetA );
+        assertFalse( service.hasAsset( assetA ) );
+        assertTrue( service.hasAsset( assetB ) );
+        assertTrue( service.hasAsset( assetC ) );
+        assertFalse( service.isLoaded( assetB ) );
+        assertFalse( service.isLoaded( assetC ) );
+
+        // deleting with dependents deletes all of them also if they are not loaded
+        service.deleteAssetAndDependents( assetB );
+        assertFalse( service.hasAsset( assetB ) );
+        assertFalse( service.hasAsset( assetC ) );
+    }
+
+    @Test
+    public void testLoadStatistics() {
+        AssetSystem service = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        int fastId = service.getAssetBuilder( SizedAsset.class ).set( Asset.NAME, "fast" ).build();
+        int slowId = service.getAssetBuilder( SlowAsset.class ).set( Asset.NAME, "slow" ).build();
+        service.loadAsset( fastId );
+        service.loadAsset( slowId );
+        
+        assertEquals( 100, service.getAssetSize( fastId ) );
+        assertTrue( service.getLoadNanos( slowId ) >= 5000000 );
+        assertTrue( service.getTotalLoadNanos() >= service.getLoadNanos( slowId ) );
+        
+        String[] lines = service.dumpLoadStatistics().split( "\\r?\\n" );
+        assertEquals( 4, lines.length );
+        assertTrue( lines[ 0 ].startsWith( "name" ) );
+        // sorted by cost
+        assertTrue( lines[ 1 ].startsWith( "slow" ) );
+        assertTrue( lines[ 2 ].startsWith( "fast" ) );
+        assertTrue( lines[ 3 ].startsWith( "total" ) );
+    }
+    
+    public static class SizedAsset extends TestAsset {
+        
+        SizedAsset( int assetId ) {
+            super( assetId );
+        }
+
+        @Override
+        protected long estimateSize() {
+            return 100;
+        }
+    }
+    
+    public static class SlowAsset extends SizedAsset {
+        
+        SlowAsset( int assetId ) {
+            super( assetId );
+        }
+
+        @Override
+        public Disposable load( FFContext context ) {
+            try {
+                Thread.sleep( 5 );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+            return this;
+        }
+    }
+    
+    public static class DecodingAsset extends TestAsset {
+        
+        IntBag dependsOn;
+        DecodingAsset dependency;
+        volatile boolean decoded = false;
+        volatile boolean failDecode = false;
+        volatile boolean failLoad = false;
+        volatile boolean dependencyLoadedOnDecode = false;
+        
+        DecodingAsset( int assetId ) {
+            super( assetId );
+        }
+
+        @Override
+        protected IntBag dependsOn() {
+            return dependsOn;
+        }
+
+        @Override
+        protected void decode() {
+            if ( failDecode ) {
+                throw new IllegalStateException( "decode failed" );
+            }
+            dependencyLoadedOnDecode = dependency == null || dependency.isLoaded();
+            decoded = true;
+        }
+
+        @Override
+        public Disposable load( FFContext context ) {
+            if ( failLoad ) {
+                throw new IllegalStateException( "load failed" );
+            }
+            return super.load( context );
+        }
+    }
+    
     public static class TestAsset extends Asset {
         
         TestAsset( int assetId ) {
@@ -0,0 +1,156 @@
+package com.inari.firefly.audio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import com.inari.firefly.FFAudioMock;
+import com.inari.firefly.FFTest;
+import com.inari.firefly.TestTimer;
+import com.inari.firefly.asset.Asset;
+import com.inari.firefly.asset.AssetSystem;
+
+public class AudioSystemTest extends FFTest {
+
+    @Test
+    public void testMaxVoicesAndSameFrame() {
+        AudioSystem audioSystem = ffContext.getSystem( AudioSystem.SYSTEM_KEY );
+        FFAudioMock audio = (FFAudioMock) ffContext.getAudio();
+        int shotId = createSound( "shot", 0, 2 );
+
+        audioSystem.playSound( shotId );
+        audioSystem.playSound( shotId );
+        assertEquals( 1, audioSystem.getActiveVoices( shotId ) );
+
+        firefly.update();
+        audioSystem.playSound( shotId );
+        assertEquals( 2, audioSystem.getActiveVoices( shotId ) );
+
+        // steals the oldest voice of the sound
+        firefly.update();
+        audioSystem.playSound( shotId );
+        assertEquals( 2, audioSystem.getActiveVoices( shotId ) );
+        assertEquals( 1, audioSystem.getStolenVoices() );
+        assertEquals( "[playSound, playSound, stopSound, playSound]", audio.getLog() );
+    }
+
+    @Test
+    public void testSameFrameByUpdateNotByTime() {
+        AudioSystem audioSystem = ffContext.getSystem( AudioSystem.SYSTEM_KEY );
+        TestTimer timer = (TestTimer) ffContext.getTimer();
+        int shotId = createSound( "shot", 0, 0 );
+
+        audioSystem.playSound( shotId );
+        // a new frame within the same millisecond
+        firefly.update();
+        timer.setTime( 0 );
+        audioSystem.playSound( shotId );
+        audioSystem.playSound( shotId );
+        assertEquals( 2, audioSystem.getActiveVoices( shotId ) );
+    }
+
+    @Test
+    public void testStealOwnVoiceAfterPriorityChange() {
+        AudioSystem audioSystem = ffContext.getSystem( AudioSystem.SYSTEM_KEY );
+        int shotId = createSound( "shot", 5, 1 );
+
+        audioSystem.playSound( shotId );
+        // the playing voice keeps the higher priority
+        audioSystem.getSound( shotId ).setPriority( 0 );
+        firefly.update();
+        audioSystem.playSound( shotId );
+        assertEquals( 1, audioSystem.getActiveVoices( shotId ) );
+        assertEquals( 1, audioSystem.getStolenVoices() );
+    }
+
+    @Test
+    public void testVoiceBudgetDropLowest() {
+        AudioSystem audioSystem = ffContext.getSystem( AudioSystem.SYSTEM_KEY );
+        FFAudioMock audio = (FFAudioMock) ffContext.getAudio();
+        audioSystem.setVoiceBudget( 2 );
+        audioSystem.setVoicePolicy( VoicePolicy.DROP_LOWEST );
+        int stepId = createSound( "step", 0, 0 );
+        int shotId = createSound( "shot", 0, 0 );
+        int explosionId = createSound( "explosion", 5, 0 );
+
+        audioSystem.playSound( stepId );
+        audioSystem.playSound( shotId );
+        assertEquals( 2, audioSystem.getActiveVoices() );
+
+        // no voice with a lower priority to steal
+        firefly.update();
+        audioSystem.playSound( stepId );
+        assertEquals( 1, audioSystem.getDroppedVoices() );
+
+        // the oldest voice with the lowest priority is stolen
+        audioSystem.playSound( explosionId );
+        assertEquals( 2, audioSystem.getActiveVoices() );
+        assertEquals( 0, audioSystem.getActiveVoices( stepId ) );
+        assertEquals( 1, audioSystem.getActiveVoices( explosionId ) );
+        assertEquals( 1, audioSystem.getStolenVoices() );
+        assertEquals( "[playSound, playSound, stopSound, playSound]", audio.getLog() );
+    }
+
+    @Test
+    public void testAudioThread() throws InterruptedException {
+        AudioSystem audioSystem = ffContext.getSystem( AudioSystem.SYSTEM_KEY );
+        FFAudioMock audio = (FFAudioMock) ffContext.getAudio();
+        int shotId = createSound( "shot", 0, 0 );
+        audioSystem.setAudioThread( true );
+
+        audioSystem.playSound( shotId );
+        audioSystem.getSound( shotId ).setVolume( 0.5f );
+        audioSystem.changeSound( shotId );
+        audioSystem.stopPlaying( shotId );
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ( audioSystem.hasPendingCommands() && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 1 );
+        }
+
+        assertFalse( audioSystem.hasPendingCommands() );
+        // the mock returns the sound id as instance id
+        assertEquals( audioSystem.getSound( shotId ).getSoundId(), audioSystem.getInstanceId( shotId ) );
+        assertEquals( "[playSound, changeSound, stopSound]", audio.getLog() );
+        audioSystem.setAudioThread( false );
+        assertFalse( audioSystem.isAudioThread() );
+    }
+
+    @Test
+    public void testLoopingVoiceKeepsHandle() {
+        AudioSystem audioSystem = ffContext.getSystem( AudioSystem.SYSTEM_KEY );
+        FFAudioMock audio = (FFAudioMock) ffContext.getAudio();
+        int loopId = createSound( "loop", 0, 0 );
+        int shotId = createSound( "shot", 0, 0 );
+        audioSystem.getSound( loopId ).setLooping( true );
+        audioSystem.getSound( shotId ).setDuration( 1 );
+
+        audioSystem.playSound( loopId );
+        // more voices then handles are played and expired while the looping voice plays
+        for ( int i = 0; i < 3000; i++ ) {
+            firefly.update();
+            audioSystem.playSound( shotId );
+        }
+
+        assertEquals( audioSystem.getSound( loopId ).getSoundId(), audioSystem.getInstanceId( loopId ) );
+        audio.clear();
+        audioSystem.stopPlaying( loopId );
+        assertEquals( "[stopSound]", audio.getLog() );
+        assertEquals( 0, audioSystem.getActiveVoices( loopId ) );
+    }
+
+    private int createSound( String name, int priority, int maxVoices ) {
+        ffContext.getSystem( AssetSystem.SYSTEM_KEY ).getAssetBuilder( SoundAsset.class )
+            .set( Asset.NAME, name + "Asset" )
+            .set( SoundAsset.RESOURCE_NAME, name + ".ogg" )
+        .build();
+        return ffContext.getSystem( AudioSystem.SYSTEM_KEY ).getSoundBuilder()
+            .set( Sound.NAME, name )
+            .set( Sound.SOUND_ASSET_NAME, name + "Asset" )
+            .set( Sound.PRIORITY, priority )
+            .set( Sound.MAX_VOICES, maxVoices )
+        .build();
+    }
+
+}
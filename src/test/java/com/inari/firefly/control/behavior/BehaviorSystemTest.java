@@ -0,0 +1,77 @@
+package com.inari.firefly.control.behavior;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.inari.commons.lang.list.IntBag;
+import com.inari.firefly.FFTest;
+import com.inari.firefly.control.behavior.Action.ActionState;
+
+public class BehaviorSystemTest extends FFTest {
+
+    @Test
+    public void testCompiledSequenceOfTimedLeafs() {
+        BehaviorSystem behaviorSystem = ffContext.getSystem( BehaviorSystem.SYSTEM_KEY );
+        TestAction.LOG.setLength( 0 );
+
+        int actionA = behaviorSystem.getActionBuilder( TestAction.class )
+            .set( Action.NAME, "A" )
+        .build();
+        int actionB = behaviorSystem.getActionBuilder( TestAction.class )
+            .set( Action.NAME, "B" )
+        .build();
+        int leafA = behaviorSystem.getBehaviorNodeBuilder( TimedLeaf.class )
+            .set( TimedLeaf.ACTION_ID, actionA )
+            .set( TimedLeaf.DURATION, 1l )
+        .build();
+        int leafB = behaviorSystem.getBehaviorNodeBuilder( TimedLeaf.class )
+            .set( TimedLeaf.ACTION_ID, actionB )
+            .set( TimedLeaf.DURATION, 0l )
+        .build();
+        IntBag nodeIds = new IntBag( 2, -1 );
+        nodeIds.add( leafA );
+        nodeIds.add( leafB );
+        int sequence = behaviorSystem.getBehaviorNodeBuilder( Sequence.class )
+            .set( Sequence.NODE_IDS, nodeIds )
+        .build();
+
+        int entityId = ffContext.getEntityBuilder()
+            .set( EBehavoir.ROOT_NODE_ID, sequence )
+        .activate();
+
+        firefly.update();
+        assertEquals( "A ", TestAction.LOG.toString() );
+        assertEquals( actionA, behaviorSystem.getRunningActionId( entityId ) );
+        assertEquals( ActionState.RUNNING, behaviorSystem.getActionState( entityId ) );
+
+        firefly.update();
+        firefly.update();
+        assertEquals( "A A B ", TestAction.LOG.toString() );
+        assertEquals( actionB, behaviorSystem.getRunningActionId( entityId ) );
+
+        // the sequence has finished and starts again on the next update
+        firefly.update();
+        assertEquals( "A A B ", TestAction.LOG.toString() );
+        assertEquals( -1, behaviorSystem.getRunningActionId( entityId ) );
+        assertEquals( ActionState.SUCCESS, behaviorSystem.getActionState( entityId ) );
+
+        firefly.update();
+        assertEquals( "A A B A ", TestAction.LOG.toString() );
+    }
+
+    public static final class TestAction extends Action {
+
+        static final StringBuilder LOG = new StringBuilder();
+
+        protected TestAction( int id ) {
+            super( id );
+        }
+
+        @Override
+        public final void action( int entityId ) {
+            LOG.append( getName() ).append( " " );
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.inari.firefly.control.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.inari.commons.lang.list.DynArray;
+import com.inari.firefly.FFTest;
+import com.inari.firefly.system.utils.TimedCondition;
+import com.inari.firefly.system.utils.TrueCondition;
+
+public class StateSystemTest extends FFTest {
+
+    @Test
+    public void testObservedAndPolledStateChanges() {
+        StateSystem stateSystem = ffContext.getSystem( StateSystem.SYSTEM_KEY );
+
+        DynArray<StateChange> stateChanges = DynArray.create( StateChange.class, 5, 5 );
+        stateChanges.add( new StateChange( "AtoB", "A", "B", new TimedCondition( 3 ) ) );
+        stateChanges.add( new StateChange( "BtoC", "B", "C" ) );
+        stateChanges.add( new StateChange( "CtoEnd", "C", null, new TrueCondition() ) );
+
+        int workflowId = stateSystem.getWorkflowBuilder()
+            .set( Workflow.NAME, "TestWorkflow" )
+            .set( Workflow.START_STATE_NAME, "A" )
+            .set( Workflow.STATE_CHANGES, stateChanges )
+        .activate();
+        Workflow workflow = stateSystem.getWorkflow( workflowId );
+
+        assertEquals( "A", workflow.getCurrentState() );
+        assertEquals( workflow.getStateId( "A" ), workflow.getCurrentStateId() );
+        assertFalse( workflow.isPolled() );
+
+        // the timed condition is observed on the timing wheel of the timer
+        firefly.update();
+        firefly.update();
+        assertEquals( "A", workflow.getCurrentState() );
+        firefly.update();
+        assertEquals( "B", workflow.getCurrentState() );
+
+        // no condition at all, only changed explicitly
+        firefly.update();
+        assertEquals( "B", workflow.getCurrentState() );
+        stateSystem.doStateChange( workflowId, "BtoC" );
+        assertEquals( "C", workflow.getCurrentState() );
+        assertTrue( workflow.isPolled() );
+
+        firefly.update();
+        assertFalse( workflow.isActive() );
+        assertEquals( null, workflow.getCurrentState() );
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.inari.firefly.control.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.inari.firefly.FFTest;
+import com.inari.firefly.system.utils.TimerTrigger;
+
+public class TaskSystemTest extends FFTest {
+
+    @Test
+    public void testAsyncTaskCompletesOnUpdate() throws InterruptedException {
+        TaskSystem taskSystem = ffContext.getSystem( TaskSystem.SYSTEM_KEY );
+        int taskId = taskSystem.getTaskBuilder( SumTask.class )
+            .set( Task.NAME, "sum" )
+            .set( Task.ASYNC, true )
+        .build();
+        SumTask task = taskSystem.getTaskAs( taskId, SumTask.class );
+
+        taskSystem.runTask( taskId );
+        assertTrue( task.isRunning() );
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ( task.isRunning() && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 1 );
+            firefly.update();
+        }
+
+        assertFalse( task.isRunning() );
+        assertNull( task.getError() );
+        assertEquals( 1f, task.getProgress(), 0.0001f );
+        // the result is applied on the game thread
+        assertEquals( 5050, task.completedSum );
+    }
+
+    @Test
+    public void testTimerTrigger() {
+        TaskSystem taskSystem = ffContext.getSystem( TaskSystem.SYSTEM_KEY );
+        int taskId = taskSystem.getTaskBuilder( SumTask.class )
+            .set( Task.NAME, "timed" )
+        .build();
+        SumTask task = taskSystem.getTaskAs( taskId, SumTask.class );
+        task.addTrigger( new TimerTrigger( 3, false ) );
+
+        firefly.update();
+        firefly.update();
+        assertEquals( 0f, task.getProgress(), 0.0001f );
+        firefly.update();
+        assertEquals( 1f, task.getProgress(), 0.0001f );
+    }
+
+    public static final class SumTask extends Task {
+
+        private int sum;
+        int completedSum = -1;
+
+        protected SumTask( int id ) {
+            super( id );
+        }
+
+        @Override
+        public final void runTask() {
+            sum = 0;
+            for ( int i = 1; i <= 100; i++ ) {
+                sum += i;
+                setProgress( i / 100f );
+            }
+        }
+
+        @Override
+        protected final void completeTask() {
+            completedSum = sum;
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.inari.firefly.entity;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.inari.commons.lang.aspect.Aspects;
+import com.inari.firefly.FFTest;
+import com.inari.firefly.graphics.ETransform;
+import com.inari.firefly.system.FFContext;
+import com.inari.firefly.system.utils.Triggerer;
+
+public class EntityActivationTriggerTest extends FFTest {
+
+    private static final Aspects TRANSFORM_ASPECTS = EntityComponent.ASPECT_GROUP.createAspects( ETransform.TYPE_KEY );
+
+    @Test
+    public void testActivated() {
+        EntitySystem entitySystem = ffContext.getSystem( EntitySystem.SYSTEM_KEY );
+        TriggerCount count = new TriggerCount();
+        new EntityActivationTrigger( TRANSFORM_ASPECTS, EntityActivationTrigger.Type.ACTIVATED )
+            .register( ffContext, 5, count );
+
+        int entityId = createEntity( true );
+        assertEquals( 1, count.triggers );
+        assertEquals( 5, count.componentId );
+
+        // an entity without the aspects and a deactivation don't trigger
+        createEntity( false );
+        entitySystem.deactivateEntity( entityId );
+        assertEquals( 1, count.triggers );
+    }
+
+    @Test
+    public void testDeactivated() {
+        EntitySystem entitySystem = ffContext.getSystem( EntitySystem.SYSTEM_KEY );
+        TriggerCount count = new TriggerCount();
+        new EntityActivationTrigger( TRANSFORM_ASPECTS, EntityActivationTrigger.Type.DEACTIVATED )
+            .register( ffContext, 5, count );
+
+        int entityId = createEntity( true );
+        assertEquals( 0, count.triggers );
+        entitySystem.deactivateEntity( entityId );
+        assertEquals( 1, count.triggers );
+    }
+
+    @Test
+    public void testDispose() {
+        TriggerCount count = new TriggerCount();
+        EntityActivationTrigger trigger = new EntityActivationTrigger( TRANSFORM_ASPECTS, EntityActivationTrigger.Type.ACTIVATED );
+        trigger.register( ffContext, 5, count );
+        trigger.dispose( ffContext );
+
+        createEntity( true );
+        assertEquals( 0, count.triggers );
+    }
+
+    private int createEntity( boolean withTransform ) {
+        if ( withTransform ) {
+            return ffContext.getEntityBuilder()
+                .set( ETransform.VIEW_ID, 0 )
+            .activate();
+        }
+        return ffContext.getEntityBuilder()
+            .set( EEntity.ENTITY_NAME, "noTransform" )
+        .activate();
+    }
+
+    private static final class TriggerCount implements Triggerer {
+
+        int triggers = 0;
+        int componentId = -1;
+
+        @Override
+        public final void trigger( FFContext context, int componentId ) {
+            triggers++;
+            this.componentId = componentId;
+        }
+    }
+
+}
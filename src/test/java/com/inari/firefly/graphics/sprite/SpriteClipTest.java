@@ -0,0 +1,124 @@
+package com.inari.firefly.graphics.sprite;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.inari.commons.geom.Rectangle;
+import com.inari.firefly.FFTest;
+import com.inari.firefly.asset.AssetSystem;
+import com.inari.firefly.entity.EEntity;
+import com.inari.firefly.graphics.TextureAsset;
+import com.inari.firefly.physics.animation.Animation;
+import com.inari.firefly.physics.animation.AnimationSystem;
+import com.inari.firefly.physics.animation.EAnimation;
+
+public class SpriteClipTest extends FFTest {
+
+    @Test
+    public void testSharedClipWithPhaseOffsets() {
+        SpriteClip clip = createClip( true );
+        clip.setPhaseOffset( 1, 1 );
+        clip.setPhaseOffset( 2, -1 );
+        clip.setPhaseOffset( 3, 6 );
+        clip.setPhaseOffset( 4, -9 );
+
+        assertEquals( 10, clip.getValue( 0, -1 ) );
+        assertEquals( 11, clip.getValue( 1, -1 ) );
+        assertEquals( 13, clip.getValue( 2, -1 ) );
+        assertEquals( 12, clip.getValue( 3, -1 ) );
+        assertEquals( 13, clip.getValue( 4, -1 ) );
+        // an entity without offset plays the current frame of the clip
+        assertEquals( 10, clip.getValue( 100, -1 ) );
+    }
+
+    @Test
+    public void testNotLoopingClipWithPhaseOffsets() {
+        SpriteClip clip = createClip( false );
+        clip.setPhaseOffset( 1, -2 );
+        clip.setPhaseOffset( 2, 2 );
+        clip.setPhaseOffset( 3, 10 );
+
+        assertEquals( 10, clip.getValue( 1, -1 ) );
+        assertEquals( 12, clip.getValue( 2, -1 ) );
+        assertEquals( 13, clip.getValue( 3, -1 ) );
+    }
+
+    @Test
+    public void testPhaseOffsetIsClearedForReusedEntityId() {
+        SpriteClip clip = createClip( true );
+        int entityId = createWalkingEntity();
+        clip.setPhaseOffset( entityId, 2 );
+        assertEquals( 12, clip.getValue( entityId, -1 ) );
+        
+        ffContext.deleteEntity( entityId );
+        // the new entity gets the id of the deleted one and starts without offset
+        assertEquals( entityId, createWalkingEntity() );
+        assertEquals( 0, clip.getPhaseOffset( entityId ) );
+        assertEquals( 10, clip.getValue( entityId, -1 ) );
+    }
+
+    private int createWalkingEntity() {
+        return ffContext.getEntityBuilder()
+            .set( EEntity.ENTITY_NAME, "walker" )
+            .set( ESprite.SPRITE_ID, 10 )
+            .add( 
+                EAnimation.ANIMATION_MAPPING, 
+                ESprite.AnimationAdapter.SPRITE_ID.createAnimationMapping( "walk" )
+            )
+        .activate();
+    }
+
+    @Test
+    public void testClipReferencesFrames() {
+        AssetSystem assetSystem = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        AnimationSystem animationSystem = ffContext.getSystem( AnimationSystem.SYSTEM_KEY );
+        assetSystem
+            .getAssetBuilder( TextureAsset.class )
+                .set( TextureAsset.NAME, "texture" )
+                .set( TextureAsset.RESOURCE_NAME, "texture.png" )
+            .build();
+        int frame1 = createSprite( assetSystem, "frame1" );
+        int frame2 = createSprite( assetSystem, "frame2" );
+        int clipId = animationSystem.getAnimationBuilder( SpriteClip.class )
+            .set( Animation.NAME, "walk" )
+            .set( SpriteClip.SPRITE_IDS, new int[] { 
+                assetSystem.getAssetInstanceId( frame1 ), 
+                assetSystem.getAssetInstanceId( frame2 ) 
+            } )
+        .build();
+        assertEquals( 0, assetSystem.getReferences( frame1 ) );
+        
+        // the frames are referenced while the clip is alive
+        animationSystem.activateAnimation( clipId );
+        assertEquals( 1, assetSystem.getReferences( frame1 ) );
+        assertEquals( 1, assetSystem.getReferences( frame2 ) );
+        
+        animationSystem.deleteAnimation( clipId );
+        assertEquals( 0, assetSystem.getReferences( frame1 ) );
+        assertEquals( 0, assetSystem.getReferences( frame2 ) );
+    }
+
+    private int createSprite( AssetSystem assetSystem, String name ) {
+        int spriteAssetId = assetSystem
+            .getAssetBuilder( SpriteAsset.class )
+                .set( SpriteAsset.NAME, name )
+                .set( SpriteAsset.TEXTURE_ASSET_ID, assetSystem.getAssetId( "texture" ) )
+                .set( SpriteAsset.TEXTURE_REGION, new Rectangle( 0, 0, 16, 16 ) )
+            .build();
+        assetSystem.loadAsset( spriteAssetId );
+        return spriteAssetId;
+    }
+
+    private SpriteClip createClip( boolean looping ) {
+        AnimationSystem animationSystem = ffContext.getSystem( AnimationSystem.SYSTEM_KEY );
+        int clipId = animationSystem.getAnimationBuilder( SpriteClip.class )
+            .set( Animation.NAME, "walk" )
+            .set( Animation.LOOPING, looping )
+            .set( SpriteClip.SPRITE_IDS, new int[] { 10, 11, 12, 13 } )
+            .set( SpriteClip.FRAME_DURATION, 100 )
+        .build();
+        return animationSystem.getAnimationAs( clipId, SpriteClip.class );
+    }
+
+}
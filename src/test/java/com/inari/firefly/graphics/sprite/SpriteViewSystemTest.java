@@ -0,0 +1,136 @@
+package com.inari.firefly.graphics.sprite;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.inari.commons.geom.PositionF;
+import com.inari.commons.geom.Rectangle;
+import com.inari.commons.lang.list.DynArray;
+import com.inari.firefly.FFGraphicsMock;
+import com.inari.firefly.FFTest;
+import com.inari.firefly.asset.AssetSystem;
+import com.inari.firefly.entity.EntitySystem;
+import com.inari.firefly.graphics.ETransform;
+import com.inari.firefly.graphics.TextureAsset;
+import com.inari.firefly.graphics.view.ViewSystem;
+
+public class SpriteViewSystemTest extends FFTest {
+
+    @Test
+    public void testSpriteAssetReferences() {
+        AssetSystem assetSystem = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        SpriteViewSystem spriteViewSystem = ffContext.getSystem( SpriteViewSystem.SYSTEM_KEY );
+        EntitySystem entitySystem = ffContext.getSystem( EntitySystem.SYSTEM_KEY );
+        assetSystem
+            .getAssetBuilder( TextureAsset.class )
+                .set( TextureAsset.NAME, "texture" )
+                .set( TextureAsset.RESOURCE_NAME, "texture.png" )
+            .build();
+        int spriteAssetId = assetSystem
+            .getAssetBuilder( SpriteAsset.class )
+                .set( SpriteAsset.NAME, "sprite" )
+                .set( SpriteAsset.TEXTURE_ASSET_ID, assetSystem.getAssetId( "texture" ) )
+                .set( SpriteAsset.TEXTURE_REGION, new Rectangle( 0, 0, 16, 16 ) )
+            .build();
+        assetSystem.loadAsset( spriteAssetId );
+        int spriteId = assetSystem.getAssetInstanceId( spriteAssetId );
+        assertEquals( spriteAssetId, spriteViewSystem.getSpriteAssetId( spriteId ) );
+
+        int entity1 = createEntity( entitySystem, spriteId );
+        int entity2 = createEntity( entitySystem, spriteId );
+        assertEquals( 2, assetSystem.getReferences( spriteAssetId ) );
+
+        // the asset referenced on activation is released even if the sprite id changed meanwhile
+        entitySystem.getComponent( entity1, ESprite.TYPE_KEY ).setSpriteId( -1 );
+        entitySystem.deactivateEntity( entity1 );
+        assertEquals( 1, assetSystem.getReferences( spriteAssetId ) );
+        entitySystem.deactivateEntity( entity2 );
+        assertEquals( 0, assetSystem.getReferences( spriteAssetId ) );
+        assertEquals( 1, assetSystem.getUnreferencedCount() );
+
+        assetSystem.disposeAsset( spriteAssetId );
+        assertEquals( -1, spriteViewSystem.getSpriteAssetId( spriteId ) );
+    }
+
+    @Test
+    public void testMultiplierRendersOnce() {
+        FFGraphicsMock graphics = (FFGraphicsMock) ffContext.getGraphics();
+        EntitySystem entitySystem = ffContext.getSystem( EntitySystem.SYSTEM_KEY );
+        ffContext.getSystem( SpriteViewSystem.SYSTEM_KEY );
+        int parentId = entitySystem.getEntityBuilder()
+            .set( ETransform.VIEW_ID, ViewSystem.BASE_VIEW_ID )
+            .set( ETransform.POSITION_X, 10f )
+            .set( ETransform.POSITION_Y, 20f )
+        .activate();
+        DynArray<PositionF> positions = DynArray.create( PositionF.class, 3, 1 );
+        positions.add( new PositionF( 0, 0 ) );
+        positions.add( new PositionF( 16, 0 ) );
+        positions.add( new PositionF( 32, 0 ) );
+        entitySystem.getEntityBuilder()
+            .set( ETransform.VIEW_ID, ViewSystem.BASE_VIEW_ID )
+            .set( ETransform.PARENT_ID, parentId )
+            .set( ETransform.POSITION_X, 1f )
+            .set( ETransform.POSITION_Y, 2f )
+            .set( ESprite.SPRITE_ID, 0 )
+            .set( ESpriteMultiplier.MULTI_POSITIONS, positions )
+        .activate();
+        
+        graphics.clearLog();
+        firefly.render();
+        
+        // one call for all positions with the parent transform added once
+        assertEquals( 1, graphics.logCount( "renderSprites::" ) );
+        assertEquals( 0, graphics.logCount( "renderSprite::" ) );
+        assertEquals( 1, graphics.logCount( "renderSprites::Sprite(0)x3 offset(11.0,22.0)" ) );
+    }
+
+    @Test
+    public void testCullSpritesOutsideOfView() {
+        FFGraphicsMock graphics = (FFGraphicsMock) ffContext.getGraphics();
+        AssetSystem assetSystem = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        EntitySystem entitySystem = ffContext.getSystem( EntitySystem.SYSTEM_KEY );
+        ffContext.getSystem( SpriteViewSystem.SYSTEM_KEY );
+        assetSystem
+            .getAssetBuilder( TextureAsset.class )
+                .set( TextureAsset.NAME, "texture" )
+                .set( TextureAsset.RESOURCE_NAME, "texture.png" )
+            .build();
+        int spriteAssetId = assetSystem
+            .getAssetBuilder( SpriteAsset.class )
+                .set( SpriteAsset.NAME, "sprite" )
+                .set( SpriteAsset.TEXTURE_ASSET_ID, assetSystem.getAssetId( "texture" ) )
+                .set( SpriteAsset.TEXTURE_REGION, new Rectangle( 0, 0, 16, 16 ) )
+            .build();
+        assetSystem.loadAsset( spriteAssetId );
+        int spriteId = assetSystem.getAssetInstanceId( spriteAssetId );
+        
+        // the base view has the size of the screen, 100x100
+        int entityId = createEntity( entitySystem, spriteId );
+        ETransform transform = entitySystem.getComponent( entityId, ETransform.TYPE_KEY );
+        transform.setXpos( 90 );
+        graphics.clearLog();
+        firefly.render();
+        assertEquals( 1, graphics.logCount( "renderSprite::" ) );
+        
+        transform.setXpos( 110 );
+        graphics.clearLog();
+        firefly.render();
+        assertEquals( 0, graphics.logCount( "renderSprite::" ) );
+        
+        // scaled around the pivot the sprite reaches into the view
+        transform.setPivotx( 8 );
+        transform.setScalex( 4 );
+        graphics.clearLog();
+        firefly.render();
+        assertEquals( 1, graphics.logCount( "renderSprite::" ) );
+    }
+
+    private int createEntity( EntitySystem entitySystem, int spriteId ) {
+        return entitySystem.getEntityBuilder()
+            .set( ETransform.VIEW_ID, ViewSystem.BASE_VIEW_ID )
+            .set( ESprite.SPRITE_ID, spriteId )
+        .activate();
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.inari.firefly.graphics.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TextBufferTest {
+    
+    @Test
+    public void testNumberFormat() {
+        TextBuffer buffer = new TextBuffer( 2 );
+        
+        assertEquals( "12345", buffer.set( 12345 ).toString() );
+        assertEquals( "-7", buffer.set( -7 ).toString() );
+        assertEquals( "0", buffer.set( 0 ).toString() );
+        assertEquals( String.valueOf( Long.MIN_VALUE ), buffer.set( Long.MIN_VALUE ).toString() );
+        assertEquals( "3.14", buffer.set( 3.14159f, 2 ).toString() );
+        assertEquals( "-1.5", buffer.set( -1.5f, 1 ).toString() );
+        assertEquals( "2.050", buffer.set( 2.05f, 3 ).toString() );
+        assertEquals( "1.00", buffer.set( 0.999f, 2 ).toString() );
+        assertEquals( "7", buffer.set( 7f, 0 ).toString() );
+        assertEquals( "Score: 42", buffer.set( "Score: " ).append( 42 ).toString() );
+    }
+    
+    @Test
+    public void testSetNumber() {
+        TextBuffer buffer = new TextBuffer();
+        buffer.set( "FPS:..........." );
+        
+        buffer.setNumber( 4, 11, 60, '.' );
+        assertEquals( "FPS:.........60", buffer.toString() );
+        buffer.setNumber( 4, 11, 7, '.' );
+        assertEquals( "FPS:..........7", buffer.toString() );
+        buffer.setNumber( 4, 2, 123, '.' );
+        assertEquals( "FPS:##........7", buffer.toString() );
+    }
+    
+    @Test
+    public void testDirtyFlag() {
+        TextBuffer buffer = new TextBuffer();
+        assertTrue( buffer.isDirty() );
+        
+        buffer.set( "Score: " ).append( 42 );
+        buffer.clearDirty();
+        assertFalse( buffer.isDirty() );
+        
+        buffer.set( "Score: " ).append( 42 );
+        assertFalse( buffer.isDirty() );
+        
+        buffer.set( "Score: " ).append( 43 );
+        assertTrue( buffer.isDirty() );
+        buffer.clearDirty();
+        
+        buffer.set( "Score: " ).append( 430 );
+        assertTrue( buffer.isDirty() );
+        buffer.clearDirty();
+        
+        buffer.set( "Score: " ).append( 43 );
+        assertTrue( buffer.isDirty() );
+        buffer.clearDirty();
+        
+        buffer.insert( 0, ">" );
+        assertTrue( buffer.isDirty() );
+        assertEquals( ">Score: 43", buffer.toString() );
+    }
+
+}
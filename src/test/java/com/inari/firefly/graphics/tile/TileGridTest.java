@@ -6,14 +6,24 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.inari.commons.StringUtils;
+import com.inari.commons.geom.PositionF;
+import com.inari.commons.geom.Rectangle;
 import com.inari.firefly.FFTest;
 import com.inari.firefly.component.attr.AttributeMap;
 import com.inari.firefly.component.attr.ComponentAttributeMap;
+import com.inari.firefly.entity.EEntity;
+import com.inari.firefly.entity.EntitySystem;
+import com.inari.firefly.graphics.BaseRenderer;
+import com.inari.firefly.graphics.RenderPlan;
 import com.inari.firefly.graphics.tile.TileGrid.TileGridIterator;
 public class TileGridTest extends FFTest {
     
@@ -99,7 +109,7 @@ public class TileGridTest extends FFTest {
             + "[-1, -1, -1, -1, -1, -1, -1, -1, -1, -1]"
             + "[-1, -1, -1, -1, -1, -1, -1, -1, -1, -1]"
             + "[-1, -1, -1, -1, -1, -1, -1, -1, -1, -1]]",
-            StringUtils.array2DToString( grid2.grid )
+            StringUtils.array2DToString( grid2.gridToArray() )
         );
 
         attrs.clear();
@@ -129,7 +139,7 @@ public class TileGridTest extends FFTest {
                 + "[-1, -1, -1, -1, -1, -1, -1, -1, -1, -1]"
                 + "[-1, -1, -1, -1, -1, -1, -1, -1, -1, -1]"
                 + "[-1, -1, -1, -1, -1, -1, -1, -1, -1, -1]]",
-            StringUtils.array2DToString( grid3.grid )
+            StringUtils.array2DToString( grid3.gridToArray() )
         );
     }
     
@@ -160,7 +170,7 @@ public class TileGridTest extends FFTest {
             "[[-1, -1, -1]" +
             "[-1, -1, -1]" +
             "[-1, -1, -1]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
         
         grid1.set( 50, 0, 0 );
@@ -187,7 +197,7 @@ public class TileGridTest extends FFTest {
             "[[50, -1, -1]" +
             "[-1, 50, -1]" +
             "[-1, -1, 50]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
         
         grid1.set( 150, 2, 0 );
@@ -214,7 +224,7 @@ public class TileGridTest extends FFTest {
             "[[50, -1, 150]" +
             "[-1, 150, -1]" +
             "[150, -1, 50]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
         
         grid1.reset( 0, 0 );
@@ -241,7 +251,7 @@ public class TileGridTest extends FFTest {
             "[[-1, -1, -1]" +
             "[-1, 150, -1]" +
             "[150, -1, 50]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
         
         try {
@@ -293,7 +303,7 @@ public class TileGridTest extends FFTest {
             "[[-1, -1, -1]" +
             "[-1, -1, -1]" +
             "[-1, -1, -1]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
         
         grid1.set( 100, 4, 1 );
@@ -318,7 +328,7 @@ public class TileGridTest extends FFTest {
             "[[-1, -1, -1]"
             + "[-1, 100, -1]"
             + "[-1, -1, -1]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
         
         grid1.set( 100, 1, 5 );
@@ -343,7 +353,7 @@ public class TileGridTest extends FFTest {
             "[[-1, -1, -1]"
             + "[-1, 100, -1]"
             + "[-1, 100, -1]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
         
         grid1.set( 100, 8, 8 );
@@ -368,7 +378,7 @@ public class TileGridTest extends FFTest {
             "[[-1, -1, -1]"
             + "[-1, 100, -1]"
             + "[-1, 100, 100]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
         
         grid1.reset( 8, 8 );
@@ -393,7 +403,7 @@ public class TileGridTest extends FFTest {
             "[[-1, -1, -1]"
             + "[-1, 100, -1]"
             + "[-1, 100, -1]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
     }
     
@@ -429,7 +439,7 @@ public class TileGridTest extends FFTest {
             "[[100, -1, -1]"
             + "[-1, 100, -1]"
             + "[-1, -1, 100]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
         
         grid1.setWidth( 5 );
@@ -454,7 +464,7 @@ public class TileGridTest extends FFTest {
             "[[100, -1, -1, -1, -1]" +
             "[-1, 100, -1, -1, -1]" +
             "[-1, -1, 100, -1, -1]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
         
         grid1.setHeight( 5 );
@@ -481,7 +491,7 @@ public class TileGridTest extends FFTest {
             "[-1, -1, 100, -1, -1]" +
             "[-1, -1, -1, -1, -1]" +
             "[-1, -1, -1, -1, -1]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
         
         grid1.set( 100, 3, 3 );
@@ -509,7 +519,7 @@ public class TileGridTest extends FFTest {
             "[-1, -1, 100, -1, -1]" +
             "[-1, -1, -1, 100, -1]" +
             "[-1, -1, -1, -1, 100]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
         
         grid1.setWidth( 3 );
@@ -535,7 +545,7 @@ public class TileGridTest extends FFTest {
             "[[100, -1, -1]" +
             "[-1, 100, -1]" +
             "[-1, -1, 100]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
     }
     
@@ -571,7 +581,7 @@ public class TileGridTest extends FFTest {
             "[[100, -1, -1]" +
             "[-1, 100, -1]" +
             "[-1, -1, 100]]",
-            StringUtils.array2DToString( grid1.grid )
+            StringUtils.array2DToString( grid1.gridToArray() )
         );
         
         
@@ -584,6 +594,148 @@ public class TileGridTest extends FFTest {
         assertFalse( "expected no next", tileGridIterator.hasNext() );
     }
     
+    @Test
+    public void testSparseChunks() {
+        grid1.setWidth( 4096 );
+        grid1.setHeight( 4096 );
+        
+        assertTrue( grid1.isEmptyChunk( 0, 0 ) );
+        assertTrue( grid1.isEmptyChunk( 127, 127 ) );
+        assertFalse( grid1.getTileGridIterator().hasNext() );
+        
+        grid1.set( 5, 100, 2000 );
+        grid1.set( 6, 4095, 4095 );
+        assertFalse( grid1.isEmptyChunk( 100 / TileGrid.CHUNK_SIZE, 2000 / TileGrid.CHUNK_SIZE ) );
+        assertFalse( grid1.isEmptyChunk( 127, 127 ) );
+        assertTrue( grid1.isEmptyChunk( 0, 0 ) );
+        assertEquals( 5, grid1.get( 100, 2000 ) );
+        assertEquals( -1, grid1.get( 101, 2000 ) );
+        
+        TileGridIterator tileGridIterator = grid1.getTileGridIterator();
+        assertTrue( tileGridIterator.hasNext() );
+        assertEquals( 5, tileGridIterator.next() );
+        assertEquals( 6, tileGridIterator.next() );
+        assertFalse( tileGridIterator.hasNext() );
+        
+        // the chunk is released again when the last tile is removed
+        grid1.reset( 100, 2000 );
+        assertTrue( grid1.isEmptyChunk( 100 / TileGrid.CHUNK_SIZE, 2000 / TileGrid.CHUNK_SIZE ) );
+        
+        // resize keeps the tiles that are within the new bounds
+        grid1.set( 7, 40, 40 );
+        grid1.setWidth( 50 );
+        grid1.setHeight( 50 );
+        assertEquals( 7, grid1.get( 40, 40 ) );
+        assertTrue( grid1.isEmptyChunk( 0, 0 ) );
+        assertFalse( grid1.isEmptyChunk( 1, 1 ) );
+    }
+
+    @Test
+    public void testStreamingFromMapFile() throws IOException {
+        int tile5 = createTile( "tile5" );
+        int tile6 = createTile( "tile6" );
+        grid1.setWidth( 256 );
+        grid1.setHeight( 256 );
+        grid1.set( tile5, 1, 1 );
+        grid1.set( tile6, 200, 200 );
+        File mapFile = File.createTempFile( "tileGrid", ".map" );
+        mapFile.deleteOnExit();
+        TileGridMapFile.write( mapFile, grid1, ffContext );
+        
+        TileGrid streamed = createStreamedGrid( mapFile );
+        assertTrue( streamed.isStreamed() );
+        assertEquals( 256, streamed.getWidth() );
+        assertEquals( 256, streamed.getHeight() );
+        // nothing is loaded before the first streaming update
+        assertEquals( -1, streamed.get( 1, 1 ) );
+        
+        streamed.updateStreaming( new PositionF( 0, 0 ), new Rectangle( 0, 0, 100, 100 ) );
+        assertEquals( tile5, streamed.get( 1, 1 ) );
+        assertEquals( -1, streamed.get( 200, 200 ) );
+        
+        // moving the view loads the chunks ahead and evicts the ones behind
+        streamed.updateStreaming( new PositionF( 3200, 3200 ), new Rectangle( 0, 0, 100, 100 ) );
+        assertEquals( -1, streamed.get( 1, 1 ) );
+        assertEquals( tile6, streamed.get( 200, 200 ) );
+        
+        // modified chunks are kept in memory
+        streamed.set( tile6, 2, 2 );
+        streamed.updateStreaming( new PositionF( 3300, 3300 ), new Rectangle( 0, 0, 100, 100 ) );
+        assertEquals( tile5, streamed.get( 1, 1 ) );
+        assertEquals( tile6, streamed.get( 2, 2 ) );
+    }
+    
+    @Test
+    public void testMapFileRoundTripWithNewEntityIds() throws IOException {
+        EntitySystem entitySystem = ffContext.getSystem( EntitySystem.SYSTEM_KEY );
+        int grass = createTile( "grass" );
+        int water = createTile( "water" );
+        grid1.setWidth( 100 );
+        grid1.setHeight( 100 );
+        grid1.set( grass, 0, 0 );
+        grid1.set( water, 1, 0 );
+        grid1.set( grass, 70, 70 );
+        File mapFile = File.createTempFile( "tileGrid", ".map" );
+        mapFile.deleteOnExit();
+        TileGridMapFile.write( mapFile, grid1, ffContext );
+        
+        // the tile entities of the next run get other ids
+        entitySystem.delete( grass );
+        entitySystem.delete( water );
+        createTile( "other" );
+        water = createTile( "water" );
+        grass = createTile( "grass" );
+        
+        TileGridMapFile file = TileGridMapFile.open( mapFile.getAbsolutePath(), ffContext );
+        assertEquals( 2, file.getTileCount() );
+        assertEquals( "grass", file.getTileName( 0 ) );
+        assertEquals( "water", file.getTileName( 1 ) );
+        file.close();
+        
+        TileGrid streamed = createStreamedGrid( mapFile );
+        streamed.updateStreaming( new PositionF( 0, 0 ), new Rectangle( 0, 0, 2000, 2000 ) );
+        assertEquals( grass, streamed.get( 0, 0 ) );
+        assertEquals( water, streamed.get( 1, 0 ) );
+        assertEquals( grass, streamed.get( 70, 70 ) );
+        assertEquals( -1, streamed.get( 2, 0 ) );
+    }
     
+    @Test
+    public void testRendererChangeInvalidatesRenderPlan() {
+        TileGridSystem tileGridSystem = ffContext.getSystem( TileGridSystem.SYSTEM_KEY );
+        RenderPlan renderPlan = ffContext.getSystem( RenderPlan.SYSTEM_KEY );
+        int fastRendererId = tileGridSystem.getRendererId( NormalFastTileGridRenderer.NAME );
+        int fullRendererId = tileGridSystem.getRendererId( NormalFullTileGridRenderer.NAME );
+        int tileGridId = tileGridSystem.getTileGridBuilder()
+            .set( TileGrid.RENDERER_ID, fastRendererId )
+            .set( TileGrid.WIDTH, 10 )
+            .set( TileGrid.HEIGHT, 10 )
+        .build();
+        
+        List<BaseRenderer> renderers = renderPlan.getRenderers( 0, 0 );
+        assertTrue( renderers.contains( tileGridSystem.getRenderer( fastRendererId ) ) );
+        assertFalse( renderers.contains( tileGridSystem.getRenderer( fullRendererId ) ) );
+        
+        tileGridSystem.getTileGrid( tileGridId ).setRendererId( fullRendererId );
+        renderers = renderPlan.getRenderers( 0, 0 );
+        assertFalse( renderers.contains( tileGridSystem.getRenderer( fastRendererId ) ) );
+        assertTrue( renderers.contains( tileGridSystem.getRenderer( fullRendererId ) ) );
+    }
+    
+    private int createTile( String name ) {
+        return ffContext.getEntityBuilder()
+            .set( EEntity.ENTITY_NAME, name )
+        .build();
+    }
+    
+    private TileGrid createStreamedGrid( File mapFile ) {
+        TileGridSystem tileGridSystem = ffContext.getSystem( TileGridSystem.SYSTEM_KEY );
+        int tileGridId = tileGridSystem.getTileGridBuilder()
+            .set( TileGrid.CELL_WIDTH, 16 )
+            .set( TileGrid.CELL_HEIGHT, 16 )
+            .set( TileGrid.MAP_FILE_NAME, mapFile.getAbsolutePath() )
+        .build();
+        return tileGridSystem.getTileGrid( tileGridId );
+    }
 
 }
@@ -0,0 +1,238 @@
+package com.inari.firefly.graphics.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.inari.commons.geom.Rectangle;
+import com.inari.firefly.FFGraphicsMock;
+import com.inari.firefly.FFTest;
+import com.inari.firefly.asset.AssetSystem;
+import com.inari.firefly.entity.EntitySystem;
+import com.inari.firefly.graphics.ETransform;
+import com.inari.firefly.graphics.TextureAsset;
+import com.inari.firefly.graphics.sprite.ESprite;
+import com.inari.firefly.graphics.sprite.SpriteAsset;
+import com.inari.firefly.graphics.tile.TileGrid;
+import com.inari.firefly.graphics.tile.TileGridSystem;
+
+public class LayerCacheTest extends FFTest {
+
+    private static final String START_OFFSCREEN = "startOffscreenRendering";
+    private static final String RENDER_OFFSCREEN = "renderOffscreenTarget";
+    private static final String RENDER_SPRITE = "renderSprite";
+
+    @Test
+    public void testChunks() {
+        int layerId = createCachedLayer();
+        LayerCache cache = ffContext.getSystem( ViewSystem.SYSTEM_KEY ).getLayer( layerId ).getCache();
+
+        assertEquals( "LayerCache [bounds=[x=0,y=0,width=100,height=100], chunkSize=50, chunks=2x2]", cache.toString() );
+
+        Rectangle chunks = new Rectangle();
+        cache.mapToChunks( new Rectangle( 60, 10, 100, 20 ), chunks );
+        assertEquals( "[x=1,y=0,width=1,height=1]", chunks.toString() );
+        cache.mapToChunks( new Rectangle( 200, 200, 100, 100 ), chunks );
+        assertEquals( 0, chunks.width );
+
+        cache.clearDirty( 0 );
+        cache.clearDirty( 1 );
+        cache.clearDirty( 2 );
+        cache.clearDirty( 3 );
+
+        cache.markDirty( 40, 40, 20, 5 );
+        assertTrue( cache.isDirty( 0 ) );
+        assertTrue( cache.isDirty( 1 ) );
+        assertFalse( cache.isDirty( 2 ) );
+        assertFalse( cache.isDirty( 3 ) );
+    }
+
+    @Test
+    public void testRenderOnlyDirtyChunks() {
+        FFGraphicsMock graphics = (FFGraphicsMock) ffContext.getGraphics();
+        EntitySystem entitySystem = ffContext.getSystem( EntitySystem.SYSTEM_KEY );
+        int layerId = createCachedLayer();
+        int spriteId = createSprite();
+
+        int entityId = entitySystem.getEntityBuilder()
+            .set( ETransform.VIEW_ID, ViewSystem.BASE_VIEW_ID )
+            .set( ETransform.LAYER_ID, layerId )
+            .set( ETransform.POSITION_X, 10f )
+            .set( ETransform.POSITION_Y, 10f )
+            .set( ESprite.SPRITE_ID, spriteId )
+        .activate();
+
+        // first frame renders all visible chunks once into the offscreen targets but the sprite only into its chunk
+        firefly.render();
+        assertEquals( 4, graphics.logCount( START_OFFSCREEN ) );
+        assertEquals( 1, graphics.logCount( RENDER_SPRITE ) );
+        assertEquals( 4, graphics.logCount( RENDER_OFFSCREEN ) );
+
+        // nothing changed, only the cached targets are rendered
+        graphics.clearLog();
+        firefly.render();
+        assertEquals( 0, graphics.logCount( START_OFFSCREEN ) );
+        assertEquals( 0, graphics.logCount( RENDER_SPRITE ) );
+        assertEquals( 4, graphics.logCount( RENDER_OFFSCREEN ) );
+
+        // a small move within the first chunk only redraws the first chunk
+        ETransform transform = entitySystem.getComponent( entityId, ETransform.TYPE_KEY );
+        transform.move( 2f, 0f );
+        graphics.clearLog();
+        firefly.render();
+        assertEquals( 1, graphics.logCount( START_OFFSCREEN ) );
+        assertEquals( 1, graphics.logCount( RENDER_SPRITE ) );
+        assertEquals( 4, graphics.logCount( RENDER_OFFSCREEN ) );
+
+        // deactivation redraws the first chunk and disconnects the transform from the cache
+        entitySystem.deactivateEntity( entityId );
+        graphics.clearLog();
+        firefly.render();
+        assertEquals( 1, graphics.logCount( START_OFFSCREEN ) );
+        transform.move( 2f, 0f );
+        graphics.clearLog();
+        firefly.render();
+        assertEquals( 0, graphics.logCount( START_OFFSCREEN ) );
+    }
+
+    @Test
+    public void testMoveMarksChunksOfSpriteBounds() {
+        EntitySystem entitySystem = ffContext.getSystem( EntitySystem.SYSTEM_KEY );
+        int layerId = createCachedLayer();
+        LayerCache cache = ffContext.getSystem( ViewSystem.SYSTEM_KEY ).getLayer( layerId ).getCache();
+        int spriteId = createSprite( "bigSprite", 40 );
+
+        int entityId = entitySystem.getEntityBuilder()
+            .set( ETransform.VIEW_ID, ViewSystem.BASE_VIEW_ID )
+            .set( ETransform.LAYER_ID, layerId )
+            .set( ETransform.POSITION_X, 30f )
+            .set( ETransform.POSITION_Y, 5f )
+            .set( ESprite.SPRITE_ID, spriteId )
+        .activate();
+        firefly.render();
+
+        // the sprite extends right and down from its position beyond the dirty margin into the next chunk
+        entitySystem.getComponent( entityId, ETransform.TYPE_KEY ).move( 2f, 0f );
+        assertTrue( cache.isDirty( cache.getChunkIndex( 0, 0 ) ) );
+        assertTrue( cache.isDirty( cache.getChunkIndex( 1, 0 ) ) );
+        assertFalse( cache.isDirty( cache.getChunkIndex( 0, 1 ) ) );
+        assertFalse( cache.isDirty( cache.getChunkIndex( 1, 1 ) ) );
+    }
+
+    @Test
+    public void testParentMoveMarksChildChunks() {
+        EntitySystem entitySystem = ffContext.getSystem( EntitySystem.SYSTEM_KEY );
+        int layerId = createCachedLayer();
+        LayerCache cache = ffContext.getSystem( ViewSystem.SYSTEM_KEY ).getLayer( layerId ).getCache();
+        int spriteId = createSprite();
+        int parentLayerId = ffContext.getSystem( ViewSystem.SYSTEM_KEY ).getLayerBuilder()
+            .set( Layer.VIEW_ID, ViewSystem.BASE_VIEW_ID )
+            .set( Layer.NAME, "ParentLayer" )
+        .build();
+
+        // the parent has no renderable and is not on the cached Layer
+        int parentId = entitySystem.getEntityBuilder()
+            .set( ETransform.VIEW_ID, ViewSystem.BASE_VIEW_ID )
+            .set( ETransform.LAYER_ID, parentLayerId )
+            .set( ETransform.POSITION_X, 50f )
+            .set( ETransform.POSITION_Y, 50f )
+        .activate();
+        entitySystem.getEntityBuilder()
+            .set( ETransform.VIEW_ID, ViewSystem.BASE_VIEW_ID )
+            .set( ETransform.LAYER_ID, layerId )
+            .set( ETransform.PARENT_ID, parentId )
+            .set( ETransform.POSITION_X, 10f )
+            .set( ETransform.POSITION_Y, 10f )
+            .set( ESprite.SPRITE_ID, spriteId )
+        .activate();
+        firefly.render();
+
+        // the child moves with its parent from the last chunk to the second
+        entitySystem.getComponent( parentId, ETransform.TYPE_KEY ).move( 0f, -40f );
+        assertFalse( cache.isDirty( cache.getChunkIndex( 0, 0 ) ) );
+        assertTrue( cache.isDirty( cache.getChunkIndex( 1, 0 ) ) );
+        assertFalse( cache.isDirty( cache.getChunkIndex( 0, 1 ) ) );
+        assertTrue( cache.isDirty( cache.getChunkIndex( 1, 1 ) ) );
+    }
+
+    @Test
+    public void testTileGridCellChangeMarksChunk() {
+        FFGraphicsMock graphics = (FFGraphicsMock) ffContext.getGraphics();
+        TileGridSystem tileGridSystem = ffContext.getSystem( TileGridSystem.SYSTEM_KEY );
+        int layerId = createCachedLayer();
+        LayerCache cache = ffContext.getSystem( ViewSystem.SYSTEM_KEY ).getLayer( layerId ).getCache();
+
+        int tileGridId = tileGridSystem.getTileGridBuilder()
+            .set( TileGrid.VIEW_ID, ViewSystem.BASE_VIEW_ID )
+            .set( TileGrid.LAYER_ID, layerId )
+            .set( TileGrid.WIDTH, 10 )
+            .set( TileGrid.HEIGHT, 10 )
+            .set( TileGrid.CELL_WIDTH, 10 )
+            .set( TileGrid.CELL_HEIGHT, 10 )
+        .build();
+        TileGrid tileGrid = tileGridSystem.getTileGrid( tileGridId );
+
+        firefly.render();
+        assertEquals( 4, graphics.logCount( START_OFFSCREEN ) );
+
+        tileGrid.set( 1, 7, 2 );
+        assertFalse( cache.isDirty( cache.getChunkIndex( 0, 0 ) ) );
+        assertTrue( cache.isDirty( cache.getChunkIndex( 1, 0 ) ) );
+        assertFalse( cache.isDirty( cache.getChunkIndex( 0, 1 ) ) );
+        assertFalse( cache.isDirty( cache.getChunkIndex( 1, 1 ) ) );
+
+        cache.clearDirty( cache.getChunkIndex( 1, 0 ) );
+
+        // setting the same value again or resetting an empty cell don't changes anything
+        tileGrid.set( 1, 7, 2 );
+        tileGrid.reset( 2, 7 );
+        assertFalse( cache.isDirty( cache.getChunkIndex( 1, 0 ) ) );
+        assertFalse( cache.isDirty( cache.getChunkIndex( 0, 1 ) ) );
+
+        tileGrid.reset( 7, 2 );
+        assertTrue( cache.isDirty( cache.getChunkIndex( 1, 0 ) ) );
+    }
+
+    private int createCachedLayer() {
+        ViewSystem viewSystem = ffContext.getSystem( ViewSystem.SYSTEM_KEY );
+        viewSystem.getView( ViewSystem.BASE_VIEW_ID ).setLayeringEnabled( true );
+
+        int layerId = viewSystem.getLayerBuilder()
+            .set( Layer.VIEW_ID, ViewSystem.BASE_VIEW_ID )
+            .set( Layer.NAME, "CachedLayer" )
+            .set( Layer.CACHED, true )
+            .set( Layer.CACHE_BOUNDS, new Rectangle( 0, 0, 100, 100 ) )
+            .set( Layer.CACHE_CHUNK_SIZE, 50 )
+            .set( Layer.CACHE_DIRTY_MARGIN, 16 )
+        .build();
+        viewSystem.activateLayer( layerId );
+        return layerId;
+    }
+
+    private int createSprite() {
+        return createSprite( "sprite", 16 );
+    }
+
+    private int createSprite( String name, int size ) {
+        AssetSystem assetSystem = ffContext.getSystem( AssetSystem.SYSTEM_KEY );
+        if ( assetSystem.getAsset( "texture" ) == null ) {
+            assetSystem
+                .getAssetBuilder( TextureAsset.class )
+                    .set( TextureAsset.NAME, "texture" )
+                    .set( TextureAsset.RESOURCE_NAME, "texture.png" )
+                .build();
+            assetSystem.loadAsset( "texture" );
+        }
+        assetSystem
+            .getAssetBuilder( SpriteAsset.class )
+                .set( SpriteAsset.NAME, name )
+                .set( SpriteAsset.TEXTURE_ASSET_ID, assetSystem.getAssetId( "texture" ) )
+                .set( SpriteAsset.TEXTURE_REGION, new Rectangle( 0, 0, size, size ) )
+            .build();
+        assetSystem.loadAsset( name );
+        return assetSystem.getAssetInstanceId( name );
+    }
+
+}
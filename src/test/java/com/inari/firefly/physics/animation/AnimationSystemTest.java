@@ -3,6 +3,7 @@ package com.inari.firefly.physics.animation;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -91,6 +92,41 @@ public class AnimationSystemTest extends FFTest {
         assertEquals( "4", String.valueOf( sprite.getSpriteId() ) );
     }
 
+    @Test
+    public void testDeleteAnimationRemovesMappings() {
+        AnimationSystem animationSystem = ffContext.getSystem( AnimationSystem.SYSTEM_KEY );
+        int animationId = animationSystem.getAnimationBuilder( TestIntAnimation.class )
+            .set( Animation.NAME, "testAnimation" )
+        .activate();
+        ffContext.getEntityBuilder()
+            .set( EEntity.ENTITY_NAME, "TestEntity" )
+            .set( ESprite.SPRITE_ID, 0 )
+            .add( 
+                EAnimation.ANIMATION_MAPPING, 
+                ESprite.AnimationAdapter.SPRITE_ID.createAnimationMapping( "testAnimation" )
+            )
+        .activate();
+        assertEquals( 1, animationSystem.activeMappings.size() );
+        assertEquals( 0, animationSystem.unindexedMappings );
+        
+        // the mapping of the deleted animation is removed and not left to be scanned on each build
+        animationSystem.deleteAnimation( animationId );
+        assertEquals( 0, animationSystem.activeMappings.size() );
+        assertEquals( 0, animationSystem.unindexedMappings );
+        
+        // it is resolved by name again when its entity is activated again
+        animationSystem.getAnimationBuilder( TestIntAnimation.class )
+            .set( Animation.NAME, "testAnimation" )
+        .activate();
+        ffContext.deactivateEntity( "TestEntity" );
+        ffContext.activateEntity( "TestEntity" );
+        assertEquals( 1, animationSystem.activeMappings.size() );
+        assertEquals( 0, animationSystem.unindexedMappings );
+        
+        animationSystem.update( new UpdateEvent( ffContext.getTimer() ) );
+        assertEquals( 1, ffContext.getEntityComponent( "TestEntity", ESprite.TYPE_KEY ).getSpriteId() );
+    }
+
     @Test
     public void testUpdate() {
         AnimationSystem animationSystem = ffContext.getSystem( AnimationSystem.SYSTEM_KEY );
@@ -157,4 +193,62 @@ public class AnimationSystemTest extends FFTest {
         assertFalse( animationSystem.exists( 0 ) );
     }
 
+    @Test
+    public void testPooledTween() {
+        AnimationSystem animationSystem = ffContext.getSystem( AnimationSystem.SYSTEM_KEY );
+        int entityId = ffContext.getEntityBuilder()
+            .set( EEntity.ENTITY_NAME, "TweenEntity" )
+            .set( ESprite.SPRITE_ID, 0 )
+        .activate();
+        ESprite sprite = ffContext.getEntityComponent( entityId, ESprite.TYPE_KEY );
+        
+        int tweenHandle = animationSystem.tween( entityId, ESprite.AnimationAdapter.TINT_COLOR_ALPHA, 0f, 1f, 0, Easing.LINEAR );
+        assertEquals( 0.0f, sprite.getTintColor().a, 0.0001f );
+        
+        // a tween without duration finishes with the first update and is recycled on the next
+        animationSystem.update( new UpdateEvent( ffContext.getTimer() ) );
+        assertEquals( 1.0f, sprite.getTintColor().a, 0.0001f );
+        assertFalse( animationSystem.isTweenActive( tweenHandle ) );
+        animationSystem.update( new UpdateEvent( ffContext.getTimer() ) );
+        int animationCount = animationSystem.animations.size();
+        
+        // the pooled tween is reused with a new handle
+        int nextHandle = animationSystem.tween( entityId, ESprite.AnimationAdapter.TINT_COLOR_ALPHA, 1f, 0.5f, 0, null );
+        assertEquals( animationCount, animationSystem.animations.size() );
+        assertFalse( tweenHandle == nextHandle );
+        // the stale handle does not stop the reused tween
+        animationSystem.stopTween( tweenHandle );
+        assertTrue( animationSystem.isTweenActive( nextHandle ) );
+        animationSystem.update( new UpdateEvent( ffContext.getTimer() ) );
+        assertEquals( 0.5f, sprite.getTintColor().a, 0.0001f );
+    }
+    
+    @Test
+    public void testDeletedTweenIsNotReused() {
+        AnimationSystem animationSystem = ffContext.getSystem( AnimationSystem.SYSTEM_KEY );
+        int entityId = ffContext.getEntityBuilder()
+            .set( EEntity.ENTITY_NAME, "TweenEntity" )
+            .set( ESprite.SPRITE_ID, 0 )
+        .activate();
+        
+        animationSystem.tween( entityId, ESprite.AnimationAdapter.TINT_COLOR_ALPHA, 0f, 1f, 0, null );
+        animationSystem.update( new UpdateEvent( ffContext.getTimer() ) );
+        animationSystem.update( new UpdateEvent( ffContext.getTimer() ) );
+        int tweenId = -1;
+        for ( int i = 0; i < animationSystem.animations.capacity(); i++ ) {
+            if ( animationSystem.animations.contains( i ) ) {
+                tweenId = i;
+            }
+        }
+        
+        // the id of the deleted pooled tween is reused by another animation
+        animationSystem.deleteAnimation( tweenId );
+        int animationId = animationSystem.getAnimationBuilder( TestAnimation.class ).build();
+        int tweenHandle = animationSystem.tween( entityId, ESprite.AnimationAdapter.TINT_COLOR_ALPHA, 0f, 1f, 0, null );
+        
+        assertTrue( animationSystem.getAnimation( animationId ) instanceof TestAnimation );
+        assertTrue( animationSystem.isTweenActive( tweenHandle ) );
+        assertEquals( 2, animationSystem.animations.size() );
+    }
+
 }
@@ -0,0 +1,65 @@
+package com.inari.firefly.physics.animation;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class FloatKeyframeTrackTest {
+    
+    @Test
+    public void testSeekAndEvaluate() {
+        FloatKeyframeTrack track = new FloatKeyframeTrack( 
+            new float[] { 0, 100, 200 }, 
+            new float[] { 0, 10, 30 }, 
+            Easing.LINEAR 
+        );
+        
+        assertEquals( 200f, track.getDuration(), 0f );
+        
+        int cursor = track.seek( 50, 0 );
+        assertEquals( 0, cursor );
+        assertEquals( 5f, track.evaluate( 50, cursor ), 0.0001f );
+        
+        cursor = track.seek( 150, cursor );
+        assertEquals( 1, cursor );
+        assertEquals( 20f, track.evaluate( 150, cursor ), 0.0001f );
+        
+        cursor = track.seek( 300, cursor );
+        assertEquals( 2, cursor );
+        assertEquals( 30f, track.evaluate( 300, cursor ), 0f );
+        
+        // seek also goes back from the cursor
+        cursor = track.seek( 10, cursor );
+        assertEquals( 0, cursor );
+    }
+    
+    @Test
+    public void testStepAndBulkEvaluation() {
+        FloatKeyframeTrack step = new FloatKeyframeTrack( 
+            new float[] { 0, 100, 200 }, 
+            new float[] { 1, 2, 3 }, 
+            Easing.STEP 
+        );
+        FloatKeyframeTrack linear = new FloatKeyframeTrack( 
+            new float[] { 0, 200 }, 
+            new float[] { 0, 1 }, 
+            Easing.LINEAR 
+        );
+        
+        FloatKeyframeTrack[] tracks = new FloatKeyframeTrack[] { step, linear };
+        int[] cursors = new int[ 2 ];
+        float[] result = new float[ 2 ];
+        
+        FloatKeyframeTrack.evaluate( tracks, cursors, 150, result );
+        assertEquals( 2f, result[ 0 ], 0f );
+        assertEquals( 0.75f, result[ 1 ], 0.0001f );
+        assertEquals( 1, cursors[ 0 ] );
+        assertEquals( 0, cursors[ 1 ] );
+    }
+    
+    @Test( expected = IllegalArgumentException.class )
+    public void testUnorderedTimes() {
+        new FloatKeyframeTrack( new float[] { 0, 100, 50 }, new float[] { 0, 1, 2 }, Easing.LINEAR );
+    }
+
+}
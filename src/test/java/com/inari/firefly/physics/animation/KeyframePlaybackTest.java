@@ -0,0 +1,50 @@
+package com.inari.firefly.physics.animation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class KeyframePlaybackTest {
+    
+    private final FloatKeyframeTrack track = new FloatKeyframeTrack( 
+        new float[] { 0, 100, 200 }, 
+        new float[] { 0, 10, 30 }, 
+        Easing.LINEAR 
+    );
+    
+    @Test
+    public void testNotLooping() {
+        KeyframePlayback playback = new KeyframePlayback();
+        assertFalse( playback.update( 50, false ) );
+        
+        playback.setTrack( track );
+        assertEquals( 0f, playback.getValue(), 0f );
+        assertFalse( playback.update( 50, false ) );
+        assertEquals( 5f, playback.getValue(), 0.0001f );
+        assertFalse( playback.update( 150, false ) );
+        assertEquals( 20f, playback.getValue(), 0.0001f );
+        
+        // finishes with the value of the last keyframe
+        assertTrue( playback.update( 250, false ) );
+        assertEquals( 30f, playback.getValue(), 0f );
+        
+        playback.reset();
+        assertEquals( 0f, playback.getValue(), 0f );
+    }
+    
+    @Test
+    public void testLooping() {
+        KeyframePlayback playback = new KeyframePlayback();
+        playback.setTrack( track );
+        
+        assertFalse( playback.update( 150, true ) );
+        assertEquals( 20f, playback.getValue(), 0.0001f );
+        assertFalse( playback.update( 250, true ) );
+        assertEquals( 5f, playback.getValue(), 0.0001f );
+        assertFalse( playback.update( 350, true ) );
+        assertEquals( 20f, playback.getValue(), 0.0001f );
+    }
+
+}
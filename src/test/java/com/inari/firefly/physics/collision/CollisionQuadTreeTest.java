@@ -2,10 +2,13 @@ package com.inari.firefly.physics.collision;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 
 import com.inari.commons.geom.PositionF;
 import com.inari.commons.geom.Rectangle;
+import com.inari.commons.lang.IntIterator;
 import com.inari.firefly.FFTest;
 import com.inari.firefly.entity.EEntity;
 import com.inari.firefly.entity.EntitySystem;
@@ -84,6 +87,57 @@ public class CollisionQuadTreeTest extends FFTest {
         );
     }
     
+    @Test
+    public void testLooseAddRemoveAndUpdate() {
+        ffContext.loadSystem( CollisionSystem.SYSTEM_KEY );
+        EntitySystem entitySystem = ffContext.getSystem( EntitySystem.SYSTEM_KEY );
+        
+        int entity1 = entitySystem.getEntityId( createEntity( 10, 10, entitySystem ) );
+        int entity2 = entitySystem.getEntityId( createEntity( 60, 10, entitySystem ) );
+        int entity3 = entitySystem.getEntityId( createEntity( 10, 60, entitySystem ) );
+        int entity4 = entitySystem.getEntityId( createEntity( 60, 60, entitySystem ) );
+        int entity5 = entitySystem.getEntityId( createEntity( 70, 70, entitySystem ) );
+        
+        ffContext.getComponentBuilder( CollisionQuadTree.TYPE_KEY, CollisionQuadTree.class )
+            .set( CollisionQuadTree.MAX_ENTRIES_OF_AREA, 4 )
+            .set( CollisionQuadTree.MAX_LEVEL, 4 )
+            .set( CollisionQuadTree.LOOSE, true )
+            .set( CollisionQuadTree.WORLD_AREA, new Rectangle( 0, 0, 100, 100 ) )
+        .build( 1 );
+        CollisionQuadTree quadTree = ffContext.getSystemComponent( CollisionQuadTree.TYPE_KEY, 1 );
+        
+        quadTree.add( entity1 );
+        quadTree.add( entity2 );
+        quadTree.add( entity3 );
+        quadTree.add( entity4 );
+        quadTree.add( entity5 );
+        
+        assertEquals( "[" + entity1 + "]", get( quadTree, new Rectangle( 0, 0, 30, 30 ) ) );
+        assertEquals( "[" + entity4 + ", " + entity5 + "]", get( quadTree, new Rectangle( 55, 55, 30, 30 ) ) );
+        
+        quadTree.remove( entity5 );
+        assertEquals( "[" + entity4 + "]", get( quadTree, new Rectangle( 55, 55, 30, 30 ) ) );
+        
+        ETransform transform = entitySystem.getComponent( entity1, ETransform.TYPE_KEY );
+        transform.setXpos( 80 );
+        transform.setYpos( 80 );
+        quadTree.update( entity1 );
+        assertEquals( "[]", get( quadTree, new Rectangle( 0, 0, 30, 30 ) ) );
+        assertEquals( "[" + entity1 + "]", get( quadTree, new Rectangle( 75, 75, 10, 10 ) ) );
+    }
+    
+    private String get( CollisionQuadTree quadTree, Rectangle bounds ) {
+        IntIterator iterator = quadTree.get( bounds );
+        int[] result = new int[ 10 ];
+        int size = 0;
+        while ( iterator.hasNext() ) {
+            result[ size++ ] = iterator.next();
+        }
+        result = Arrays.copyOf( result, size );
+        Arrays.sort( result );
+        return Arrays.toString( result );
+    }
+    
     private String createEntity( int x, int y, EntitySystem entitySystem ) {
         String name = "Entity("+x+","+y+")"; 
         entitySystem.getEntityBuilder()
@@ -0,0 +1,147 @@
+package com.inari.firefly.system.external;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.inari.firefly.TestTimer;
+import com.inari.firefly.system.external.FFTimer.TickListener;
+
+public class FFTimerTest {
+
+    @Test
+    public void testScheduleOnce() {
+        TestTimer timer = new TestTimer();
+        TickLog log = new TickLog( timer );
+        timer.scheduleOnce( 3, log );
+
+        update( timer, 10 );
+        assertEquals( "[3:0]", log.toString() );
+    }
+
+    @Test
+    public void testScheduleEvery() {
+        TestTimer timer = new TestTimer();
+        TickLog log = new TickLog( timer );
+        timer.scheduleEvery( 2, 2, log );
+
+        update( timer, 7 );
+        assertEquals( "[2:0, 4:1, 6:2]", log.toString() );
+    }
+
+    @Test
+    public void testCancel() {
+        TestTimer timer = new TestTimer();
+        TickLog once = new TickLog( timer );
+        TickLog every = new TickLog( timer );
+        int onceId = timer.scheduleOnce( 5, once );
+        int everyId = timer.scheduleEvery( 2, 2, every );
+
+        update( timer, 3 );
+        timer.cancel( onceId );
+        timer.cancel( everyId );
+        update( timer, 10 );
+
+        assertEquals( "[]", once.toString() );
+        assertEquals( "[2:0]", every.toString() );
+    }
+
+    @Test
+    public void testCascadeBetweenLevels() {
+        TestTimer timer = new TestTimer();
+        TickLog level1 = new TickLog( timer );
+        TickLog level2 = new TickLog( timer );
+        timer.scheduleOnce( 300, level1 );
+        timer.scheduleOnce( 70000, level2 );
+
+        update( timer, 70010 );
+        assertEquals( "[300:0]", level1.toString() );
+        assertEquals( "[70000:0]", level2.toString() );
+    }
+
+    @Test
+    public void testPhase() {
+        TestTimer timer = new TestTimer();
+        TickLog log = new TickLog( timer );
+        // 100 ticks per second is every 10 milliseconds
+        timer.schedule( 100, 5, log );
+
+        update( timer, 30 );
+        assertEquals( "[5:0, 15:1, 25:2]", log.toString() );
+    }
+
+    @Test
+    public void testScheduleBeforeFirstTick() {
+        TestTimer timer = new TestTimer();
+        TickLog log = new TickLog( timer );
+        timer.scheduleOnce( 3, log );
+
+        // the first tick of a timer that starts with the system time
+        long start = 1500000000000L;
+        timer.setTime( start );
+        timer.updateSchedule();
+        update( timer, 5 );
+        assertEquals( "[" + ( start + 3 ) + ":0]", log.toString() );
+    }
+
+    @Test
+    public void testScheduleStartsAfterInterval() {
+        TestTimer timer = new TestTimer();
+        TickLog log = new TickLog( timer );
+        // 200 ticks per second is every 5 milliseconds, the first tick one interval after scheduling
+        timer.schedule( 200, log );
+
+        update( timer, 16 );
+        assertEquals( "[5:0, 10:1, 15:2]", log.toString() );
+    }
+
+    @Test
+    public void testCancelStaleId() {
+        TestTimer timer = new TestTimer();
+        TickLog once = new TickLog( timer );
+        TickLog other = new TickLog( timer );
+        int onceId = timer.scheduleOnce( 1, once );
+        update( timer, 2 );
+
+        // the entry of the fired one-shot is reused by the next schedule
+        int otherId = timer.scheduleOnce( 3, other );
+        timer.cancel( onceId );
+        update( timer, 5 );
+
+        assertFalse( onceId == otherId );
+        assertEquals( "[1:0]", once.toString() );
+        assertEquals( "[5:0]", other.toString() );
+    }
+
+    private void update( TestTimer timer, int times ) {
+        for ( int i = 0; i < times; i++ ) {
+            timer.tick();
+            timer.updateSchedule();
+        }
+    }
+
+    private static final class TickLog implements TickListener {
+
+        private final FFTimer timer;
+        private final List<String> ticks = new ArrayList<String>();
+
+        TickLog( FFTimer timer ) {
+            this.timer = timer;
+        }
+
+        @Override
+        public final void onTick( long tick ) {
+            ticks.add( timer.getLastUpdateTime() + ":" + tick );
+        }
+
+        @Override
+        public final String toString() {
+            return ticks.toString();
+        }
+    }
+
+}
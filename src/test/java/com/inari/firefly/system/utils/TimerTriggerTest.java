@@ -0,0 +1,88 @@
+package com.inari.firefly.system.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.inari.firefly.FFTest;
+import com.inari.firefly.system.FFContext;
+
+public class TimerTriggerTest extends FFTest {
+
+    @Test
+    public void testOnce() {
+        TriggerLog log = new TriggerLog();
+        new TimerTrigger( 3, false ).register( ffContext, 7, log );
+
+        update( 2 );
+        assertEquals( "[]", log.toString() );
+        update( 1 );
+        assertEquals( "[3:7]", log.toString() );
+        update( 10 );
+        assertEquals( "[3:7]", log.toString() );
+    }
+
+    @Test
+    public void testRepeat() {
+        TriggerLog log = new TriggerLog();
+        new TimerTrigger( 2, true ).register( ffContext, 1, log );
+
+        update( 7 );
+        assertEquals( "[2:1, 4:1, 6:1]", log.toString() );
+    }
+
+    @Test
+    public void testCondition() {
+        TriggerLog log = new TriggerLog();
+        final boolean[] fulfilled = new boolean[] { false };
+        new TimerTrigger( 2, true, new Condition() {
+            @Override
+            public final boolean check( FFContext context ) {
+                return fulfilled[ 0 ];
+            }
+        } ).register( ffContext, 1, log );
+
+        update( 3 );
+        assertEquals( "[]", log.toString() );
+        fulfilled[ 0 ] = true;
+        update( 1 );
+        assertEquals( "[4:1]", log.toString() );
+    }
+
+    @Test
+    public void testDispose() {
+        TriggerLog log = new TriggerLog();
+        TimerTrigger trigger = new TimerTrigger( 2, true );
+        trigger.register( ffContext, 1, log );
+
+        update( 2 );
+        trigger.dispose( ffContext );
+        update( 10 );
+        assertEquals( "[2:1]", log.toString() );
+    }
+
+    private void update( int times ) {
+        for ( int i = 0; i < times; i++ ) {
+            firefly.update();
+        }
+    }
+
+    private static final class TriggerLog implements Triggerer {
+
+        private final List<String> triggers = new ArrayList<String>();
+
+        @Override
+        public final void trigger( FFContext context, int componentId ) {
+            triggers.add( context.getTimer().getLastUpdateTime() + ":" + componentId );
+        }
+
+        @Override
+        public final String toString() {
+            return triggers.toString();
+        }
+    }
+
+}